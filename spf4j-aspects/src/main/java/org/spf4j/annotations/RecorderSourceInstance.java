@@ -18,12 +18,15 @@
  */
 package org.spf4j.annotations;
 
+import java.util.concurrent.TimeUnit;
 import org.spf4j.perf.MeasurementRecorderSource;
 import org.spf4j.perf.impl.RecorderFactory;
 import org.spf4j.perf.impl.NopMeasurementRecorderSource;
 
 /**
  * I am simulating a lazy enum.
+ * Every instance has a INSTANCE field, and can optionally have a TIME_UNIT field that specifies
+ * the time unit of the recorded execution times. (default milliseconds)
  * @author zoly
  */
 
@@ -64,4 +67,31 @@ public abstract class RecorderSourceInstance {
                 RecorderFactory.createScalableQuantizedRecorderSource(Rs1h.class,
                 "ms", 3600000, 10, 0, 6, 10);
     }
+
+    public static final class Rs1mNanos extends RecorderSourceInstance {
+
+        public static final TimeUnit TIME_UNIT = TimeUnit.NANOSECONDS;
+
+        public static final MeasurementRecorderSource INSTANCE =
+                RecorderFactory.createScalableQuantizedRecorderSource(Rs1mNanos.class,
+                "ns", 60000, 10, 2, 10, 10);
+    }
+
+    public static final class Rs5mNanos extends RecorderSourceInstance {
+
+        public static final TimeUnit TIME_UNIT = TimeUnit.NANOSECONDS;
+
+        public static final MeasurementRecorderSource INSTANCE =
+                RecorderFactory.createScalableQuantizedRecorderSource(Rs5mNanos.class,
+                "ns", 300000, 10, 2, 10, 10);
+    }
+
+    public static final class Rs1hNanos extends RecorderSourceInstance {
+
+        public static final TimeUnit TIME_UNIT = TimeUnit.NANOSECONDS;
+
+        public static final MeasurementRecorderSource INSTANCE =
+                RecorderFactory.createScalableQuantizedRecorderSource(Rs1hNanos.class,
+                "ns", 3600000, 10, 2, 10, 10);
+    }
 }
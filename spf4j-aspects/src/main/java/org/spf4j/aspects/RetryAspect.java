@@ -18,61 +18,339 @@
  */
 package org.spf4j.aspects;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.spf4j.annotations.Retry;
 import org.spf4j.annotations.VoidPredicate;
 import org.spf4j.base.Callables;
+import org.spf4j.base.Callables.AdvancedAction;
+import org.spf4j.base.Callables.AdvancedRetryPredicate;
 import org.spf4j.base.Callables.TimeoutCallable;
+import org.spf4j.concurrent.DefaultExecutor;
+import org.spf4j.concurrent.RetryBudget;
+import org.spf4j.concurrent.RetryScheduler;
 
 /**
- * Aspect that measures execution time and does performance logging for all methods annotated with: PerformanceMonitor
- * annotation.
+ * Aspect that retries the execution of all methods annotated with: Retry annotation.
+ *
+ * The retries are subject to the current thread deadline (org.spf4j.base.Runtime), which is narrowed to the
+ * retry timeout for the duration of the retried execution, and to a global retry budget
+ * (spf4j.retry.budgetRatio retries per invocation, spf4j.retry.budgetMaxTokens max burst).
+ *
+ * Methods returning CompletableFuture/CompletionStage or ListenableFuture are retried asynchronously:
+ * the delayed retries are scheduled on the RetryScheduler and executed on the DefaultExecutor, no thread
+ * is blocked during the retry delays. The caller's deadline is captured when the method is invoked and is
+ * restored on the executing thread around every attempt. Since the retried attempts call proceed()
+ * from another thread, the asynchronous retry should be the only around advice applied to the method.
  *
  * @author zoly
  */
 @Aspect
 public final class RetryAspect {
 
-    
-    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<Long>() {
+    private static final RetryBudget BUDGET = new RetryBudget(
+            Double.parseDouble(System.getProperty("spf4j.retry.budgetRatio", "0.2")),
+            Long.getLong("spf4j.retry.budgetMaxTokens", 1000L));
 
-        @Override
-        protected Long initialValue() {
-            return Long.MAX_VALUE;
-        }
-
-    };
-    
-    
+    /**
+     * @return the current thread deadline.
+     * @deprecated use org.spf4j.base.Runtime.getDeadline().
+     */
+    @Deprecated
     public static long getDeadline() {
-        return DEADLINE.get();
+        return org.spf4j.base.Runtime.getDeadline();
+    }
+
+    public static RetryBudget getRetryBudget() {
+        return BUDGET;
     }
-    
+
     @Around(value = "execution(@org.spf4j.annotations.Retry * *(..)) && @annotation(annot)",
             argNames = "pjp,annot")
     public Object performanceMonitoredMethod(final ProceedingJoinPoint pjp, final Retry annot)
             throws Throwable {
-
+        BUDGET.onAttempt();
+        final AdvancedRetryPredicate<Exception> predicate = annot.exRetry() == VoidPredicate.class
+                ? Callables.DEFAULT_EXCEPTION_RETRY : annot.exRetry().newInstance();
+        Class<?> returnType = ((MethodSignature) pjp.getSignature()).getReturnType();
+        if (CompletionStage.class.isAssignableFrom(returnType)
+                && returnType.isAssignableFrom(CompletableFuture.class)) {
+            CompletableFutureRetry retry = new CompletableFutureRetry(pjp, annot, predicate);
+            retry.attempt();
+            return retry.result;
+        } else if (ListenableFuture.class.isAssignableFrom(returnType)
+                && returnType.isAssignableFrom(SettableFuture.class)) {
+            ListenableFutureRetry retry = new ListenableFutureRetry(pjp, annot, predicate);
+            retry.attempt();
+            return retry.result;
+        }
         return Callables.executeWithRetry(new TimeoutCallable<Object, Exception>(annot.timeoutMillis()) {
 
             @Override
             public Object call(final long dealine) throws Exception {
-                DEADLINE.set(dealine);
                 try {
                     return pjp.proceed();
                 } catch (Exception e) {
                   throw e;
                 } catch (Throwable ex) {
                     throw new Error(ex);
-                } finally {
-                    DEADLINE.set(Long.MAX_VALUE);
                 }
             }
-        }, annot.immediateRetries(), annot.retryDelayMillis(),
-                annot.exRetry() == VoidPredicate.class ? Callables.DEFAULT_EXCEPTION_RETRY
-                        : annot.exRetry().newInstance());
+        }, annot.immediateRetries(), annot.retryDelayMillis(), new BudgetedRetryPredicate(predicate));
+
+    }
+
+    /**
+     * Aborts the retries when the global retry budget is exhausted.
+     */
+    private static final class BudgetedRetryPredicate extends AdvancedRetryPredicate<Exception> {
+
+        private final AdvancedRetryPredicate<Exception> predicate;
+
+        BudgetedRetryPredicate(final AdvancedRetryPredicate<Exception> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public AdvancedAction apply(final Exception value, final long deadline) {
+            AdvancedAction action = predicate.apply(value, deadline);
+            if (action != AdvancedAction.ABORT && !BUDGET.tryRetry()) {
+                return AdvancedAction.ABORT;
+            }
+            return action;
+        }
+
+        @Override
+        public AdvancedAction apply(final Exception value) {
+            return apply(value, org.spf4j.base.Runtime.getDeadline());
+        }
+    }
+
+    /**
+     * Asynchronous retry logic, every attempt is executed with the retry deadline as the thread deadline,
+     * immediate retries are handed off to the default executor, delayed retries are scheduled via the
+     * retry scheduler (with a randomized fibonacci backoff, same as the synchronous retries).
+     */
+    private abstract static class AsyncRetry {
+
+        private final ProceedingJoinPoint pjp;
+
+        private final AdvancedRetryPredicate<Exception> predicate;
+
+        private final long deadline;
+
+        private final int maxDelayMillis;
+
+        private int immediateLeft;
+
+        private int p1;
+
+        private int p2;
+
+        AsyncRetry(final ProceedingJoinPoint pjp, final Retry annot,
+                final AdvancedRetryPredicate<Exception> predicate) {
+            this.pjp = pjp;
+            this.predicate = predicate;
+            this.deadline = Math.min(System.currentTimeMillis() + annot.timeoutMillis(),
+                    org.spf4j.base.Runtime.getDeadline());
+            this.maxDelayMillis = annot.retryDelayMillis();
+            this.immediateLeft = annot.immediateRetries();
+            int minDelay = maxDelayMillis / 100;
+            if (minDelay < 1) {
+                this.p1 = 0;
+                this.p2 = 1;
+            } else {
+                this.p1 = minDelay;
+                this.p2 = minDelay;
+            }
+        }
+
+        abstract boolean isDone();
+
+        abstract void complete(Object value);
+
+        abstract void fail(Throwable ex);
+
+        /**
+         * invoke onResult or onFailure when the future returned by the retried method completes.
+         */
+        abstract void listen(Object future);
+
+        final void attempt() {
+            if (isDone()) { // cancelled.
+                return;
+            }
+            // retries run on executor threads, set the caller deadline captured at invocation time.
+            long prevDeadline = org.spf4j.base.Runtime.swapDeadline(deadline);
+            try {
+                Object future = pjp.proceed();
+                if (future == null) {
+                    complete(null);
+                } else {
+                    listen(future);
+                }
+            } catch (Throwable ex) {
+                onFailure(ex);
+            } finally {
+                org.spf4j.base.Runtime.setDeadline(prevDeadline);
+            }
+        }
+
+        final void onFailure(final Throwable t) {
+            Throwable ex = t;
+            if ((ex instanceof CompletionException || ex instanceof ExecutionException) && ex.getCause() != null) {
+                ex = ex.getCause();
+            }
+            if (!(ex instanceof Exception)) {
+                fail(ex);
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now >= deadline) {
+                fail(new TimeoutException("Deadline " + deadline + " exceeded, last failure " + ex));
+                return;
+            }
+            AdvancedAction action = predicate.apply((Exception) ex, deadline);
+            switch (action) {
+                case ABORT:
+                    fail(ex);
+                    break;
+                case RETRY_IMMEDIATE:
+                    retryImmediate(ex);
+                    break;
+                case RETRY:
+                    if (immediateLeft > 0) {
+                        immediateLeft--;
+                        retryImmediate(ex);
+                    } else {
+                        retryDelayed(ex, now);
+                    }
+                    break;
+                case RETRY_DELAYED:
+                    retryDelayed(ex, now);
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported retry action " + action);
+            }
+        }
+
+        private void retryImmediate(final Throwable ex) {
+            if (BUDGET.tryRetry()) {
+                DefaultExecutor.INSTANCE.execute(this::attempt);
+            } else {
+                fail(ex);
+            }
+        }
+
+        private void retryDelayed(final Throwable ex, final long now) {
+            long delay = Math.min(nextDelay(), deadline - now);
+            if (!RetryScheduler.getDefault().scheduleRetry(() -> DefaultExecutor.INSTANCE.execute(this::attempt),
+                    delay, BUDGET)) {
+                fail(ex);
+            }
+        }
+
+        private int nextDelay() {
+            if (p2 > maxDelayMillis) {
+                return maxDelayMillis;
+            }
+            int result = p2;
+            p2 = p1 + p2;
+            p1 = result;
+            return ThreadLocalRandom.current().nextInt(result + 1);
+        }
+
+    }
+
+    private static final class CompletableFutureRetry extends AsyncRetry {
+
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        CompletableFutureRetry(final ProceedingJoinPoint pjp, final Retry annot,
+                final AdvancedRetryPredicate<Exception> predicate) {
+            super(pjp, annot, predicate);
+        }
+
+        @Override
+        boolean isDone() {
+            return result.isDone();
+        }
+
+        @Override
+        void complete(final Object value) {
+            result.complete(value);
+        }
+
+        @Override
+        void fail(final Throwable ex) {
+            result.completeExceptionally(ex);
+        }
+
+        @Override
+        void listen(final Object future) {
+            ((CompletionStage<?>) future).whenComplete((value, ex) -> {
+                if (ex == null) {
+                    complete(value);
+                } else {
+                    onFailure(ex);
+                }
+            });
+        }
 
     }
+
+    private static final class ListenableFutureRetry extends AsyncRetry {
+
+        private final SettableFuture<Object> result = SettableFuture.create();
+
+        ListenableFutureRetry(final ProceedingJoinPoint pjp, final Retry annot,
+                final AdvancedRetryPredicate<Exception> predicate) {
+            super(pjp, annot, predicate);
+        }
+
+        @Override
+        boolean isDone() {
+            return result.isDone();
+        }
+
+        @Override
+        void complete(final Object value) {
+            result.set(value);
+        }
+
+        @Override
+        void fail(final Throwable ex) {
+            result.setException(ex);
+        }
+
+        @Override
+        void listen(final Object future) {
+            Futures.addCallback((ListenableFuture<Object>) future, new FutureCallback<Object>() {
+                @Override
+                public void onSuccess(final Object value) {
+                    complete(value);
+                }
+
+                @Override
+                public void onFailure(final Throwable ex) {
+                    ListenableFutureRetry.this.onFailure(ex);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+    }
+
 }
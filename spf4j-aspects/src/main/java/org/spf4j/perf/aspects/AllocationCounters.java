@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.perf.aspects;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.spf4j.base.InstrumentationHelper;
+import org.spf4j.concurrent.DefaultScheduler;
+import org.spf4j.perf.MeasurementRecorderSource;
+
+/**
+ * Per thread allocation counters, indexed by the allocating type id.
+ *
+ * The hot path (count) only increments a slot of a thread owned long array, no locking and no allocation
+ * (except when a new allocating type is seen for the first time by a thread).
+ * The counters are aggregated into the measurement recorder source periodically by the DefaultScheduler,
+ * so the synchronized recorder lookups are off the hot path.
+ *
+ * Object sizes (which are expensive to compute) are sampled: one in every sizeSampleInterval allocations
+ * (randomized) is measured and accounted for sizeSampleInterval times its size.
+ *
+ * This class should not be weaved.
+ *
+ * @author zoly
+ */
+final class AllocationCounters {
+
+    private static final Object TYPE_SYNC = new Object();
+
+    /**
+     * the registered types, indexed by type id. copy on write.
+     */
+    private static volatile Class<?>[] types = new Class<?>[0];
+
+    private static final ClassValue<Integer> TYPE_IDS = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(final Class<?> type) {
+            synchronized (TYPE_SYNC) {
+                Class<?>[] current = types;
+                Class<?>[] newTypes = Arrays.copyOf(current, current.length + 1);
+                newTypes[current.length] = type;
+                types = newTypes;
+                return current.length;
+            }
+        }
+    };
+
+    private final ConcurrentLinkedQueue<ThreadCounters> allCounters;
+
+    private final ThreadLocal<ThreadCounters> localCounters;
+
+    private final MeasurementRecorderSource recorder;
+
+    private final int sizeSampleInterval;
+
+    /**
+     * @param recorder - the recorder source to aggregate the counters into.
+     * @param sizeSampleInterval - when positive, object sizes will be measured for 1 out of every interval
+     * allocations, when 0 instances will be counted.
+     * @param aggregateMillis - the aggregation interval.
+     */
+    AllocationCounters(final MeasurementRecorderSource recorder, final int sizeSampleInterval,
+            final int aggregateMillis) {
+        this.recorder = recorder;
+        this.sizeSampleInterval = sizeSampleInterval;
+        this.allCounters = new ConcurrentLinkedQueue<>();
+        this.localCounters = new ThreadLocal<ThreadCounters>() {
+            @Override
+            protected ThreadCounters initialValue() {
+                ThreadCounters result = new ThreadCounters(Thread.currentThread());
+                allCounters.add(result);
+                return result;
+            }
+        };
+        DefaultScheduler.INSTANCE.scheduleWithFixedDelay(this::aggregate,
+                aggregateMillis, aggregateMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * account an allocation.
+     * @param withinType - the type the allocation was done in.
+     * @param obj - the allocated object.
+     */
+    void count(final Class<?> withinType, final Object obj) {
+        int id = TYPE_IDS.get(withinType);
+        ThreadCounters tc = localCounters.get();
+        long[] counts = tc.counts;
+        if (id >= counts.length) {
+            counts = tc.grow(id);
+        }
+        if (sizeSampleInterval <= 0) {
+            counts[id]++;
+        } else if (--tc.sampleCountDown <= 0) {
+            tc.sampleCountDown = ThreadLocalRandom.current().nextInt(2 * sizeSampleInterval - 1) + 1;
+            counts[id] += InstrumentationHelper.getObjectSize(obj) * sizeSampleInterval;
+        }
+    }
+
+    /**
+     * Aggregate the thread counter deltas into the recorder source.
+     * Counter reads are racy (the owner thread keeps incrementing), any increment missed will be
+     * accounted at the next aggregation.
+     */
+    synchronized void aggregate() {
+        Iterator<ThreadCounters> iterator = allCounters.iterator();
+        while (iterator.hasNext()) {
+            ThreadCounters tc = iterator.next();
+            boolean alive = tc.thread.isAlive();
+            long[] counts = tc.counts;
+            // types are registered before they are counted, so they must be read after the counts.
+            Class<?>[] allTypes = types;
+            long[] reported = tc.reported;
+            if (reported.length < counts.length) {
+                reported = Arrays.copyOf(reported, counts.length);
+                tc.reported = reported;
+            }
+            int nrTypes = Math.min(counts.length, allTypes.length);
+            for (int i = 0; i < nrTypes; i++) {
+                long value = counts[i];
+                long delta = value - reported[i];
+                if (delta > 0) {
+                    reported[i] = value;
+                    recorder.getRecorder(allTypes[i]).record(delta);
+                }
+            }
+            if (!alive) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class ThreadCounters {
+
+        private final Thread thread;
+
+        /**
+         * written only by the owner thread.
+         */
+        private volatile long[] counts;
+
+        /**
+         * accessed only by the aggregator.
+         */
+        private long[] reported;
+
+        private int sampleCountDown;
+
+        ThreadCounters(final Thread thread) {
+            this.thread = thread;
+            this.counts = new long[Math.max(16, types.length)];
+            this.reported = new long[0];
+            this.sampleCountDown = 1;
+        }
+
+        long[] grow(final int id) {
+            long[] result = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+            counts = result;
+            return result;
+        }
+
+    }
+
+}
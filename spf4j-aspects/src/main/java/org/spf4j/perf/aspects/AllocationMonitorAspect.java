@@ -18,7 +18,6 @@
  */
 package org.spf4j.perf.aspects;
 
-import org.spf4j.base.InstrumentationHelper;
 import org.spf4j.perf.MeasurementRecorderSource;
 import org.spf4j.perf.impl.RecorderFactory;
 import org.aspectj.lang.JoinPoint;
@@ -30,6 +29,11 @@ import org.aspectj.lang.annotation.Aspect;
  * where and how much has been allocated is stored in a tsdb database.
  * this class needs to remain object allocation free to work!
  *
+ * The advice takes only the join point static part (no JoinPoint instance is created per allocation),
+ * and accounts the allocation into per thread counters indexed by the allocating type (see AllocationCounters),
+ * which are aggregated into the recorders every spf4j.perf.allocations.aggregateMillis.
+ * When recording object sizes, only 1 in spf4j.perf.allocations.sizeSampleInterval allocations is measured.
+ *
  * @author zoly
  */
 @Aspect
@@ -41,26 +45,36 @@ public final class AllocationMonitorAspect {
 
    private static final MeasurementRecorderSource RECORDER;
 
+   private static final AllocationCounters COUNTERS;
+
    public static final int SAMPLE_TIME_MILLIS;
 
    static {
        SAMPLE_TIME_MILLIS = Integer.getInteger("spf4j.perf.allocations.sampleTimeMillis", 300000);
+       final int aggregateMillis = Integer.getInteger("spf4j.perf.allocations.aggregateMillis",
+               Math.min(1000, SAMPLE_TIME_MILLIS));
        if (RECORD_OBJECT_SIZE) {
            RECORDER = RecorderFactory.createScalableCountingRecorderSource("allocations", "bytes",
             SAMPLE_TIME_MILLIS);
+           COUNTERS = new AllocationCounters(RECORDER,
+                   Math.max(1, Integer.getInteger("spf4j.perf.allocations.sizeSampleInterval", 16)),
+                   aggregateMillis);
        } else {
            RECORDER = RecorderFactory.createScalableCountingRecorderSource("allocations", "instances",
             SAMPLE_TIME_MILLIS);
+           COUNTERS = new AllocationCounters(RECORDER, 0, aggregateMillis);
        }
    }
 
-    @AfterReturning(pointcut = "call(*.new(..))", returning = "obj", argNames = "jp,obj")
-    public void afterAllocation(final JoinPoint jp, final Object obj) {
-        if (RECORD_OBJECT_SIZE) {
-            RECORDER.getRecorder(jp.getSourceLocation().getWithinType()).
-                    record(InstrumentationHelper.getObjectSize(obj));
-        } else {
-            RECORDER.getRecorder(jp.getSourceLocation().getWithinType()).record(1);
-        }
+    @AfterReturning(pointcut = "call(*.new(..))", returning = "obj", argNames = "jps,obj")
+    public void afterAllocation(final JoinPoint.StaticPart jps, final Object obj) {
+        COUNTERS.count(jps.getSourceLocation().getWithinType(), obj);
+    }
+
+    /**
+     * Aggregate the allocation counters into the recorders now.
+     */
+    public static void flush() {
+        COUNTERS.aggregate();
     }
 }
@@ -20,7 +20,12 @@ package org.spf4j.perf.aspects;
 
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.spf4j.perf.MeasurementRecorder;
 import org.spf4j.perf.MeasurementRecorderSource;
+import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -34,6 +39,10 @@ import org.spf4j.annotations.RecorderSourceInstance;
  * Aspect that measures execution time and does performance logging
  * for all methods annotated with: PerformanceMonitor annotation.
  *
+ * Execution time is measured with System.nanoTime, and recorded in the time unit of the recorder source
+ * (see RecorderSourceInstance). The measurement recorder and thresholds are resolved once per join point
+ * (static part) and cached, the hot path does not allocate, arguments are formatted only when logged.
+ *
  * @author zoly
  */
 @Aspect
@@ -49,34 +58,94 @@ public final class PerformanceMonitorAspect {
         }
     });
 
+    private static final ConcurrentMap<JoinPoint.StaticPart, JoinPointRecorder> RECORDERS =
+            new ConcurrentHashMap<>();
+
     @Around(value = "execution(@org.spf4j.annotations.PerformanceMonitor * *(..)) && @annotation(annot)",
             argNames = "pjp,annot")
     public Object performanceMonitoredMethod(final ProceedingJoinPoint pjp, final PerformanceMonitor annot)
             throws Throwable {
-        final long start = System.currentTimeMillis();
+        final long start = System.nanoTime();
         Object result = pjp.proceed();
-        final long elapsed = System.currentTimeMillis() - start;
-        MeasurementRecorderSource mrs = REC_SOURCES.getUnchecked(annot.recorderSource());
-        mrs.getRecorder(pjp.toLongString()).record(elapsed);
-        final long warnThresholdMillis = annot.warnThresholdMillis();
-        if (elapsed > warnThresholdMillis) {
-            final long errorThresholdMillis = annot.errorThresholdMillis();
-            if (elapsed > errorThresholdMillis) {
-                LOG.error("Execution time  {} ms for {} exceeds error threshold of {} ms, arguments {}",
-                            elapsed, pjp.toShortString(), errorThresholdMillis, pjp.getArgs());
-            } else {
-                LOG.warn("Execution time  {} ms for {} exceeds warning threshold of {} ms, arguments {}",
-                            elapsed, pjp.toShortString(), warnThresholdMillis, pjp.getArgs());
+        final long elapsedNanos = System.nanoTime() - start;
+        JoinPoint.StaticPart sp = pjp.getStaticPart();
+        JoinPointRecorder jpr = RECORDERS.get(sp);
+        if (jpr == null) {
+            jpr = new JoinPointRecorder(sp, annot);
+            JoinPointRecorder existing = RECORDERS.putIfAbsent(sp, jpr);
+            if (existing != null) {
+                jpr = existing;
             }
-        } else {
-            if (annot.defaultInfoLog()) {
-                LOG.info("Execution time {} ms for {}, arguments {}",
-                        elapsed, pjp.toShortString(), pjp.getArgs());
-            } else {
+        }
+        jpr.record(elapsedNanos, pjp);
+        return result;
+    }
+
+    private static TimeUnit getTimeUnit(final Class<? extends RecorderSourceInstance> rsClass) {
+        try {
+            return (TimeUnit) rsClass.getField("TIME_UNIT").get(null);
+        } catch (NoSuchFieldException ex) {
+            return TimeUnit.MILLISECONDS;
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Cannot access TIME_UNIT of " + rsClass, ex);
+        }
+    }
+
+    /**
+     * Everything that can be computed once per join point.
+     */
+    private static final class JoinPointRecorder {
+
+        private final MeasurementRecorder recorder;
+        private final TimeUnit unit;
+        private final String name;
+        private final long warnThresholdNanos;
+        private final long errorThresholdNanos;
+        private final long warnThresholdMillis;
+        private final long errorThresholdMillis;
+        private final boolean infoLog;
+
+        JoinPointRecorder(final JoinPoint.StaticPart sp, final PerformanceMonitor annot) {
+            Class<? extends RecorderSourceInstance> rsClass = annot.recorderSource();
+            this.recorder = REC_SOURCES.getUnchecked(rsClass).getRecorder(sp.toLongString());
+            this.unit = getTimeUnit(rsClass);
+            this.name = sp.toShortString();
+            this.warnThresholdMillis = annot.warnThresholdMillis();
+            this.errorThresholdMillis = annot.errorThresholdMillis();
+            this.warnThresholdNanos = TimeUnit.MILLISECONDS.toNanos(warnThresholdMillis);
+            this.errorThresholdNanos = TimeUnit.MILLISECONDS.toNanos(errorThresholdMillis);
+            this.infoLog = annot.defaultInfoLog();
+        }
+
+        void record(final long elapsedNanos, final JoinPoint jp) {
+            recorder.record(unit.convert(elapsedNanos, TimeUnit.NANOSECONDS));
+            // execution times are logged in ms, the same unit as the thresholds.
+            if (elapsedNanos > warnThresholdNanos) {
+                if (elapsedNanos > errorThresholdNanos) {
+                    LOG.error("Execution time  {} ms for {} exceeds error threshold of {} ms, arguments {}",
+                            TimeUnit.NANOSECONDS.toMillis(elapsedNanos), name, errorThresholdMillis, jp.getArgs());
+                } else {
+                    LOG.warn("Execution time  {} ms for {} exceeds warning threshold of {} ms, arguments {}",
+                            TimeUnit.NANOSECONDS.toMillis(elapsedNanos), name, warnThresholdMillis, jp.getArgs());
+                }
+            } else if (infoLog) {
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("Execution time {} ms for {}, arguments {}",
+                            TimeUnit.NANOSECONDS.toMillis(elapsedNanos), name, jp.getArgs());
+                }
+            } else if (LOG.isDebugEnabled()) {
                 LOG.debug("Execution time {} ms for {}, arguments {}",
-                        elapsed, pjp.toShortString(), pjp.getArgs());
+                        TimeUnit.NANOSECONDS.toMillis(elapsedNanos), name, jp.getArgs());
             }
         }
-        return result;
+
+        @Override
+        public String toString() {
+            return "JoinPointRecorder{" + "recorder=" + recorder + ", unit=" + unit + ", name=" + name
+                    + ", warnThresholdNanos=" + warnThresholdNanos + ", errorThresholdNanos=" + errorThresholdNanos
+                    + ", infoLog=" + infoLog + '}';
+        }
+
     }
+
 }
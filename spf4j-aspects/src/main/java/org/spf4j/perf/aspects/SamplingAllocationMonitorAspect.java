@@ -48,8 +48,8 @@ public final class SamplingAllocationMonitorAspect {
 
    }
 
-    @AfterReturning(pointcut = "call(*.new(..))", returning = "obj", argNames = "jp,obj")
-    public void afterAllocation(final JoinPoint jp, final Object obj) {
+    @AfterReturning(pointcut = "call(*.new(..))", returning = "obj", argNames = "jps,obj")
+    public void afterAllocation(final JoinPoint.StaticPart jps, final Object obj) {
         MutableInteger counter = Counter.SAMPLING_COUNTER.get();
         int value = counter.getValue();
         if (value < SAMPLE_COUNT) {
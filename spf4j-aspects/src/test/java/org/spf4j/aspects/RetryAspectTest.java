@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.aspects;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spf4j.annotations.Retry;
+import org.spf4j.concurrent.RetryBudget;
+
+/**
+ *
+ * @author zoly
+ */
+public final class RetryAspectTest {
+
+    private final AtomicInteger syncAttempts = new AtomicInteger();
+
+    private final AtomicInteger asyncAttempts = new AtomicInteger();
+
+    private final AtomicInteger failAttempts = new AtomicInteger();
+
+    /**
+     * the latest deadline observed by an attempt.
+     */
+    private final AtomicLong attemptDeadline = new AtomicLong();
+
+    @Test
+    public void testSyncRetry() throws IOException {
+        Assert.assertEquals(3, syncFailTwice());
+        Assert.assertEquals(3, syncAttempts.get());
+    }
+
+    @Test
+    public void testAsyncRetry() throws InterruptedException, ExecutionException, TimeoutException {
+        CompletableFuture<Integer> result = asyncFailTwice();
+        Assert.assertEquals(3, (int) result.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(3, asyncAttempts.get());
+    }
+
+    @Test
+    public void testAsyncRetryDeadlineExpiry() throws InterruptedException, TimeoutException {
+        final long deadline = System.currentTimeMillis() + 300;
+        long prevDeadline = org.spf4j.base.Runtime.swapDeadline(deadline);
+        CompletableFuture<Integer> result;
+        try {
+            result = asyncAlwaysFail();
+        } finally {
+            org.spf4j.base.Runtime.setDeadline(prevDeadline);
+        }
+        try {
+            result.get(10, TimeUnit.SECONDS);
+            Assert.fail("Retries must stop at the deadline");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause().toString(), ex.getCause() instanceof TimeoutException);
+        }
+        Assert.assertTrue(failAttempts.get() > 1);
+        // the delayed retries run on other threads, with the caller's deadline.
+        Assert.assertEquals(deadline, attemptDeadline.get());
+    }
+
+    @Test
+    public void testRetryBudgetExhaustion() throws InterruptedException, TimeoutException {
+        RetryBudget budget = RetryAspect.getRetryBudget();
+        while (budget.tryRetry()) {
+            // drain the budget.
+        }
+        try {
+            try {
+                syncAlwaysFail();
+                Assert.fail("Must not retry without budget");
+            } catch (IOException ex) {
+                Assert.assertEquals(1, failAttempts.get());
+            }
+            try {
+                asyncAlwaysFail().get(10, TimeUnit.SECONDS);
+                Assert.fail("Must not retry without budget");
+            } catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause().toString(), ex.getCause() instanceof IOException);
+                Assert.assertEquals(2, failAttempts.get());
+            }
+        } finally {
+            while (budget.getAvailableRetries() < 1000) { // refill the budget for the other tests.
+                budget.onAttempt();
+            }
+        }
+    }
+
+    @Retry(immediateRetries = 1, retryDelayMillis = 10)
+    public int syncFailTwice() throws IOException {
+        int attempt = syncAttempts.incrementAndGet();
+        if (attempt < 3) {
+            throw new IOException("failure " + attempt);
+        }
+        return attempt;
+    }
+
+    @Retry(immediateRetries = 1, retryDelayMillis = 10)
+    public CompletableFuture<Integer> asyncFailTwice() {
+        int attempt = asyncAttempts.incrementAndGet();
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        if (attempt < 3) {
+            result.completeExceptionally(new IOException("failure " + attempt));
+        } else {
+            result.complete(attempt);
+        }
+        return result;
+    }
+
+    @Retry(immediateRetries = 2, retryDelayMillis = 10)
+    public int syncAlwaysFail() throws IOException {
+        throw new IOException("failure " + failAttempts.incrementAndGet());
+    }
+
+    @Retry(immediateRetries = 0, retryDelayMillis = 50)
+    public CompletableFuture<Integer> asyncAlwaysFail() {
+        attemptDeadline.set(org.spf4j.base.Runtime.getDeadline());
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        result.completeExceptionally(new IOException("failure " + failAttempts.incrementAndGet()));
+        return result;
+    }
+
+}
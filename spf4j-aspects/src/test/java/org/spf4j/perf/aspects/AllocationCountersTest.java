@@ -0,0 +1,94 @@
+
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.perf.aspects;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spf4j.perf.MeasurementRecorder;
+import org.spf4j.perf.MeasurementRecorderSource;
+
+/**
+ *
+ * @author zoly
+ */
+public final class AllocationCountersTest {
+
+    private static final class TestRecorderSource implements MeasurementRecorderSource {
+
+        private final Map<Object, AtomicLong> totals = new ConcurrentHashMap<>();
+
+        @Override
+        public MeasurementRecorder getRecorder(final Object forWhat) {
+            final AtomicLong total = totals.computeIfAbsent(forWhat, (k) -> new AtomicLong());
+            return new MeasurementRecorder() {
+                @Override
+                public void record(final long measurement) {
+                    total.addAndGet(measurement);
+                }
+
+                @Override
+                public void recordAt(final long timestampMillis, final long measurement) {
+                    total.addAndGet(measurement);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        long getTotal(final Object forWhat) {
+            AtomicLong total = totals.get(forWhat);
+            return total == null ? 0 : total.get();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testCountAndAggregate() throws InterruptedException {
+        TestRecorderSource rs = new TestRecorderSource();
+        final AllocationCounters counters = new AllocationCounters(rs, 0, 3600000);
+        final Object obj = new Object();
+        for (int i = 0; i < 100; i++) {
+            counters.count(String.class, obj);
+        }
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < 50; i++) {
+                counters.count(String.class, obj);
+                counters.count(Integer.class, obj);
+            }
+        });
+        thread.start();
+        thread.join();
+        counters.aggregate();
+        Assert.assertEquals(150, rs.getTotal(String.class));
+        Assert.assertEquals(50, rs.getTotal(Integer.class));
+        counters.count(Integer.class, obj);
+        counters.aggregate();
+        Assert.assertEquals(150, rs.getTotal(String.class));
+        Assert.assertEquals(51, rs.getTotal(Integer.class));
+    }
+
+}
@@ -19,10 +19,15 @@
 package org.spf4j.perf.aspects;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.Map;
 import org.spf4j.annotations.PerformanceMonitor;
+import org.spf4j.annotations.RecorderSourceInstance;
+import org.junit.Assert;
 import org.junit.Test;
 import org.spf4j.jmx.JmxExport;
 import org.spf4j.jmx.Registry;
+import org.spf4j.perf.MeasurementAccumulator;
+import org.spf4j.perf.MeasurementsSource;
 
 /**
  *
@@ -42,6 +47,50 @@ public final class PerformanceMonitorAspectTest {
         }
     }
 
+    @Test
+    public void testPerformanceMonitoredMethodNanos() {
+        long sum = 0;
+        for (int i = 0; i < 1000; i++) {
+            sum += somethingFast(i);
+        }
+        Assert.assertEquals(499500, sum);
+        long[] measurements = getMeasurements(RecorderSourceInstance.Rs1mNanos.INSTANCE, "somethingFast");
+        Assert.assertEquals(1000, measurements[1]); // count
+        Assert.assertTrue(measurements[2] >= 0); // min
+        Assert.assertTrue(measurements[3] < 1000000000L); // max, recorded in ns
+    }
+
+    @Test
+    public void testPerformanceMonitoredMethodMillis() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            somethingSlow();
+        }
+        long[] measurements = getMeasurements(RecorderSourceInstance.Rs1m.INSTANCE, "somethingSlow");
+        Assert.assertEquals(3, measurements[1]); // count
+        Assert.assertTrue(measurements[2] >= 10); // min, recorded in ms
+        Assert.assertTrue(measurements[3] < 10000); // max, recorded in ms
+    }
+
+    private static long[] getMeasurements(final Object source, final String method) {
+        for (Map.Entry<Object, MeasurementAccumulator> entry
+                : ((MeasurementsSource) source).getEntitiesMeasurements().entrySet()) {
+            if (entry.getKey().toString().contains(method)) {
+                return entry.getValue().get();
+            }
+        }
+        throw new AssertionError("No measurements for " + method);
+    }
+
+    @PerformanceMonitor(recorderSource = RecorderSourceInstance.Rs1m.class)
+    public void somethingSlow() throws InterruptedException {
+        Thread.sleep(10);
+    }
+
+    @PerformanceMonitor(recorderSource = RecorderSourceInstance.Rs1mNanos.class)
+    public int somethingFast(final int arg) {
+        return arg;
+    }
+
     @PerformanceMonitor(warnThresholdMillis = 1)
     @JmxExport
     public void somethingTomeasure(final int arg1, final String arg2) throws InterruptedException {
@@ -0,0 +1,586 @@
+/*
+ * Copyright (c) 2001 - 2016, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.spf4j.avro;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import org.apache.avro.Schema;
+import org.apache.avro.compiler.specific.SpecificCompiler;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.specific.SpecificData;
+import org.spf4j.avro.schema.Schemas;
+
+/**
+ * Generates the java source of schema specialized DatumWriter/DatumReader implementations (codecs)
+ * for the record classes generated by the SpecificCompiler (with the spf4j templates).
+ *
+ * A generated codec reads and writes the record fields directly, there is no schema interpretation at runtime.
+ * Nested records are handled by their own codecs. The generated code avoids generics, autoboxing and the
+ * enhanced for loop, to keep it compilable by janino.
+ *
+ * Codecs do not support schema resolution (the writer schema must be the record schema),
+ * and are not generated for records that (directly or via nested records) use logical types,
+ * java-class string properties or are error records.
+ *
+ * @author zoly
+ */
+@ParametersAreNonnullByDefault
+final class AvroCodecGenerator {
+
+  static final String CODEC_SUFFIX = "_Spf4jCodec";
+
+  private static final String ENCODER = "org.apache.avro.io.Encoder";
+
+  private static final String DECODER = "org.apache.avro.io.Decoder";
+
+  private final GenericData.StringType stringType;
+
+  private final StringBuilder statics;
+
+  private final StringBuilder code;
+
+  private int varIdx;
+
+  private int indent;
+
+  AvroCodecGenerator(final GenericData.StringType stringType) {
+    this.stringType = stringType;
+    this.statics = new StringBuilder(256);
+    this.code = new StringBuilder(4096);
+  }
+
+  static String getCodecClassName(final Schema record) {
+    return Schemas.getJavaClassName(record) + CODEC_SUFFIX;
+  }
+
+  /**
+   * @param schemas - the root schemas.
+   * @return all records reachable from the provided schemas, by full name.
+   */
+  static Map<String, Schema> getRecords(final Schema... schemas) {
+    Map<String, Schema> result = new HashMap<>();
+    Deque<Schema> todo = new ArrayDeque<>();
+    for (Schema schema : schemas) {
+      todo.add(schema);
+    }
+    Schema schema;
+    while ((schema = todo.poll()) != null) {
+      switch (schema.getType()) {
+        case RECORD:
+          if (result.put(schema.getFullName(), schema) == null) {
+            for (Schema.Field field : schema.getFields()) {
+              todo.add(field.schema());
+            }
+          }
+          break;
+        case ARRAY:
+          todo.add(schema.getElementType());
+          break;
+        case MAP:
+          todo.add(schema.getValueType());
+          break;
+        case UNION:
+          todo.addAll(schema.getTypes());
+          break;
+        default:
+          break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param record - the record schema.
+   * @return true if a codec can be generated for this record.
+   */
+  static boolean isSupported(final Schema record) {
+    return isSupported(record, new HashSet<>());
+  }
+
+  private static boolean isSupported(final Schema schema, final Set<String> visitedRecords) {
+    if (schema.getLogicalType() != null) {
+      return false;
+    }
+    switch (schema.getType()) {
+      case RECORD:
+        if (!visitedRecords.add(schema.getFullName())) {
+          return true;
+        }
+        if (schema.isError()) {
+          return false;
+        }
+        for (Schema.Field field : schema.getFields()) {
+          if (!isSupported(field.schema(), visitedRecords)) {
+            return false;
+          }
+        }
+        return true;
+      case ARRAY:
+        return isSupported(schema.getElementType(), visitedRecords);
+      case MAP:
+        return schema.getProp(SpecificData.KEY_CLASS_PROP) == null
+                && isSupported(schema.getValueType(), visitedRecords);
+      case UNION:
+        for (Schema type : schema.getTypes()) {
+          if (!isSupported(type, visitedRecords)) {
+            return false;
+          }
+        }
+        return true;
+      case STRING:
+        return schema.getProp(SpecificData.CLASS_PROP) == null;
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * @param record - the record schema to generate the codec for.
+   * @return the java source of the codec.
+   */
+  String generate(final Schema record) {
+    String recordClass = Schemas.getJavaClassName(record);
+    String codecName = SpecificCompiler.mangle(record.getName()) + CODEC_SUFFIX;
+    statics.setLength(0);
+    code.setLength(0);
+    varIdx = 0;
+    indent = 1;
+    line("public static void encode(final " + recordClass + " record, final " + ENCODER + " out)");
+    line("        throws java.io.IOException {");
+    indent++;
+    for (Schema.Field field : record.getFields()) {
+      Schema fs = field.schema();
+      write(fs, "record." + SpecificCompiler.mangle(field.name()), isPrimitive(fs));
+    }
+    indent--;
+    line("}");
+    line("");
+    line("public static " + recordClass + " decode(final " + recordClass + " reuse, final " + DECODER + " in)");
+    line("        throws java.io.IOException {");
+    indent++;
+    line(recordClass + " record = reuse == null ? new " + recordClass + "() : reuse;");
+    for (Schema.Field field : record.getFields()) {
+      Schema fs = field.schema();
+      read(fs, "record." + SpecificCompiler.mangle(field.name()), isPrimitive(fs), true);
+    }
+    line("return record;");
+    indent--;
+    line("}");
+    StringBuilder result = new StringBuilder(code.length() + statics.length() + 1024);
+    String namespace = record.getNamespace();
+    if (namespace != null && !namespace.isEmpty()) {
+      result.append("package ").append(namespace).append(";\n\n");
+    }
+    result.append("/**\n * Generated by spf4j GenericRecordBuilder, do not edit.\n */\n")
+            .append("public final class ").append(codecName)
+            .append(" implements org.apache.avro.io.DatumWriter, org.apache.avro.io.DatumReader {\n\n")
+            .append(statics).append('\n')
+            .append(code).append('\n')
+            .append("  public void setSchema(final org.apache.avro.Schema schema) {\n")
+            .append("    if (!").append(recordClass).append(".SCHEMA$.equals(schema)) {\n")
+            .append("      throw new java.lang.UnsupportedOperationException(\"Schema resolution not supported, \"")
+            .append(" + schema);\n")
+            .append("    }\n")
+            .append("  }\n\n")
+            .append("  public void write(final java.lang.Object datum, final ").append(ENCODER).append(" out)\n")
+            .append("          throws java.io.IOException {\n")
+            .append("    encode((").append(recordClass).append(") datum, out);\n")
+            .append("  }\n\n")
+            .append("  public java.lang.Object read(final java.lang.Object reuse, final ").append(DECODER)
+            .append(" in)\n")
+            .append("          throws java.io.IOException {\n")
+            .append("    return decode((").append(recordClass).append(") reuse, in);\n")
+            .append("  }\n\n")
+            .append("}\n");
+    return result.toString();
+  }
+
+  /**
+   * @return true if the SpecificCompiler generates a primitive field for this schema.
+   */
+  private static boolean isPrimitive(final Schema schema) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private void line(final String line) {
+    for (int i = 0; i < indent; i++) {
+      code.append("  ");
+    }
+    code.append(line).append('\n');
+  }
+
+  private String newVar(final String prefix) {
+    return prefix + (varIdx++);
+  }
+
+  private static String unbox(final String expr, final String boxedType, final String method,
+          final boolean primitive) {
+    if (primitive) {
+      return expr;
+    }
+    return "((java.lang." + boxedType + ") " + expr + ")." + method + "()";
+  }
+
+  /**
+   * Generate the statements that write the value of expr (evaluated only once).
+   */
+  private void write(final Schema schema, final String expr, final boolean primitive) {
+    switch (schema.getType()) {
+      case NULL:
+        line("out.writeNull();");
+        break;
+      case BOOLEAN:
+        line("out.writeBoolean(" + unbox(expr, "Boolean", "booleanValue", primitive) + ");");
+        break;
+      case INT:
+        line("out.writeInt(" + unbox(expr, "Integer", "intValue", primitive) + ");");
+        break;
+      case LONG:
+        line("out.writeLong(" + unbox(expr, "Long", "longValue", primitive) + ");");
+        break;
+      case FLOAT:
+        line("out.writeFloat(" + unbox(expr, "Float", "floatValue", primitive) + ");");
+        break;
+      case DOUBLE:
+        line("out.writeDouble(" + unbox(expr, "Double", "doubleValue", primitive) + ");");
+        break;
+      case STRING:
+        line("out.writeString((java.lang.CharSequence) " + expr + ");");
+        break;
+      case BYTES:
+        line("out.writeBytes((java.nio.ByteBuffer) " + expr + ");");
+        break;
+      case FIXED:
+        line("out.writeFixed(((org.apache.avro.generic.GenericFixed) " + expr + ").bytes());");
+        break;
+      case ENUM:
+        line("out.writeEnum(((java.lang.Enum) " + expr + ").ordinal());");
+        break;
+      case RECORD:
+        line(getCodecClassName(schema) + ".encode((" + Schemas.getJavaClassName(schema) + ") " + expr + ", out);");
+        break;
+      case ARRAY:
+        writeArray(schema, expr);
+        break;
+      case MAP:
+        writeMap(schema, expr);
+        break;
+      case UNION:
+        writeUnion(schema, expr);
+        break;
+      default:
+        throw new UnsupportedOperationException("Unsupported schema " + schema);
+    }
+  }
+
+  private void writeArray(final Schema schema, final String expr) {
+    String coll = newVar("c");
+    String it = newVar("i");
+    line("java.util.Collection " + coll + " = (java.util.Collection) " + expr + ";");
+    line("out.writeArrayStart();");
+    line("out.setItemCount(" + coll + ".size());");
+    line("for (java.util.Iterator " + it + " = " + coll + ".iterator(); " + it + ".hasNext();) {");
+    indent++;
+    line("out.startItem();");
+    write(schema.getElementType(), it + ".next()", false);
+    indent--;
+    line("}");
+    line("out.writeArrayEnd();");
+  }
+
+  private void writeMap(final Schema schema, final String expr) {
+    String map = newVar("m");
+    String it = newVar("i");
+    String entry = newVar("e");
+    line("java.util.Map " + map + " = (java.util.Map) " + expr + ";");
+    line("out.writeMapStart();");
+    line("out.setItemCount(" + map + ".size());");
+    line("for (java.util.Iterator " + it + " = " + map + ".entrySet().iterator(); " + it + ".hasNext();) {");
+    indent++;
+    line("java.util.Map.Entry " + entry + " = (java.util.Map.Entry) " + it + ".next();");
+    line("out.startItem();");
+    line("out.writeString((java.lang.CharSequence) " + entry + ".getKey());");
+    write(schema.getValueType(), entry + ".getValue()", false);
+    indent--;
+    line("}");
+    line("out.writeMapEnd();");
+  }
+
+  private void writeUnion(final Schema schema, final String expr) {
+    String val = newVar("u");
+    line("java.lang.Object " + val + " = " + expr + ";");
+    List<Schema> types = schema.getTypes();
+    String elsePrefix = "";
+    for (int i = 0, l = types.size(); i < l; i++) {
+      Schema type = types.get(i);
+      if (type.getType() == Schema.Type.NULL) {
+        line(elsePrefix + "if (" + val + " == null) {");
+      } else {
+        line(elsePrefix + "if (" + val + " instanceof " + getInstanceType(type) + ") {");
+      }
+      indent++;
+      line("out.writeIndex(" + i + ");");
+      write(type, val, false);
+      indent--;
+      elsePrefix = "} else ";
+    }
+    line("} else {");
+    indent++;
+    line("throw new org.apache.avro.AvroRuntimeException(\"Value \" + " + val
+            + " + \" does not match union " + escape(schema.toString()) + "\");");
+    indent--;
+    line("}");
+  }
+
+  /**
+   * @return the string escaped for a java string literal (ascii only, the source encoding is not relevant).
+   */
+  private static String escape(final String str) {
+    StringBuilder result = new StringBuilder(str.length() + 16);
+    for (int i = 0, l = str.length(); i < l; i++) {
+      char c = str.charAt(i);
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < 32 || c > 126) {
+        result.append(String.format("\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * @return the type to test union values against.
+   */
+  private static String getInstanceType(final Schema schema) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return "java.lang.Boolean";
+      case INT:
+        return "java.lang.Integer";
+      case LONG:
+        return "java.lang.Long";
+      case FLOAT:
+        return "java.lang.Float";
+      case DOUBLE:
+        return "java.lang.Double";
+      case STRING:
+        return "java.lang.CharSequence";
+      case BYTES:
+        return "java.nio.ByteBuffer";
+      case FIXED:
+      case ENUM:
+      case RECORD:
+        return Schemas.getJavaClassName(schema);
+      case ARRAY:
+        return "java.util.Collection";
+      case MAP:
+        return "java.util.Map";
+      default:
+        throw new UnsupportedOperationException("Unsupported union branch " + schema);
+    }
+  }
+
+  private String getStringType(@Nullable final String override) {
+    return override == null ? stringType.name() : override;
+  }
+
+  private String readString(final String stringTypeName, final String reuseExpr) {
+    if (GenericData.StringType.String.name().equals(stringTypeName)) {
+      return "in.readString()";
+    } else if (reuseExpr == null) {
+      return "in.readString(null)";
+    } else {
+      return "in.readString(" + reuseExpr + " instanceof org.apache.avro.util.Utf8 ? (org.apache.avro.util.Utf8) "
+              + reuseExpr + " : null)";
+    }
+  }
+
+  private static String box(final String expr, final String boxedType, final boolean primitive) {
+    if (primitive) {
+      return expr;
+    }
+    return "java.lang." + boxedType + ".valueOf(" + expr + ")";
+  }
+
+  /**
+   * Generate the statements that read a value and assign it to target.
+   * @param reuse - if true, the current value of target can be reused.
+   */
+  private void read(final Schema schema, final String target, final boolean primitive, final boolean reuse) {
+    switch (schema.getType()) {
+      case NULL:
+        line("in.readNull();");
+        line(target + " = null;");
+        break;
+      case BOOLEAN:
+        line(target + " = " + box("in.readBoolean()", "Boolean", primitive) + ';');
+        break;
+      case INT:
+        line(target + " = " + box("in.readInt()", "Integer", primitive) + ';');
+        break;
+      case LONG:
+        line(target + " = " + box("in.readLong()", "Long", primitive) + ';');
+        break;
+      case FLOAT:
+        line(target + " = " + box("in.readFloat()", "Float", primitive) + ';');
+        break;
+      case DOUBLE:
+        line(target + " = " + box("in.readDouble()", "Double", primitive) + ';');
+        break;
+      case STRING:
+        line(target + " = " + readString(getStringType(schema.getProp(GenericData.STRING_PROP)),
+                reuse ? target : null) + ';');
+        break;
+      case BYTES:
+        if (reuse) {
+          line(target + " = in.readBytes((java.nio.ByteBuffer) " + target + ");");
+        } else {
+          line(target + " = in.readBytes(null);");
+        }
+        break;
+      case FIXED:
+        String fixedClass = Schemas.getJavaClassName(schema);
+        String fixed = newVar("f");
+        if (reuse) {
+          line(fixedClass + ' ' + fixed + " = " + target + " == null ? new " + fixedClass + "() : ("
+                  + fixedClass + ") " + target + ';');
+        } else {
+          line(fixedClass + ' ' + fixed + " = new " + fixedClass + "();");
+        }
+        line("in.readFixed(" + fixed + ".bytes());");
+        line(target + " = " + fixed + ';');
+        break;
+      case ENUM:
+        String enumClass = Schemas.getJavaClassName(schema);
+        String values = newVar("ENUM_");
+        statics.append("  private static final ").append(enumClass).append("[] ").append(values)
+                .append(" = ").append(enumClass).append(".values();\n");
+        line(target + " = " + values + "[in.readEnum()];");
+        break;
+      case RECORD:
+        String recordClass = Schemas.getJavaClassName(schema);
+        line(target + " = " + getCodecClassName(schema) + ".decode("
+                + (reuse ? "(" + recordClass + ") " + target : "null") + ", in);");
+        break;
+      case ARRAY:
+        readArray(schema, target);
+        break;
+      case MAP:
+        readMap(schema, target);
+        break;
+      case UNION:
+        readUnion(schema, target);
+        break;
+      default:
+        throw new UnsupportedOperationException("Unsupported schema " + schema);
+    }
+  }
+
+  private void readArray(final Schema schema, final String target) {
+    String nr = newVar("n");
+    String list = newVar("l");
+    String idx = newVar("j");
+    String elem = newVar("e");
+    line("long " + nr + " = in.readArrayStart();");
+    line("java.util.List " + list + " = new java.util.ArrayList((int) " + nr + ");");
+    line("while (" + nr + " > 0) {");
+    indent++;
+    line("for (long " + idx + " = 0; " + idx + " < " + nr + "; " + idx + "++) {");
+    indent++;
+    line("java.lang.Object " + elem + " = null;");
+    read(schema.getElementType(), elem, false, false);
+    line(list + ".add(" + elem + ");");
+    indent--;
+    line("}");
+    line(nr + " = in.arrayNext();");
+    indent--;
+    line("}");
+    line(target + " = " + list + ';');
+  }
+
+  private void readMap(final Schema schema, final String target) {
+    String nr = newVar("n");
+    String map = newVar("m");
+    String idx = newVar("j");
+    String key = newVar("k");
+    String val = newVar("v");
+    line("long " + nr + " = in.readMapStart();");
+    line("java.util.Map " + map + " = new java.util.HashMap();");
+    line("while (" + nr + " > 0) {");
+    indent++;
+    line("for (long " + idx + " = 0; " + idx + " < " + nr + "; " + idx + "++) {");
+    indent++;
+    line("java.lang.Object " + key + " = "
+            + readString(getStringType(schema.getProp(GenericData.STRING_PROP)), null) + ';');
+    line("java.lang.Object " + val + " = null;");
+    read(schema.getValueType(), val, false, false);
+    line(map + ".put(" + key + ", " + val + ");");
+    indent--;
+    line("}");
+    line(nr + " = in.mapNext();");
+    indent--;
+    line("}");
+    line(target + " = " + map + ';');
+  }
+
+  private void readUnion(final Schema schema, final String target) {
+    List<Schema> types = schema.getTypes();
+    line("switch (in.readIndex()) {");
+    indent++;
+    for (int i = 0, l = types.size(); i < l; i++) {
+      line("case " + i + ": {");
+      indent++;
+      read(types.get(i), target, false, false);
+      line("break;");
+      indent--;
+      line("}");
+    }
+    line("default:");
+    indent++;
+    line("throw new org.apache.avro.AvroRuntimeException(\"Invalid union index for "
+            + escape(schema.toString()) + "\");");
+    indent--;
+    indent--;
+    line("}");
+  }
+
+  @Override
+  public String toString() {
+    return "AvroCodecGenerator{" + "stringType=" + stringType + '}';
+  }
+
+}
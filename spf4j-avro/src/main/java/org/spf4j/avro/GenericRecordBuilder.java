@@ -23,12 +23,24 @@ import com.google.common.base.Preconditions;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
 import org.apache.avro.Protocol;
 import org.apache.avro.Schema;
 import org.apache.avro.compiler.specific.SpecificCompiler;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.codehaus.commons.compiler.AbstractJavaSourceClassLoader;
 import org.codehaus.commons.compiler.CompilerFactoryFactory;
@@ -49,7 +61,9 @@ import org.spf4j.io.SetFilesReadOnlyVisitor;
  * GenericRecordBenchmark.testAvroGenericRecordNewSetGet          thrpt   10  36274035.575 ± 476132.764  ops/s
  * GenericRecordBenchmark.testSpf4jGenericRecordNewSetGet         thrpt   10  40111265.012 ± 600216.931  ops/s
  *
- *
+ * The builder also generates schema specialized DatumWriter/DatumReader implementations for the generated record
+ * classes (see getDatumWriter/getDatumReader), that read and write the record fields directly,
+ * without the schema interpretation done by the GenericDatumWriter/Reader.
  *
  * @author zoly
  */
@@ -62,6 +76,16 @@ public final class GenericRecordBuilder implements Closeable {
 
   private final AbstractJavaSourceClassLoader source;
 
+  /**
+   * record full name -> generated codec instance (stateless, shared).
+   */
+  private final ConcurrentMap<String, Object> codecs;
+
+  /**
+   * the records a codec was generated for.
+   */
+  private final Map<String, Schema> codecRecords;
+
   public GenericRecordBuilder(final Schema ... schemas) {
     this(GenericData.StringType.String, schemas);
   }
@@ -69,7 +93,8 @@ public final class GenericRecordBuilder implements Closeable {
   public GenericRecordBuilder(final GenericData.StringType stringType, final Schema ... schemas) {
     tmpDir = com.google.common.io.Files.createTempDir();
     this.stringType = stringType;
-    generateClasses(stringType, schemas);
+    this.codecs = new ConcurrentHashMap<>();
+    this.codecRecords = generateClasses(stringType, schemas);
     try {
       AbstractJavaSourceClassLoader src = CompilerFactoryFactory.getDefaultCompilerFactory()
               .newJavaSourceClassLoader(Thread.currentThread().getContextClassLoader());
@@ -81,7 +106,7 @@ public final class GenericRecordBuilder implements Closeable {
   }
 
 
-  private void generateClasses(final GenericData.StringType st, final Schema ...schemas) {
+  private Map<String, Schema> generateClasses(final GenericData.StringType st, final Schema ...schemas) {
     String[] namespaces = new String[schemas.length];
     for (int i = 0; i < schemas.length; i++) {
       String namespace = schemas[i].getNamespace();
@@ -105,11 +130,24 @@ public final class GenericRecordBuilder implements Closeable {
     } catch (IOException ex) {
       throw new RuntimeException(ex);
     }
+    Map<String, Schema> records = AvroCodecGenerator.getRecords(schemas);
+    records.values().removeIf((record) -> !AvroCodecGenerator.isSupported(record));
+    AvroCodecGenerator generator = new AvroCodecGenerator(st);
+    for (Schema record : records.values()) {
+      Path codecFile = tmpDir.toPath().resolve(
+              AvroCodecGenerator.getCodecClassName(record).replace('.', File.separatorChar) + ".java");
+      try (Writer writer = Files.newBufferedWriter(codecFile, StandardCharsets.UTF_8)) {
+        writer.write(generator.generate(record));
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
     try {
       Files.walkFileTree(tmpDir.toPath(), new SetFilesReadOnlyVisitor());
     } catch (IOException ex) {
       throw new RuntimeException(ex);
     }
+    return records;
   }
 
 
@@ -122,6 +160,61 @@ public final class GenericRecordBuilder implements Closeable {
     }
   }
 
+  /**
+   * Get a DatumWriter for the record schema, the written datums must be instances of the class generated by this
+   * builder for the schema. The writer is a generated, schema specialized codec cached per schema,
+   * or a SpecificDatumWriter when a codec cannot be generated for the schema (logical types, error records...).
+   * @param schema - a record schema this builder generated a class for.
+   * @return the datum writer.
+   */
+  public <T> DatumWriter<T> getDatumWriter(final Schema schema) {
+    Object codec = getCodec(schema);
+    if (codec == null) {
+      return new SpecificDatumWriter<>(schema, new SpecificData(source));
+    }
+    return (DatumWriter<T>) codec;
+  }
+
+  /**
+   * Get a DatumReader for the record schema, that reads instances of the class generated by this builder.
+   * The reader is a generated, schema specialized codec cached per schema (that does not support schema resolution),
+   * or a SpecificDatumReader when a codec cannot be generated for the schema.
+   * @param schema - a record schema this builder generated a class for.
+   * @return the datum reader.
+   */
+  public <T> DatumReader<T> getDatumReader(final Schema schema) {
+    Object codec = getCodec(schema);
+    if (codec == null) {
+      return new SpecificDatumReader<>(schema, schema, new SpecificData(source));
+    }
+    return (DatumReader<T>) codec;
+  }
+
+  /**
+   * @return the generated codec for the schema, null if not available.
+   */
+  @Nullable
+  private Object getCodec(final Schema schema) {
+    Preconditions.checkArgument(schema.getType() == Schema.Type.RECORD, "schema %s is not a record", schema);
+    String name = schema.getFullName();
+    Object codec = codecs.get(name);
+    if (codec == null) {
+      if (!schema.equals(codecRecords.get(name))) {
+        return null;
+      }
+      try {
+        codec = source.loadClass(AvroCodecGenerator.getCodecClassName(schema)).newInstance();
+      } catch (ClassNotFoundException | InstantiationException | IllegalAccessException ex) {
+        throw new RuntimeException(ex);
+      }
+      Object existing = codecs.putIfAbsent(name, codec);
+      if (existing != null) {
+        codec = existing;
+      }
+    }
+    return codec;
+  }
+
   @Override
   public void close() {
     try {
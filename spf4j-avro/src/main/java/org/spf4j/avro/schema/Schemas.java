@@ -4,8 +4,13 @@ import com.google.common.annotations.Beta;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Supplier;
@@ -178,6 +183,144 @@ public final class Schemas {
     return visitor.get();
   }
 
+  /**
+   * Create a projection (a subset usable as reader schema) of a schema.
+   *
+   * Data written with the schema can be read with the projection, the fields that are not part of the projection
+   * are skipped at the byte level by the avro schema resolution (no strings, arrays... are materialized for them).
+   *
+   * Paths are dot separated field names, arrays, maps and unions are transparent: for example "values.tableDefId"
+   * selects the tableDefId field of the records in the values array. A path ending in a field selects the entire
+   * field schema. A record is projected once (paths through multiple occurrences of a record are merged),
+   * records not selected by any path will have no fields (they are skipped entirely).
+   * Projected records keep their names and field order, specific classes will be used for them by a
+   * SpecificDatumReader, which is correct only if the projection keeps the field positions.
+   *
+   * @param schema - the schema to project.
+   * @param paths - the field paths to retain.
+   * @return the projection.
+   */
+  public static Schema project(final Schema schema, final String... paths) {
+    Map<String, Set<String>> selected = new HashMap<>();
+    for (String path : paths) {
+      String[] names = path.split("\\.");
+      if (!select(schema, names, 0, selected)) {
+        throw new IllegalArgumentException("Invalid path " + path + " for " + schema);
+      }
+    }
+    return project(schema, selected, new HashMap<>());
+  }
+
+  /**
+   * @return true if the path exists.
+   */
+  private static boolean select(final Schema schema, final String[] path, final int idx,
+          final Map<String, Set<String>> selected) {
+    switch (schema.getType()) {
+      case RECORD:
+        Field field = schema.getField(path[idx]);
+        if (field == null) {
+          return false;
+        }
+        Set<String> fields = selected.computeIfAbsent(schema.getFullName(), (k) -> new HashSet<>());
+        if (idx + 1 == path.length) {
+          fields.add(field.name());
+          selectAll(field.schema(), selected);
+          return true;
+        } else if (select(field.schema(), path, idx + 1, selected)) {
+          fields.add(field.name());
+          return true;
+        } else {
+          return false;
+        }
+      case ARRAY:
+        return select(schema.getElementType(), path, idx, selected);
+      case MAP:
+        return select(schema.getValueType(), path, idx, selected);
+      case UNION:
+        boolean result = false;
+        for (Schema type : schema.getTypes()) {
+          result |= select(type, path, idx, selected);
+        }
+        return result;
+      default:
+        return false;
+    }
+  }
+
+  private static void selectAll(final Schema schema, final Map<String, Set<String>> selected) {
+    visit(schema, new SchemaVisitor<Void>() {
+      @Override
+      public SchemaVisitorAction visitTerminal(final Schema terminal) {
+        return SchemaVisitorAction.CONTINUE;
+      }
+
+      @Override
+      public SchemaVisitorAction visitNonTerminal(final Schema nonTerminal) {
+        if (nonTerminal.getType() == Schema.Type.RECORD) {
+          Set<String> fields = selected.computeIfAbsent(nonTerminal.getFullName(), (k) -> new HashSet<>());
+          for (Field field : nonTerminal.getFields()) {
+            fields.add(field.name());
+          }
+        }
+        return SchemaVisitorAction.CONTINUE;
+      }
+
+      @Override
+      public SchemaVisitorAction afterVisitNonTerminal(final Schema nonTerminal) {
+        return SchemaVisitorAction.CONTINUE;
+      }
+    });
+  }
+
+  private static Schema project(final Schema schema, final Map<String, Set<String>> selected,
+          final Map<String, Schema> projected) {
+    Schema result;
+    switch (schema.getType()) {
+      case RECORD:
+        String name = schema.getFullName();
+        result = projected.get(name);
+        if (result != null) {
+          return result;
+        }
+        result = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError());
+        projected.put(name, result);
+        Set<String> fieldNames = selected.getOrDefault(name, Collections.emptySet());
+        List<Field> fields = new ArrayList<>(fieldNames.size());
+        for (Field field : schema.getFields()) {
+          if (fieldNames.contains(field.name())) {
+            Field newField = new Field(field.name(), project(field.schema(), selected, projected),
+                    field.doc(), field.defaultVal(), field.order());
+            copyAliases(field, newField);
+            copyProperties(field, newField);
+            fields.add(newField);
+          }
+        }
+        result.setFields(fields);
+        copyAliases(schema, result);
+        break;
+      case ARRAY:
+        result = Schema.createArray(project(schema.getElementType(), selected, projected));
+        break;
+      case MAP:
+        result = Schema.createMap(project(schema.getValueType(), selected, projected));
+        break;
+      case UNION:
+        List<Schema> types = schema.getTypes();
+        List<Schema> newTypes = new ArrayList<>(types.size());
+        for (Schema type : types) {
+          newTypes.add(project(type, selected, projected));
+        }
+        result = Schema.createUnion(newTypes);
+        break;
+      default:
+        // primitives, enums and fixed are used as is.
+        return schema;
+    }
+    copyProperties(schema, result);
+    return result;
+  }
+
   private static boolean visitNonTerminal(final SchemaVisitor visitor,
           final Schema schema, final Deque<Object> dq,
           final Supplier<Iterator<Schema>> itSupp) {
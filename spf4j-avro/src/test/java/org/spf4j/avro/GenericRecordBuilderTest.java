@@ -4,11 +4,27 @@ package org.spf4j.avro;
 import com.google.common.base.Charsets;
 import com.google.common.io.Resources;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.Assert;
+import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericFixed;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumWriter;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.junit.Test;
 
@@ -63,4 +79,99 @@ public class GenericRecordBuilderTest {
     }
   }
 
+  @Test
+  public void testGeneratedCodecs() throws Exception {
+    Schema nested = SchemaBuilder.builder().record("Nested").namespace("test.codec").fields()
+            .requiredString("name")
+            .optionalLong("value")
+            .endRecord();
+    Schema color = SchemaBuilder.enumeration("Color").namespace("test.codec").symbols("RED", "GREEN");
+    Schema hash = SchemaBuilder.fixed("Hash").namespace("test.codec").size(4);
+    Schema mixed = Schema.createUnion(Arrays.asList(Schema.create(Schema.Type.INT), Schema.create(Schema.Type.STRING),
+            Schema.createArray(Schema.create(Schema.Type.DOUBLE))));
+    Schema schema = SchemaBuilder.builder().record("CodecRecord").namespace("test.codec").fields()
+            .requiredBoolean("boolField")
+            .requiredInt("intField")
+            .requiredLong("longField")
+            .requiredFloat("floatField")
+            .requiredDouble("doubleField")
+            .requiredString("stringField")
+            .optionalString("optString")
+            .requiredBytes("bytesField")
+            .name("color").type(color).noDefault()
+            .name("hash").type(hash).noDefault()
+            .name("nested").type(nested).noDefault()
+            .name("optNested").type(Schema.createUnion(Arrays.asList(Schema.create(Schema.Type.NULL), nested)))
+            .noDefault()
+            .name("nestedArray").type(Schema.createArray(nested)).noDefault()
+            .name("longMap").type(Schema.createMap(Schema.create(Schema.Type.LONG))).noDefault()
+            .name("mixed").type(mixed).noDefault()
+            .name("mixed2").type(mixed).noDefault()
+            .endRecord();
+    try (GenericRecordBuilder builder = new GenericRecordBuilder(schema)) {
+      Class<? extends SpecificRecordBase> clasz = builder.getClass(schema);
+      Class<? extends SpecificRecordBase> nestedClasz = builder.getClass(nested);
+      GenericRecord nr = nestedClasz.newInstance();
+      nr.put("name", "nested");
+      nr.put("value", 3L);
+      GenericRecord nr2 = nestedClasz.newInstance();
+      nr2.put("name", "nested2");
+      GenericFixed fixed = (GenericFixed) ((Class<?>) builder.getClass(hash)).newInstance();
+      fixed.bytes()[1] = 1;
+      Map<String, Long> map = new HashMap<>();
+      map.put("a", 1L);
+      map.put("b", 2L);
+      GenericRecord record = clasz.newInstance();
+      record.put("boolField", true);
+      record.put("intField", 1);
+      record.put("longField", 2L);
+      record.put("floatField", 3.0f);
+      record.put("doubleField", 4.0);
+      record.put("stringField", "str");
+      record.put("bytesField", ByteBuffer.wrap("bytes".getBytes(StandardCharsets.UTF_8)));
+      record.put("color", ((Class<?>) builder.getClass(color)).getEnumConstants()[1]);
+      record.put("hash", fixed);
+      record.put("nested", nr);
+      record.put("optNested", nr2);
+      record.put("nestedArray", Arrays.asList(nr, nr2));
+      record.put("longMap", map);
+      record.put("mixed", "mixedStr");
+      record.put("mixed2", Arrays.asList(1.0, 2.0));
+
+      DatumWriter<GenericRecord> writer = builder.getDatumWriter(schema);
+      Assert.assertSame(writer, builder.getDatumWriter(schema));
+      Assert.assertFalse(writer instanceof SpecificDatumWriter);
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(bos, null);
+      writer.write(record, encoder);
+      encoder.flush();
+      byte[] bytes = bos.toByteArray();
+
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      encoder = EncoderFactory.get().directBinaryEncoder(expected, encoder);
+      new SpecificDatumWriter<GenericRecord>(schema, new SpecificData(clasz.getClassLoader())).write(record, encoder);
+      encoder.flush();
+      Assert.assertArrayEquals(expected.toByteArray(), bytes);
+
+      DatumReader<GenericRecord> reader = builder.getDatumReader(schema);
+      BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(bytes, null);
+      GenericRecord read = reader.read(null, decoder);
+      Assert.assertEquals(clasz, read.getClass());
+      Assert.assertEquals(record, read);
+      decoder = DecoderFactory.get().binaryDecoder(bytes, decoder);
+      Assert.assertSame(read, reader.read(read, decoder));
+      Assert.assertEquals(record, read);
+    }
+  }
+
+  @Test
+  public void testCodecFallback() {
+    Schema schema = SchemaBuilder.builder().record("LogicalRecord").namespace("test.codec").fields()
+            .name("date").type(LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT))).noDefault()
+            .endRecord();
+    try (GenericRecordBuilder builder = new GenericRecordBuilder(schema)) {
+      Assert.assertTrue(builder.getDatumWriter(schema) instanceof SpecificDatumWriter);
+    }
+  }
+
 }
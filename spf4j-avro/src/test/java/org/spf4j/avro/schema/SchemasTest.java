@@ -19,10 +19,20 @@ package org.spf4j.avro.schema;
 
 import com.google.common.base.Charsets;
 import com.google.common.io.Resources;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaCompatibility;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
 import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Test;
@@ -73,6 +83,53 @@ public class SchemasTest {
 
   }
 
+  @Test
+  public void testProject() throws IOException {
+    Schema recSchema = new Schema.Parser().parse(SCHEMA);
+    Schema projection = Schemas.project(recSchema, "subNodes.method.methodName", "subNodes.node.count");
+    Assert.assertEquals(2, projection.getFields().size());
+    Schema pairProjection = projection.getField("subNodes").schema().getElementType();
+    Assert.assertEquals(2, pairProjection.getFields().size());
+    Schema methodProjection = pairProjection.getField("method").schema();
+    Assert.assertEquals(1, methodProjection.getFields().size());
+    Assert.assertNotNull(methodProjection.getField("methodName"));
+    Assert.assertSame(projection, pairProjection.getField("node").schema());
+    Assert.assertEquals(SchemaCompatibility.SchemaCompatibilityType.COMPATIBLE,
+            SchemaCompatibility.checkReaderWriterCompatibility(projection, recSchema).getType());
+
+    Schema pairSchema = recSchema.getField("subNodes").schema().getElementType();
+    GenericRecord method = new GenericData.Record(pairSchema.getField("method").schema());
+    method.put("declaringClass", "org.spf4j.Test");
+    method.put("methodName", "test");
+    GenericRecord leaf = new GenericData.Record(recSchema);
+    leaf.put("count", 1);
+    leaf.put("subNodes", Collections.EMPTY_LIST);
+    GenericRecord pair = new GenericData.Record(pairSchema);
+    pair.put("method", method);
+    pair.put("node", leaf);
+    GenericRecord root = new GenericData.Record(recSchema);
+    root.put("count", 2);
+    root.put("subNodes", Collections.singletonList(pair));
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(bos, null);
+    new GenericDatumWriter<GenericRecord>(recSchema).write(root, encoder);
+    encoder.flush();
+
+    GenericRecord read = new GenericDatumReader<GenericRecord>(recSchema, projection)
+            .read(null, DecoderFactory.get().binaryDecoder(bos.toByteArray(), null));
+    Assert.assertEquals(2, read.get("count"));
+    GenericRecord readPair = ((List<GenericRecord>) read.get("subNodes")).get(0);
+    GenericRecord readMethod = (GenericRecord) readPair.get("method");
+    Assert.assertEquals("test", readMethod.get("methodName").toString());
+    Assert.assertNull(readMethod.get("declaringClass"));
+    Assert.assertEquals(1, ((GenericRecord) readPair.get("node")).get("count"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testProjectInvalidPath() {
+    Schemas.project(new Schema.Parser().parse(SCHEMA), "subNodes.method.noField");
+  }
+
   private static class PrintingVisitor implements SchemaVisitor {
 
     @Override
@@ -1,7 +1,10 @@
 package org.spf4j;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 import org.junit.Test;
+import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.results.format.ResultFormatType;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
@@ -26,7 +29,13 @@ public final class JmhTest {
             org.spf4j.base.Runtime.USER_DIR) + "/target";
     final String profile = System.getProperty("basedir",
             org.spf4j.base.Runtime.USER_DIR) + "/src/main/jfc/profile.jfc";
-    Options opt = new OptionsBuilder()
+    // extra benchmarks (like the ThreadPoolLatency matrix) are opt in: -Dspf4j.jmh.include=.*ThreadPoolLatency.*
+    final String extraInclude = System.getProperty("spf4j.jmh.include");
+    OptionsBuilder builder = new OptionsBuilder();
+    if (extraInclude != null) {
+      builder.include(extraInclude);
+    }
+    Options opt = builder
             //.include(".*Either.*")
                             .include(".*Appendable.*")
             //                .addProfiler(JmhProfiler.class)
@@ -49,7 +58,8 @@ public final class JmhTest {
             .measurementIterations(10)
             .forks(1)
             .build();
-    new Runner(opt).run();
+    Collection<RunResult> results = new Runner(opt).run();
+    JmhTsdbExporter.export(results, new File(destinationFolder, "benchmarkResults.tsdb2"));
   }
 
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j;
+
+import com.google.common.collect.ListMultimap;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.util.Statistics;
+import org.spf4j.tsdb2.TSDBQuery;
+import org.spf4j.tsdb2.TSDBWriter;
+import org.spf4j.tsdb2.avro.ColumnDef;
+import org.spf4j.tsdb2.avro.TableDef;
+import org.spf4j.tsdb2.avro.Type;
+
+/**
+ * Exports JMH results to a tsdb2 file, so that they can be charted with spf4j-ui.
+ * There is one table for every benchmark/parameter combination, with one row per run.
+ * Since tsdb2 columns are longs, the scores are stored scaled by SCALE (the unit of measurement reflects this).
+ *
+ * @author zoly
+ */
+public final class JmhTsdbExporter {
+
+  public static final int SCALE = 1000;
+
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+  private static final String[] COLUMNS = {"score", "scoreError", "min", "max",
+    "p50", "p90", "p99", "p99.9", "p99.99"};
+
+  private JmhTsdbExporter() { }
+
+  public static void export(final Collection<RunResult> results, final File destination) throws IOException {
+    long timestamp = System.currentTimeMillis();
+    // results of consecutive runs accumulate in the same file, tables are reused by name.
+    final boolean append = destination.exists() && destination.length() > 0;
+    final ListMultimap<String, TableDef> existing;
+    if (append) {
+      existing = TSDBQuery.getAllTables(destination);
+    } else {
+      existing = null;
+    }
+    try (TSDBWriter writer = new TSDBWriter(destination, 1024, append ? null : "jmh results", append)) {
+      for (RunResult result : results) {
+        Result primary = result.getPrimaryResult();
+        String unit = primary.getScoreUnit();
+        List<ColumnDef> columns = new ArrayList<>(COLUMNS.length);
+        for (String column : COLUMNS) {
+          ColumnDef cd = new ColumnDef();
+          cd.name = column;
+          cd.unitOfMeasurement = unit + '/' + SCALE;
+          cd.type = Type.LONG;
+          cd.description = "";
+          columns.add(cd);
+        }
+        String tableName = tableName(result.getParams());
+        long tableId = existing == null ? -1 : findTable(existing.get(tableName), columns);
+        if (tableId < 0) {
+          TableDef td = TableDef.newBuilder()
+                  .setName(tableName)
+                  .setDescription(primary.getLabel() + ' ' + result.getParams().getMode())
+                  .setSampleTime(0)
+                  .setColumns(columns)
+                  .setId(-1).build();
+          tableId = writer.writeTableDef(td);
+        }
+        Statistics stats = primary.getStatistics();
+        long[] row = new long[COLUMNS.length];
+        row[0] = scale(primary.getScore());
+        row[1] = scale(primary.getScoreError());
+        row[2] = scale(stats.getMin());
+        row[3] = scale(stats.getMax());
+        for (int i = 0; i < PERCENTILES.length; i++) {
+          row[4 + i] = scale(stats.getPercentile(PERCENTILES[i]));
+        }
+        writer.writeDataRow(tableId, timestamp, row);
+      }
+      writer.flush();
+    }
+  }
+
+  /**
+   * @return the id of the last table definition with the same columns, or -1 if there is none.
+   */
+  private static long findTable(final List<TableDef> tables, final List<ColumnDef> columns) {
+    for (int i = tables.size() - 1; i >= 0; i--) {
+      TableDef td = tables.get(i);
+      if (columns.equals(td.getColumns())) {
+        return td.getId();
+      }
+    }
+    return -1;
+  }
+
+  private static long scale(final double value) {
+    if (Double.isNaN(value)) {
+      return 0;
+    }
+    return Math.round(value * SCALE);
+  }
+
+  static String tableName(final BenchmarkParams params) {
+    StringBuilder result = new StringBuilder(64);
+    result.append(params.getBenchmark());
+    for (String key : params.getParamsKeys()) {
+      result.append(',').append(key).append('=').append(params.getParam(key));
+    }
+    result.append(",threads=").append(params.getThreads());
+    return result.toString();
+  }
+
+}
@@ -2,14 +2,30 @@ package org.spf4j.avro;
 
 import com.google.common.base.Charsets;
 import com.google.common.io.Resources;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Threads;
 
@@ -25,6 +41,20 @@ public class GenericRecordBenchmark {
 
   private static final Schema SCHEMA;
   private static final Class<? extends SpecificRecordBase> CLASZ;
+
+  /**
+   * a sample (TSDB like) schema for the serialization benchmarks.
+   */
+  private static final Schema SER_SCHEMA = SchemaBuilder.builder().record("Sample").namespace("bench").fields()
+          .requiredLong("timestamp")
+          .requiredString("name")
+          .optionalString("description")
+          .requiredDouble("value")
+          .name("measurements").type(Schema.createArray(Schema.create(Schema.Type.LONG))).noDefault()
+          .endRecord();
+  private static final GenericRecordBuilder SER_BUILDER = new GenericRecordBuilder(SER_SCHEMA);
+  private static final Class<? extends SpecificRecordBase> SER_CLASZ = SER_BUILDER.getClass(SER_SCHEMA);
+
   static {
     try {
       SCHEMA = new Schema.Parser().parse(
@@ -35,6 +65,60 @@ public class GenericRecordBenchmark {
     CLASZ = new GenericRecordBuilder(SCHEMA).getClass(SCHEMA);
   }
 
+  /**
+   * Per thread serialization state.
+   */
+  @State(Scope.Thread)
+  public static class SerState {
+
+    private final ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+    private BinaryEncoder encoder;
+    private BinaryDecoder decoder;
+    private GenericRecord avroRecord;
+    private GenericRecord spf4jRecord;
+    private byte[] serialized;
+    private final DatumWriter<GenericRecord> avroWriter = new GenericDatumWriter<>(SER_SCHEMA);
+    private final DatumReader<GenericRecord> avroReader = new GenericDatumReader<>(SER_SCHEMA);
+    private final DatumWriter<GenericRecord> specificWriter
+            = new SpecificDatumWriter<>(SER_SCHEMA, new SpecificData(SER_CLASZ.getClassLoader()));
+    private final DatumReader<GenericRecord> specificReader
+            = new SpecificDatumReader<>(SER_SCHEMA, SER_SCHEMA, new SpecificData(SER_CLASZ.getClassLoader()));
+    private final DatumWriter<GenericRecord> spf4jWriter = SER_BUILDER.getDatumWriter(SER_SCHEMA);
+    private final DatumReader<GenericRecord> spf4jReader = SER_BUILDER.getDatumReader(SER_SCHEMA);
+
+    @Setup
+    public void setup() throws InstantiationException, IllegalAccessException, IOException {
+      avroRecord = new GenericData.Record(SER_SCHEMA);
+      spf4jRecord = SER_CLASZ.newInstance();
+      List<Long> measurements = new ArrayList<>(16);
+      for (long i = 0; i < 16; i++) {
+        measurements.add(i * 1000);
+      }
+      for (GenericRecord record : new GenericRecord[] {avroRecord, spf4jRecord}) {
+        record.put("timestamp", System.currentTimeMillis());
+        record.put("name", "some.measurement.name");
+        record.put("description", "a measurement description");
+        record.put("value", Math.PI);
+        record.put("measurements", measurements);
+      }
+      serialized = write(avroWriter, avroRecord);
+    }
+
+    byte[] write(final DatumWriter<GenericRecord> writer, final GenericRecord record) throws IOException {
+      bos.reset();
+      encoder = EncoderFactory.get().directBinaryEncoder(bos, encoder);
+      writer.write(record, encoder);
+      encoder.flush();
+      return bos.toByteArray();
+    }
+
+    GenericRecord read(final DatumReader<GenericRecord> reader) throws IOException {
+      decoder = DecoderFactory.get().binaryDecoder(serialized, decoder);
+      return reader.read(null, decoder);
+    }
+
+  }
+
 
   @Benchmark
   public GenericRecord testSpf4jGenericRecordNew() throws InstantiationException, IllegalAccessException {
@@ -66,6 +150,34 @@ public class GenericRecordBenchmark {
     return record;
   }
 
+  @Benchmark
+  public byte[] testAvroGenericRecordWrite(final SerState state) throws IOException {
+    return state.write(state.avroWriter, state.avroRecord);
+  }
+
+  @Benchmark
+  public byte[] testAvroSpecificRecordWrite(final SerState state) throws IOException {
+    return state.write(state.specificWriter, state.spf4jRecord);
+  }
+
+  @Benchmark
+  public byte[] testSpf4jGenericRecordWrite(final SerState state) throws IOException {
+    return state.write(state.spf4jWriter, state.spf4jRecord);
+  }
+
+  @Benchmark
+  public GenericRecord testAvroGenericRecordRead(final SerState state) throws IOException {
+    return state.read(state.avroReader);
+  }
 
+  @Benchmark
+  public GenericRecord testAvroSpecificRecordRead(final SerState state) throws IOException {
+    return state.read(state.specificReader);
+  }
+
+  @Benchmark
+  public GenericRecord testSpf4jGenericRecordRead(final SerState state) throws IOException {
+    return state.read(state.spf4jReader);
+  }
 
 }
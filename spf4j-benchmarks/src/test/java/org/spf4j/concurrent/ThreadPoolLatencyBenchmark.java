@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the lifo thread pools against the JDK ThreadPoolExecutor and ForkJoinPool for several load shapes:
+ * <ul>
+ * <li>fanOut - a batch of small tasks submitted and joined (throughput).</li>
+ * <li>requestResponse - concurrent callers submitting one task and waiting for the result
+ * (latency distribution).</li>
+ * <li>burst - bursts of several times the pool size tasks (latency distribution per burst).</li>
+ * <li>idleToBusy - a burst after the pool has been idle, this is where lifo thread reuse and spinning
+ * should make a difference (latency distribution).</li>
+ * </ul>
+ * The spf4j pools are benchmarked with and without spinning, the spin lock count is part of their pool type
+ * (spfLifo-1024 = spfLifo with spinLockCount = 1024), so that the JDK pools are not run once for every spin count.
+ * Run via JmhTest, the results are also exported to a tsdb2 file that can be charted with spf4j-ui.
+ *
+ * @author zoly
+ */
+@Fork(2)
+@Threads(1)
+public class ThreadPoolLatencyBenchmark {
+
+  private static final int FAN_OUT = 256;
+
+  private static final int BURST_FACTOR = 16;
+
+  @State(Scope.Benchmark)
+  public static class Pool {
+
+    @Param({"spfLifo-0", "spfLifo-1024", "spfMutableLifo-0", "spfMutableLifo-1024", "jdk", "fjp"})
+    public String poolType;
+
+    @Param({"4", "16"})
+    public int poolSize;
+
+    /**
+     * The idle time before a idleToBusy burst, long enough for spinning workers to go to sleep.
+     */
+    @Param({"2"})
+    public int idleMillis;
+
+    public ExecutorService executor;
+
+    @Setup
+    public void setup() {
+      String type = poolType;
+      int spinLockCount = 0;
+      int spinIdx = poolType.indexOf('-');
+      if (spinIdx >= 0) {
+        type = poolType.substring(0, spinIdx);
+        spinLockCount = Integer.parseInt(poolType.substring(spinIdx + 1));
+      }
+      switch (type) {
+        case "spfLifo":
+          executor = LifoThreadPoolBuilder.newBuilder()
+                  .withPoolName("bench")
+                  .withCoreSize(poolSize)
+                  .withMaxSize(poolSize)
+                  .withQueueSizeLimit(100000)
+                  .withSpinLockCount(spinLockCount)
+                  .withDaemonThreads(true)
+                  .build();
+          break;
+        case "spfMutableLifo":
+          executor = LifoThreadPoolBuilder.newBuilder()
+                  .withPoolName("bench")
+                  .withCoreSize(poolSize)
+                  .withMaxSize(poolSize)
+                  .withQueueSizeLimit(100000)
+                  .withSpinLockCount(spinLockCount)
+                  .withDaemonThreads(true)
+                  .mutable()
+                  .build();
+          break;
+        case "jdk":
+          executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                  new LinkedBlockingQueue<>(100000), new CustomThreadFactory("bench", true));
+          break;
+        case "fjp":
+          executor = new ForkJoinPool(poolSize);
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported pool type " + poolType);
+      }
+    }
+
+    @TearDown
+    public void close() throws InterruptedException {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+  }
+
+  /**
+   * Idles the pool before every idleToBusy invocation.
+   * Level.Invocation is OK here since the measured operation is well above 1 ms including the wake-ups.
+   */
+  @State(Scope.Thread)
+  public static class Idle {
+
+    @Setup(Level.Invocation)
+    public void idle(final Pool pool) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(pool.idleMillis));
+    }
+
+  }
+
+  private static final class CountDownTask implements Runnable {
+
+    private final CountDownLatch latch;
+
+    CountDownTask(final CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public void run() {
+      Blackhole.consumeCPU(64);
+      latch.countDown();
+    }
+  }
+
+  private static final Callable<Long> RESPONSE = new Callable<Long>() {
+    @Override
+    public Long call() {
+      Blackhole.consumeCPU(64);
+      return System.nanoTime();
+    }
+  };
+
+  static long runBatch(final ExecutorService executor, final int nrTasks) throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(nrTasks);
+    Runnable task = new CountDownTask(latch);
+    for (int i = 0; i < nrTasks; i++) {
+      executor.execute(task);
+    }
+    latch.await();
+    return latch.getCount();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public final long fanOut(final Pool pool) throws InterruptedException {
+    return runBatch(pool.executor, FAN_OUT);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Threads(4)
+  public final Long requestResponse(final Pool pool) throws InterruptedException, ExecutionException {
+    return pool.executor.submit(RESPONSE).get();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public final long burst(final Pool pool) throws InterruptedException {
+    return runBatch(pool.executor, pool.poolSize * BURST_FACTOR);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public final long idleToBusy(final Pool pool, final Idle idle) throws InterruptedException {
+    return runBatch(pool.executor, pool.poolSize);
+  }
+
+}
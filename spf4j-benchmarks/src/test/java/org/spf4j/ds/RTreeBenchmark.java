@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.ds;
+
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Compares the dynamic RTree (one at a time inserts) against the STR bulk loaded PackedRTree,
+ * for building the tree and for point queries (like UI hit testing).
+ *
+ * @author zoly
+ */
+@State(Scope.Benchmark)
+@Fork(2)
+@Threads(value = 1)
+public class RTreeBenchmark {
+
+  private static final int NR_QUERIES = 1000;
+
+  @Param({"10000", "100000"})
+  public int nrEntries;
+
+  private float[][] coords;
+
+  private float[][] dimensions;
+
+  private float[][] queries;
+
+  private RTree<Integer> rtree;
+
+  private PackedRTree<Integer> packedRTree;
+
+  @Setup
+  public void setup() {
+    Random rnd = new Random(7);
+    coords = new float[nrEntries][];
+    dimensions = new float[nrEntries][];
+    for (int i = 0; i < nrEntries; i++) {
+      coords[i] = new float[]{rnd.nextFloat() * 10000, rnd.nextFloat() * 10000};
+      dimensions[i] = new float[]{rnd.nextFloat() * 50, rnd.nextFloat() * 50};
+    }
+    queries = new float[NR_QUERIES][];
+    for (int i = 0; i < NR_QUERIES; i++) {
+      queries[i] = new float[]{rnd.nextFloat() * 10000, rnd.nextFloat() * 10000};
+    }
+    rtree = buildRTree();
+    packedRTree = buildPackedRTree();
+  }
+
+  @Benchmark
+  public final RTree<Integer> buildRTree() {
+    RTree<Integer> result = new RTree<>();
+    for (int i = 0; i < nrEntries; i++) {
+      result.insert(coords[i], dimensions[i], i);
+    }
+    return result;
+  }
+
+  @Benchmark
+  public final PackedRTree<Integer> buildPackedRTree() {
+    PackedRTree.Builder<Integer> builder = PackedRTree.newBuilder(2);
+    for (int i = 0; i < nrEntries; i++) {
+      builder.add(coords[i], dimensions[i], i);
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public final int searchRTree() {
+    float[] point = new float[2];
+    int result = 0;
+    for (float[] query : queries) {
+      result += rtree.search(query, point).size();
+    }
+    return result;
+  }
+
+  @Benchmark
+  public final int searchPackedRTree() {
+    float[] point = new float[2];
+    Counter counter = new Counter();
+    for (float[] query : queries) {
+      packedRTree.search(query, point, counter);
+    }
+    return counter.count;
+  }
+
+  private static final class Counter implements PackedRTree.Visitor<Integer> {
+
+    private int count;
+
+    @Override
+    public boolean visit(final Integer entry) {
+      count++;
+      return true;
+    }
+  }
+
+}
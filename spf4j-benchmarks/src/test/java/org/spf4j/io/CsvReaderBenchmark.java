@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Compares the character at a time CSV reader against the buffer based tokenizers
+ * (Reader, char[] and UTF-8 heap/direct ByteBuffer).
+ *
+ * @author zoly
+ */
+@State(Scope.Benchmark)
+@Fork(2)
+@Threads(value = 1)
+public class CsvReaderBenchmark {
+
+  private String csv;
+
+  private char[] csvChars;
+
+  private ByteBuffer heapUtf8;
+
+  private ByteBuffer directUtf8;
+
+  @Setup
+  public void setup() throws IOException {
+    StringBuilder sb = new StringBuilder(1024 * 1024);
+    for (int i = 0; i < 10000; i++) {
+      Csv.writeCsvRow(sb, i, System.currentTimeMillis() + i, "some text " + i, "quoted, \"text\"", 3.14 * i,
+              "more text", "", "last");
+    }
+    csv = sb.toString();
+    csvChars = csv.toCharArray();
+    byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+    heapUtf8 = ByteBuffer.wrap(bytes);
+    directUtf8 = ByteBuffer.allocateDirect(bytes.length);
+    directUtf8.put(bytes);
+    directUtf8.flip();
+  }
+
+  @Benchmark
+  public final long charAtATimeReader() throws IOException {
+    return Csv.readNoBom(new PushbackReader(new BufferedReader(new StringReader(csv))), new LengthSum());
+  }
+
+  @Benchmark
+  public final long bufferedReader() throws IOException {
+    return Csv.CSV.read(new StringReader(csv), new LengthSum());
+  }
+
+  @Benchmark
+  public final long charArray() throws IOException {
+    return Csv.CSV.read(csvChars, 0, csvChars.length, new LengthSum());
+  }
+
+  @Benchmark
+  public final long utf8HeapBuffer() throws IOException {
+    return Csv.CSV.readUtf8(heapUtf8, new LengthSum());
+  }
+
+  @Benchmark
+  public final long utf8DirectBuffer() throws IOException {
+    return Csv.CSV.readUtf8(directUtf8, new LengthSum());
+  }
+
+  private static final class LengthSum implements Csv.CsvHandler<Long> {
+
+    private long sum;
+
+    @Override
+    public void startRow() {
+      sum++;
+    }
+
+    @Override
+    public void element(final CharSequence elem) {
+      sum += elem.length();
+    }
+
+    @Override
+    public void endRow() {
+      sum++;
+    }
+
+    @Override
+    public Long eof() {
+      return sum;
+    }
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Compares reading a large UTF-8 CSV file sequentially against the parallel chunked reader
+ * (ordered and unordered delivery).
+ *
+ * @author zoly
+ */
+@State(Scope.Benchmark)
+@Fork(2)
+@Threads(value = 1)
+public class ParallelCsvReaderBenchmark {
+
+  private File csvFile;
+
+  @Setup
+  public void setup() throws IOException {
+    csvFile = File.createTempFile("bench", ".csv");
+    try (BufferedWriter writer = Files.newBufferedWriter(csvFile.toPath(), StandardCharsets.UTF_8)) {
+      for (int i = 0; i < 1000000; i++) {
+        Csv.writeCsvRow(writer, i, 1500000000000L + i, "some text " + i, "quoted, \"text\"", 3.14 * i,
+                "multi\nline", "", "last");
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (!csvFile.delete()) {
+      throw new IllegalStateException("Cannot delete " + csvFile);
+    }
+  }
+
+  @Benchmark
+  public final long sequential() throws IOException {
+    return Csv.CSV.read(csvFile, StandardCharsets.UTF_8, new Csv.CsvHandler<Long>() {
+      private long sum;
+
+      @Override
+      public void startRow() {
+        // nothing to do.
+      }
+
+      @Override
+      public void element(final CharSequence elem) {
+        sum += elem.length();
+      }
+
+      @Override
+      public void endRow() {
+        // nothing to do.
+      }
+
+      @Override
+      public Long eof() {
+        return sum;
+      }
+    });
+  }
+
+  @Benchmark
+  public final long parallelOrdered() throws IOException {
+    long[] sum = new long[1];
+    Csv.CSV.readRowsParallelUtf8(csvFile, true).forEachOrdered((row) -> sum[0] += length(row));
+    return sum[0];
+  }
+
+  @Benchmark
+  public final long parallelUnordered() throws IOException {
+    return Csv.CSV.readRowsParallelUtf8(csvFile, false).mapToLong(ParallelCsvReaderBenchmark::length).sum();
+  }
+
+  private static long length(final List<String> row) {
+    long result = 0;
+    for (String elem : row) {
+      result += elem.length();
+    }
+    return result;
+  }
+
+}
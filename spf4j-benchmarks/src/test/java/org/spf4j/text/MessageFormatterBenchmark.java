@@ -19,6 +19,9 @@ import org.openjdk.jmh.annotations.Threads;
 @Threads(value = 4)
 public class MessageFormatterBenchmark {
 
+  private static final Slf4jMessagePattern SLF4J_PATTERN = Slf4jMessagePattern.compile(
+          "Here is some message wi parameter 0 = {} and parameter 1 = {} for testing performance");
+
   private static final ThreadLocal<StringBuilder> SB = new ThreadLocal<StringBuilder>() {
     @Override
     protected StringBuilder initialValue() {
@@ -43,6 +46,16 @@ public class MessageFormatterBenchmark {
     return result;
   }
 
+  @Benchmark
+  public final CharSequence spf4jCompiledMessageFormatter() throws IOException {
+    StringBuilder result = SB.get();
+    result.setLength(0);
+    CompiledMessageFormat.compile(
+            "Here is some message wi parameter 0 = {0} and parameter 1 = {1} for testing performance", Locale.US)
+            .format(new Object[]{"[parameter 1]", 2.5}, result);
+    return result;
+  }
+
   @Benchmark
   public final CharSequence jdkMessageFormatter() throws UnsupportedEncodingException, IOException {
     StringBuffer result = SBF.get();
@@ -63,4 +76,22 @@ public class MessageFormatterBenchmark {
     return result;
   }
 
+  @Benchmark
+  public final CharSequence slf4jCompiledMessageFormatter() throws IOException {
+    StringBuilder result = SB.get();
+    result.setLength(0);
+    SLF4J_PATTERN.format(result, "[parameter 1]", "[parameter 2]");
+    return result;
+  }
+
+  @Benchmark
+  public final CharSequence slf4jMessageFormatterArrayArg() throws IOException {
+    StringBuilder result = SB.get();
+    result.setLength(0);
+    Slf4jMessageFormatter.format(result,
+            "Here is some message wi parameter 0 = {} and parameter 1 = {} for testing performance",
+            new Object[] {"[parameter 1]", 1}, "[parameter 2]");
+    return result;
+  }
+
 }
@@ -277,13 +277,28 @@ public final class Callables {
 
         private final long mdeadline;
 
+        /**
+         * @param timeoutMillis - the timeout, the deadline will not exceed the current thread deadline.
+         */
         public TimeoutCallable(final int timeoutMillis) {
-            mdeadline = System.currentTimeMillis() + timeoutMillis;
+            mdeadline = Math.min(System.currentTimeMillis() + timeoutMillis, Runtime.getDeadline());
+        }
+
+        /**
+         * Create a callable with the current thread deadline.
+         */
+        public TimeoutCallable() {
+            mdeadline = Runtime.getDeadline();
         }
 
         @Override
         public final T call() throws EX, InterruptedException, TimeoutException {
-            return call(mdeadline);
+            long prevDeadline = Runtime.narrowDeadline(mdeadline);
+            try {
+                return call(mdeadline);
+            } finally {
+                Runtime.setDeadline(prevDeadline);
+            }
         }
 
         public abstract T call(final long deadline) throws EX, InterruptedException, TimeoutException;
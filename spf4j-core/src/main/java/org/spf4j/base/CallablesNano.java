@@ -258,13 +258,22 @@ public final class CallablesNano {
 
         private final long mdeadlineNanos;
 
+        /**
+         * @param timeoutNanos - the timeout, the deadline will not exceed the current thread deadline.
+         */
         public TimeoutCallable(final long timeoutNanos) {
-            mdeadlineNanos = System.nanoTime() + timeoutNanos;
+            final long nanoTime = System.nanoTime();
+            mdeadlineNanos = Math.min(nanoTime + timeoutNanos, Runtime.getDeadlineNanos(nanoTime));
         }
 
         @Override
         public final T call() throws EX, InterruptedException, TimeoutException {
-            return call(mdeadlineNanos);
+            long prevDeadline = Runtime.narrowDeadline(Runtime.toDeadlineMillis(mdeadlineNanos));
+            try {
+                return call(mdeadlineNanos);
+            } finally {
+                Runtime.setDeadline(prevDeadline);
+            }
         }
 
         public abstract T call(final long deadlinenanos) throws EX, InterruptedException, TimeoutException;
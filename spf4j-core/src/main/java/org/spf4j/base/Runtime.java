@@ -643,21 +643,83 @@ public final class Runtime {
         return false;
     }
 
+    /**
+     * Mutable deadline holder, to avoid boxing on deadline set/get.
+     */
+    private static final class DeadlineHolder {
+        private long deadline = Long.MAX_VALUE;
+    }
+
+    private static final ThreadLocal<DeadlineHolder> DEADLINE_HOLDER = new ThreadLocal<DeadlineHolder>() {
+
+        @Override
+        protected DeadlineHolder initialValue() {
+            return new DeadlineHolder();
+        }
+
+    };
+
+    /**
+     * Boxing view of the current thread deadline, kept for compatibility.
+     * @deprecated use getDeadline/setDeadline, this will be removed in the next release.
+     */
+    @Deprecated
     public static final ThreadLocal<Long> DEADLINE = new ThreadLocal<Long>() {
 
         @Override
-        protected Long initialValue() {
-            return Long.MAX_VALUE;
+        public Long get() {
+            return getDeadline();
+        }
+
+        @Override
+        public void set(final Long deadline) {
+            setDeadline(deadline == null ? Long.MAX_VALUE : deadline);
+        }
+
+        @Override
+        public void remove() {
+            setDeadline(Long.MAX_VALUE);
         }
 
     };
 
+    /**
+     * @return the current thread deadline in millis since epoch. (Long.MAX_VALUE if no deadline)
+     */
     public static long getDeadline() {
-        return DEADLINE.get();
+        return DEADLINE_HOLDER.get().deadline;
+    }
+
+    /**
+     * @param nanoTime - the current System.nanoTime().
+     * @return the current thread deadline relative to System.nanoTime(). (Long.MAX_VALUE if no deadline)
+     */
+    public static long getDeadlineNanos(final long nanoTime) {
+        final long deadline = getDeadline();
+        if (deadline == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        final long remainingNanos = TimeUnit.MILLISECONDS.toNanos(deadline - System.currentTimeMillis());
+        final long result = nanoTime + remainingNanos;
+        if (remainingNanos > 0 && result < nanoTime) { // overflow
+            return Long.MAX_VALUE;
+        }
+        return result;
+    }
+
+    /**
+     * @param deadlineNanos - a deadline relative to System.nanoTime().
+     * @return the deadline in millis since epoch.
+     */
+    public static long toDeadlineMillis(final long deadlineNanos) {
+        if (deadlineNanos == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
     }
 
     public static long millisToDeadline() throws TimeoutException {
-        final long deadline = DEADLINE.get();
+        final long deadline = getDeadline();
         long result = deadline - System.currentTimeMillis();
         if (result < 0) {
             throw new TimeoutException("Deadline passed " + ISODateTimeFormat.basicDateTime().print(deadline));
@@ -667,7 +729,97 @@ public final class Runtime {
     }
 
     public static void setDeadline(final long deadline) {
-        DEADLINE.set(deadline);
+        DEADLINE_HOLDER.get().deadline = deadline;
+    }
+
+    /**
+     * Set the current thread deadline, and return the previous one. Intended usage for nested scopes:
+     * <pre>
+     * long prevDeadline = Runtime.swapDeadline(deadline);
+     * try {
+     *   ....
+     * } finally {
+     *   Runtime.setDeadline(prevDeadline);
+     * }
+     * </pre>
+     * @param deadline - the new deadline.
+     * @return the previous deadline.
+     */
+    public static long swapDeadline(final long deadline) {
+        DeadlineHolder holder = DEADLINE_HOLDER.get();
+        long result = holder.deadline;
+        holder.deadline = deadline;
+        return result;
+    }
+
+    /**
+     * Like swapDeadline, except that the deadline is set only if it is sooner than the current deadline.
+     * @param deadline - the new deadline.
+     * @return the previous deadline.
+     */
+    public static long narrowDeadline(final long deadline) {
+        DeadlineHolder holder = DEADLINE_HOLDER.get();
+        long result = holder.deadline;
+        if (deadline < result) {
+            holder.deadline = deadline;
+        }
+        return result;
+    }
+
+    /**
+     * Wrap a runnable so that it executes with the current thread deadline.
+     * Used to propagate the deadline to tasks submitted to executors.
+     * @param runnable - the runnable to wrap.
+     * @return the wrapped runnable, or the runnable itself if there is no deadline set.
+     */
+    public static Runnable withCurrentDeadline(final Runnable runnable) {
+        final long deadline = getDeadline();
+        if (deadline == Long.MAX_VALUE || runnable instanceof DeadlineRunnable) {
+            return runnable;
+        }
+        return new DeadlineRunnable(runnable, deadline);
+    }
+
+    /**
+     * Reverse of withCurrentDeadline, replaces in place the deadline propagating wrappers with the wrapped runnables.
+     * Used to return the tasks as submitted from ExecutorService.shutdownNow.
+     * @param runnables - the runnables to unwrap.
+     * @return the same list, with the runnables unwrapped.
+     */
+    public static List<Runnable> withoutDeadline(final List<Runnable> runnables) {
+        for (int i = 0, l = runnables.size(); i < l; i++) {
+            Runnable runnable = runnables.get(i);
+            if (runnable instanceof DeadlineRunnable) {
+                runnables.set(i, ((DeadlineRunnable) runnable).runnable);
+            }
+        }
+        return runnables;
+    }
+
+    private static final class DeadlineRunnable implements Runnable {
+
+        private final Runnable runnable;
+        private final long deadline;
+
+        DeadlineRunnable(final Runnable runnable, final long deadline) {
+            this.runnable = runnable;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            long prevDeadline = swapDeadline(deadline);
+            try {
+                runnable.run();
+            } finally {
+                setDeadline(prevDeadline);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "DeadlineRunnable{" + "runnable=" + runnable + ", deadline=" + deadline + '}';
+        }
     }
 
     /**
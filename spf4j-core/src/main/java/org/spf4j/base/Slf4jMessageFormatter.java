@@ -23,6 +23,7 @@ import gnu.trove.set.hash.THashSet;
 import java.io.IOException;
 import java.util.Set;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.spf4j.io.ObjectAppenderSupplier;
 
 /**
@@ -35,6 +36,7 @@ import org.spf4j.io.ObjectAppenderSupplier;
  * the unused ones
  * 3) Lets you plug custom formatters for argument types.  (you can get better performance and more flexibility)
  * 4) Processing arguments that are arrays is sligtly faster than the slf4j formatter.
+ * 5) Message patterns are parsed once and cached (see Slf4jMessagePattern).
  *
  * @author zoly
  */
@@ -122,48 +124,7 @@ public final  class Slf4jMessageFormatter {
              @Nonnull final Appendable to, @Nonnull final String messagePattern,
              @Nonnull final ObjectAppenderSupplier appSupplier, final Object... argArray)
             throws IOException {
-        int i = 0;
-        final int len = argArray.length;
-        for (int k = firstArgIdx; k < len; k++) {
-
-            int j = messagePattern.indexOf(DELIM_STR, i);
-
-            if (j == -1) {
-                // no more variables
-                if (i == 0) { // this is a simple string
-                    to.append(messagePattern, i, messagePattern.length());
-                    return k;
-                } else { // add the tail string which contains no variables and return
-                    // the result.
-                    to.append(messagePattern, i, messagePattern.length());
-                    return k;
-                }
-            } else {
-                if (isEscapedDelimeter(messagePattern, j)) {
-                    if (!isDoubleEscaped(messagePattern, j)) {
-                        k--; // DELIM_START was escaped, thus should not be incremented
-                        to.append(messagePattern, i, j - 1);
-                        to.append(DELIM_START);
-                        i = j + 1;
-                    } else {
-                        // The escape character preceding the delimiter start is
-                        // itself escaped: "abc x:\\{}"
-                        // we have to consume one backward slash
-                        to.append(messagePattern, i, j - 1);
-                        deeplyAppendParameter(safe, to, argArray[k], new THashSet<>(), appSupplier);
-                        i = j + 2;
-                    }
-                } else {
-                    // normal case
-                    to.append(messagePattern, i, j);
-                    deeplyAppendParameter(safe, to, argArray[k], new THashSet<>(), appSupplier);
-                    i = j + 2;
-                }
-            }
-        }
-        // append the characters following the last {} pair.
-        to.append(messagePattern, i, messagePattern.length());
-        return len;
+        return Slf4jMessagePattern.compile(messagePattern).format(safe, firstArgIdx, to, appSupplier, argArray);
     }
 
     static boolean isEscapedDelimeter(final String messagePattern, final int delimeterStartIndex) {
@@ -179,8 +140,8 @@ public final  class Slf4jMessageFormatter {
 
     // special treatment of array values was suggested by 'lizongbo'
     @SuppressFBWarnings("ITC_INHERITANCE_TYPE_CHECKING")
-    private static void deeplyAppendParameter(final boolean safe, final Appendable sbuf, final Object o,
-            final Set<Object[]> seen, final ObjectAppenderSupplier appSupplier) throws IOException {
+    static void deeplyAppendParameter(final boolean safe, final Appendable sbuf, final Object o,
+            @Nullable final Set<Object[]> seen, final ObjectAppenderSupplier appSupplier) throws IOException {
         if (o == null) {
             sbuf.append("null");
             return;
@@ -238,9 +199,11 @@ public final  class Slf4jMessageFormatter {
 
     @SuppressFBWarnings("ABC_ARRAY_BASED_COLLECTIONS")
     private static void objectArrayAppend(final boolean safe, final Appendable sbuf,
-            final Object[] a, final Set<Object[]> seen,
+            final Object[] a, @Nullable final Set<Object[]> pseen,
             final ObjectAppenderSupplier appSupplier) throws IOException {
         sbuf.append('[');
+        // the seen set is needed only for object arrays, allocate it on first use.
+        final Set<Object[]> seen = pseen == null ? new THashSet<>() : pseen;
         if (!seen.contains(a)) {
             seen.add(a);
             final int len = a.length;
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.spf4j.base;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+import org.spf4j.io.ObjectAppenderSupplier;
+
+/**
+ * A slf4j message pattern (see org.slf4j.helpers.MessageFormatter) with the placeholders and escapes parsed once.
+ *
+ * Formatting a compiled pattern produces exactly the same output as Slf4jMessageFormatter.format,
+ * including the slf4j quirk where the remainder of the pattern is written verbatim (escapes not processed)
+ * once the arguments run out.
+ *
+ * compiled patterns are immutable and thread safe, compile(pattern) caches them by pattern string
+ * (up to spf4j.slf4jMessagePattern.cacheSize patterns, the ones above the limit are compiled on every call).
+ *
+ * @author zoly
+ */
+public final class Slf4jMessagePattern {
+
+    private static final int CACHE_SIZE = Integer.getInteger("spf4j.slf4jMessagePattern.cacheSize", 4096);
+
+    private static final ConcurrentMap<String, Slf4jMessagePattern> CACHE = new ConcurrentHashMap<>();
+
+    private final String pattern;
+
+    /**
+     * the pattern offsets where each placeholder's literal prefix starts (before escape processing).
+     */
+    private final int[] rawStarts;
+
+    /**
+     * the literal text preceding each placeholder (escapes processed).
+     */
+    private final String[] prefixes;
+
+    /**
+     * the pattern offset after the last placeholder.
+     */
+    private final int tailRawStart;
+
+    /**
+     * the literal text after the last placeholder (escapes processed).
+     */
+    private final String tail;
+
+    private Slf4jMessagePattern(final String pattern) {
+        this.pattern = pattern;
+        List<String> lits = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        StringBuilder lit = new StringBuilder(pattern.length());
+        int rawStart = 0;
+        int i = 0;
+        int j;
+        while ((j = pattern.indexOf(Slf4jMessageFormatter.DELIM_STR, i)) >= 0) {
+            if (Slf4jMessageFormatter.isEscapedDelimeter(pattern, j)) {
+                if (!Slf4jMessageFormatter.isDoubleEscaped(pattern, j)) {
+                    // escaped placeholder, "\{}" -> "{}"
+                    lit.append(pattern, i, j - 1);
+                    lit.append(Slf4jMessageFormatter.DELIM_START);
+                    i = j + 1;
+                    continue;
+                } else {
+                    // "\\{}" -> "\" + argument
+                    lit.append(pattern, i, j - 1);
+                }
+            } else {
+                lit.append(pattern, i, j);
+            }
+            i = j + 2;
+            lits.add(lit.toString());
+            starts.add(rawStart);
+            lit.setLength(0);
+            rawStart = i;
+        }
+        lit.append(pattern, i, pattern.length());
+        this.prefixes = lits.toArray(new String[lits.size()]);
+        this.rawStarts = new int[starts.size()];
+        for (int k = 0; k < rawStarts.length; k++) {
+            rawStarts[k] = starts.get(k);
+        }
+        this.tailRawStart = rawStart;
+        this.tail = lit.toString();
+    }
+
+    /**
+     * @param pattern see org.slf4j.helpers.MessageFormatter for format.
+     * @return the compiled pattern.
+     */
+    @Nonnull
+    public static Slf4jMessagePattern compile(@Nonnull final String pattern) {
+        Slf4jMessagePattern result = CACHE.get(pattern);
+        if (result == null) {
+            result = new Slf4jMessagePattern(pattern);
+            if (CACHE.size() < CACHE_SIZE) {
+                Slf4jMessagePattern existing = CACHE.putIfAbsent(pattern, result);
+                if (existing != null) {
+                    result = existing;
+                }
+            }
+        }
+        return result;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public int getNrPlaceholders() {
+        return prefixes.length;
+    }
+
+    /**
+     * @param to Appendable to put formatted message to.
+     * @param argArray the message arguments.
+     * @return the number of arguments used in the message.
+     */
+    public int format(@Nonnull final Appendable to, final Object... argArray) throws IOException {
+        return format(true, 0, to, ObjectAppenderSupplier.TO_STRINGER, argArray);
+    }
+
+    /**
+     * @param to Appendable to put formatted message to.
+     * @param appSupplier a supplier that will provide the serialization method for a particular argument type.
+     * @param argArray the message arguments.
+     * @return the number of arguments used in the message.
+     */
+    public int format(@Nonnull final Appendable to, @Nonnull final ObjectAppenderSupplier appSupplier,
+            final Object... argArray) throws IOException {
+        return format(true, 0, to, appSupplier, argArray);
+    }
+
+    /**
+     * @param safe - if true recoverable exception will be caught when writing arguments,
+     * and a error will be appended instead.
+     * @param firstArgIdx the index of the first parameter.
+     * @param to Appendable to put formatted message to.
+     * @param appSupplier a supplier that will provide the serialization method for a particular argument type.
+     * @param argArray the message arguments.
+     * @return the index of the last arguments used in the message + 1.
+     * @throws IOException something wend wrong while writing to the appendable.
+     */
+    public int format(final boolean safe, final int firstArgIdx, @Nonnull final Appendable to,
+            @Nonnull final ObjectAppenderSupplier appSupplier, final Object... argArray) throws IOException {
+        final int len = argArray.length;
+        int k = firstArgIdx;
+        for (int p = 0; p < prefixes.length; p++) {
+            if (k >= len) {
+                to.append(pattern, rawStarts[p], pattern.length());
+                return len;
+            }
+            to.append(prefixes[p]);
+            Slf4jMessageFormatter.deeplyAppendParameter(safe, to, argArray[k++], null, appSupplier);
+        }
+        if (k >= len) {
+            to.append(pattern, tailRawStart, pattern.length());
+            return len;
+        }
+        to.append(tail);
+        return k;
+    }
+
+    @Override
+    public String toString() {
+        return "Slf4jMessagePattern{" + "pattern=" + pattern + '}';
+    }
+
+}
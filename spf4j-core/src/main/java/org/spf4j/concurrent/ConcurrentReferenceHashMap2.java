@@ -0,0 +1,831 @@
+ /*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.concurrent;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import org.spf4j.concurrent.ConcurrentReferenceHashMap.Option;
+import org.spf4j.concurrent.ConcurrentReferenceHashMap.ReferenceType;
+
+/**
+ * A concurrent hash map with configurable (strong, weak, soft) keys and values, that is built on top of
+ * java.util.concurrent.ConcurrentHashMap, and as such it uses CAS bin level updates instead of the segment locks
+ * ConcurrentReferenceHashMap uses.
+ *
+ * Stale entries (entries whose key or value reference has been cleared by the GC) are reclaimed
+ * incrementally from the reference queue by every map operation, reads included (at most PURGE_BATCH references
+ * per operation), so read mostly maps do not accumulate dead entries. purgeStaleEntries can be invoked to drain
+ * the queue completely.
+ *
+ * Like ConcurrentReferenceHashMap, size() and isEmpty() might reflect entries that have been cleared
+ * but not yet reclaimed. Null keys and values are not allowed.
+ *
+ * @author zoly
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+@ParametersAreNonnullByDefault
+public final class ConcurrentReferenceHashMap2<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+  /**
+   * Maximum number of stale references reclaimed by a regular map operation.
+   */
+  private static final int PURGE_BATCH = Integer.getInteger("spf4j.concurrentReferenceMap.purgeBatch", 16);
+
+  /**
+   * Reusable per thread lookup keys, so that lookups of wrapped keys do not allocate.
+   */
+  private static final ThreadLocal<ProbeKey> PROBES = new ThreadLocal<ProbeKey>() {
+    @Override
+    protected ProbeKey initialValue() {
+      return new ProbeKey();
+    }
+  };
+
+  private final ConcurrentHashMap<Object, Object> map;
+
+  private final ReferenceQueue<Object> refQueue;
+
+  private final ReferenceType keyType;
+
+  private final ReferenceType valueType;
+
+  private final boolean identityComparisons;
+
+  /**
+   * when true the key is stored and looked up as is.
+   */
+  private final boolean rawKeys;
+
+  private Set<K> keySet;
+
+  private Set<Map.Entry<K, V>> entrySet;
+
+  private Collection<V> values;
+
+  public ConcurrentReferenceHashMap2(final int initialCapacity, final float loadFactor, final int concurrencyLevel,
+          final ReferenceType keyType, final ReferenceType valueType, final EnumSet<Option> options) {
+    this.map = new ConcurrentHashMap<>(initialCapacity, loadFactor, concurrencyLevel);
+    this.refQueue = new ReferenceQueue<>();
+    this.keyType = keyType;
+    this.valueType = valueType;
+    this.identityComparisons = options.contains(Option.IDENTITY_COMPARISONS);
+    this.rawKeys = keyType == ReferenceType.STRONG && !identityComparisons;
+  }
+
+  public ConcurrentReferenceHashMap2(final int initialCapacity,
+          final ReferenceType keyType, final ReferenceType valueType) {
+    this(initialCapacity, ConcurrentReferenceHashMap.DEFAULT_LOAD_FACTOR,
+            ConcurrentReferenceHashMap.DEFAULT_CONCURRENCY_LEVEL, keyType, valueType, EnumSet.noneOf(Option.class));
+  }
+
+  public ConcurrentReferenceHashMap2(final ReferenceType keyType, final ReferenceType valueType) {
+    this(ConcurrentReferenceHashMap.DEFAULT_INITIAL_CAPACITY, keyType, valueType);
+  }
+
+  /**
+   * Creates a map with weak keys and strong values.
+   */
+  public ConcurrentReferenceHashMap2() {
+    this(ConcurrentReferenceHashMap.DEFAULT_KEY_TYPE, ConcurrentReferenceHashMap.DEFAULT_VALUE_TYPE);
+  }
+
+  /* ---------------- key/value reference handling -------------- */
+
+  private int hash(final Object key) {
+    return identityComparisons ? System.identityHashCode(key) : key.hashCode();
+  }
+
+  /**
+   * @return a key to look up the entry of key with, must be released with releaseLookupKey after use.
+   */
+  private Object lookupKey(final Object key) {
+    if (rawKeys) {
+      return key;
+    }
+    ProbeKey probe = PROBES.get();
+    if (probe.isInUse()) {
+      // re-entrant lookup (from a key equals for example).
+      return new StrongKey<>(key, hash(key), identityComparisons);
+    }
+    probe.set(key, hash(key), identityComparisons);
+    return probe;
+  }
+
+  private static void releaseLookupKey(final Object lookupKey) {
+    if (lookupKey instanceof ProbeKey) {
+      ((ProbeKey) lookupKey).clear();
+    }
+  }
+
+  private Object newKeyReference(final K key) {
+    switch (keyType) {
+      case STRONG:
+        return rawKeys ? key : new StrongKey<>(key, hash(key), identityComparisons);
+      case WEAK:
+        return new WeakKey<>(key, hash(key), identityComparisons, refQueue);
+      case SOFT:
+        return new SoftKey<>(key, hash(key), identityComparisons, refQueue);
+      default:
+        throw new IllegalStateException("Unsupported key reference type " + keyType);
+    }
+  }
+
+  private Object newValueReference(final Object keyRef, final V value) {
+    switch (valueType) {
+      case STRONG:
+        return value;
+      case WEAK:
+        return new WeakValue<>(keyRef, value, refQueue);
+      case SOFT:
+        return new SoftValue<>(keyRef, value, refQueue);
+      default:
+        throw new IllegalStateException("Unsupported value reference type " + valueType);
+    }
+  }
+
+  @Nullable
+  private V deref(@Nullable final Object valueRef) {
+    if (valueRef == null) {
+      return null;
+    }
+    if (valueType == ReferenceType.STRONG) {
+      return (V) valueRef;
+    }
+    return ((Reference<V>) valueRef).get();
+  }
+
+  @Nullable
+  private K derefKey(final Object keyRef) {
+    if (rawKeys) {
+      return (K) keyRef;
+    }
+    return ((KeyHolder<K>) keyRef).getKey();
+  }
+
+  /**
+   * Reclaim up to maxCount stale entries.
+   */
+  private void purge(final int maxCount) {
+    Reference<?> ref;
+    int i = 0;
+    while (i++ < maxCount && (ref = refQueue.poll()) != null) {
+      if (ref instanceof KeyHolder) {
+        // key references are unique per entry, and they are equal only to themselves once cleared.
+        map.remove(ref);
+      } else {
+        map.remove(((ValueHolder) ref).getKeyRef(), ref);
+      }
+    }
+  }
+
+  /**
+   * Removes all stale entries that have been enqueued by the garbage collector.
+   */
+  public void purgeStaleEntries() {
+    purge(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Clears and enqueues all key and value references, like the GC would do when the referents become
+   * unreachable. (deterministic GC simulation for tests)
+   */
+  void clearReferences() {
+    for (Map.Entry<Object, Object> entry : map.entrySet()) {
+      Object key = entry.getKey();
+      if (key instanceof Reference) {
+        ((Reference) key).clear();
+        ((Reference) key).enqueue();
+      }
+      Object value = entry.getValue();
+      if (value instanceof Reference) {
+        ((Reference) value).clear();
+        ((Reference) value).enqueue();
+      }
+    }
+  }
+
+  /* ---------------- map operations -------------- */
+
+  @Override
+  @Nullable
+  public V get(final Object key) {
+    purge(PURGE_BATCH);
+    Object lookupKey = lookupKey(key);
+    try {
+      return deref(map.get(lookupKey));
+    } finally {
+      releaseLookupKey(lookupKey);
+    }
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public boolean containsValue(final Object value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    purge(PURGE_BATCH);
+    for (Object vr : map.values()) {
+      V v = deref(vr);
+      if (v != null && value.equals(v)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int size() {
+    purge(PURGE_BATCH);
+    return map.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    purge(PURGE_BATCH);
+    return map.isEmpty();
+  }
+
+  @Override
+  @Nullable
+  public V put(final K key, final V value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    purge(PURGE_BATCH);
+    Object keyRef = newKeyReference(key);
+    return deref(map.put(keyRef, newValueReference(keyRef, value)));
+  }
+
+  @Override
+  @Nullable
+  public V putIfAbsent(final K key, final V value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    purge(PURGE_BATCH);
+    Object keyRef = newKeyReference(key);
+    Object valueRef = newValueReference(keyRef, value);
+    while (true) {
+      Object prevRef = map.putIfAbsent(keyRef, valueRef);
+      if (prevRef == null) {
+        return null;
+      }
+      V prev = deref(prevRef);
+      if (prev != null) {
+        return prev;
+      }
+      // existing value has been collected, but not yet purged.
+      if (map.replace(keyRef, prevRef, valueRef)) {
+        return null;
+      }
+    }
+  }
+
+  @Override
+  @Nullable
+  public V remove(final Object key) {
+    purge(PURGE_BATCH);
+    Object lookupKey = lookupKey(key);
+    try {
+      return deref(map.remove(lookupKey));
+    } finally {
+      releaseLookupKey(lookupKey);
+    }
+  }
+
+  @Override
+  public boolean remove(final Object key, final Object value) {
+    if (value == null) {
+      return false;
+    }
+    purge(PURGE_BATCH);
+    Object lookupKey = lookupKey(key);
+    try {
+      while (true) {
+        Object currRef = map.get(lookupKey);
+        V curr = deref(currRef);
+        if (curr == null || !value.equals(curr)) {
+          return false;
+        }
+        if (map.remove(lookupKey, currRef)) {
+          return true;
+        }
+      }
+    } finally {
+      releaseLookupKey(lookupKey);
+    }
+  }
+
+  @Override
+  public boolean replace(final K key, final V oldValue, final V newValue) {
+    if (oldValue == null || newValue == null) {
+      throw new NullPointerException();
+    }
+    purge(PURGE_BATCH);
+    Object keyRef = newKeyReference(key);
+    Object newValueRef = newValueReference(keyRef, newValue);
+    while (true) {
+      Object currRef = map.get(keyRef);
+      V curr = deref(currRef);
+      if (curr == null || !oldValue.equals(curr)) {
+        return false;
+      }
+      if (map.replace(keyRef, currRef, newValueRef)) {
+        return true;
+      }
+    }
+  }
+
+  @Override
+  @Nullable
+  public V replace(final K key, final V value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    purge(PURGE_BATCH);
+    Object keyRef = newKeyReference(key);
+    Object newValueRef = newValueReference(keyRef, value);
+    while (true) {
+      Object currRef = map.get(keyRef);
+      V curr = deref(currRef);
+      if (curr == null) {
+        return null;
+      }
+      if (map.replace(keyRef, currRef, newValueRef)) {
+        return curr;
+      }
+    }
+  }
+
+  @Override
+  public void clear() {
+    map.clear();
+    purgeStaleEntries();
+  }
+
+  @Override
+  public Set<K> keySet() {
+    Set<K> ks = keySet;
+    if (ks == null) {
+      ks = new KeySet();
+      keySet = ks;
+    }
+    return ks;
+  }
+
+  @Override
+  public Collection<V> values() {
+    Collection<V> vs = values;
+    if (vs == null) {
+      vs = new Values();
+      values = vs;
+    }
+    return vs;
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    Set<Map.Entry<K, V>> es = entrySet;
+    if (es == null) {
+      es = new EntrySet();
+      entrySet = es;
+    }
+    return es;
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrentReferenceHashMap2{" + "keyType=" + keyType + ", valueType=" + valueType
+            + ", identityComparisons=" + identityComparisons + ", size=" + map.size() + '}';
+  }
+
+  /* ---------------- references -------------- */
+
+  private interface KeyHolder<K> {
+
+    @Nullable
+    K getKey();
+  }
+
+  private interface ValueHolder {
+
+    Object getKeyRef();
+  }
+
+  private static boolean keyEquals(final KeyHolder<?> key, final Object other, final boolean identity) {
+    if (key == other) {
+      return true;
+    }
+    if (!(other instanceof KeyHolder)) {
+      return false;
+    }
+    Object k1 = key.getKey();
+    if (k1 == null) {
+      return false;
+    }
+    Object k2 = ((KeyHolder) other).getKey();
+    return identity ? k1 == k2 : k1.equals(k2);
+  }
+
+  private static final class StrongKey<K> implements KeyHolder<K> {
+
+    private final K key;
+    private final int hash;
+    private final boolean identity;
+
+    StrongKey(final K key, final int hash, final boolean identity) {
+      this.key = key;
+      this.hash = hash;
+      this.identity = identity;
+    }
+
+    @Override
+    public K getKey() {
+      return key;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return keyEquals(this, obj, identity);
+    }
+  }
+
+  /**
+   * A mutable lookup key, see lookupKey. Never stored in the map.
+   */
+  private static final class ProbeKey implements KeyHolder<Object> {
+
+    private Object key;
+    private int hash;
+    private boolean identity;
+
+    void set(final Object pKey, final int pHash, final boolean pIdentity) {
+      this.key = pKey;
+      this.hash = pHash;
+      this.identity = pIdentity;
+    }
+
+    void clear() {
+      this.key = null;
+    }
+
+    boolean isInUse() {
+      return key != null;
+    }
+
+    @Override
+    public Object getKey() {
+      return key;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return keyEquals(this, obj, identity);
+    }
+  }
+
+  private static final class WeakKey<K> extends WeakReference<K> implements KeyHolder<K> {
+
+    private final int hash;
+    private final boolean identity;
+
+    WeakKey(final K key, final int hash, final boolean identity, final ReferenceQueue<Object> refQueue) {
+      super(key, refQueue);
+      this.hash = hash;
+      this.identity = identity;
+    }
+
+    @Override
+    public K getKey() {
+      return get();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return keyEquals(this, obj, identity);
+    }
+  }
+
+  private static final class SoftKey<K> extends SoftReference<K> implements KeyHolder<K> {
+
+    private final int hash;
+    private final boolean identity;
+
+    SoftKey(final K key, final int hash, final boolean identity, final ReferenceQueue<Object> refQueue) {
+      super(key, refQueue);
+      this.hash = hash;
+      this.identity = identity;
+    }
+
+    @Override
+    public K getKey() {
+      return get();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return keyEquals(this, obj, identity);
+    }
+  }
+
+  private static final class WeakValue<V> extends WeakReference<V> implements ValueHolder {
+
+    private final Object keyRef;
+
+    WeakValue(final Object keyRef, final V value, final ReferenceQueue<Object> refQueue) {
+      super(value, refQueue);
+      this.keyRef = keyRef;
+    }
+
+    @Override
+    public Object getKeyRef() {
+      return keyRef;
+    }
+  }
+
+  private static final class SoftValue<V> extends SoftReference<V> implements ValueHolder {
+
+    private final Object keyRef;
+
+    SoftValue(final Object keyRef, final V value, final ReferenceQueue<Object> refQueue) {
+      super(value, refQueue);
+      this.keyRef = keyRef;
+    }
+
+    @Override
+    public Object getKeyRef() {
+      return keyRef;
+    }
+  }
+
+  /* ---------------- views -------------- */
+
+  private final class WriteThroughEntry extends SimpleEntry<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    WriteThroughEntry(final K k, final V v) {
+      super(k, v);
+    }
+
+    @Override
+    public V setValue(final V value) {
+      V result = super.setValue(value);
+      ConcurrentReferenceHashMap2.this.put(getKey(), value);
+      return result;
+    }
+  }
+
+  /**
+   * Iterator over live entries, cleared entries are skipped.
+   */
+  private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+    private final Iterator<Map.Entry<Object, Object>> it = map.entrySet().iterator();
+
+    private Map.Entry<K, V> next;
+
+    private Map.Entry<K, V> last;
+
+    EntryIterator() {
+      advance();
+    }
+
+    private void advance() {
+      while (it.hasNext()) {
+        Map.Entry<Object, Object> e = it.next();
+        K k = derefKey(e.getKey());
+        V v = deref(e.getValue());
+        if (k != null && v != null) {
+          next = new WriteThroughEntry(k, v);
+          return;
+        }
+      }
+      next = null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      last = next;
+      advance();
+      return last;
+    }
+
+    @Override
+    public void remove() {
+      if (last == null) {
+        throw new IllegalStateException();
+      }
+      ConcurrentReferenceHashMap2.this.remove(last.getKey());
+      last = null;
+    }
+  }
+
+  private final class KeyIterator implements Iterator<K> {
+
+    private final EntryIterator it = new EntryIterator();
+
+    @Override
+    public boolean hasNext() {
+      return it.hasNext();
+    }
+
+    @Override
+    public K next() {
+      return it.next().getKey();
+    }
+
+    @Override
+    public void remove() {
+      it.remove();
+    }
+  }
+
+  private final class ValueIterator implements Iterator<V> {
+
+    private final EntryIterator it = new EntryIterator();
+
+    @Override
+    public boolean hasNext() {
+      return it.hasNext();
+    }
+
+    @Override
+    public V next() {
+      return it.next().getValue();
+    }
+
+    @Override
+    public void remove() {
+      it.remove();
+    }
+  }
+
+  private final class KeySet extends AbstractSet<K> {
+
+    @Override
+    public Iterator<K> iterator() {
+      return new KeyIterator();
+    }
+
+    @Override
+    public int size() {
+      return ConcurrentReferenceHashMap2.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return ConcurrentReferenceHashMap2.this.isEmpty();
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+      return ConcurrentReferenceHashMap2.this.containsKey(o);
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+      return ConcurrentReferenceHashMap2.this.remove(o) != null;
+    }
+
+    @Override
+    public void clear() {
+      ConcurrentReferenceHashMap2.this.clear();
+    }
+  }
+
+  private final class Values extends AbstractCollection<V> {
+
+    @Override
+    public Iterator<V> iterator() {
+      return new ValueIterator();
+    }
+
+    @Override
+    public int size() {
+      return ConcurrentReferenceHashMap2.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return ConcurrentReferenceHashMap2.this.isEmpty();
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+      return ConcurrentReferenceHashMap2.this.containsValue(o);
+    }
+
+    @Override
+    public void clear() {
+      ConcurrentReferenceHashMap2.this.clear();
+    }
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+      V v = ConcurrentReferenceHashMap2.this.get(e.getKey());
+      return v != null && v.equals(e.getValue());
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+      return ConcurrentReferenceHashMap2.this.remove(e.getKey(), e.getValue());
+    }
+
+    @Override
+    public int size() {
+      return ConcurrentReferenceHashMap2.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return ConcurrentReferenceHashMap2.this.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+      ConcurrentReferenceHashMap2.this.clear();
+    }
+  }
+
+}
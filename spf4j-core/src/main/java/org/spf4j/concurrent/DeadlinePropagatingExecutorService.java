@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.concurrent;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.spf4j.base.Runtime;
+
+/**
+ * Executor service wrapper that propagates the submitter thread deadline (see Runtime.getDeadline)
+ * to the executed tasks. The spf4j thread pools propagate the deadline themselves, this wrapper is
+ * for the JDK executors (ForkJoinPool, ThreadPoolExecutor).
+ *
+ * @author zoly
+ */
+final class DeadlinePropagatingExecutorService extends AbstractExecutorService {
+
+  private final ExecutorService executor;
+
+  DeadlinePropagatingExecutorService(final ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public void execute(final Runnable command) {
+    executor.execute(Runtime.withCurrentDeadline(command));
+  }
+
+  @Override
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    return Runtime.withoutDeadline(executor.shutdownNow());
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return executor.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return executor.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+    return executor.awaitTermination(timeout, unit);
+  }
+
+  @Override
+  public String toString() {
+    return "DeadlinePropagatingExecutorService{" + "executor=" + executor + '}';
+  }
+
+}
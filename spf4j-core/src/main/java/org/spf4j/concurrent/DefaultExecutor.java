@@ -30,6 +30,8 @@ import static org.spf4j.base.Runtime.WAIT_FOR_SHUTDOWN_MILLIS;
 /**
  * This executor aims to be a general purpose executor for async tasks.
  * (equivalent to ForkJoinPool.commonPool())
+ * The submitter thread deadline (see org.spf4j.base.Runtime.getDeadline) is propagated to the executed tasks
+ * regardless of the configured implementation.
  * @author zoly
  */
 @SuppressFBWarnings("HES_EXECUTOR_NEVER_SHUTDOWN") // THere is a shutdownhook being registered which FB does not see
@@ -55,12 +57,15 @@ public final class DefaultExecutor {
             lifoExec.exportJmx();
             INSTANCE = lifoExec;
             break;
+          // the JDK executors do not propagate the thread deadline, as such they are wrapped.
           case "fjp": // EXPERIMENTAL! canceling with interrupt a future of taks submited does not seem to work!
-            INSTANCE = new ForkJoinPool(32767);
+            INSTANCE = new DeadlinePropagatingExecutorService(new ForkJoinPool(32767));
             break;
           case "legacy":
-            new ThreadPoolExecutor(coreThreads, Integer.MAX_VALUE, maxIdleMillis, TimeUnit.MILLISECONDS,
-                new SynchronousQueue<Runnable>(), new CustomThreadFactory("DefaultExecutor", isDaemon));
+            INSTANCE = new DeadlinePropagatingExecutorService(new ThreadPoolExecutor(coreThreads, Integer.MAX_VALUE,
+                maxIdleMillis, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<Runnable>(), new CustomThreadFactory("DefaultExecutor", isDaemon)));
+            break;
           default:
             throw new IllegalArgumentException("Ivalid setting for " + impParam + " = " + value);
         }
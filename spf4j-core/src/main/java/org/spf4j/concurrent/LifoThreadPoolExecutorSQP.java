@@ -187,7 +187,9 @@ public final class LifoThreadPoolExecutorSQP extends AbstractExecutorService imp
   @SuppressFBWarnings(value = {"MDM_WAIT_WITHOUT_TIMEOUT", "MDM_LOCK_ISLOCKED", "UL_UNRELEASED_LOCK_EXCEPTION_PATH"},
           justification = "no blocking is done while holding the lock,"
           + " lock is released on all paths, findbugs just cannot figure it out...")
-  public void execute(final Runnable command) {
+  public void execute(final Runnable pcommand) {
+    // propagate the submitter deadline to the executed task.
+    final Runnable command = org.spf4j.base.Runtime.withCurrentDeadline(pcommand);
     stateLock.lock();
     try {
       if (state.isShutdown()) {
@@ -289,7 +291,7 @@ public final class LifoThreadPoolExecutorSQP extends AbstractExecutorService imp
     stateLock.lock();
     try {
       state.interruptAll(); // interrupt all running threads.
-      return new ArrayList<>(taskQueue);
+      return org.spf4j.base.Runtime.withoutDeadline(new ArrayList<>(taskQueue));
     } finally {
       stateLock.unlock();
     }
@@ -170,7 +170,9 @@ public final class MutableLifoThreadPoolExecutorSQP extends AbstractExecutorServ
   @SuppressFBWarnings(value = {"MDM_WAIT_WITHOUT_TIMEOUT", "MDM_LOCK_ISLOCKED", "UL_UNRELEASED_LOCK_EXCEPTION_PATH"},
           justification = "no blocking is done while holding the lock,"
           + " lock is released on all paths, findbugs just cannot figure it out...")
-  public void execute(final Runnable command) {
+  public void execute(final Runnable pcommand) {
+    // propagate the submitter deadline to the executed task.
+    final Runnable command = org.spf4j.base.Runtime.withCurrentDeadline(pcommand);
     stateLock.lock();
     if (state.isShutdown()) {
       stateLock.unlock();
@@ -287,7 +289,7 @@ public final class MutableLifoThreadPoolExecutorSQP extends AbstractExecutorServ
     stateLock.lock();
     try {
       state.interruptAll();
-      return new ArrayList<>(taskQueue);
+      return org.spf4j.base.Runtime.withoutDeadline(new ArrayList<>(taskQueue));
     } finally {
       stateLock.unlock();
     }
@@ -0,0 +1,121 @@
+ /*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A retry budget, implemented as a token bucket.
+ * every first attempt deposits retryRatio tokens into the bucket (up to maxTokens), and every retry
+ * withdraws one token. When the bucket is empty retries are denied, this caps the retry amplification
+ * to retryRatio * traffic during a downstream outage (circuit breaker like behavior), while allowing
+ * maxTokens retries in bursts.
+ *
+ * @author zoly
+ */
+public final class RetryBudget {
+
+  /**
+   * A budget that never denies a retry.
+   */
+  public static final RetryBudget UNLIMITED = new RetryBudget(0, 0, true);
+
+  private static final long TOKEN = 1000;
+
+  private final long depositMilliTokens;
+
+  private final long maxMilliTokens;
+
+  /**
+   * the available tokens in thousands of a token.
+   */
+  private final AtomicLong milliTokens;
+
+  private final boolean unlimited;
+
+  /**
+   * @param retryRatio - the number of retries allowed per first attempt. (0.2 = 20% retries)
+   * @param maxTokens - the maximum number of retries that can be "saved up". The budget starts with these.
+   */
+  public RetryBudget(final double retryRatio, final long maxTokens) {
+    this(retryRatio, maxTokens, false);
+  }
+
+  private RetryBudget(final double retryRatio, final long maxTokens, final boolean unlimited) {
+    if (retryRatio < 0 || maxTokens < 0) {
+      throw new IllegalArgumentException("Invalid retry budget " + retryRatio + ", " + maxTokens);
+    }
+    this.depositMilliTokens = (long) (retryRatio * TOKEN);
+    this.maxMilliTokens = maxTokens * TOKEN;
+    this.milliTokens = new AtomicLong(maxMilliTokens);
+    this.unlimited = unlimited;
+  }
+
+  /**
+   * Record a first attempt (not a retry).
+   */
+  public void onAttempt() {
+    if (unlimited) {
+      return;
+    }
+    long current;
+    long next;
+    do {
+      current = milliTokens.get();
+      if (current >= maxMilliTokens) {
+        return;
+      }
+      next = Math.min(maxMilliTokens, current + depositMilliTokens);
+    } while (!milliTokens.compareAndSet(current, next));
+  }
+
+  /**
+   * Try to withdraw a retry from the budget.
+   * @return true if the retry can proceed, false if the budget is exhausted.
+   */
+  public boolean tryRetry() {
+    if (unlimited) {
+      return true;
+    }
+    long current;
+    do {
+      current = milliTokens.get();
+      if (current < TOKEN) {
+        return false;
+      }
+    } while (!milliTokens.compareAndSet(current, current - TOKEN));
+    return true;
+  }
+
+  public long getAvailableRetries() {
+    if (unlimited) {
+      return Long.MAX_VALUE;
+    }
+    return milliTokens.get() / TOKEN;
+  }
+
+  @Override
+  public String toString() {
+    if (unlimited) {
+      return "RetryBudget{unlimited}";
+    }
+    return "RetryBudget{" + "depositMilliTokens=" + depositMilliTokens + ", maxMilliTokens="
+            + maxMilliTokens + ", milliTokens=" + milliTokens + '}';
+  }
+
+}
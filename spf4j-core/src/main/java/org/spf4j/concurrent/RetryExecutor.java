@@ -19,16 +19,17 @@ package org.spf4j.concurrent;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
-import org.spf4j.base.AbstractRunnable;
 import org.spf4j.base.Callables;
 import org.spf4j.base.ParameterizedSupplier;
 import org.spf4j.base.Throwables;
@@ -37,6 +38,8 @@ import org.spf4j.base.TimeoutRunnable;
 /**
  * Executor that will execute Callables with retry. This executor cannot be used inside a Completion service.
  *
+ * On shutdown, the retries waiting in the retry scheduler are abandoned: their futures are completed with a
+ * RejectedExecutionException (with the last attempt failure suppressed, if any).
  *
  * @author zoly
  */
@@ -44,90 +47,32 @@ public class RetryExecutor {
 
     private final ExecutorService executionService;
     /**
-     * can contain: DelayedCallables for execution. (delayed retries) or FailedExecutionResults for results.
-     *
+     * the scheduler delayed retries are handed to.
      */
-    private final DelayQueue<FailedExecutionResult> executionEvents = new DelayQueue<>();
+    private final RetryScheduler retryScheduler;
+    /**
+     * the budget retries are withdrawn from.
+     */
+    private final RetryBudget retryBudget;
     private final ParameterizedSupplier<Callables.DelayPredicate<Object>, Callable<?>>
             resultRetryPredicateSupplier;
     private final ParameterizedSupplier<Callables.DelayPredicate<Exception>, Callable<?>>
             exceptionRetryPredicateSupplier;
-    private volatile RetryManager retryManager;
-    private Future<?> retryManagerFuture;
     private final BlockingQueue<Future<?>> completionQueue;
-    private final Object sync = new Object();
-
-    private void startRetryManager() {
-        if (this.retryManager == null) {
-            synchronized (sync) {
-                if (this.retryManager == null) {
-                    this.retryManager = new RetryManager();
-                    this.retryManagerFuture = DefaultExecutor.INSTANCE.submit(retryManager);
-                }
-            }
-        }
-    }
-
-    private void shutdownRetryManager() {
-        synchronized (sync) {
-            if (this.retryManager != null) {
-                retryManager.shutdown();
-                retryManager = null;
-            }
-        }
-    }
+    /**
+     * the retries waiting in the retry scheduler.
+     */
+    private final Set<PendingRetry> pendingRetries;
 
     /**
-     * this class represents either a execution failure notification or a retry command.
+     * this class represents a execution failure notification.
      */
-    private static class FailedExecutionResult implements Delayed {
+    private static final class FailedExecutionResult {
 
         private final ExecutionException exception;
-        private final RetryableCallable<Object> callable;
-        private final long deadline;
 
-        FailedExecutionResult(@Nullable final ExecutionException exception,
-                final RetryableCallable callable, final long delay) {
+        FailedExecutionResult(@Nullable final ExecutionException exception) {
             this.exception = exception;
-            this.callable = callable;
-            this.deadline = delay + System.currentTimeMillis();
-        }
-
-        @Override
-        public long getDelay(final TimeUnit unit) {
-            return unit.convert(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
-        }
-
-        @Override
-        public int compareTo(final Delayed o) {
-            long tDelay = getDelay(TimeUnit.MILLISECONDS);
-            long oDelay = o.getDelay(TimeUnit.MILLISECONDS);
-            if (tDelay > oDelay) {
-                return 1;
-            } else if (tDelay < oDelay) {
-                return -1;
-            } else {
-                return 0;
-            }
-        }
-
-        @Override
-        public boolean equals(final Object obj) {
-            if (obj == null) {
-                return false;
-            } else {
-                if (obj instanceof FailedExecutionResult) {
-                    return this.compareTo((FailedExecutionResult) obj) == 0;
-                } else {
-                    return false;
-                }
-            }
-        }
-
-        @Override
-        public int hashCode() {
-            int hash = 7;
-            return 53 * hash + (this.callable != null ? this.callable.hashCode() : 0);
         }
 
         @Nullable
@@ -135,12 +80,6 @@ public class RetryExecutor {
             return exception;
         }
 
-
-        public RetryableCallable<Object> getCallable() {
-            return callable;
-        }
-
-
     }
 
     private class RetryableCallable<T> implements Callable<T>, Runnable {
@@ -184,8 +123,9 @@ public class RetryExecutor {
                 T result = callable.call();
                 final int delay = this.resultRetryPredicate.apply((Object) result);
                 if (delay >= 0) {
-                    startRetryManager();
-                    executionEvents.add(new FailedExecutionResult(null, this, delay));
+                    if (!scheduleRetry(new FailedExecutionResult(null), delay) && future != null) {
+                        future.setResult(result);
+                    }
                 } else {
                     if (future != null) {
                         future.setResult(result);
@@ -195,15 +135,17 @@ public class RetryExecutor {
             } catch (Exception e) {
                 final int delay = this.exceptionRetryPredicate.apply(e);
                 if (delay >= 0) {
-                    startRetryManager();
                     if (previousResult != null) {
                         final ExecutionException exception = previousResult.getException();
                         if (exception != null) {
                             e = Throwables.suppress(e, exception);
                         }
                     }
-                    executionEvents.add(new FailedExecutionResult(new ExecutionException(e), this, delay));
-                } else {
+                    final ExecutionException executionException = new ExecutionException(e);
+                    if (!scheduleRetry(new FailedExecutionResult(executionException), delay) && future != null) {
+                        future.setExceptionResult(executionException);
+                    }
+                } else if (future != null) {
                     future.setExceptionResult(new ExecutionException(e));
                 }
                 return null;
@@ -215,6 +157,33 @@ public class RetryExecutor {
             call();
         }
 
+        /**
+         * schedule a retry of this callable.
+         * @return false if the retry has been abandoned.
+         */
+        private boolean scheduleRetry(final FailedExecutionResult result, final int delay) {
+            PendingRetry retry = new PendingRetry(this, result);
+            pendingRetries.add(retry);
+            if (executionService.isShutdown() || !retryScheduler.scheduleRetry(retry, delay, retryBudget)) {
+                pendingRetries.remove(retry);
+                // if a concurrent shutdown claimed the retry, it has been abandoned already.
+                return !retry.claim();
+            }
+            return true;
+        }
+
+        /**
+         * complete the future of an abandoned retry.
+         */
+        void abandon(final RejectedExecutionException reason) {
+            if (future != null) {
+                FailedExecutionResult previous = previousResult;
+                ExecutionException exception = previous == null ? null : previous.getException();
+                future.setExceptionResult(new ExecutionException(exception == null ? reason
+                        : Throwables.suppress(reason, exception)));
+            }
+        }
+
         public FailedExecutionResult getPreviousResult() {
             return previousResult;
         }
@@ -225,39 +194,48 @@ public class RetryExecutor {
 
     }
 
-    private class RetryManager extends AbstractRunnable {
+    /**
+     * The retry scheduler hand-off of a retry. A retry is either fired or abandoned on shutdown,
+     * whichever claims it first.
+     */
+    private final class PendingRetry implements Runnable {
 
-        RetryManager() {
-            super("RetryManager");
-            isRunning = true;
-        }
+        private final RetryableCallable<?> callable;
+        private final FailedExecutionResult result;
+        private final AtomicBoolean claimed;
 
-        public void shutdown() {
-            isRunning = false;
+        PendingRetry(final RetryableCallable<?> callable, final FailedExecutionResult result) {
+            this.callable = callable;
+            this.result = result;
+            this.claimed = new AtomicBoolean(false);
         }
 
-        private volatile boolean isRunning;
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
 
         @Override
-        public void doRun() {
-            while (isRunning) {
-                try {
-                    FailedExecutionResult event = executionEvents.poll(1000, TimeUnit.SECONDS);
-                    if (event != null) {
-                        final RetryableCallable<Object> callable = event.getCallable();
-                        callable.setPreviousResult(event);
-                        executionService.execute(callable);
-                    }
-                } catch (InterruptedException ex) {
-                    isRunning = false;
-                    break;
-                }
+        public void run() {
+            if (!claim()) {
+                return;
+            }
+            pendingRetries.remove(this);
+            callable.setPreviousResult(result);
+            try {
+                executionService.execute(callable);
+            } catch (RejectedExecutionException ex) {
+                callable.abandon(ex);
             }
         }
 
-    }
-
+        void abandon(final RejectedExecutionException reason) {
+            if (claim()) {
+                callable.setPreviousResult(result);
+                callable.abandon(reason);
+            }
+        }
 
+    }
 
     public static final ParameterizedSupplier<Callables.DelayPredicate<Object>, Callable<Object>> NO_RETRY_SUPPLIER =
             new ParameterizedSupplier<Callables.DelayPredicate<Object>, Callable<Object>>() {
@@ -283,20 +261,56 @@ public class RetryExecutor {
             final ParameterizedSupplier<Callables.DelayPredicate<Exception>, Callable<?>>
                 exceptionRetryPredicateSupplier,
             @Nullable final BlockingQueue<Future<?>> completionQueue) {
+        this(exec, resultRetryPredicateSupplier, exceptionRetryPredicateSupplier, completionQueue,
+                RetryScheduler.getDefault(), RetryBudget.UNLIMITED);
+    }
+
+    /**
+     * Create a retry executor.
+     * @param exec - the executor service attempts are executed with.
+     * @param resultRetryPredicateSupplier - supplies the retry predicate for results.
+     * @param exceptionRetryPredicateSupplier - supplies the retry predicate for exceptions.
+     * @param completionQueue - the queue completed futures are added to.
+     * @param retryScheduler - the scheduler delayed retries are handed to.
+     * @param retryBudget - the budget that caps the number of retries, when exhausted the last result is returned.
+     */
+    public RetryExecutor(final ExecutorService exec,
+            final ParameterizedSupplier<Callables.DelayPredicate<Object>, Callable<?>>
+                    resultRetryPredicateSupplier,
+            final ParameterizedSupplier<Callables.DelayPredicate<Exception>, Callable<?>>
+                exceptionRetryPredicateSupplier,
+            @Nullable final BlockingQueue<Future<?>> completionQueue,
+            final RetryScheduler retryScheduler, final RetryBudget retryBudget) {
         executionService = exec;
+        this.retryScheduler = retryScheduler;
+        this.retryBudget = retryBudget;
         this.resultRetryPredicateSupplier = resultRetryPredicateSupplier;
         this.exceptionRetryPredicateSupplier = exceptionRetryPredicateSupplier;
         this.completionQueue = completionQueue;
+        this.pendingRetries = ConcurrentHashMap.newKeySet();
     }
 
     public final void shutdown() {
-        shutdownRetryManager();
         executionService.shutdown();
+        abandonPendingRetries();
     }
 
     public final List<Runnable> shutdownNow() {
-        shutdownRetryManager();
-        return executionService.shutdownNow();
+        List<Runnable> result = executionService.shutdownNow();
+        abandonPendingRetries();
+        return result;
+    }
+
+    private void abandonPendingRetries() {
+        RejectedExecutionException reason = null;
+        for (PendingRetry retry : pendingRetries) {
+            if (pendingRetries.remove(retry)) {
+                if (reason == null) {
+                    reason = new RejectedExecutionException("Retry abandoned, " + executionService + " is shut down");
+                }
+                retry.abandon(reason);
+            }
+        }
     }
 
     public final boolean isShutdown() {
@@ -308,15 +322,11 @@ public class RetryExecutor {
     }
 
     public final boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
-        try {
-            this.retryManagerFuture.get();
-        } catch (ExecutionException ex) {
-            throw new RuntimeException(ex);
-        }
         return executionService.awaitTermination(timeout, unit);
     }
 
     private FutureBean<?> createFutureBean() {
+        retryBudget.onAttempt();
         if (completionQueue == null) {
             return new FutureBean<>();
         } else {
@@ -364,6 +374,7 @@ public class RetryExecutor {
     }
 
     public final <E extends Exception> void execute(final TimeoutRunnable<E> command) {
+        retryBudget.onAttempt();
         executionService.execute(new RetryableCallable(command, null, null, null,
          resultRetryPredicateSupplier.get((Callable<?>) command),
                 exceptionRetryPredicateSupplier.get((Callable<?>) command)));
@@ -371,11 +382,11 @@ public class RetryExecutor {
 
     @Override
     public final String toString() {
-        return "RetryExecutor{" + "executionService=" + executionService + ", executionEvents="
-                + executionEvents + ", resultRetryPredicateSupplier=" + resultRetryPredicateSupplier
-                + ", exceptionRetryPredicateSupplier=" + exceptionRetryPredicateSupplier + ", retryManager="
-                + retryManager + ", retryManagerFuture=" + retryManagerFuture + ", completionQueue="
-                + completionQueue + ", sync=" + sync + '}';
+        return "RetryExecutor{" + "executionService=" + executionService + ", retryScheduler="
+                + retryScheduler + ", retryBudget=" + retryBudget
+                + ", resultRetryPredicateSupplier=" + resultRetryPredicateSupplier
+                + ", exceptionRetryPredicateSupplier=" + exceptionRetryPredicateSupplier
+                + ", completionQueue=" + completionQueue + '}';
     }
 
 
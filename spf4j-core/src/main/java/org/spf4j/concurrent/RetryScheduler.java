@@ -0,0 +1,371 @@
+ /*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.GuardedBy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spf4j.jmx.JmxExport;
+import org.spf4j.jmx.Registry;
+
+/**
+ * A scheduler for delayed retries, designed to handle large amounts of retries (downstream outages).
+ *
+ * Retries are distributed to a set of shards (by submitting thread), each shard being a hashed timer wheel
+ * with a lock free inbox. This way producers contend only on a CAS of a concurrent queue, instead of a global
+ * priority queue lock, and the wheels are advanced independently by the provided scheduled executor.
+ * A wheel is ticked only while it has pending retries, idle shards cost nothing.
+ * Retries that fall in the same tick are coalesced and handed out in one batch.
+ *
+ * Retry delays can be jittered (retry delay is reduced by a random amount of up to jitterFactor * delay)
+ * to avoid synchronized retry storms, and can be subject to a RetryBudget to cap retry amplification.
+ * The default scheduler does not jitter (spf4j.retryScheduler.jitterFactor = 0), since the retry delays
+ * returned by the retry predicates are usually randomized already.
+ *
+ * The fired runnables are executed on the scheduler threads, as such they must only hand off the actual work
+ * to a executor.
+ *
+ * @author zoly
+ */
+@ParametersAreNonnullByDefault
+public final class RetryScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RetryScheduler.class);
+
+  private static final class Lazy {
+
+    private static final RetryScheduler DEFAULT = new RetryScheduler("default",
+            Integer.getInteger("spf4j.retryScheduler.shards", org.spf4j.base.Runtime.NR_PROCESSORS),
+            Integer.getInteger("spf4j.retryScheduler.tickMillis", 10),
+            Integer.getInteger("spf4j.retryScheduler.wheelSize", 512),
+            Double.parseDouble(System.getProperty("spf4j.retryScheduler.jitterFactor", "0")),
+            DefaultScheduler.INSTANCE);
+
+    static {
+      DEFAULT.exportJmx();
+    }
+  }
+
+  private final String name;
+
+  private final Shard[] shards;
+
+  private final int tickMillis;
+
+  private final double jitterFactor;
+
+  private final ScheduledExecutorService ticker;
+
+  private final LongAdder pending;
+
+  private final LongAdder fired;
+
+  private final LongAdder abandoned;
+
+  private volatile boolean shutdown;
+
+  /**
+   * Create a retry scheduler.
+   * @param name - the name of this scheduler (used as jmx name)
+   * @param nrShards - the number of shards (timer wheels).
+   * @param tickMillis - the timer wheel tick duration, delays are rounded up to a multiple of this.
+   * @param wheelSize - the number of buckets in a wheel. (will be rounded up to a power of 2)
+   * @param jitterFactor - the fraction of the delay that can be randomly removed. [0, 1]
+   * @param ticker - the scheduled executor that advances the timer wheels.
+   */
+  public RetryScheduler(final String name, final int nrShards, final int tickMillis, final int wheelSize,
+          final double jitterFactor, final ScheduledExecutorService ticker) {
+    if (nrShards <= 0 || tickMillis <= 0 || wheelSize <= 0 || jitterFactor < 0 || jitterFactor > 1) {
+      throw new IllegalArgumentException("Invalid retry scheduler config " + nrShards + ", " + tickMillis
+              + ", " + wheelSize + ", " + jitterFactor);
+    }
+    this.name = name;
+    this.tickMillis = tickMillis;
+    this.jitterFactor = jitterFactor;
+    this.ticker = ticker;
+    this.pending = new LongAdder();
+    this.fired = new LongAdder();
+    this.abandoned = new LongAdder();
+    this.shutdown = false;
+    int size = Integer.highestOneBit(wheelSize);
+    if (size < wheelSize) {
+      size <<= 1;
+    }
+    this.shards = new Shard[nrShards];
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < nrShards; i++) {
+      shards[i] = new Shard(size, now / tickMillis);
+    }
+  }
+
+  /**
+   * @return the default retry scheduler, ticked by the DefaultScheduler.
+   */
+  public static RetryScheduler getDefault() {
+    return Lazy.DEFAULT;
+  }
+
+  public void exportJmx() {
+    Registry.export(RetryScheduler.class.getName(), name, this);
+  }
+
+  /**
+   * @param delayMillis - the configured retry delay.
+   * @return the delay with jitter applied.
+   */
+  public long jitter(final long delayMillis) {
+    if (delayMillis <= 0 || jitterFactor == 0) {
+      return delayMillis;
+    }
+    return delayMillis - (long) (ThreadLocalRandom.current().nextDouble() * jitterFactor * delayMillis);
+  }
+
+  /**
+   * Schedule a retry.
+   * @param retry - the retry hand-off logic.
+   * @param delayMillis - the retry delay, jitter will be applied to it.
+   * @param budget - the retry budget to withdraw this retry from.
+   * @return true if the retry was scheduled, false if the retry was abandoned because budget was exhausted or
+   * the scheduler was shut down.
+   */
+  public boolean scheduleRetry(final Runnable retry, final long delayMillis, final RetryBudget budget) {
+    if (!budget.tryRetry()) {
+      abandoned.increment();
+      return false;
+    }
+    return schedule(retry, jitter(delayMillis));
+  }
+
+  /**
+   * Schedule a runnable for execution after the provided delay (no jitter, no budget).
+   * @param runnable - the runnable to execute.
+   * @param delayMillis - the delay.
+   * @return true if scheduled, false if the scheduler is shut down.
+   */
+  public boolean schedule(final Runnable runnable, final long delayMillis) {
+    if (shutdown) {
+      abandoned.increment();
+      return false;
+    }
+    pending.increment();
+    Shard shard = shards[(int) (Thread.currentThread().getId() % shards.length)];
+    long deadlineMillis = System.currentTimeMillis() + delayMillis;
+    // round up, a retry must never fire before its delay.
+    shard.inbox.add(new Timeout(runnable, (deadlineMillis + tickMillis - 1) / tickMillis));
+    shard.ensureTicking();
+    return true;
+  }
+
+  /**
+   * Shut down this scheduler.
+   * @return the retries that have not been fired.
+   */
+  public List<Runnable> shutdown() {
+    shutdown = true;
+    List<Runnable> result = new ArrayList<>();
+    for (Shard shard : shards) {
+      shard.stopTicking();
+      shard.drainTo(result);
+    }
+    pending.add(-result.size());
+    abandoned.add(result.size());
+    return result;
+  }
+
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  @JmxExport(description = "The number of scheduled retries that have not fired yet")
+  public long getPendingRetries() {
+    return pending.sum();
+  }
+
+  @JmxExport(description = "The number of retries that have been fired")
+  public long getFiredRetries() {
+    return fired.sum();
+  }
+
+  @JmxExport(description = "The number of retries that have been abandoned (budget exhausted or shutdown)")
+  public long getAbandonedRetries() {
+    return abandoned.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "RetryScheduler{" + "name=" + name + ", nrShards=" + shards.length + ", tickMillis=" + tickMillis
+            + ", jitterFactor=" + jitterFactor + ", pending=" + pending + ", fired=" + fired
+            + ", abandoned=" + abandoned + '}';
+  }
+
+  private static final class Timeout {
+
+    private final Runnable runnable;
+    /**
+     * the first tick that starts at or after the deadline.
+     */
+    private final long deadlineTick;
+
+    Timeout(final Runnable runnable, final long deadlineTick) {
+      this.runnable = runnable;
+      this.deadlineTick = deadlineTick;
+    }
+
+  }
+
+  /**
+   * A hashed timer wheel, the wheel buckets are accessed only by the ticker.
+   */
+  private final class Shard implements Runnable {
+
+    private final ConcurrentLinkedQueue<Timeout> inbox;
+
+    @GuardedBy("this")
+    private final ArrayDeque<Timeout>[] wheel;
+
+    private final int mask;
+
+    @GuardedBy("this")
+    private long lastTick;
+
+    /**
+     * the number of timeouts in the wheel.
+     */
+    @GuardedBy("this")
+    private int nrTimeouts;
+
+    /**
+     * true while the shard is ticking, ticks are one shot and reschedule themselves while there is work.
+     */
+    private final AtomicBoolean ticking;
+
+    private volatile ScheduledFuture<?> tickFuture;
+
+    Shard(final int wheelSize, final long startTick) {
+      this.inbox = new ConcurrentLinkedQueue<>();
+      this.wheel = new ArrayDeque[wheelSize];
+      for (int i = 0; i < wheelSize; i++) {
+        wheel[i] = new ArrayDeque<>();
+      }
+      this.mask = wheelSize - 1;
+      this.lastTick = startTick;
+      this.nrTimeouts = 0;
+      this.ticking = new AtomicBoolean(false);
+    }
+
+    void ensureTicking() {
+      if (!ticking.get() && ticking.compareAndSet(false, true)) {
+        scheduleTick();
+      }
+    }
+
+    private void scheduleTick() {
+      if (!shutdown) {
+        tickFuture = ticker.schedule(this, tickMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    void stopTicking() {
+      ScheduledFuture<?> future = tickFuture;
+      if (future != null) {
+        future.cancel(false);
+      }
+    }
+
+    @Override
+    public synchronized void run() {
+      long nowTick = System.currentTimeMillis() / tickMillis;
+      if (nrTimeouts == 0) {
+        // the wheel is empty, there is nothing to catch up with.
+        lastTick = Math.max(lastTick, nowTick - 1);
+      }
+      Timeout timeout;
+      while ((timeout = inbox.poll()) != null) {
+        long deadlineTick = timeout.deadlineTick;
+        if (deadlineTick <= lastTick) {
+          fire(timeout);
+        } else {
+          wheel[(int) (deadlineTick & mask)].addLast(timeout);
+          nrTimeouts++;
+        }
+      }
+      long nrTicks = Math.min(nowTick - lastTick, wheel.length);
+      for (long i = 1; i <= nrTicks; i++) {
+        ArrayDeque<Timeout> bucket = wheel[(int) ((lastTick + i) & mask)];
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+          Timeout t = it.next();
+          if (t.deadlineTick <= nowTick) {
+            it.remove();
+            nrTimeouts--;
+            fire(t);
+          }
+        }
+      }
+      if (nowTick > lastTick) {
+        lastTick = nowTick;
+      }
+      if (nrTimeouts == 0 && inbox.isEmpty()) {
+        // idle, stop ticking, unless a producer added a timeout in the meantime.
+        ticking.set(false);
+        if (!inbox.isEmpty()) {
+          ensureTicking();
+        }
+      } else {
+        scheduleTick();
+      }
+    }
+
+    private void fire(final Timeout timeout) {
+      pending.decrement();
+      fired.increment();
+      try {
+        timeout.runnable.run();
+      } catch (RuntimeException ex) {
+        LOG.error("Retry hand-off failed for {}", timeout.runnable, ex);
+      }
+    }
+
+    synchronized void drainTo(final List<Runnable> to) {
+      Timeout timeout;
+      while ((timeout = inbox.poll()) != null) {
+        to.add(timeout.runnable);
+      }
+      for (ArrayDeque<Timeout> bucket : wheel) {
+        for (Timeout t : bucket) {
+          to.add(t.runnable);
+        }
+        bucket.clear();
+      }
+      nrTimeouts = 0;
+    }
+
+  }
+
+}
@@ -0,0 +1,321 @@
+ /*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.concurrent;
+
+import com.google.common.annotations.Beta;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A lock free variant of ThreadLocalBufferedConsumer.
+ *
+ * Every writer thread has its own single producer/single consumer ring buffer. The writer publishes
+ * elements by advancing its tail sequence, the flusher (a single thread at a time) drains the ring by advancing
+ * the head sequence, there is no lock involved in the write path.
+ *
+ * Batches are handed to the consumer as List views over the ring buffer (no copying), as such the consumer
+ * must not hold on to the list after accept returns. A batch never spans more than one writer thread,
+ * so the consumer will be invoked once per thread (or twice when the ring wraps around) per flush.
+ *
+ * When a ring is full the write is handled according to the OverflowPolicy (drop the element or wait for
+ * the flusher to make room). Writes after close are dropped.
+ *
+ * If the consumer fails, the elements of the failed batch stay in the ring and will be handed to the consumer again
+ * at the next flush. Failures of the scheduled flushes are logged, and do not stop the scheduled flushing.
+ *
+ * @author zoly
+ */
+@Beta
+public final class ThreadLocalRingBufferedConsumer<T> implements Flushable, Closeable {
+
+  public enum OverflowPolicy {
+    /**
+     * drop the written element if the ring buffer is full.
+     */
+    DROP,
+    /**
+     * park the writer until the flusher makes room in the ring buffer.
+     */
+    BLOCK
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(ThreadLocalRingBufferedConsumer.class);
+
+  private static final long BLOCK_PARK_NANOS = Long.getLong("spf4j.ringBufferedConsumer.blockParkNanos", 100000L);
+
+  private final ThreadLocal<Ring<T>> localBuffer;
+
+  private final Map<Thread, Ring<T>> buffers;
+
+  private final Consumer<List<T>> consumer;
+
+  private final int ringSize;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private final ScheduledFuture<?> schedule;
+
+  private final LongAdder dropped;
+
+  private volatile boolean closed;
+
+  /**
+   * @param ringSize - the size of a thread local ring buffer (will be rounded up to a power of 2)
+   * @param consumer - the consumer batches are handed to.
+   * @param delayMillis - flush interval.
+   * @param overflowPolicy - what to do when a ring buffer is full.
+   */
+  public ThreadLocalRingBufferedConsumer(final int ringSize, final Consumer<List<T>> consumer,
+          final int delayMillis, final OverflowPolicy overflowPolicy) {
+    if (ringSize <= 0) {
+      throw new IllegalArgumentException("Invalid ring size " + ringSize);
+    }
+    int size = Integer.highestOneBit(ringSize);
+    if (size < ringSize) {
+      size <<= 1;
+    }
+    this.ringSize = size;
+    this.overflowPolicy = overflowPolicy;
+    this.buffers = new ConcurrentHashMap<>();
+    this.consumer = consumer;
+    this.dropped = new LongAdder();
+    this.closed = false;
+    this.localBuffer = new ThreadLocal<Ring<T>>() {
+      @Override
+      protected Ring<T> initialValue() {
+        Ring<T> result = new Ring<>(ThreadLocalRingBufferedConsumer.this.ringSize);
+        buffers.put(Thread.currentThread(), result);
+        return result;
+      }
+    };
+    this.schedule = DefaultScheduler.INSTANCE.scheduleWithFixedDelay(this::scheduledFlush,
+            delayMillis, delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * An exception escaping a scheduled flush would cancel all subsequent flushes.
+   */
+  private void scheduledFlush() {
+    try {
+      flush();
+    } catch (RuntimeException ex) {
+      LOG.error("Failed to flush {}, will retry", this, ex);
+    }
+  }
+
+  /**
+   * Write a value.
+   * @param value - the value to write.
+   * @return true if written, false if the value was dropped.
+   */
+  public boolean write(final T value) {
+    if (closed) {
+      dropped.increment();
+      return false;
+    }
+    Ring<T> ring = localBuffer.get();
+    while (!ring.offer(value)) {
+      if (overflowPolicy == OverflowPolicy.DROP || closed) {
+        dropped.increment();
+        return false;
+      }
+      LockSupport.parkNanos(BLOCK_PARK_NANOS);
+    }
+    return true;
+  }
+
+  /**
+   * Drain all ring buffers into the consumer.
+   * Flushes are serialized, since every ring buffer supports only one consumer.
+   * If the consumer fails for a ring, the other rings are still drained, and the first failure is re-thrown.
+   */
+  @Override
+  public synchronized void flush() {
+    RuntimeException failure = null;
+    Iterator<Map.Entry<Thread, Ring<T>>> iterator = buffers.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Thread, Ring<T>> entry = iterator.next();
+      Ring<T> ring = entry.getValue();
+      try {
+        ring.drainTo(consumer);
+      } catch (RuntimeException ex) {
+        if (failure == null) {
+          failure = ex;
+        } else {
+          failure.addSuppressed(ex);
+        }
+      }
+      if (!entry.getKey().isAlive() && ring.isEmpty()) {
+        iterator.remove();
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!schedule.isCancelled()) {
+      closed = true;
+      schedule.cancel(false);
+      flush();
+    }
+  }
+
+  /**
+   * @return the number of elements dropped due to full ring buffers, or written after close.
+   */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "ThreadLocalRingBufferedConsumer{ consumer=" + consumer + ", ringSize=" + ringSize
+            + ", overflowPolicy=" + overflowPolicy + ", dropped=" + dropped + ", schedule=" + schedule + '}';
+  }
+
+  /**
+   * Single producer single consumer ring buffer.
+   * tail is written only by the producer, head is written only by the consumer.
+   */
+  private static final class Ring<T> {
+
+    private final Object[] buffer;
+
+    private final int mask;
+
+    /**
+     * the sequence of the next element to consume.
+     */
+    private final AtomicLong head;
+
+    /**
+     * the sequence of the next element to produce.
+     */
+    private final AtomicLong tail;
+
+    /**
+     * producer side cache of head, to avoid reading the volatile head on every offer.
+     */
+    private long headCache;
+
+    Ring(final int size) {
+      this.buffer = new Object[size];
+      this.mask = size - 1;
+      this.head = new AtomicLong();
+      this.tail = new AtomicLong();
+      this.headCache = 0;
+    }
+
+    boolean offer(final T value) {
+      long t = tail.get();
+      if (t - headCache >= buffer.length) {
+        headCache = head.get();
+        if (t - headCache >= buffer.length) {
+          return false;
+        }
+      }
+      buffer[(int) (t & mask)] = value;
+      tail.lazySet(t + 1);
+      return true;
+    }
+
+    boolean isEmpty() {
+      return head.get() == tail.get();
+    }
+
+    /**
+     * hand the ring content to the consumer, head is advanced only past the consumed batches.
+     */
+    void drainTo(final Consumer<List<T>> consumer) {
+      long h = head.get();
+      long t = tail.get();
+      if (h == t) {
+        return;
+      }
+      int from = (int) (h & mask);
+      int to = (int) (t & mask);
+      if (from < to) {
+        consumer.accept(new RingSlice<T>(buffer, from, to));
+        consumed(h, t);
+      } else {
+        consumer.accept(new RingSlice<T>(buffer, from, buffer.length));
+        long wrap = h + buffer.length - from;
+        consumed(h, wrap);
+        if (to > 0) {
+          consumer.accept(new RingSlice<T>(buffer, 0, to));
+          consumed(wrap, t);
+        }
+      }
+    }
+
+    private void consumed(final long from, final long to) {
+      for (long i = from; i < to; i++) {
+        buffer[(int) (i & mask)] = null;
+      }
+      head.lazySet(to);
+    }
+
+  }
+
+  /**
+   * A read only view over a section of a ring buffer.
+   */
+  private static final class RingSlice<T> extends AbstractList<T> implements RandomAccess {
+
+    private final Object[] buffer;
+    private final int from;
+    private final int to;
+
+    RingSlice(final Object[] buffer, final int from, final int to) {
+      this.buffer = buffer;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public T get(final int index) {
+      if (index < 0 || index >= to - from) {
+        throw new IndexOutOfBoundsException("Invalid index " + index + ", size = " + (to - from));
+      }
+      return (T) buffer[from + index];
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+
+  }
+
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.ds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * Read only RTree, bulk loaded with the Sort-Tile-Recursive (STR) algorithm
+ * (Leutenegger, Lopez, Edgington, 1997).
+ *
+ * The tree is packed (all nodes except the last of each level are full) and stored in flat primitive arrays:
+ * node and entry bounding boxes are float arrays with numDims elements per box, and the children of a node
+ * are a contiguous range of the level below. This makes construction O(n log n) with no per entry objects
+ * (compared to the one at a time inserts of RTree), and search allocation free when using a Visitor.
+ *
+ * Rectangles are closed: coordinates are the lower bound and coordinates + dimensions the upper bound of every
+ * dimension, rectangles that touch overlap.
+ *
+ * This class is thread safe (immutable), the Builder is not.
+ *
+ * @author zoly
+ * @param <T> the type of entry to store in this RTree.
+ */
+public final class PackedRTree<T> {
+
+    public static final int DEFAULT_NODE_CAPACITY = 16;
+
+    /**
+     * receives the entries found by a search.
+     * @param <T> the entry type.
+     */
+    public interface Visitor<T> {
+        /**
+         * @param entry the entry overlapping the searched rectangle.
+         * @return false to stop the search.
+         */
+        boolean visit(T entry);
+    }
+
+    private final int numDims;
+    private final int size;
+    private final float[] entryMins;
+    private final float[] entryMaxs;
+    private final Object[] entries;
+    private final float[] nodeMins;
+    private final float[] nodeMaxs;
+    private final int[] childStarts;
+    private final int[] childEnds;
+    /**
+     * nodes with an index below nrLeafNodes have entries as children.
+     */
+    private final int nrLeafNodes;
+    private final int root;
+    private final int height;
+
+    private PackedRTree(final Builder<T> builder) {
+        this.numDims = builder.numDims;
+        this.size = builder.size;
+        final int nodeCapacity = builder.nodeCapacity;
+        final int nd = numDims;
+        // level 0, the entries sorted in STR order.
+        int[] order = strOrder(builder.mins, builder.maxs, size, nd, nodeCapacity);
+        entryMins = new float[size * nd];
+        entryMaxs = new float[size * nd];
+        entries = new Object[size];
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            System.arraycopy(builder.mins, from * nd, entryMins, i * nd, nd);
+            System.arraycopy(builder.maxs, from * nd, entryMaxs, i * nd, nd);
+            entries[i] = builder.entries[from];
+        }
+        // upper levels, each level is STR sorted before its parents are created.
+        int nrNodes = 0;
+        int levelSize = size;
+        while (levelSize > 1 || nrNodes == 0 && size > 0) {
+            levelSize = (levelSize + nodeCapacity - 1) / nodeCapacity;
+            nrNodes += levelSize;
+        }
+        nodeMins = new float[nrNodes * nd];
+        nodeMaxs = new float[nrNodes * nd];
+        childStarts = new int[nrNodes];
+        childEnds = new int[nrNodes];
+        int levelStart = 0;
+        int nrChildren = size;
+        int childLevelStart = 0;
+        float[] childMins = entryMins;
+        float[] childMaxs = entryMaxs;
+        int levels = 0;
+        while (levelStart < nrNodes) {
+            int nrLevelNodes = (nrChildren + nodeCapacity - 1) / nodeCapacity;
+            for (int i = 0; i < nrLevelNodes; i++) {
+                int node = levelStart + i;
+                int from = i * nodeCapacity;
+                int to = Math.min(nrChildren, from + nodeCapacity);
+                childStarts[node] = childLevelStart + from;
+                childEnds[node] = childLevelStart + to;
+                int nodeOffset = node * nd;
+                System.arraycopy(childMins, (childLevelStart + from) * nd, nodeMins, nodeOffset, nd);
+                System.arraycopy(childMaxs, (childLevelStart + from) * nd, nodeMaxs, nodeOffset, nd);
+                for (int c = childLevelStart + from + 1, l = childLevelStart + to; c < l; c++) {
+                    int childOffset = c * nd;
+                    for (int d = 0; d < nd; d++) {
+                        nodeMins[nodeOffset + d] = Math.min(nodeMins[nodeOffset + d], childMins[childOffset + d]);
+                        nodeMaxs[nodeOffset + d] = Math.max(nodeMaxs[nodeOffset + d], childMaxs[childOffset + d]);
+                    }
+                }
+            }
+            levels++;
+            if (nrLevelNodes > 1) {
+                sortLevel(levelStart, nrLevelNodes, nodeCapacity);
+            }
+            childLevelStart = levelStart;
+            childMins = nodeMins;
+            childMaxs = nodeMaxs;
+            nrChildren = nrLevelNodes;
+            levelStart += nrLevelNodes;
+        }
+        this.nrLeafNodes = size == 0 ? 0 : (size + nodeCapacity - 1) / nodeCapacity;
+        this.root = nrNodes - 1;
+        this.height = levels;
+    }
+
+    /**
+     * Reorders the nodes of a level in STR order, their children stay where they are.
+     */
+    private void sortLevel(final int levelStart, final int nrLevelNodes, final int nodeCapacity) {
+        final int nd = numDims;
+        float[] mins = Arrays.copyOfRange(nodeMins, levelStart * nd, (levelStart + nrLevelNodes) * nd);
+        float[] maxs = Arrays.copyOfRange(nodeMaxs, levelStart * nd, (levelStart + nrLevelNodes) * nd);
+        int[] order = strOrder(mins, maxs, nrLevelNodes, nd, nodeCapacity);
+        int[] starts = Arrays.copyOfRange(childStarts, levelStart, levelStart + nrLevelNodes);
+        int[] ends = Arrays.copyOfRange(childEnds, levelStart, levelStart + nrLevelNodes);
+        for (int i = 0; i < nrLevelNodes; i++) {
+            int from = order[i];
+            int to = levelStart + i;
+            System.arraycopy(mins, from * nd, nodeMins, to * nd, nd);
+            System.arraycopy(maxs, from * nd, nodeMaxs, to * nd, nd);
+            childStarts[to] = starts[from];
+            childEnds[to] = ends[from];
+        }
+    }
+
+    /**
+     * @return the Sort-Tile-Recursive order of the provided boxes.
+     */
+    static int[] strOrder(final float[] mins, final float[] maxs, final int n, final int nd,
+            final int nodeCapacity) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        long[] keys = new long[n];
+        strOrder(mins, maxs, nd, nodeCapacity, order, keys, 0, n, 0);
+        return order;
+    }
+
+    /**
+     * sorts order[from, to) by the box centers of dimension dim, then slices the range into
+     * ceil(nrPages^(1/remainingDims)) slabs, and recursively sorts every slab by the next dimension.
+     */
+    private static void strOrder(final float[] mins, final float[] maxs, final int nd, final int nodeCapacity,
+            final int[] order, final long[] keys, final int from, final int to, final int dim) {
+        int n = to - from;
+        if (n <= 1) {
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            int idx = order[i];
+            int offset = idx * nd + dim;
+            // sum of the bounds (2 * center), encoded as a sortable int and combined with the index.
+            int bits = Float.floatToIntBits(mins[offset] + maxs[offset]);
+            bits ^= (bits >> 31) & 0x7fffffff;
+            keys[i] = ((long) bits << 32) | idx;
+        }
+        Arrays.sort(keys, from, to);
+        for (int i = from; i < to; i++) {
+            order[i] = (int) keys[i];
+        }
+        int remainingDims = nd - dim;
+        if (remainingDims <= 1 || n <= nodeCapacity) {
+            return;
+        }
+        int nrPages = (n + nodeCapacity - 1) / nodeCapacity;
+        int nrSlabs = (int) Math.ceil(Math.pow(nrPages, 1d / remainingDims));
+        int slabSize = nodeCapacity * ((nrPages + nrSlabs - 1) / nrSlabs);
+        for (int s = from; s < to; s += slabSize) {
+            strOrder(mins, maxs, nd, nodeCapacity, order, keys, s, Math.min(to, s + slabSize), dim + 1);
+        }
+    }
+
+    /**
+     * Searches for the entries overlapping with the given rectangle. This method does not allocate.
+     *
+     * @param coords the lower bound of every dimension.
+     * @param dimensions the rectangle size in every dimension.
+     * @param visitor receives every entry found, can stop the search by returning false.
+     * @return false if the search was stopped by the visitor.
+     */
+    public boolean search(final float[] coords, final float[] dimensions, final Visitor<? super T> visitor) {
+        assert (coords.length == numDims);
+        assert (dimensions.length == numDims);
+        if (root < 0 || !overlaps(nodeMins, nodeMaxs, root, coords, dimensions)) {
+            return true;
+        }
+        return search(root, coords, dimensions, visitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean search(final int node, final float[] coords, final float[] dimensions,
+            final Visitor<? super T> visitor) {
+        int from = childStarts[node];
+        int to = childEnds[node];
+        if (node < nrLeafNodes) {
+            for (int e = from; e < to; e++) {
+                if (overlaps(entryMins, entryMaxs, e, coords, dimensions) && !visitor.visit((T) entries[e])) {
+                    return false;
+                }
+            }
+        } else {
+            for (int c = from; c < to; c++) {
+                if (overlaps(nodeMins, nodeMaxs, c, coords, dimensions) && !search(c, coords, dimensions, visitor)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Searches for the entries overlapping with the given rectangle.
+     *
+     * @param coords the lower bound of every dimension.
+     * @param dimensions the rectangle size in every dimension.
+     * @return the entries whose rectangles overlap with the given rectangle.
+     */
+    @Nonnull
+    public List<T> search(final float[] coords, final float[] dimensions) {
+        final List<T> result = new ArrayList<>();
+        search(coords, dimensions, (final T entry) -> result.add(entry));
+        return result;
+    }
+
+    private boolean overlaps(final float[] mins, final float[] maxs, final int box,
+            final float[] coords, final float[] dimensions) {
+        int offset = box * numDims;
+        for (int d = 0; d < numDims; d++) {
+            float min = coords[d];
+            if (maxs[offset + d] < min || mins[offset + d] > min + dimensions[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of entries in this tree.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of dimensions of the tree.
+     */
+    public int getNumDims() {
+        return numDims;
+    }
+
+    /**
+     * @return the number of node levels (0 for an empty tree).
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return "PackedRTree{" + "numDims=" + numDims + ", size=" + size + ", height=" + height + '}';
+    }
+
+    public static <T> Builder<T> newBuilder(final int numDims) {
+        return new Builder<>(numDims);
+    }
+
+    /**
+     * Accumulates the entries to bulk load.
+     * @param <T> the entry type.
+     */
+    public static final class Builder<T> {
+
+        private final int numDims;
+        private int nodeCapacity;
+        private float[] mins;
+        private float[] maxs;
+        private Object[] entries;
+        private int size;
+
+        private Builder(final int numDims) {
+            if (numDims < 1) {
+                throw new IllegalArgumentException("Invalid number of dimensions " + numDims);
+            }
+            this.numDims = numDims;
+            this.nodeCapacity = DEFAULT_NODE_CAPACITY;
+            this.mins = new float[16 * numDims];
+            this.maxs = new float[16 * numDims];
+            this.entries = new Object[16];
+            this.size = 0;
+        }
+
+        public Builder<T> withNodeCapacity(final int pNodeCapacity) {
+            if (pNodeCapacity < 2) {
+                throw new IllegalArgumentException("Node capacity must be at least 2, not " + pNodeCapacity);
+            }
+            this.nodeCapacity = pNodeCapacity;
+            return this;
+        }
+
+        /**
+         * @param coords the lower bound of every dimension.
+         * @param dimensions the rectangle size in every dimension.
+         * @param entry the entry.
+         */
+        public Builder<T> add(final float[] coords, final float[] dimensions, final T entry) {
+            assert (coords.length == numDims);
+            assert (dimensions.length == numDims);
+            ensureCapacity();
+            int offset = size * numDims;
+            for (int d = 0; d < numDims; d++) {
+                mins[offset + d] = coords[d];
+                maxs[offset + d] = coords[d] + dimensions[d];
+            }
+            entries[size++] = entry;
+            return this;
+        }
+
+        /**
+         * 2 dimensional add, without coordinate arrays.
+         */
+        public Builder<T> add(final float x, final float y, final float width, final float height, final T entry) {
+            if (numDims != 2) {
+                throw new IllegalStateException("Not a 2 dimensional tree " + numDims);
+            }
+            ensureCapacity();
+            int offset = size * 2;
+            mins[offset] = x;
+            mins[offset + 1] = y;
+            maxs[offset] = x + width;
+            maxs[offset + 1] = y + height;
+            entries[size++] = entry;
+            return this;
+        }
+
+        private void ensureCapacity() {
+            if (size == entries.length) {
+                int newCapacity = size * 2;
+                entries = Arrays.copyOf(entries, newCapacity);
+                mins = Arrays.copyOf(mins, newCapacity * numDims);
+                maxs = Arrays.copyOf(maxs, newCapacity * numDims);
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public PackedRTree<T> build() {
+            return new PackedRTree<>(this);
+        }
+
+    }
+
+}
@@ -15,7 +15,6 @@
  * License along with this program; if not, write to the Free Software
  * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
  */
-
 package org.spf4j.io;
 
 import com.google.common.annotations.Beta;
@@ -23,13 +22,13 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.ListIterator;
-import java.util.Map;
+import java.util.List;
 import java.util.ServiceLoader;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Set;
+import java.util.WeakHashMap;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.ParametersAreNonnullByDefault;
 import org.slf4j.Logger;
@@ -37,6 +36,11 @@ import org.slf4j.LoggerFactory;
 import org.spf4j.base.Pair;
 
 /**
+ * Appender registry, the appender of a type is the appender of the first registered type it is assignable to,
+ * where types are registered before their super types.
+ *
+ * The registry is a immutable list (copy on write), and the lookup results are cached per class via a ClassValue,
+ * so get is lock free. Registry changes invalidate only the cached lookups of the subtypes of the changed type.
  *
  * @author zoly
  */
@@ -46,9 +50,16 @@ public final class ConfigurableAppenderSupplier implements ObjectAppenderSupplie
 
   private static final Logger LOG = LoggerFactory.getLogger(ConfigurableAppenderSupplier.class);
 
-  private final ConcurrentMap<Class<?>, ObjectAppender<?>> lookup;
+  private final ClassValue<ObjectAppender<?>> lookup;
+
+  /**
+   * the classes that have a cached lookup, weak so that classes can be unloaded.
+   */
+  private final Set<Class<?>> lookedUp;
 
-  private final LinkedList<Pair<Class<?>, ObjectAppender<?>>> registry;
+  private final Object sync;
+
+  private volatile List<Pair<Class<?>, ObjectAppender<?>>> registry;
 
   public static final Predicate<Class<?>> NO_FILTER = new Predicate<Class<?>>() {
     @Override
@@ -64,8 +75,23 @@ public final class ConfigurableAppenderSupplier implements ObjectAppenderSupplie
   @SuppressWarnings("unchecked")
   public ConfigurableAppenderSupplier(final boolean registerFromServiceLoader, final Predicate<Class<?>> except,
           final ObjectAppender<?>... appenders) {
-    lookup = new ConcurrentHashMap<>();
-    registry = new LinkedList<>();
+    sync = new Object();
+    registry = Collections.emptyList();
+    lookedUp = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    lookup = new ClassValue<ObjectAppender<?>>() {
+      @Override
+      protected ObjectAppender<?> computeValue(final Class<?> type) {
+        // record the class before reading the registry, so that a concurrent registry change
+        // will either be seen here, or will invalidate this computation.
+        lookedUp.add(type);
+        for (Pair<Class<?>, ObjectAppender<?>> entry : registry) {
+          if (entry.getFirst().isAssignableFrom(type)) {
+            return entry.getSecond();
+          }
+        }
+        return ObjectAppender.TOSTRING_APPENDER;
+      }
+    };
     if (registerFromServiceLoader) {
       @SuppressWarnings("unchecked")
       ServiceLoader<ObjectAppender<?>> load = (ServiceLoader) ServiceLoader.load(ObjectAppender.class);
@@ -107,7 +133,7 @@ public final class ConfigurableAppenderSupplier implements ObjectAppenderSupplie
 
   @SuppressWarnings("unchecked")
   public <T> int register(final Class<T> type, final ObjectAppender<? super T>... appenders) {
-    synchronized (registry) {
+    synchronized (sync) {
       int i = 0;
       for (ObjectAppender<? super T> appender : appenders) {
         if (!register(type, appender)) {
@@ -116,91 +142,91 @@ public final class ConfigurableAppenderSupplier implements ObjectAppenderSupplie
           i++;
         }
       }
-      lookup.clear();
       return i;
     }
   }
 
   public <T> void replace(final Class<T> type,
           final Function<ObjectAppender<? super T>, ObjectAppender<? super T>> replace) {
-    synchronized (registry) {
-      ListIterator<Pair<Class<?>, ObjectAppender<?>>> listIterator = registry.listIterator();
-      while (listIterator.hasNext()) {
-        Pair<Class<?>, ObjectAppender<?>> next = listIterator.next();
-        final Class<?> nType = next.getFirst();
-        if (nType == type) {
-          listIterator.set((Pair) Pair.of(type, replace.apply((ObjectAppender) next.getSecond())));
-          lookup.clear();
+    synchronized (sync) {
+      List<Pair<Class<?>, ObjectAppender<?>>> newRegistry = new ArrayList<>(registry);
+      for (int i = 0, l = newRegistry.size(); i < l; i++) {
+        Pair<Class<?>, ObjectAppender<?>> next = newRegistry.get(i);
+        if (next.getFirst() == type) {
+          newRegistry.set(i, (Pair) Pair.of(type, replace.apply((ObjectAppender) next.getSecond())));
+          update(newRegistry, type);
           return;
         }
       }
-      registry.add((Pair) Pair.of(type, replace.apply((ObjectAppender) ObjectAppender.TOSTRING_APPENDER)));
-      lookup.clear();
+      newRegistry.add((Pair) Pair.of(type, replace.apply((ObjectAppender) ObjectAppender.TOSTRING_APPENDER)));
+      update(newRegistry, type);
     }
   }
 
   @SuppressWarnings("unchecked")
   @CheckReturnValue
   private <T> boolean register(final Class<T> type, final ObjectAppender<? super T> appender) {
-    synchronized (registry) {
-      ListIterator<Pair<Class<?>, ObjectAppender<?>>> listIterator = registry.listIterator();
-      while (listIterator.hasNext()) {
-        Pair<Class<?>, ObjectAppender<?>> next = listIterator.next();
-        final Class<?> nType = next.getFirst();
+    synchronized (sync) {
+      List<Pair<Class<?>, ObjectAppender<?>>> newRegistry = new ArrayList<>(registry.size() + 1);
+      newRegistry.addAll(registry);
+      int l = newRegistry.size();
+      int i = 0;
+      for (; i < l; i++) {
+        final Class<?> nType = newRegistry.get(i).getFirst();
         if (nType.isAssignableFrom(type)) {
           if (nType == type) {
             return false;
           }
-          listIterator.previous();
-          listIterator.add((Pair) Pair.of(type, appender));
-          return true;
+          break;
         }
       }
-      listIterator.add((Pair) Pair.of(type, appender));
+      newRegistry.add(i, (Pair) Pair.of(type, appender));
+      update(newRegistry, type);
+      return true;
     }
-    return true;
   }
 
   public boolean unregister(final Class<?> type) {
-    synchronized (registry) {
-      ListIterator<Pair<Class<?>, ObjectAppender<?>>> listIterator = registry.listIterator();
-      while (listIterator.hasNext()) {
-        Pair<Class<?>, ObjectAppender<?>> item = listIterator.next();
-          if (item.getFirst() == type) {
-            listIterator.remove();
-            lookup.clear();
-            return true;
-          }
+    synchronized (sync) {
+      List<Pair<Class<?>, ObjectAppender<?>>> newRegistry = new ArrayList<>(registry);
+      for (int i = 0, l = newRegistry.size(); i < l; i++) {
+        if (newRegistry.get(i).getFirst() == type) {
+          newRegistry.remove(i);
+          update(newRegistry, type);
+          return true;
+        }
       }
       return false;
     }
   }
 
-  @Override
-  @SuppressWarnings("unchecked")
-  public <T> ObjectAppender<? super T> get(final Class<T> type) {
-    ObjectAppender<?> appender = lookup.get(type);
-    if (appender != null) {
-      return (ObjectAppender) appender;
-    } else {
-      synchronized (registry) {
-        for (Map.Entry<Class<?>, ObjectAppender<?>> entry : registry) {
-          Class<?> clasz = entry.getKey();
-          if (clasz.isAssignableFrom(type)) {
-            ObjectAppender<?> value = entry.getValue();
-            lookup.put(type, value);
-            return (ObjectAppender) value;
-          }
+  /**
+   * publish a new registry, and invalidate the cached lookups of the changed type subtypes
+   * (the only ones the change can affect).
+   */
+  private void update(final List<Pair<Class<?>, ObjectAppender<?>>> newRegistry, final Class<?> changedType) {
+    registry = Collections.unmodifiableList(newRegistry);
+    synchronized (lookedUp) {
+      Iterator<Class<?>> iterator = lookedUp.iterator();
+      while (iterator.hasNext()) {
+        Class<?> clasz = iterator.next();
+        if (changedType.isAssignableFrom(clasz)) {
+          iterator.remove();
+          lookup.remove(clasz);
         }
       }
-      lookup.put(type, ObjectAppender.TOSTRING_APPENDER);
-      return ObjectAppender.TOSTRING_APPENDER;
     }
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> ObjectAppender<? super T> get(final Class<T> type) {
+    return (ObjectAppender) lookup.get(type);
+  }
+
   @Override
   public String toString() {
-    return "ConfigurableAppenderSupplier{" + "lookup=" + lookup + ", registry=" + registry + '}';
+    return "ConfigurableAppenderSupplier{" + "registry=" + registry + '}';
   }
 
-}
\ No newline at end of file
+}
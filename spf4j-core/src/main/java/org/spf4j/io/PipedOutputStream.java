@@ -34,8 +34,8 @@ import org.spf4j.recyclable.impl.ArraySuppliers;
 /**
  * Equivalent to Java piped input/output stream.
  *
- * This implementation supports timeouts, timeout are specified by setting the org.spf4j.base.runtime.DEADLINE thread
- * local.
+ * This implementation supports timeouts, timeout are specified by setting the current thread deadline with
+ * org.spf4j.base.Runtime.setDeadline.
  *
  * Implementation supports multiple readers and writers.
  *
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.appenders;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.io.JsonEncoder;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.impl.MinimalPrettyPrinter;
+
+/**
+ * Writes avro objects as JSON to a Appendable.
+ *
+ * Datum writers are cached by schema (they are thread safe), json encoders (expensive to create, they compile
+ * the schema into a grammar) are cached by thread and schema. Every thread has one jackson generator
+ * that writes directly to the target Appendable, so there is no char to byte to char conversion.
+ * Up to spf4j.avroJsonAppender.cacheSize schemas are cached, the ones above the limit get a new writer/encoder
+ * for every append.
+ *
+ * @author zoly
+ */
+final class AvroJsonAppender<T> {
+
+    private static final int CACHE_SIZE = Integer.getInteger("spf4j.avroJsonAppender.cacheSize", 256);
+
+    private static final EncoderFactory EF = new EncoderFactory();
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Function<Schema, DatumWriter<T>> writerFactory;
+
+    private final ConcurrentMap<Schema, DatumWriter<T>> writers;
+
+    private final ThreadLocal<EncodingContext> contexts;
+
+    AvroJsonAppender(final Function<Schema, DatumWriter<T>> writerFactory) {
+        this.writerFactory = writerFactory;
+        this.writers = new ConcurrentHashMap<>();
+        this.contexts = new ThreadLocal<EncodingContext>() {
+            @Override
+            protected EncodingContext initialValue() {
+                return new EncodingContext();
+            }
+        };
+    }
+
+    void append(final T object, final Schema schema, final Appendable appendTo) throws IOException {
+        DatumWriter<T> writer = getWriter(schema);
+        EncodingContext ctx = contexts.get();
+        if (ctx.target.appendable != null) {
+            // re-entrant append (a toString invoked during serialization), cannot use the thread context.
+            try (EncodingContext tmpCtx = new EncodingContext()) {
+                tmpCtx.write(writer, object, schema, appendTo);
+            }
+            return;
+        }
+        boolean written = false;
+        try {
+            ctx.write(writer, object, schema, appendTo);
+            written = true;
+        } finally {
+            if (!written) {
+                // the generator and encoder state is undefined after a failure.
+                contexts.remove();
+            }
+        }
+    }
+
+    private DatumWriter<T> getWriter(final Schema schema) {
+        DatumWriter<T> writer = writers.get(schema);
+        if (writer == null) {
+            writer = writerFactory.apply(schema);
+            if (writers.size() < CACHE_SIZE) {
+                DatumWriter<T> existing = writers.putIfAbsent(schema, writer);
+                if (existing != null) {
+                    writer = existing;
+                }
+            }
+        }
+        return writer;
+    }
+
+    private static final class EncodingContext implements AutoCloseable {
+
+        private final RetargetableWriter target;
+
+        private final JsonGenerator generator;
+
+        private final Map<Schema, JsonEncoder> encoders;
+
+        EncodingContext() {
+            this.target = new RetargetableWriter();
+            try {
+                this.generator = JSON_FACTORY.createJsonGenerator(target);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot create a generator for " + target, ex);
+            }
+            this.generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            // consecutive root values must not be separated.
+            MinimalPrettyPrinter pp = new MinimalPrettyPrinter();
+            pp.setRootValueSeparator("");
+            this.generator.setPrettyPrinter(pp);
+            this.encoders = new HashMap<>();
+        }
+
+        <T> void write(final DatumWriter<T> writer, final T object, final Schema schema, final Appendable appendTo)
+                throws IOException {
+            JsonEncoder encoder = getEncoder(schema);
+            target.appendable = appendTo;
+            try {
+                writer.write(object, encoder);
+                encoder.flush();
+            } finally {
+                target.appendable = null;
+            }
+        }
+
+        private JsonEncoder getEncoder(final Schema schema) throws IOException {
+            JsonEncoder encoder = encoders.get(schema);
+            if (encoder == null) {
+                encoder = EF.jsonEncoder(schema, generator);
+                if (encoders.size() < CACHE_SIZE) {
+                    encoders.put(schema, encoder);
+                }
+            }
+            return encoder;
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+
+    }
+
+    /**
+     * A writer that appends to the Appendable currently set, without any buffering
+     * (the generator does the buffering).
+     */
+    private static final class RetargetableWriter extends Writer {
+
+        @Nullable
+        private Appendable appendable;
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            if (appendable instanceof StringBuilder) {
+                ((StringBuilder) appendable).append(cbuf, off, len);
+            } else {
+                appendable.append(CharBuffer.wrap(cbuf), off, off + len);
+            }
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) throws IOException {
+            appendable.append(str, off, off + len);
+        }
+
+        @Override
+        public void write(final int c) throws IOException {
+            appendable.append((char) c);
+        }
+
+        @Override
+        public void flush() {
+            // nothing to flush.
+        }
+
+        @Override
+        public void close() {
+            appendable = null;
+        }
+
+    }
+
+}
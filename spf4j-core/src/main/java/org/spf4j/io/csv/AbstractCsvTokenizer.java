@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.csv;
+
+import java.io.IOException;
+
+/**
+ * Base for the buffer based CSV tokenizers.
+ *
+ * Tokenizers scan their buffers in bulk and expose the elements as CharSequence views over the buffer,
+ * the element is only copied when it contains escaped quotes (or non ASCII characters for UTF-8 buffers).
+ * Element views are valid until the next element is read.
+ *
+ * The token stream and the CsvHandler callbacks are the same as the ones produced by the
+ * character at a time implementation in CharSeparatedValues.
+ *
+ * @author zoly
+ */
+abstract class AbstractCsvTokenizer implements CsvReader {
+
+  protected final char separator;
+
+  /**
+   * set by readElement when the element was terminated by a '\r' which is the last character of the input.
+   */
+  protected boolean eofAfterCr;
+
+  private TokenType currentToken;
+
+  private TokenType nextToken;
+
+  AbstractCsvTokenizer(final char separator) {
+    this.separator = separator;
+  }
+
+  /**
+   * read the next element, a following "\r\n" is consumed as one end of line.
+   * @return the character that terminated the element (separator, '\n', '\r' or the unexpected character
+   * following a quoted element) or -1 if the end of the input has been reached.
+   */
+  abstract int readElement() throws IOException;
+
+  final <T> T read(final CsvHandler<T> handler) throws IOException {
+    boolean start = true;
+    while (true) {
+      if (start) {
+        handler.startRow();
+        start = false;
+      }
+      int c = readElement();
+      handler.element(getElement());
+      if (c == '\r') {
+        handler.endRow();
+        if (eofAfterCr) {
+          break;
+        }
+        start = true;
+      } else if (c == '\n') {
+        handler.endRow();
+        start = true;
+      } else if (c != separator) {
+        if (c < 0) {
+          break;
+        } else {
+          throw new IOException("Unexpected character " + c);
+        }
+      }
+    }
+    return handler.eof();
+  }
+
+  private void readCurrentElement() throws IOException {
+    int next = readElement();
+    currentToken = TokenType.ELEMENT;
+    if (next == '\r') {
+      nextToken = eofAfterCr ? TokenType.END_DOCUMENT : TokenType.END_ROW;
+    } else if (next == '\n') {
+      nextToken = TokenType.END_ROW;
+    } else if (next != separator) {
+      if (next < 0) {
+        nextToken = TokenType.END_DOCUMENT;
+      } else {
+        throw new IOException("Unexpected character " + next);
+      }
+    }
+  }
+
+  @Override
+  public final TokenType next() throws IOException {
+    if (currentToken == null) {
+      if (nextToken == null) {
+        readCurrentElement();
+        TokenType result = currentToken;
+        if (result != TokenType.END_DOCUMENT) {
+          currentToken = null;
+        }
+        return result;
+      } else {
+        TokenType result = nextToken;
+        if (result != TokenType.END_DOCUMENT) {
+          nextToken = null;
+        }
+        return result;
+      }
+    } else {
+      return currentToken;
+    }
+  }
+
+}
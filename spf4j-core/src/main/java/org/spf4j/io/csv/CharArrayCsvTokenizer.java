@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * CSV tokenizer over a char array, optionally refilled in bulk from a Reader.
+ *
+ * When reading from a Reader, the buffer is compacted (or grown when a element does not fit) so that
+ * the current element is always contiguous in the buffer.
+ *
+ * @author zoly
+ */
+final class CharArrayCsvTokenizer extends AbstractCsvTokenizer {
+
+  @Nullable
+  private final Reader reader;
+
+  private char[] buf;
+
+  private int pos;
+
+  private int limit;
+
+  private boolean exhausted;
+
+  private final CharArraySlice slice;
+
+  private final StringBuilder scratch;
+
+  private CharSequence element;
+
+  CharArrayCsvTokenizer(final char separator, final char[] buf, final int from, final int to) {
+    super(separator);
+    this.reader = null;
+    this.buf = buf;
+    this.pos = from;
+    this.limit = to;
+    this.slice = new CharArraySlice();
+    this.scratch = new StringBuilder();
+    this.element = slice;
+  }
+
+  CharArrayCsvTokenizer(final char separator, final Reader reader, final int bufferSize) {
+    super(separator);
+    this.reader = reader;
+    this.buf = new char[bufferSize];
+    this.pos = 0;
+    this.limit = 0;
+    this.slice = new CharArraySlice();
+    this.scratch = new StringBuilder();
+    this.element = slice;
+  }
+
+  /**
+   * skip the byte order mark if present.
+   */
+  void skipBom() throws IOException {
+    if (pos >= limit) {
+      pos -= fill(pos);
+      if (pos >= limit) {
+        return;
+      }
+    }
+    if (buf[pos] == CharSeparatedValues.UTF_BOM) {
+      pos++;
+    }
+  }
+
+  /**
+   * Move the characters from keepFrom to the beginning of the buffer (growing it if needed) and read more.
+   * @return the number of positions the buffer content was shifted with, all buffer indexes need to be adjusted
+   * by this value. if no characters were added (limit did not change) the end of the input has been reached.
+   */
+  private int fill(final int keepFrom) throws IOException {
+    if (reader == null || exhausted) {
+      return 0;
+    }
+    int keep = limit - keepFrom;
+    if (keepFrom == 0 && keep == buf.length) {
+      buf = Arrays.copyOf(buf, buf.length * 2);
+    } else if (keepFrom > 0) {
+      System.arraycopy(buf, keepFrom, buf, 0, keep);
+    }
+    limit = keep;
+    int read;
+    do {
+      read = reader.read(buf, limit, buf.length - limit);
+    } while (read == 0);
+    if (read < 0) {
+      exhausted = true;
+    } else {
+      limit += read;
+    }
+    return keepFrom;
+  }
+
+  @Override
+  int readElement() throws IOException {
+    eofAfterCr = false;
+    int p = pos;
+    if (p >= limit) {
+      p -= fill(p);
+      if (p >= limit) {
+        pos = limit;
+        element = slice.set(buf, limit, limit);
+        return -1;
+      }
+    }
+    boolean escaped = false;
+    int es; // element start
+    int ee; // element end
+    int c;
+    if (buf[p] == '"') {
+      int from = p + 1;
+      int i = from;
+      while (true) {
+        char[] b = buf;
+        int l = limit;
+        while (i < l && b[i] != '"') {
+          i++;
+        }
+        if (i >= l) {
+          int shift = fill(from);
+          i -= shift;
+          from -= shift;
+          if (i >= limit) {
+            // eof in quoted element.
+            es = from;
+            ee = limit;
+            p = limit;
+            c = -1;
+            break;
+          }
+          continue;
+        }
+        if (i + 1 >= l) {
+          int shift = fill(from);
+          i -= shift;
+          from -= shift;
+          if (i + 1 >= limit) {
+            // eof after the closing quote.
+            es = from;
+            ee = i;
+            p = limit;
+            c = -1;
+            break;
+          }
+        }
+        char c2 = buf[i + 1];
+        if (c2 == '"') {
+          if (!escaped) {
+            scratch.setLength(0);
+            escaped = true;
+          }
+          scratch.append(buf, from, i + 1 - from);
+          from = i + 2;
+          i = from;
+          continue;
+        }
+        es = from;
+        ee = i;
+        p = i + 2;
+        c = c2;
+        break;
+      }
+    } else {
+      es = p;
+      int i = p;
+      final char sep = separator;
+      while (true) {
+        char[] b = buf;
+        int l = limit;
+        char ch = 0;
+        while (i < l) {
+          ch = b[i];
+          if (ch == sep || ch == '\n' || ch == '\r') {
+            break;
+          }
+          i++;
+        }
+        if (i < l) {
+          c = ch;
+          ee = i;
+          p = i + 1;
+          break;
+        }
+        int shift = fill(es);
+        i -= shift;
+        es -= shift;
+        if (i >= limit) {
+          c = -1;
+          ee = limit;
+          p = limit;
+          break;
+        }
+      }
+    }
+    if (c == '\r') {
+      if (p >= limit) {
+        int shift = fill(es);
+        p -= shift;
+        ee -= shift;
+        es -= shift;
+        if (p >= limit) {
+          eofAfterCr = true;
+        }
+      }
+      if (p < limit && buf[p] == '\n') {
+        p++;
+      }
+    }
+    pos = p;
+    if (escaped) {
+      scratch.append(buf, es, ee - es);
+      element = scratch;
+    } else {
+      element = slice.set(buf, es, ee);
+    }
+    return c;
+  }
+
+  @Override
+  public CharSequence getElement() {
+    return element;
+  }
+
+  @Override
+  public String toString() {
+    return "CharArrayCsvTokenizer{" + "separator=" + separator + ", reader=" + reader + ", pos=" + pos
+            + ", limit=" + limit + '}';
+  }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.csv;
+
+/**
+ * A reusable CharSequence view over a section of a char array.
+ *
+ * @author zoly
+ */
+final class CharArraySlice implements CharSequence {
+
+  private char[] buffer;
+
+  private int from;
+
+  private int length;
+
+  CharArraySlice() {
+    this.buffer = new char[0];
+  }
+
+  CharArraySlice set(final char[] pbuffer, final int pfrom, final int to) {
+    this.buffer = pbuffer;
+    this.from = pfrom;
+    this.length = to - pfrom;
+    return this;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(final int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Invalid index " + index + ", length = " + length);
+    }
+    return buffer[from + index];
+  }
+
+  @Override
+  public CharSequence subSequence(final int start, final int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException("Invalid range " + start + ", " + end + ", length = " + length);
+    }
+    return new String(buffer, from + start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    return new String(buffer, from, length);
+  }
+
+}
@@ -20,18 +20,21 @@ package org.spf4j.io.csv;
 import com.google.common.base.Preconditions;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import gnu.trove.map.hash.THashMap;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.ParametersAreNonnullByDefault;
 import org.spf4j.base.Strings;
@@ -132,18 +135,43 @@ public final class CharSeparatedValues {
 
   public <T> T read(final File file, final Charset charset,
           final CsvMapHandler<T> handler) throws IOException {
-    try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), charset))) {
-      return read(br, handler);
+    try (Reader reader = new InputStreamReader(new FileInputStream(file), charset)) {
+      return read(reader, handler);
     }
   }
 
   public <T> T read(final File file, final Charset charset,
           final CsvHandler<T> handler) throws IOException {
-    try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), charset))) {
-      return read(br, handler);
+    try (Reader reader = new InputStreamReader(new FileInputStream(file), charset)) {
+      return read(reader, handler);
     }
   }
 
+  /**
+   * Read a UTF-8 CSV file in parallel.
+   * The file is memory mapped and split at row boundaries (see Utf8CsvRowSpliterator) in chunks of
+   * PARALLEL_CHUNK_SIZE bytes, the chunks are parsed on the fork join pool of the stream.
+   * The separator must be a ASCII character, and quotes must appear only in quoted elements (RFC 4180).
+   *
+   * @param file the UTF-8 encoded CSV file.
+   * @param ordered if true the stream is ordered (use forEachOrdered to receive the rows in file order),
+   * if false the rows are delivered as soon as they are parsed.
+   * @return a parallel stream of rows, every row is a new List. a trailing line terminator does not produce
+   * a empty row.
+   */
+  public Stream<List<String>> readRowsParallelUtf8(final File file, final boolean ordered) throws IOException {
+    return StreamSupport.stream(rowSpliteratorUtf8(file, ordered), true);
+  }
+
+  /**
+   * @param file the UTF-8 encoded CSV file.
+   * @param ordered if true the spliterator will report the ORDERED characteristic.
+   * @return a spliterator over the rows of the file that splits at row boundaries.
+   */
+  public Spliterator<List<String>> rowSpliteratorUtf8(final File file, final boolean ordered) throws IOException {
+    return Utf8CsvRowSpliterator.create(separator, file, PARALLEL_CHUNK_SIZE, ordered);
+  }
+
   public List<Map<String, String>> read(final Reader preader) throws IOException {
     return read(preader, new ToListMapHandler());
   }
@@ -161,14 +189,42 @@ public final class CharSeparatedValues {
     return read(reader, new OneRowHandler<>(handler));
   }
 
+  /**
+   * reads CSV format until EOF of reader.
+   * The reader is read in bulk (READ_BUFFER_SIZE chars at a time), elements are handed to the handler
+   * as views over the read buffer.
+   */
   public <T> T read(final Reader preader,
           final CsvHandler<T> handler) throws IOException {
-    PushbackReader reader = new PushbackReader(preader);
-    int firstChar = reader.read();
-    if (firstChar != UTF_BOM && firstChar >= 0) {
-      reader.unread(firstChar);
-    }
-    return readNoBom(reader, handler);
+    CharArrayCsvTokenizer tokenizer = new CharArrayCsvTokenizer(separator, preader, READ_BUFFER_SIZE);
+    tokenizer.skipBom();
+    return tokenizer.read(handler);
+  }
+
+  /**
+   * read CSV from a section of a char array.
+   * @param buf the buffer containing the CSV text.
+   * @param from the start index (inclusive).
+   * @param to the end index (exclusive).
+   * @param handler the handler to receive the parsed content, elements are views over buf.
+   */
+  public <T> T read(final char[] buf, final int from, final int to,
+          final CsvHandler<T> handler) throws IOException {
+    CharArrayCsvTokenizer tokenizer = new CharArrayCsvTokenizer(separator, buf, from, to);
+    tokenizer.skipBom();
+    return tokenizer.read(handler);
+  }
+
+  /**
+   * read UTF-8 encoded CSV from the remaining bytes of a buffer (heap, direct or memory mapped).
+   * The separator must be a ASCII character. The position of the buffer is not changed.
+   * @param utf8 the UTF-8 encoded CSV content.
+   * @param handler the handler to receive the parsed content, ASCII elements are views over the buffer.
+   */
+  public <T> T readUtf8(final ByteBuffer utf8, final CsvHandler<T> handler) throws IOException {
+    Utf8CsvTokenizer tokenizer = new Utf8CsvTokenizer(separator, utf8);
+    tokenizer.skipBom();
+    return tokenizer.read(handler);
   }
 
   /**
@@ -177,7 +233,18 @@ public final class CharSeparatedValues {
   public static final int UTF_BOM = '\uFEFF';
 
   /**
-   * reads CSV format until EOF of reader.
+   * the buffer size (chars) used when reading from a Reader.
+   */
+  public static final int READ_BUFFER_SIZE = Integer.getInteger("spf4j.csv.readBufferSize", 8192);
+
+  /**
+   * the chunk size (bytes) a file is split into for parallel parsing.
+   */
+  public static final int PARALLEL_CHUNK_SIZE = Integer.getInteger("spf4j.csv.parallelChunkSize", 8 * 1024 * 1024);
+
+  /**
+   * reads CSV format until EOF of reader, one character at a time.
+   * The reader is not read beyond the end of the CSV content.
    *
    * @param <T>
    * @param preader
@@ -247,13 +314,27 @@ public final class CharSeparatedValues {
   }
 
 
+  /**
+   * @param preader the reader to read CSV from, it is read in bulk, as such the CSV must extend to the EOF
+   * of the reader.
+   * @return a CSV token reader.
+   */
   public CsvReader reader(final Reader preader) throws IOException {
-    PushbackReader reader = new PushbackReader(preader);
-    int firstChar = reader.read();
-    if (firstChar != UTF_BOM && firstChar >= 0) {
-      reader.unread(firstChar);
-    }
-    return readerNoBOM(reader);
+    CharArrayCsvTokenizer tokenizer = new CharArrayCsvTokenizer(separator, preader, READ_BUFFER_SIZE);
+    tokenizer.skipBom();
+    return tokenizer;
+  }
+
+  public CsvReader reader(final char[] buf, final int from, final int to) throws IOException {
+    CharArrayCsvTokenizer tokenizer = new CharArrayCsvTokenizer(separator, buf, from, to);
+    tokenizer.skipBom();
+    return tokenizer;
+  }
+
+  public CsvReader readerUtf8(final ByteBuffer utf8) {
+    Utf8CsvTokenizer tokenizer = new Utf8CsvTokenizer(separator, utf8);
+    tokenizer.skipBom();
+    return tokenizer;
   }
 
   public CsvReader readerNoBOM(final PushbackReader reader) {
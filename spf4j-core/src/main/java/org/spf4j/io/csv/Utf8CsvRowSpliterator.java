@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * A spliterator over the rows of a memory mapped UTF-8 CSV file, that splits at row boundaries.
+ *
+ * The file is divided in chunks of chunkSize bytes, the row boundaries are found with two parallel passes:
+ * <ol>
+ * <li>the quote count parity of every chunk is computed, the prefix parity tells if a chunk starts
+ * within a quoted element.</li>
+ * <li>in every chunk the first line terminator that is not within a quoted element is a row boundary.</li>
+ * </ol>
+ * Chunks without a row boundary (rows longer than chunkSize) are merged into the previous chunk.
+ * The quote parity works for CSV where quotes appear only in quoted elements (RFC 4180), for malformed content
+ * the rows might differ from a sequential read.
+ *
+ * The rows are new List instances, a trailing line terminator does not produce a empty row.
+ *
+ * @author zoly
+ */
+final class Utf8CsvRowSpliterator implements Spliterator<List<String>> {
+
+  private final char separator;
+
+  private final ByteBuffer[] chunks;
+
+  private final int characteristics;
+
+  private int from;
+
+  private final int to;
+
+  private Utf8CsvTokenizer tokenizer;
+
+  private int lastRowSize;
+
+  private Utf8CsvRowSpliterator(final char separator, final ByteBuffer[] chunks, final int from, final int to,
+          final int characteristics) {
+    this.separator = separator;
+    this.chunks = chunks;
+    this.from = from;
+    this.to = to;
+    this.characteristics = characteristics;
+    this.lastRowSize = 8;
+  }
+
+  static Utf8CsvRowSpliterator create(final char separator, final File file, final int chunkSize,
+          final boolean ordered) throws IOException {
+    if (separator >= 0x80) {
+      throw new IllegalArgumentException("Separator must be ASCII for UTF-8 parsing, not " + separator);
+    }
+    ByteBuffer[] chunks;
+    try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      chunks = mapRowChunks(ch, chunkSize);
+    }
+    return new Utf8CsvRowSpliterator(separator, chunks, 0, chunks.length,
+            ordered ? NONNULL | IMMUTABLE | ORDERED : NONNULL | IMMUTABLE);
+  }
+
+  /**
+   * @return the file content mapped in chunks that start and end at row boundaries.
+   */
+  static ByteBuffer[] mapRowChunks(final FileChannel ch, final int chunkSize) throws IOException {
+    final long size = ch.size();
+    final int nrChunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+    if (nrChunks == 1) {
+      return new ByteBuffer[] {ch.map(FileChannel.MapMode.READ_ONLY, 0, size)};
+    }
+    final MappedByteBuffer[] nominal = new MappedByteBuffer[nrChunks];
+    final boolean[] oddQuotes = new boolean[nrChunks];
+    final long[] boundaries = new long[nrChunks + 1];
+    try {
+      IntStream.range(0, nrChunks).parallel().forEach((i) -> {
+        long start = (long) i * chunkSize;
+        try {
+          nominal[i] = ch.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+        oddQuotes[i] = (countQuotes(nominal[i]) & 1) == 1;
+      });
+      final boolean[] startsInQuote = new boolean[nrChunks];
+      for (int i = 1; i < nrChunks; i++) {
+        startsInQuote[i] = startsInQuote[i - 1] ^ oddQuotes[i - 1];
+      }
+      IntStream.range(1, nrChunks).parallel().forEach((i) -> {
+        int boundary = findRowBoundary(nominal[i], startsInQuote[i]);
+        boundaries[i] = boundary < 0 ? -1 : (long) i * chunkSize + boundary;
+      });
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+    boundaries[0] = 0;
+    boundaries[nrChunks] = size;
+    List<ByteBuffer> result = new ArrayList<>(nrChunks);
+    long start = 0;
+    for (int i = 1; i <= nrChunks; i++) {
+      long end = boundaries[i];
+      if (end > start) {
+        if (end - start > Integer.MAX_VALUE) {
+          throw new IOException("Row(s) between " + start + " and " + end + " too large to map");
+        }
+        result.add(ch.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+        start = end;
+      }
+    }
+    return result.toArray(new ByteBuffer[result.size()]);
+  }
+
+  static int countQuotes(final ByteBuffer bb) {
+    int count = 0;
+    for (int i = bb.position(), l = bb.limit(); i < l; i++) {
+      if (bb.get(i) == '"') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the offset after the first line terminator which is not in a quoted element, or -1 if there is none.
+   */
+  static int findRowBoundary(final ByteBuffer bb, final boolean startInQuote) {
+    boolean inQuote = startInQuote;
+    for (int i = bb.position(), l = bb.limit(); i < l; i++) {
+      byte b = bb.get(i);
+      if (b == '"') {
+        inQuote = !inQuote;
+      } else if (!inQuote) {
+        if (b == '\n') {
+          return i + 1;
+        } else if (b == '\r' && i + 1 < l && bb.get(i + 1) != '\n') {
+          // a '\r' at the end of the chunk might be followed by a '\n' in the next one, so it is skipped.
+          return i + 1;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public boolean tryAdvance(final Consumer<? super List<String>> action) {
+    while (from < to) {
+      if (tokenizer == null) {
+        tokenizer = new Utf8CsvTokenizer(separator, chunks[from]);
+        if (from == 0) {
+          tokenizer.skipBom();
+        }
+      }
+      List<String> row = readRow();
+      if (row != null) {
+        action.accept(row);
+        return true;
+      }
+      tokenizer = null;
+      from++;
+    }
+    return false;
+  }
+
+  private List<String> readRow() {
+    List<String> row = new ArrayList<>(lastRowSize);
+    try {
+      while (true) {
+        switch (tokenizer.next()) {
+          case ELEMENT:
+            row.add(tokenizer.getElement().toString());
+            break;
+          case END_ROW:
+            lastRowSize = row.size();
+            return row;
+          case END_DOCUMENT:
+            if (row.size() > 1 || (row.size() == 1 && !row.get(0).isEmpty())) {
+              return row;
+            }
+            return null;
+          default:
+            throw new IllegalStateException("Invalid token");
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public Spliterator<List<String>> trySplit() {
+    if (tokenizer != null || to - from < 2) {
+      return null;
+    }
+    int mid = (from + to) >>> 1;
+    Utf8CsvRowSpliterator prefix = new Utf8CsvRowSpliterator(separator, chunks, from, mid, characteristics);
+    from = mid;
+    return prefix;
+  }
+
+  /**
+   * @return the number of remaining bytes, a (over)estimate of the number of rows.
+   */
+  @Override
+  public long estimateSize() {
+    long result = 0;
+    for (int i = from; i < to; i++) {
+      result += chunks[i].remaining();
+    }
+    return result;
+  }
+
+  @Override
+  public int characteristics() {
+    return characteristics;
+  }
+
+  @Override
+  public String toString() {
+    return "Utf8CsvRowSpliterator{" + "separator=" + separator + ", from=" + from + ", to=" + to + '}';
+  }
+
+}
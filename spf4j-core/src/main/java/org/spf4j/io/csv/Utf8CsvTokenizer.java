@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.csv;
+
+import java.nio.ByteBuffer;
+
+/**
+ * CSV tokenizer over UTF-8 encoded bytes (heap or direct/memory mapped buffers).
+ *
+ * The structural characters (separator, quote, CR, LF) are ASCII, and in UTF-8 no byte of a multi byte sequence
+ * is ASCII, so the bytes can be scanned without decoding. ASCII elements are exposed as a view over the buffer,
+ * elements with non ASCII characters or escaped quotes are decoded into a reusable StringBuilder.
+ * The position of the buffer is not modified.
+ *
+ * @author zoly
+ */
+final class Utf8CsvTokenizer extends AbstractCsvTokenizer {
+
+  private final ByteBuffer buf;
+
+  private final byte sep;
+
+  private final int limit;
+
+  private int pos;
+
+  private final AsciiSlice slice;
+
+  private final StringBuilder scratch;
+
+  private CharSequence element;
+
+  Utf8CsvTokenizer(final char separator, final ByteBuffer buf) {
+    super(separator);
+    if (separator >= 0x80) {
+      throw new IllegalArgumentException("Separator must be ASCII for UTF-8 parsing, not " + separator);
+    }
+    this.sep = (byte) separator;
+    this.buf = buf;
+    this.pos = buf.position();
+    this.limit = buf.limit();
+    this.slice = new AsciiSlice(buf);
+    this.scratch = new StringBuilder();
+    this.element = slice;
+  }
+
+  /**
+   * skip the UTF-8 byte order mark if present.
+   */
+  void skipBom() {
+    if (limit - pos >= 3 && buf.get(pos) == (byte) 0xEF && buf.get(pos + 1) == (byte) 0xBB
+            && buf.get(pos + 2) == (byte) 0xBF) {
+      pos += 3;
+    }
+  }
+
+  int getPosition() {
+    return pos;
+  }
+
+  @Override
+  int readElement() {
+    eofAfterCr = false;
+    final ByteBuffer b = buf;
+    final int l = limit;
+    int p = pos;
+    if (p >= l) {
+      element = slice.set(l, l);
+      return -1;
+    }
+    boolean decoded = false;
+    int nonAscii = 0;
+    int es;
+    int ee;
+    int c;
+    if (b.get(p) == '"') {
+      int from = p + 1;
+      int i = from;
+      while (true) {
+        byte bt = 0;
+        while (i < l) {
+          bt = b.get(i);
+          if (bt == '"') {
+            break;
+          }
+          nonAscii |= bt;
+          i++;
+        }
+        if (i >= l) {
+          es = from;
+          ee = l;
+          p = l;
+          c = -1;
+          break;
+        }
+        if (i + 1 >= l) {
+          es = from;
+          ee = i;
+          p = l;
+          c = -1;
+          break;
+        }
+        byte c2 = b.get(i + 1);
+        if (c2 == '"') {
+          if (!decoded) {
+            scratch.setLength(0);
+            decoded = true;
+          }
+          decode(b, from, i + 1, scratch);
+          from = i + 2;
+          i = from;
+          continue;
+        }
+        es = from;
+        ee = i;
+        p = i + 2;
+        c = c2 < 0 ? c2 & 0xFF : c2;
+        break;
+      }
+    } else {
+      int i = p;
+      final byte s = sep;
+      byte bt = 0;
+      while (i < l) {
+        bt = b.get(i);
+        if (bt == s || bt == '\n' || bt == '\r') {
+          break;
+        }
+        nonAscii |= bt;
+        i++;
+      }
+      es = p;
+      ee = i;
+      if (i < l) {
+        c = bt;
+        p = i + 1;
+      } else {
+        c = -1;
+        p = l;
+      }
+    }
+    if (c == '\r') {
+      if (p >= l) {
+        eofAfterCr = true;
+      } else if (b.get(p) == '\n') {
+        p++;
+      }
+    }
+    pos = p;
+    if (decoded) {
+      decode(b, es, ee, scratch);
+      element = scratch;
+    } else if (nonAscii < 0) {
+      scratch.setLength(0);
+      decode(b, es, ee, scratch);
+      element = scratch;
+    } else {
+      element = slice.set(es, ee);
+    }
+    return c;
+  }
+
+  /**
+   * Decode UTF-8, malformed sequences are replaced with U+FFFD.
+   */
+  static void decode(final ByteBuffer b, final int from, final int to, final StringBuilder dest) {
+    int i = from;
+    while (i < to) {
+      int b0 = b.get(i) & 0xFF;
+      if (b0 < 0x80) {
+        dest.append((char) b0);
+        i++;
+      } else if (b0 >= 0xC2 && b0 < 0xE0 && i + 1 < to && isContinuation(b.get(i + 1))) {
+        dest.append((char) (((b0 & 0x1F) << 6) | (b.get(i + 1) & 0x3F)));
+        i += 2;
+      } else if (b0 >= 0xE0 && b0 < 0xF0 && i + 2 < to && isContinuation(b.get(i + 1))
+              && isContinuation(b.get(i + 2))) {
+        dest.append((char) (((b0 & 0x0F) << 12) | ((b.get(i + 1) & 0x3F) << 6) | (b.get(i + 2) & 0x3F)));
+        i += 3;
+      } else if (b0 >= 0xF0 && b0 < 0xF5 && i + 3 < to && isContinuation(b.get(i + 1))
+              && isContinuation(b.get(i + 2)) && isContinuation(b.get(i + 3))) {
+        dest.appendCodePoint(((b0 & 0x07) << 18) | ((b.get(i + 1) & 0x3F) << 12)
+                | ((b.get(i + 2) & 0x3F) << 6) | (b.get(i + 3) & 0x3F));
+        i += 4;
+      } else {
+        dest.append('\uFFFD');
+        i++;
+      }
+    }
+  }
+
+  private static boolean isContinuation(final byte b) {
+    return (b & 0xC0) == 0x80;
+  }
+
+  @Override
+  public CharSequence getElement() {
+    return element;
+  }
+
+  @Override
+  public String toString() {
+    return "Utf8CsvTokenizer{" + "separator=" + separator + ", pos=" + pos + ", limit=" + limit + '}';
+  }
+
+  /**
+   * A reusable CharSequence view over a ASCII section of a byte buffer.
+   */
+  private static final class AsciiSlice implements CharSequence {
+
+    private final ByteBuffer buffer;
+
+    private int from;
+
+    private int length;
+
+    AsciiSlice(final ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    AsciiSlice set(final int pfrom, final int to) {
+      this.from = pfrom;
+      this.length = to - pfrom;
+      return this;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException("Invalid index " + index + ", length = " + length);
+      }
+      return (char) buffer.get(from + index);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+      if (start < 0 || end > length || start > end) {
+        throw new IndexOutOfBoundsException("Invalid range " + start + ", " + end + ", length = " + length);
+      }
+      char[] chars = new char[end - start];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = (char) buffer.get(from + start + i);
+      }
+      return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+      return subSequence(0, length).toString();
+    }
+
+  }
+
+}
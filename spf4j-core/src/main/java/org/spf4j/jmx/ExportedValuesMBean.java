@@ -20,6 +20,7 @@ package org.spf4j.jmx;
 
 
 import com.google.common.base.Throwables;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -92,6 +93,13 @@ public final class ExportedValuesMBean implements DynamicMBean {
         return objectName;
     }
 
+    /**
+     * @return the exported values, used for bulk reads (see Registry.forEachExportedValue).
+     */
+    Collection<ExportedValue<?>> getExportedValues() {
+        return exportedValues.values();
+    }
+
     /** {@inheritDoc} */
     @Override
     public Object getAttribute(final String name) throws AttributeNotFoundException {
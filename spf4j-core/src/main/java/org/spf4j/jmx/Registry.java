@@ -23,9 +23,13 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.function.BiConsumer;
 import javax.annotation.Nullable;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
@@ -33,10 +37,14 @@ import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.spf4j.base.Strings;
 
 public final class Registry {
 
+    private static final Logger LOG = LoggerFactory.getLogger(Registry.class);
+
     private Registry() { }
 
     private static final MBeanServer MBEAN_SERVER = ManagementFactory.getPlatformMBeanServer();
@@ -105,6 +113,54 @@ public final class Registry {
         return result;
     }
 
+    /**
+     * Invokes the consumer for every exported value of every registered ExportedValuesMBean.
+     * The registry lock is held only while collecting the registered mbeans, the consumer is invoked without it.
+     * @param consumer - the consumer of (mbean name, exported value) pairs.
+     */
+    public static void forEachExportedValue(final BiConsumer<ObjectName, ExportedValue<?>> consumer) {
+        List<ExportedValuesMBean> mbeans;
+        synchronized (Registry.class) {
+            mbeans = new ArrayList<>(REGISTERED.size());
+            for (Object mbean : REGISTERED.values()) {
+                if (mbean instanceof ExportedValuesMBean) {
+                    mbeans.add((ExportedValuesMBean) mbean);
+                }
+            }
+        }
+        for (ExportedValuesMBean mbean : mbeans) {
+            ObjectName objectName = mbean.getObjectName();
+            for (ExportedValue<?> value : mbean.getExportedValues()) {
+                consumer.accept(objectName, value);
+            }
+        }
+    }
+
+    /**
+     * Reads all exported values of all registered ExportedValuesMBeans in one pass.
+     * Values that fail to read are logged and omitted.
+     * @return mbean name -> (attribute name -> value), the values are the ones returned via JMX.
+     */
+    public static Map<ObjectName, Map<String, Object>> snapshot() {
+        Map<ObjectName, Map<String, Object>> result = new LinkedHashMap<>();
+        forEachExportedValue((objectName, value) -> {
+            Object val;
+            try {
+                val = value.get();
+            } catch (RuntimeException ex) {
+                LOG.debug("Cannot read {} {}", objectName, value.getName(), ex);
+                return;
+            }
+            Map<String, Object> values = result.get(objectName);
+            if (values == null) {
+                values = new HashMap<>();
+                result.put(objectName, values);
+            }
+            values.put(value.getName(), val);
+        });
+        return result;
+    }
+
     public static ExportedValuesMBean export(final Object object) {
         final Class<? extends Object> aClass = object.getClass();
         return export(aClass.getPackage().getName(), aClass.getSimpleName(), object);
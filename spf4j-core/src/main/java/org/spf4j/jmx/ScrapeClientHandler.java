@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.jmx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spf4j.base.AbstractRunnable;
+import org.spf4j.base.Reflections;
+import org.spf4j.ds.UpdateablePriorityQueue;
+import org.spf4j.io.tcp.ClientHandler;
+import org.spf4j.io.tcp.DeadlineAction;
+
+/**
+ * TcpServer client handler that serves all numeric and boolean exported values (see Registry.forEachExportedValue)
+ * in the prometheus text format, one "domain_name_attribute value" line per value (booleans as 1/0).
+ *
+ * A HTTP GET/HEAD request gets a HTTP response (headers only for HEAD), anything else terminated by a new line
+ * (or by closing the client output) gets the plain text payload. The request is read and the response written
+ * in the executor (not in the selector thread), connections not served within timeoutMillis are closed.
+ *
+ * Usage: new TcpServer(executor, new ScrapeClientHandler(5000), port, 10).startAsync();
+ *
+ * @author zoly
+ */
+@ParametersAreNonnullByDefault
+public final class ScrapeClientHandler implements ClientHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScrapeClientHandler.class);
+
+    private static final int MAX_REQUEST_SIZE = 4096;
+
+    private enum RequestType {
+        PLAIN, HTTP_GET, HTTP_HEAD
+    }
+
+    private final int timeoutMillis;
+
+    public ScrapeClientHandler(final int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void handle(final Selector serverSelector, final SocketChannel clientChannel,
+            final ExecutorService exec, final BlockingQueue<Runnable> tasksToRunBySelector,
+            final UpdateablePriorityQueue<DeadlineAction> deadlineActions) {
+        final UpdateablePriorityQueue.ElementRef timeout = deadlineActions.add(
+                new DeadlineAction(System.currentTimeMillis() + timeoutMillis, new CloseOnTimeout(clientChannel)));
+        exec.execute(new AbstractRunnable(true) {
+            @Override
+            public void doRun() throws IOException {
+                try {
+                    serve(clientChannel);
+                } finally {
+                    // deadline actions can only be touched by the selector thread.
+                    if (tasksToRunBySelector.offer(timeout::remove)) {
+                        serverSelector.wakeup();
+                    }
+                }
+            }
+        });
+    }
+
+    static void serve(final SocketChannel clientChannel) throws IOException {
+        try (SocketChannel channel = clientChannel) {
+            channel.configureBlocking(true);
+            RequestType requestType = readRequest(channel);
+            StringBuilder body = new StringBuilder(4096);
+            writeMetrics(body);
+            byte[] bodyBytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            if (requestType != RequestType.PLAIN) {
+                String header = "HTTP/1.1 200 OK\r\nContent-Type: text/plain; version=0.0.4; charset=utf-8\r\n"
+                        + "Content-Length: " + bodyBytes.length + "\r\nConnection: close\r\n\r\n";
+                writeFully(channel, ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+            }
+            if (requestType != RequestType.HTTP_HEAD) {
+                writeFully(channel, ByteBuffer.wrap(bodyBytes));
+            }
+        }
+    }
+
+    /**
+     * @return the type of the request.
+     */
+    private static RequestType readRequest(final SocketChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_REQUEST_SIZE);
+        byte[] data = buffer.array();
+        RequestType type = RequestType.PLAIN;
+        int firstLineEnd = -1;
+        while (buffer.hasRemaining()) {
+            int from = buffer.position();
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+            for (int i = from, l = buffer.position(); i < l; i++) {
+                if (data[i] == '\n') {
+                    if (firstLineEnd < 0) {
+                        firstLineEnd = i;
+                        if (startsWith(data, "GET ")) {
+                            type = RequestType.HTTP_GET;
+                        } else if (startsWith(data, "HEAD ")) {
+                            type = RequestType.HTTP_HEAD;
+                        } else {
+                            return RequestType.PLAIN;
+                        }
+                    } else if (data[i - 1] == '\n' || (data[i - 1] == '\r' && data[i - 2] == '\n')) {
+                        // end of the HTTP headers.
+                        return type;
+                    }
+                }
+            }
+        }
+        return type;
+    }
+
+    private static boolean startsWith(final byte[] data, final String prefix) {
+        for (int i = 0, l = prefix.length(); i < l; i++) {
+            if (data[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeFully(final SocketChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * write all numeric and boolean exported values.
+     * @param to - the destination.
+     */
+    public static void writeMetrics(final StringBuilder to) {
+        Registry.forEachExportedValue((objectName, value) -> {
+            Class<?> valueClass = Reflections.primitiveToWrapper(value.getValueClass());
+            if (valueClass != Boolean.class && !Number.class.isAssignableFrom(valueClass)) {
+                return;
+            }
+            Object val;
+            try {
+                val = value.get();
+            } catch (RuntimeException ex) {
+                LOG.debug("Cannot read {} {}", objectName, value.getName(), ex);
+                return;
+            }
+            if (val == null) {
+                return;
+            }
+            appendMetricName(to, objectName, value.getName());
+            to.append(' ');
+            appendValue(to, val);
+            to.append('\n');
+        });
+    }
+
+    private static void appendMetricName(final StringBuilder to, final ObjectName objectName, final String attrName) {
+        appendSanitized(to, objectName.getDomain());
+        String name = objectName.getKeyProperty("name");
+        if (name != null) {
+            to.append('_');
+            appendSanitized(to, name);
+        }
+        to.append('_');
+        appendSanitized(to, attrName);
+    }
+
+    private static void appendSanitized(final StringBuilder to, final String str) {
+        for (int i = 0, l = str.length(); i < l; i++) {
+            char c = str.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_') {
+                to.append(c);
+            } else {
+                to.append('_');
+            }
+        }
+    }
+
+    private static void appendValue(final StringBuilder to, final Object val) {
+        if (val instanceof Boolean) {
+            to.append(((Boolean) val) ? '1' : '0');
+        } else if (val instanceof Long || val instanceof Integer || val instanceof Short || val instanceof Byte) {
+            to.append(((Number) val).longValue());
+        } else if (val instanceof Double || val instanceof Float) {
+            double dval = ((Number) val).doubleValue();
+            if (dval == Double.POSITIVE_INFINITY) {
+                to.append("+Inf");
+            } else if (dval == Double.NEGATIVE_INFINITY) {
+                to.append("-Inf");
+            } else {
+                to.append(dval);
+            }
+        } else {
+            to.append(val);
+        }
+    }
+
+    private static final class CloseOnTimeout extends AbstractRunnable {
+
+        private final SocketChannel channel;
+
+        CloseOnTimeout(final SocketChannel channel) {
+            super(true);
+            this.channel = channel;
+        }
+
+        @Override
+        public void doRun() throws IOException {
+            if (channel.isOpen()) {
+                LOG.warn("Timed out serving {}", channel);
+                channel.close();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ScrapeClientHandler{" + "timeoutMillis=" + timeoutMillis + '}';
+    }
+
+}
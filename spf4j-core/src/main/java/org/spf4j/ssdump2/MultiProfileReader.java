@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.ssdump2;
+
+import com.google.common.io.CountingInputStream;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.spf4j.ssdump2.avro.ASample;
+import org.spf4j.stackmonitor.SampleNode;
+
+/**
+ * Reads the labeled profiles written by MultiProfileWriter.
+ *
+ * The index is loaded from the end of the file, if the file was not closed properly (no index),
+ * the profile offsets are recovered with a sequential scan, an incomplete last profile is ignored.
+ *
+ * @author zoly
+ */
+public final class MultiProfileReader {
+
+    private final File file;
+
+    private final Map<String, Long> index;
+
+    private final boolean indexed;
+
+    public MultiProfileReader(final File file) throws IOException {
+        this.file = file;
+        Map<String, Long> idx = readIndex(file);
+        if (idx == null) {
+            this.index = scan(file);
+            this.indexed = false;
+        } else {
+            this.index = idx;
+            this.indexed = true;
+        }
+    }
+
+    /**
+     * @return the profile labels, in write order.
+     */
+    public Set<String> getLabels() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    /**
+     * @return true if the index was read from the file, false if the file was scanned.
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * @param label - the profile label.
+     * @return the profile or null if there is no profile with this label.
+     */
+    @Nullable
+    public SampleNode read(final String label) throws IOException {
+        Long offset = index.get(label);
+        if (offset == null) {
+            return null;
+        }
+        try (FileInputStream fis = new FileInputStream(file)) {
+            fis.getChannel().position(offset);
+            BinaryDecoder decoder = DecoderFactory.get().directBinaryDecoder(new BufferedInputStream(fis), null);
+            int type = decoder.readInt();
+            if (type != MultiProfileWriter.PROFILE) {
+                throw new IOException("No profile at " + offset + " in " + file + ", found " + type);
+            }
+            decoder.skipString();
+            return readSamples(decoder);
+        }
+    }
+
+    private static SampleNode readSamples(final BinaryDecoder decoder) throws IOException {
+        final long nrSamples = decoder.readLong();
+        final SpecificDatumReader<ASample> reader = new SpecificDatumReader<>(ASample.SCHEMA$);
+        return Converter.convert(new Iterator<ASample>() {
+
+            private long i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < nrSamples;
+            }
+
+            @Override
+            public ASample next() {
+                if (i >= nrSamples) {
+                    throw new NoSuchElementException();
+                }
+                i++;
+                try {
+                    return reader.read(null, decoder);
+                } catch (IOException ex) {
+                    NoSuchElementException e = new NoSuchElementException();
+                    e.addSuppressed(ex);
+                    throw e;
+                }
+            }
+        });
+    }
+
+    @Nullable
+    private static Map<String, Long> readIndex(final File file) throws IOException {
+        long indexOffset;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            int trailerSize = Long.BYTES + MultiProfileWriter.END_MAGIC.length;
+            if (length < MultiProfileWriter.MAGIC.length + trailerSize) {
+                return null;
+            }
+            raf.seek(length - trailerSize);
+            indexOffset = raf.readLong();
+            byte[] endMagic = new byte[MultiProfileWriter.END_MAGIC.length];
+            raf.readFully(endMagic);
+            if (!Arrays.equals(endMagic, MultiProfileWriter.END_MAGIC)
+                    || indexOffset < MultiProfileWriter.MAGIC.length || indexOffset >= length - trailerSize) {
+                return null;
+            }
+        }
+        try (FileInputStream fis = new FileInputStream(file)) {
+            fis.getChannel().position(indexOffset);
+            BinaryDecoder decoder = DecoderFactory.get().directBinaryDecoder(new BufferedInputStream(fis), null);
+            if (decoder.readInt() != MultiProfileWriter.INDEX) {
+                return null;
+            }
+            long nrEntries = decoder.readLong();
+            Map<String, Long> result = new LinkedHashMap<>((int) nrEntries * 2);
+            for (long i = 0; i < nrEntries; i++) {
+                result.put(decoder.readString(), decoder.readLong());
+            }
+            return result;
+        }
+    }
+
+    private static Map<String, Long> scan(final File file) throws IOException {
+        Map<String, Long> result = new LinkedHashMap<>();
+        try (CountingInputStream is = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] magic = new byte[MultiProfileWriter.MAGIC.length];
+            BinaryDecoder decoder = DecoderFactory.get().directBinaryDecoder(is, null);
+            decoder.readFixed(magic);
+            if (!Arrays.equals(magic, MultiProfileWriter.MAGIC)) {
+                throw new IOException("Not a multi profile file " + file);
+            }
+            final SpecificDatumReader<ASample> reader = new SpecificDatumReader<>(ASample.SCHEMA$);
+            ASample sample = null;
+            try {
+                while (true) {
+                    long offset = is.getCount();
+                    if (decoder.readInt() != MultiProfileWriter.PROFILE) {
+                        break;
+                    }
+                    String label = decoder.readString();
+                    long nrSamples = decoder.readLong();
+                    for (long i = 0; i < nrSamples; i++) {
+                        sample = reader.read(sample, decoder);
+                    }
+                    result.put(label, offset);
+                }
+            } catch (EOFException ex) {
+                // end of file or incomplete last profile.
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "MultiProfileReader{" + "file=" + file + ", indexed=" + indexed + ", profiles=" + index.size() + '}';
+    }
+
+}
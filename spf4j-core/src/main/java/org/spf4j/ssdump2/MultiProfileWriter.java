@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.ssdump2;
+
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.spf4j.base.Method;
+import org.spf4j.ssdump2.avro.ASample;
+import org.spf4j.stackmonitor.SampleNode;
+
+/**
+ * Writes several labeled profiles into one indexed file (.ssdump3).
+ *
+ * File layout:
+ * <pre>
+ * MAGIC
+ * (PROFILE label:string nrSamples:long ASample*)*
+ * INDEX nrEntries:long (label:string offset:long)*
+ * indexOffset:8 bytes big endian
+ * END_MAGIC
+ * </pre>
+ * The profile entries are encoded with avro binary encoding, the profile offsets are relative to the beginning of
+ * the file. The index is written when the writer is closed, a file that was not closed can still be read
+ * sequentially by MultiProfileReader.
+ *
+ * @author zoly
+ */
+public final class MultiProfileWriter implements Flushable, Closeable {
+
+    static final byte[] MAGIC = "SSDUMP3\n".getBytes(StandardCharsets.US_ASCII);
+
+    static final byte[] END_MAGIC = "SSDUMP3E".getBytes(StandardCharsets.US_ASCII);
+
+    static final int PROFILE = 0;
+
+    static final int INDEX = 1;
+
+    private final File file;
+
+    private final CountingOutputStream os;
+
+    private final BinaryEncoder encoder;
+
+    private final SpecificDatumWriter<ASample> writer;
+
+    private final Map<String, Long> index;
+
+    private boolean closed;
+
+    public MultiProfileWriter(final File file) throws IOException {
+        this.file = file;
+        this.os = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        this.encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+        this.writer = new SpecificDatumWriter<>(ASample.SCHEMA$);
+        this.index = new LinkedHashMap<>();
+        this.closed = false;
+        os.write(MAGIC);
+    }
+
+    /**
+     * Append a profile.
+     * @param label - the profile label, if a label is written more than once, the index will point to the last one.
+     * @param profile - the profile to write.
+     */
+    public synchronized void write(final String label, final SampleNode profile) throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed " + this);
+        }
+        final List<ASample> samples = new ArrayList<>();
+        Converter.convert(Method.ROOT, profile, -1, 0, (final ASample object, final long deadline) -> {
+            samples.add(object);
+        });
+        long offset = os.getCount();
+        encoder.writeInt(PROFILE);
+        encoder.writeString(label);
+        encoder.writeLong(samples.size());
+        for (ASample sample : samples) {
+            writer.write(sample, encoder);
+        }
+        index.put(label, offset);
+    }
+
+    public synchronized int getNrProfiles() {
+        return index.size();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        encoder.flush();
+    }
+
+    /**
+     * writes the index and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (CountingOutputStream stream = os) {
+            long indexOffset = stream.getCount();
+            encoder.writeInt(INDEX);
+            encoder.writeLong(index.size());
+            for (Map.Entry<String, Long> entry : index.entrySet()) {
+                encoder.writeString(entry.getKey());
+                encoder.writeLong(entry.getValue());
+            }
+            encoder.flush();
+            stream.write(ByteBuffer.allocate(Long.BYTES).putLong(indexOffset).array());
+            stream.write(END_MAGIC);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MultiProfileWriter{" + "file=" + file + ", closed=" + closed + '}';
+    }
+
+}
@@ -28,7 +28,10 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Arrays;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.spf4j.base.Throwables;
 
 /**
@@ -38,6 +41,10 @@ import org.spf4j.base.Throwables;
  * 1) No HashMap is created during sampling. Resulting in less garbage generated by sampling.
  * 2) Stack trace for the sampling Thread is not created at all, saving some time and creating less garbage.
  *
+ * Optionally samples can be attributed to a per thread context (like the active trace span of the thread),
+ * the context is resolved by the provided function, which should be cheap (like a map lookup), since it is
+ * invoked for every sampled thread.
+ *
  * @author zoly
  */
 public final class FastStackCollector extends AbstractStackCollector {
@@ -55,6 +62,9 @@ public final class FastStackCollector extends AbstractStackCollector {
 
     private final Predicate<Thread> threadFilter;
 
+    @Nullable
+    private final Function<Thread, Consumer<StackTraceElement[]>> threadContext;
+
     public FastStackCollector(final boolean collectForMain, final String ... xtraIgnoredThreads) {
         this(createNameBasedFilter(collectForMain, xtraIgnoredThreads));
     }
@@ -71,7 +81,18 @@ public final class FastStackCollector extends AbstractStackCollector {
     }
 
     public FastStackCollector(final Predicate<Thread> threadFilter) {
+        this(threadFilter, null);
+    }
+
+    /**
+     * @param threadFilter - threads to ignore.
+     * @param threadContext - resolves the context (if any, can return null) a sample of the thread will also
+     * be handed to.
+     */
+    public FastStackCollector(final Predicate<Thread> threadFilter,
+            @Nullable final Function<Thread, Consumer<StackTraceElement[]>> threadContext) {
         this.threadFilter = threadFilter;
+        this.threadContext = threadContext;
     }
 
 
@@ -171,6 +192,12 @@ public final class FastStackCollector extends AbstractStackCollector {
                 StackTraceElement[] stackTrace = stackDump[i];
                 if (stackTrace != null && stackTrace.length > 0) {
                     addSample(stackTrace);
+                    if (threadContext != null) {
+                        Consumer<StackTraceElement[]> ctx = threadContext.apply(requestFor[i]);
+                        if (ctx != null) {
+                            ctx.accept(stackTrace);
+                        }
+                    }
                 } else {
                     addSample(new StackTraceElement[] {
                             new StackTraceElement("Thread", requestFor[i].getName(), "", 0)
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.text;
+
+import java.io.IOException;
+import java.text.ChoiceFormat;
+import java.text.DateFormat;
+import java.text.FieldPosition;
+import java.text.Format;
+import java.text.NumberFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A thread safe, compiled form of a MessageFormat pattern.
+ *
+ * The pattern is parsed once, the subformats created by the pattern are used as prototypes,
+ * every thread formats with its own clones (created on first use), the number and date formatters for arguments
+ * without a format type are thread local as well.
+ * The JDK Format API writes only to a StringBuffer and requires a FieldPosition, subformat output is written
+ * to a thread local StringBuffer (with a reused thread local FieldPosition) and appended to the destination
+ * from there, instead of creating a String for every formatted argument.
+ *
+ * The output is the same as the output of MessageFormat.format(arguments, result, null).
+ * compile caches the compiled formats by locale and pattern, up to spf4j.messageFormat.cacheSize patterns
+ * per locale, patterns above the limit are compiled on every invocation.
+ * formatPattern(pattern, locale, arguments) formats the patterns above the limit with a instance confined
+ * to the invocation, that uses the pattern subformats directly, without thread locals or clones.
+ *
+ * @author zoly
+ */
+public final class CompiledMessageFormat {
+
+  private static final int CACHE_SIZE = Integer.getInteger("spf4j.messageFormat.cacheSize", 1024);
+
+  private static final ConcurrentMap<Locale, ConcurrentMap<String, CompiledMessageFormat>> CACHE
+          = new ConcurrentHashMap<>();
+
+  private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+    @Override
+    protected Scratch initialValue() {
+      return new Scratch();
+    }
+  };
+
+  private final String pattern;
+
+  private final Locale locale;
+
+  /**
+   * the pattern with the format elements taken out.
+   */
+  private final String text;
+
+  private final int[] offsets;
+
+  private final int[] argumentNumbers;
+
+  /**
+   * the subformats defined in the pattern (null for elements without format type), never used directly.
+   */
+  private final Format[] prototypes;
+
+  /**
+   * per thread formatters: clones of the prototypes, followed by the default number and date format.
+   * null for instances confined to a single format invocation, they use the prototypes directly.
+   */
+  @Nullable
+  private final ThreadLocal<Format[]> formatters;
+
+  private CompiledMessageFormat(final String pattern, final Locale locale, final boolean shared) {
+    this.pattern = pattern;
+    this.locale = locale;
+    MessageFormat fmt = new MessageFormat(pattern, locale);
+    this.text = fmt.getText();
+    FormatInfo[] infos = fmt.getFormatInfos();
+    this.offsets = new int[infos.length];
+    this.argumentNumbers = new int[infos.length];
+    this.prototypes = new Format[infos.length];
+    for (int i = 0; i < infos.length; i++) {
+      FormatInfo info = infos[i];
+      offsets[i] = info.getOffset();
+      argumentNumbers[i] = info.getArgumentNumber();
+      prototypes[i] = info.getFormat();
+    }
+    if (shared) {
+      this.formatters = new ThreadLocal<Format[]>() {
+        @Override
+        protected Format[] initialValue() {
+          return new Format[prototypes.length + 2];
+        }
+      };
+    } else {
+      this.formatters = null;
+    }
+  }
+
+  /**
+   * @param pattern the MessageFormat pattern.
+   * @param locale the locale for formatting numbers and dates.
+   * @return the compiled pattern.
+   * @exception IllegalArgumentException if the pattern is invalid.
+   */
+  @Nonnull
+  public static CompiledMessageFormat compile(@Nonnull final String pattern, @Nonnull final Locale locale) {
+    ConcurrentMap<String, CompiledMessageFormat> lCache = getCache(locale);
+    CompiledMessageFormat result = lCache.get(pattern);
+    if (result == null) {
+      result = new CompiledMessageFormat(pattern, locale, true);
+      if (lCache.size() < CACHE_SIZE) {
+        CompiledMessageFormat existing = lCache.putIfAbsent(pattern, result);
+        if (existing != null) {
+          result = existing;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Format the arguments with the cached compiled pattern, patterns that do not fit in the cache are formatted
+   * with a compiled form that is used only for this invocation.
+   * @param pattern the MessageFormat pattern.
+   * @param locale the locale for formatting numbers and dates.
+   * @param arguments the arguments to format.
+   * @return the formatted message.
+   * @exception IllegalArgumentException if the pattern is invalid, or if an argument is not of the type expected by
+   * the format element that uses it.
+   */
+  public static String formatPattern(@Nonnull final String pattern, @Nonnull final Locale locale,
+          @Nullable final Object... arguments) {
+    return getForInvocation(pattern, locale).format(arguments);
+  }
+
+  private static CompiledMessageFormat getForInvocation(final String pattern, final Locale locale) {
+    ConcurrentMap<String, CompiledMessageFormat> lCache = getCache(locale);
+    CompiledMessageFormat result = lCache.get(pattern);
+    if (result == null) {
+      if (lCache.size() < CACHE_SIZE) {
+        result = compile(pattern, locale);
+      } else {
+        result = new CompiledMessageFormat(pattern, locale, false);
+      }
+    }
+    return result;
+  }
+
+  private static ConcurrentMap<String, CompiledMessageFormat> getCache(final Locale locale) {
+    ConcurrentMap<String, CompiledMessageFormat> lCache = CACHE.get(locale);
+    if (lCache == null) {
+      lCache = new ConcurrentHashMap<>();
+      ConcurrentMap<String, CompiledMessageFormat> existing = CACHE.putIfAbsent(locale, lCache);
+      if (existing != null) {
+        lCache = existing;
+      }
+    }
+    return lCache;
+  }
+
+  public String getPattern() {
+    return pattern;
+  }
+
+  public Locale getLocale() {
+    return locale;
+  }
+
+  /**
+   * @param arguments the arguments to format.
+   * @return the formatted message.
+   */
+  public String format(@Nullable final Object... arguments) {
+    StringBuilder result = new StringBuilder(text.length() + 16 * offsets.length);
+    try {
+      format(arguments, result);
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+    return result.toString();
+  }
+
+  /**
+   * Format the arguments into the provided destination.
+   * @param arguments the arguments to format.
+   * @param result the destination.
+   * @return the destination.
+   * @exception IllegalArgumentException if an argument is not of the type expected by the format element that uses it.
+   */
+  public <T extends Appendable> T format(@Nullable final Object[] arguments, @Nonnull final T result)
+          throws IOException {
+    Format[] fmts = null;
+    int lastOffset = 0;
+    for (int i = 0; i < offsets.length; i++) {
+      int offset = offsets[i];
+      result.append(text, lastOffset, offset);
+      lastOffset = offset;
+      int argumentNumber = argumentNumbers[i];
+      if (arguments == null || argumentNumber >= arguments.length) {
+        result.append('{').append(Integer.toString(argumentNumber)).append('}');
+        continue;
+      }
+      Object obj = arguments[argumentNumber];
+      if (obj == null) {
+        result.append("null");
+        continue;
+      }
+      Format prototype = prototypes[i];
+      Format subFormatter;
+      if (prototype != null) {
+        if (formatters == null) {
+          subFormatter = prototype;
+        } else {
+          if (fmts == null) {
+            fmts = formatters.get();
+          }
+          subFormatter = fmts[i];
+          if (subFormatter == null) {
+            subFormatter = (Format) prototype.clone();
+            fmts[i] = subFormatter;
+          }
+        }
+        if (subFormatter instanceof ChoiceFormat) {
+          String arg = subFormatter.format(obj);
+          if (arg.indexOf('{') >= 0) {
+            getForInvocation(arg, locale).format(arguments, result);
+          } else {
+            result.append(arg);
+          }
+          continue;
+        }
+      } else if (obj instanceof Number) {
+        if (fmts == null) {
+          fmts = getFormatters();
+        }
+        int idx = prototypes.length;
+        subFormatter = fmts[idx];
+        if (subFormatter == null) {
+          subFormatter = NumberFormat.getInstance(locale);
+          fmts[idx] = subFormatter;
+        }
+      } else if (obj instanceof Date) {
+        if (fmts == null) {
+          fmts = getFormatters();
+        }
+        int idx = prototypes.length + 1;
+        subFormatter = fmts[idx];
+        if (subFormatter == null) {
+          subFormatter = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, locale);
+          fmts[idx] = subFormatter;
+        }
+      } else if (obj instanceof String) {
+        result.append((String) obj);
+        continue;
+      } else {
+        result.append(obj.toString());
+        continue;
+      }
+      Scratch scratch = SCRATCH.get();
+      StringBuffer buffer = scratch.buffer;
+      buffer.setLength(0);
+      subFormatter.format(obj, buffer, scratch.position);
+      result.append(buffer);
+    }
+    result.append(text, lastOffset, text.length());
+    return result;
+  }
+
+  private Format[] getFormatters() {
+    return formatters == null ? new Format[prototypes.length + 2] : formatters.get();
+  }
+
+  @Override
+  public String toString() {
+    return "CompiledMessageFormat{" + "pattern=" + pattern + ", locale=" + locale + '}';
+  }
+
+  private static final class Scratch {
+
+    private final StringBuffer buffer = new StringBuffer(32);
+
+    private final FieldPosition position = new FieldPosition(0);
+
+  }
+
+}
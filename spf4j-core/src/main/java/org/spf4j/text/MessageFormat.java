@@ -780,7 +780,8 @@ public final class MessageFormat extends Format {
   }
 
   /**
-   * Creates a MessageFormat with the given pattern and uses it to format the given arguments. This is equivalent to
+   * Formats the given arguments with the cached compiled form of the given pattern (see CompiledMessageFormat),
+   * the pattern is not parsed for every invocation. The output is equivalent to
    * <blockquote>
    * <code>(new {@link #MessageFormat(String) MessageFormat}(pattern)).{@link #format(java.lang.Object[], java.lang.StringBuffer, java.text.FieldPosition) format}(arguments,
    * new StringBuffer(), null).toString()</code>
@@ -793,8 +794,7 @@ public final class MessageFormat extends Format {
    * array is not of the type expected by the format element(s) that use it.
    */
   public static String format(String pattern, Object... arguments) {
-    MessageFormat temp = new MessageFormat(pattern);
-    return temp.format(arguments);
+    return CompiledMessageFormat.formatPattern(pattern, Locale.getDefault(Locale.Category.FORMAT), arguments);
   }
 
   // Overrides
@@ -1264,6 +1264,20 @@ public final class MessageFormat extends Format {
     return result;
   }
 
+  /**
+   * @return the pattern with the format elements taken out.
+   */
+  String getText() {
+    return pattern.toString();
+  }
+
+  /**
+   * @return the format elements, in pattern order.
+   */
+  FormatInfo[] getFormatInfos() {
+    return Arrays.copyOf(formats, maxOffset + 1);
+  }
+
   /**
    * Convenience method to append all the characters in <code>iterator</code> to the StringBuffer <code>result</code>.
    */
@@ -59,7 +59,7 @@ public final class TSDBQuery {
 
     public static ListMultimap<String, TableDef> getAllTables(final File tsdbFile) throws IOException {
         ListMultimap<String, TableDef>  result = ArrayListMultimap.create();
-        try (TSDBReader reader = new TSDBReader(tsdbFile, 8192)) {
+        try (TSDBReader reader = new TSDBReader(tsdbFile, 8192, TSDBReader.SKIP_DATA_ROWS_PROJECTION)) {
             Either<TableDef, DataBlock> read;
             while ((read = reader.read()) != null) {
                 if (read.isLeft()) {
@@ -74,7 +74,7 @@ public final class TSDBQuery {
     public static ListMultimap<String, TableDef> getTables(final File tsdbFile, final Set<String> tables)
             throws IOException {
         ListMultimap<String, TableDef>  result = ArrayListMultimap.create();
-        try (TSDBReader reader = new TSDBReader(tsdbFile, 8192)) {
+        try (TSDBReader reader = new TSDBReader(tsdbFile, 8192, TSDBReader.SKIP_DATA_ROWS_PROJECTION)) {
             Either<TableDef, DataBlock> read;
             while ((read = reader.read()) != null) {
                 if (read.isLeft()) {
@@ -132,7 +132,7 @@ public final class TSDBQuery {
     public static ListMultimap<String, TableDefEx> getAllTablesWithDataRanges(final File tsdbFile) throws IOException {
         ListMultimap<String, TableDefEx> result = ArrayListMultimap.create();
         TLongObjectMap<TableDefEx> id2Def = new TLongObjectHashMap<>();
-        try (TSDBReader reader = new TSDBReader(tsdbFile, 8192)) {
+        try (TSDBReader reader = new TSDBReader(tsdbFile, 8192, TSDBReader.SKIP_ROW_DATA_PROJECTION)) {
             Either<TableDef, DataBlock> read;
             while ((read = reader.read()) != null) {
                 if (read.isLeft()) {
@@ -165,7 +165,7 @@ public final class TSDBQuery {
     @Nonnull
     public static List<TableDef> getTableDef(final File tsdbFile, final String tableName) throws IOException {
         List<TableDef> result = new ArrayList<>();
-        try (TSDBReader reader = new TSDBReader(tsdbFile, 8192)) {
+        try (TSDBReader reader = new TSDBReader(tsdbFile, 8192, TSDBReader.SKIP_DATA_ROWS_PROJECTION)) {
             Either<TableDef, DataBlock> read;
             while ((read = reader.read()) != null) {
                 if (read.isLeft()) {
@@ -206,6 +206,37 @@ public final class TSDBQuery {
         return new TimeSeries(timestamps.toArray(), metrics.toArray(new long[metrics.size()][]));
     }
 
+    /**
+     * Read the rows of the tables in [startTimeMillis, endTimeMillis] aggregated in at most maxNrBuckets time buckets.
+     * This is a single pass over the file, with memory use independent of the number of rows,
+     * suitable for charting long intervals where there are more rows than pixels.
+     * @param tableDefs - the definitions of the table (all with the same columns).
+     */
+    public static TimeSeriesBuckets getTimeSeriesBuckets(final File tsdbFile, final List<TableDef> tableDefs,
+            final long startTimeMillis, final long endTimeMillis, final int maxNrBuckets) throws IOException {
+        long[] tableIds = getIds(tableDefs);
+        TimeSeriesBuckets result = new TimeSeriesBuckets(startTimeMillis, endTimeMillis, maxNrBuckets,
+                tableDefs.get(0).getColumns().size());
+        try (TSDBReader reader = new TSDBReader(tsdbFile, 8192)) {
+            Either<TableDef, DataBlock> read;
+            while ((read = reader.read()) != null) {
+                if (read.isRight()) {
+                    DataBlock data = read.getRight();
+                    long baseTs = data.baseTimestamp;
+                    for (DataRow row : data.getValues()) {
+                        for (long tableId : tableIds) {
+                            if (tableId == row.tableDefId) {
+                                result.add(baseTs + row.relTimeStamp, row.data);
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     public static long[] getIds(final Collection<TableDef> tableDefs) {
         long[] result = new long[tableDefs.size()];
         int i = 0;
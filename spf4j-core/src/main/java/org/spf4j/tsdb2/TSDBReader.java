@@ -32,11 +32,13 @@ import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.specific.SpecificDatumReader;
@@ -45,6 +47,7 @@ import org.spf4j.base.Handler;
 import org.spf4j.concurrent.DefaultExecutor;
 import org.spf4j.io.MemorizingBufferedInputStream;
 import org.spf4j.tsdb2.avro.DataBlock;
+import org.spf4j.tsdb2.avro.DataRow;
 import org.spf4j.tsdb2.avro.Header;
 import org.spf4j.tsdb2.avro.TableDef;
 
@@ -55,6 +58,27 @@ import org.spf4j.tsdb2.avro.TableDef;
 @SuppressFBWarnings("IICU_INCORRECT_INTERNAL_CLASS_USE")
 public final  class TSDBReader implements Closeable {
 
+    /**
+     * DataBlock projection that skips all data rows, for when only the table definitions are needed.
+     */
+    public static final Schema SKIP_DATA_ROWS_PROJECTION = SchemaBuilder.record(DataBlock.SCHEMA$.getName())
+            .namespace(DataBlock.SCHEMA$.getNamespace()).fields()
+            .requiredLong("baseTimestamp")
+            .endRecord();
+
+    /**
+     * DataBlock projection that skips the row data, for when only the row timestamps and tables are needed.
+     */
+    public static final Schema SKIP_ROW_DATA_PROJECTION = SchemaBuilder.record(DataBlock.SCHEMA$.getName())
+            .namespace(DataBlock.SCHEMA$.getNamespace()).fields()
+            .requiredLong("baseTimestamp")
+            .name("values").type(Schema.createArray(SchemaBuilder.record(DataRow.SCHEMA$.getName())
+                    .namespace(DataRow.SCHEMA$.getNamespace()).fields()
+                    .requiredInt("relTimeStamp")
+                    .requiredLong("tableDefId")
+                    .endRecord())).noDefault()
+            .endRecord();
+
     private final MemorizingBufferedInputStream bis;
     private final Header header;
     private long size;
@@ -66,6 +90,30 @@ public final  class TSDBReader implements Closeable {
 
 
     public TSDBReader(final File file, final int bufferSize) throws IOException {
+        this(file, bufferSize, null);
+    }
+
+    /**
+     * Create a reader that decodes only a projection of the DataBlocks.
+     * The DataBlock fields not part of the projection are skipped at the byte level by the avro schema resolution
+     * (the row data arrays are not materialized) and will be null in the returned DataBlocks.
+     * Since the projected records are read into the DataBlock/DataRow classes, the projection must keep the
+     * field positions (the projected fields must be the leading fields of every record).
+     *
+     * @param file - the tsdb2 file.
+     * @param bufferSize - the read buffer size.
+     * @param dataBlockProjection - a projection of the DataBlock schema (see SKIP_DATA_ROWS_PROJECTION,
+     * SKIP_ROW_DATA_PROJECTION), null to read the DataBlocks entirely.
+     */
+    public TSDBReader(final File file, final int bufferSize, @Nullable final Schema dataBlockProjection)
+            throws IOException {
+        Schema dataBlockSchema;
+        if (dataBlockProjection == null) {
+            dataBlockSchema = DataBlock.SCHEMA$;
+        } else {
+            validateProjection(dataBlockProjection, DataBlock.SCHEMA$);
+            dataBlockSchema = dataBlockProjection;
+        }
         this.file = file;
         final FileInputStream fis = new FileInputStream(file);
         bis = new MemorizingBufferedInputStream(fis);
@@ -77,7 +125,50 @@ public final  class TSDBReader implements Closeable {
         header = reader.read(null, decoder);
         recordReader = new SpecificDatumReader<>(
                 new Schema.Parser().parse(header.getContentSchema()),
-                Schema.createUnion(Arrays.asList(TableDef.SCHEMA$, DataBlock.SCHEMA$)));
+                Schema.createUnion(Arrays.asList(TableDef.SCHEMA$, dataBlockSchema)));
+    }
+
+    /**
+     * validate that a projection can be read into the classes generated for the schema.
+     */
+    static void validateProjection(final Schema projection, final Schema schema) {
+        Schema.Type type = projection.getType();
+        if (type != schema.getType()) {
+            throw new IllegalArgumentException("Projection " + projection + " type differs from " + schema);
+        }
+        switch (type) {
+            case RECORD:
+                List<Schema.Field> fields = projection.getFields();
+                List<Schema.Field> schemaFields = schema.getFields();
+                if (!projection.getFullName().equals(schema.getFullName()) || fields.size() > schemaFields.size()) {
+                    throw new IllegalArgumentException("Projection " + projection + " is not valid for " + schema);
+                }
+                for (int i = 0; i < fields.size(); i++) {
+                    Schema.Field field = fields.get(i);
+                    Schema.Field schemaField = schemaFields.get(i);
+                    if (!field.name().equals(schemaField.name())) {
+                        throw new IllegalArgumentException("Projection " + projection
+                                + " does not keep the field positions of " + schema);
+                    }
+                    validateProjection(field.schema(), schemaField.schema());
+                }
+                break;
+            case ARRAY:
+                validateProjection(projection.getElementType(), schema.getElementType());
+                break;
+            case MAP:
+                validateProjection(projection.getValueType(), schema.getValueType());
+                break;
+            case UNION:
+            case ENUM:
+            case FIXED:
+                if (!projection.equals(schema)) {
+                    throw new IllegalArgumentException("Projection " + projection + " is not valid for " + schema);
+                }
+                break;
+            default:
+                break;
+        }
     }
 
 
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.tsdb2;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A time series aggregated in fixed width time buckets.
+ * For every bucket the number of rows, and for every bucket and column the min, max and sum of the values are kept.
+ * This is what is needed for min/max envelope (M4 without first/last) and average charts, with memory proportional
+ * to nrBuckets * nrColumns, independent of the number of rows aggregated.
+ *
+ * @author zoly
+ */
+public final class TimeSeriesBuckets {
+
+    private final long startTime;
+
+    private final long bucketMillis;
+
+    private final int nrBuckets;
+
+    private final int nrColumns;
+
+    private final int[] rowCounts;
+
+    private final long[] min;
+
+    private final long[] max;
+
+    private final double[] sum;
+
+    /**
+     * @param startTime - the start time of the first bucket (inclusive).
+     * @param endTime - the end time of the last bucket (inclusive).
+     * @param maxNrBuckets - the maximum number of buckets, the bucket width is rounded up to whole milliseconds.
+     * @param nrColumns - the number of columns of the aggregated rows.
+     */
+    public TimeSeriesBuckets(final long startTime, final long endTime, final int maxNrBuckets, final int nrColumns) {
+        if (endTime < startTime || maxNrBuckets <= 0) {
+            throw new IllegalArgumentException("Invalid interval [" + startTime + ", " + endTime + "] or nr buckets "
+                    + maxNrBuckets);
+        }
+        long duration = endTime - startTime;
+        this.startTime = startTime;
+        this.bucketMillis = duration / maxNrBuckets + 1;
+        this.nrBuckets = (int) (duration / bucketMillis) + 1;
+        this.nrColumns = nrColumns;
+        this.rowCounts = new int[nrBuckets];
+        int size = nrBuckets * nrColumns;
+        this.min = new long[size];
+        Arrays.fill(min, Long.MAX_VALUE);
+        this.max = new long[size];
+        Arrays.fill(max, Long.MIN_VALUE);
+        this.sum = new double[size];
+    }
+
+    /**
+     * aggregate a row.
+     * @param timestamp - the row timestamp.
+     * @param data - the row data.
+     * @return true if the row was aggregated, false if it is outside the bucketed interval.
+     */
+    public boolean add(final long timestamp, final List<Long> data) {
+        if (timestamp < startTime) {
+            return false;
+        }
+        long bucket = (timestamp - startTime) / bucketMillis;
+        if (bucket >= nrBuckets) {
+            return false;
+        }
+        int b = (int) bucket;
+        rowCounts[b]++;
+        int offset = b * nrColumns;
+        int nrValues = Math.min(nrColumns, data.size());
+        for (int i = 0; i < nrValues; i++) {
+            long value = data.get(i);
+            int idx = offset + i;
+            if (value < min[idx]) {
+                min[idx] = value;
+            }
+            if (value > max[idx]) {
+                max[idx] = value;
+            }
+            sum[idx] += value;
+        }
+        return true;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public int getNrBuckets() {
+        return nrBuckets;
+    }
+
+    public int getNrColumns() {
+        return nrColumns;
+    }
+
+    public long getBucketStart(final int bucket) {
+        return startTime + bucket * bucketMillis;
+    }
+
+    public int getRowCount(final int bucket) {
+        return rowCounts[bucket];
+    }
+
+    /**
+     * @return the min value of the column in the bucket, Long.MAX_VALUE if the bucket is empty.
+     */
+    public long getMin(final int bucket, final int column) {
+        return min[bucket * nrColumns + column];
+    }
+
+    /**
+     * @return the max value of the column in the bucket, Long.MIN_VALUE if the bucket is empty.
+     */
+    public long getMax(final int bucket, final int column) {
+        return max[bucket * nrColumns + column];
+    }
+
+    public double getSum(final int bucket, final int column) {
+        return sum[bucket * nrColumns + column];
+    }
+
+    /**
+     * @return the number of non empty buckets.
+     */
+    public int getNrNonEmptyBuckets() {
+        int result = 0;
+        for (int count : rowCounts) {
+            if (count > 0) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSeriesBuckets{" + "startTime=" + startTime + ", bucketMillis=" + bucketMillis
+                + ", nrBuckets=" + nrBuckets + ", nrColumns=" + nrColumns + '}';
+    }
+
+}
@@ -111,6 +111,40 @@ public final class RuntimeTest {
 
 
 
+    @Test
+    public void testDeadlineScopes() throws InterruptedException, ExecutionException {
+        Assert.assertEquals(Long.MAX_VALUE, Runtime.getDeadline());
+        final long deadline = System.currentTimeMillis() + 60000;
+        long prev = Runtime.swapDeadline(deadline);
+        try {
+            Assert.assertEquals(deadline, Runtime.getDeadline());
+            long prev2 = Runtime.narrowDeadline(deadline + 1000);
+            Assert.assertEquals(deadline, Runtime.getDeadline());
+            Runtime.setDeadline(prev2);
+            Future<Long> submit = DefaultExecutor.INSTANCE.submit(() -> Runtime.getDeadline());
+            Assert.assertEquals(deadline, submit.get().longValue());
+        } finally {
+            Runtime.setDeadline(prev);
+        }
+        Assert.assertEquals(Long.MAX_VALUE, Runtime.getDeadline());
+        Assert.assertEquals(Long.MAX_VALUE, DefaultExecutor.INSTANCE.submit(() -> Runtime.getDeadline())
+                .get().longValue());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedDeadlineBridge() {
+        final long deadline = System.currentTimeMillis() + 60000;
+        Runtime.DEADLINE.set(deadline);
+        try {
+            Assert.assertEquals(deadline, Runtime.getDeadline());
+            Assert.assertEquals(deadline, Runtime.DEADLINE.get().longValue());
+        } finally {
+            Runtime.DEADLINE.remove();
+        }
+        Assert.assertEquals(Long.MAX_VALUE, Runtime.getDeadline());
+    }
+
     public static final class TestError {
 
         public static void main(final String [] args) {
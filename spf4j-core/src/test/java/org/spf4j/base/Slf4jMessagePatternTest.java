@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.spf4j.base;
+
+import java.io.IOException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spf4j.io.ObjectAppenderSupplier;
+
+/**
+ *
+ * @author zoly
+ */
+public class Slf4jMessagePatternTest {
+
+    private static String format(final String pattern, final int firstArgIdx, final Object... args)
+            throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Slf4jMessagePattern.compile(pattern).format(true, firstArgIdx, sb, ObjectAppenderSupplier.TO_STRINGER, args);
+        return sb.toString();
+    }
+
+    @Test
+    public void testCompiledPattern() throws IOException {
+        Slf4jMessagePattern pattern = Slf4jMessagePattern.compile("a {} b \\{} c \\\\{} d");
+        Assert.assertSame(pattern, Slf4jMessagePattern.compile("a {} b \\{} c \\\\{} d"));
+        Assert.assertEquals(2, pattern.getNrPlaceholders());
+        StringBuilder sb = new StringBuilder();
+        Assert.assertEquals(2, pattern.format(sb, "1", "2", "3"));
+        Assert.assertEquals("a 1 b {} c \\2 d", sb.toString());
+    }
+
+    @Test
+    public void testMissingArguments() throws IOException {
+        // like slf4j, once the arguments run out the rest of the pattern is written as is.
+        Assert.assertEquals("a 1 b \\{} c {}", format("a {} b \\{} c {}", 0, "1"));
+        Assert.assertEquals("a {} b", format("a {} b", 0));
+        Assert.assertEquals("a {} b", format("a {} b", 1, "x"));
+        Assert.assertEquals("a 2 b", format("a {} b", 1, "x", "2"));
+        Assert.assertEquals("\\{}", format("\\{}", 0));
+        Assert.assertEquals("{}", format("\\{}", 0, "x"));
+    }
+
+    @Test
+    public void testArrays() throws IOException {
+        Object[] cyclic = new Object[2];
+        cyclic[0] = "x";
+        cyclic[1] = cyclic;
+        Assert.assertEquals("a [x, [...]] [1, 2] [a]",
+                format("a {} {} {}", 0, cyclic, new int[] {1, 2}, new Object[] {"a"}));
+    }
+
+}
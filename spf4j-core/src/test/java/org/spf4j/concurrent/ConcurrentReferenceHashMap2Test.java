@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.spf4j.concurrent.ConcurrentReferenceHashMap.ReferenceType;
+
+/**
+ * ConcurrentReferenceHashMap2 specific tests, the map contract is tested in ConcurrentReferenceHashMapTest.
+ * @author zoly
+ */
+public class ConcurrentReferenceHashMap2Test {
+
+  @Test
+  public void testWeakKeysReclaimed() {
+    ConcurrentReferenceHashMap2<Object, String> map
+            = new ConcurrentReferenceHashMap2<>(ReferenceType.WEAK, ReferenceType.STRONG);
+    for (int i = 0; i < 1000; i++) {
+      map.put(new Object(), "v" + i);
+    }
+    map.clearReferences();
+    // reads alone must reclaim stale entries, PURGE_BATCH at a time.
+    for (int i = 0; i < 1000; i++) {
+      map.get("x");
+    }
+    Assert.assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void testWeakValuesReclaimed() {
+    ConcurrentReferenceHashMap2<String, Object> map
+            = new ConcurrentReferenceHashMap2<>(ReferenceType.STRONG, ReferenceType.WEAK);
+    map.put("a", new Object());
+    map.clearReferences();
+    Assert.assertNull(map.get("a"));
+    map.purgeStaleEntries();
+    Assert.assertTrue(map.isEmpty());
+  }
+
+}
@@ -1,34 +1,113 @@
-
 package org.spf4j.concurrent;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import org.junit.Assert;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.spf4j.concurrent.ConcurrentReferenceHashMap.Option;
+import org.spf4j.concurrent.ConcurrentReferenceHashMap.ReferenceType;
 
 /**
- *
+ * Map contract test, for both ConcurrentReferenceHashMap and ConcurrentReferenceHashMap2.
  * @author zoly
  */
+@RunWith(Parameterized.class)
 public class ConcurrentReferenceHashMapTest {
 
+    private final boolean map2;
+
+    public ConcurrentReferenceHashMapTest(final String implementation) {
+        this.map2 = ConcurrentReferenceHashMap2.class.getSimpleName().equals(implementation);
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> implementations() {
+        return Arrays.asList(new Object[][] {
+            {ConcurrentReferenceHashMap.class.getSimpleName()},
+            {ConcurrentReferenceHashMap2.class.getSimpleName()}
+        });
+    }
+
+    private <K, V> ConcurrentMap<K, V> newMap(final ReferenceType keyType, final ReferenceType valueType,
+            final EnumSet<Option> options) {
+        if (map2) {
+            return new ConcurrentReferenceHashMap2<>(16, 0.75f, 4, keyType, valueType, options);
+        } else {
+            return new ConcurrentReferenceHashMap<>(16, 0.75f, 4, keyType, valueType, options);
+        }
+    }
+
+    private <K, V> ConcurrentMap<K, V> newMap(final ReferenceType keyType, final ReferenceType valueType) {
+        return newMap(keyType, valueType, EnumSet.noneOf(Option.class));
+    }
 
     @Test
     public void testSomeMethod() {
-        ConcurrentReferenceHashMap<String, String> map = new ConcurrentReferenceHashMap(
-                ConcurrentReferenceHashMap.ReferenceType.STRONG, ConcurrentReferenceHashMap.ReferenceType.STRONG);
-        for (int i = 0; i < 10000; i++) {
+        testMapContract(newMap(ReferenceType.STRONG, ReferenceType.STRONG));
+    }
+
+    @Test
+    public void testWeakKeyMap() {
+        testMapContract(newMap(ReferenceType.WEAK, ReferenceType.STRONG));
+    }
+
+    @Test
+    public void testSoftMap() {
+        testMapContract(newMap(ReferenceType.SOFT, ReferenceType.SOFT));
+    }
+
+    @Test
+    public void testIdentityMap() {
+        ConcurrentMap<String, String> map = newMap(ReferenceType.WEAK, ReferenceType.STRONG,
+                EnumSet.of(Option.IDENTITY_COMPARISONS));
+        String key = new String("a");
+        map.put(key, "v");
+        Assert.assertEquals("v", map.get(key));
+        Assert.assertNull(map.get(new String("a")));
+    }
+
+    private static void testMapContract(final ConcurrentMap<String, String> map) {
+        // keep keys and values strongly referenced for the duration of the test.
+        String[] keys = new String[10000];
+        String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
             String key = "k" + i;
             String value = "v" + i;
+            keys[i] = key;
+            values[i] = value;
             map.put(key, value);
             Assert.assertEquals(value, map.get(key));
         }
         int size = map.size();
         int count = 0;
         for (Map.Entry<String, String> entry : map.entrySet()) {
-            count+= entry.getKey() != null ? 1 : 0;
+            count += entry.getKey() != null ? 1 : 0;
         }
         Assert.assertEquals(size, count);
-
+        String key = keys[1];
+        String value = values[1];
+        Assert.assertEquals(value, map.putIfAbsent(key, "x"));
+        Assert.assertFalse(map.remove(key, "x"));
+        Assert.assertFalse(map.replace(key, "x", "y"));
+        Assert.assertTrue(map.replace(key, value, "y"));
+        Assert.assertEquals("y", map.replace(key, value));
+        Assert.assertTrue(map.remove(key, value));
+        Assert.assertNull(map.get(key));
+        Assert.assertNull(map.putIfAbsent(key, value));
+        Assert.assertTrue(map.containsKey(key));
+        Assert.assertTrue(map.containsValue(value));
+        Iterator<String> it = map.keySet().iterator();
+        String first = it.next();
+        it.remove();
+        Assert.assertFalse(map.containsKey(first));
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
     }
 
 }
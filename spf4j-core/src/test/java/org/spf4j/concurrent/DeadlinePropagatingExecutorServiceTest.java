@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.concurrent;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spf4j.base.Runtime;
+
+/**
+ *
+ * @author zoly
+ */
+public final class DeadlinePropagatingExecutorServiceTest {
+
+  @Test
+  public void testDeadlinePropagation() throws InterruptedException, ExecutionException {
+    DeadlinePropagatingExecutorService executor = new DeadlinePropagatingExecutorService(
+            new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>()));
+    final long deadline = System.currentTimeMillis() + 60000;
+    long prev = Runtime.swapDeadline(deadline);
+    try {
+      Future<Long> submit = executor.submit(() -> Runtime.getDeadline());
+      Assert.assertEquals(deadline, submit.get().longValue());
+      final CountDownLatch started = new CountDownLatch(1);
+      final CountDownLatch latch = new CountDownLatch(1);
+      executor.execute(() -> {
+        started.countDown();
+        try {
+          latch.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+      Runnable queued = () -> { };
+      executor.execute(queued);
+      List<Runnable> remaining = executor.shutdownNow();
+      Assert.assertEquals(1, remaining.size());
+      Assert.assertSame(queued, remaining.get(0));
+      Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    } finally {
+      Runtime.setDeadline(prev);
+    }
+  }
+
+  @Test
+  public void testLifoPoolShutdownNowUnwraps() throws InterruptedException {
+    LifoThreadPoolExecutorSQP executor = new LifoThreadPoolExecutorSQP("test", 0, 1, 60000, 10, false, 0);
+    final long deadline = System.currentTimeMillis() + 60000;
+    long prev = Runtime.swapDeadline(deadline);
+    try {
+      final CountDownLatch started = new CountDownLatch(1);
+      final CountDownLatch latch = new CountDownLatch(1);
+      executor.execute(() -> {
+        started.countDown();
+        try {
+          latch.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+      Runnable queued = () -> { };
+      executor.execute(queued);
+      List<Runnable> remaining = executor.shutdownNow();
+      Assert.assertEquals(1, remaining.size());
+      Assert.assertSame(queued, remaining.get(0));
+      Assert.assertTrue(executor.awaitTermination(10000, TimeUnit.MILLISECONDS));
+    } finally {
+      Runtime.setDeadline(prev);
+    }
+  }
+
+}
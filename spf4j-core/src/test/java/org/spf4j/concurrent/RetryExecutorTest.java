@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import org.junit.Assert;
 import org.junit.Test;
 import org.spf4j.base.Callables;
@@ -64,4 +66,40 @@ public final class RetryExecutorTest {
         Assert.assertEquals(1, result.get());
         instance.shutdown();
     }
+
+    @Test
+    public void testShutdownAbandonsPendingRetries() throws InterruptedException {
+        final LifoThreadPoolExecutorSQP executor = new LifoThreadPoolExecutorSQP(2, "test");
+        ScheduledThreadPoolExecutor ticker = new ScheduledThreadPoolExecutor(1);
+        RetryScheduler scheduler = new RetryScheduler("test", 1, 5, 16, 0, ticker);
+        RetryExecutor instance = new RetryExecutor(executor,
+                (final Callable<?> parameter) -> Callables.DelayPredicate.NORETRY_DELAY_PREDICATE,
+                (final Callable<?> parameter) -> new Callables.DelayPredicate<Exception>() {
+
+          @Override
+          public int apply(final Exception value) {
+            return 60000;
+          }
+        }, null, scheduler, RetryBudget.UNLIMITED);
+        Future<Integer> result = instance.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws IOException {
+                throw new IOException("fail");
+            }
+        });
+        for (int i = 0; i < 100 && scheduler.getPendingRetries() == 0; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, scheduler.getPendingRetries());
+        instance.shutdown();
+        try {
+            result.get();
+            Assert.fail();
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof RejectedExecutionException);
+            Assert.assertTrue(ex.getCause().getSuppressed()[0].getCause() instanceof IOException);
+        }
+        scheduler.shutdown();
+        ticker.shutdown();
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.concurrent;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author zoly
+ */
+public final class RetrySchedulerTest {
+
+
+  @Test
+  public void testScheduleRetries() throws InterruptedException {
+    ScheduledThreadPoolExecutor ticker = new ScheduledThreadPoolExecutor(2);
+    RetryScheduler scheduler = new RetryScheduler("test", 4, 5, 16, 0.5, ticker);
+    int nrRetries = 10000;
+    final CountDownLatch latch = new CountDownLatch(nrRetries);
+    long startTime = System.currentTimeMillis();
+    for (int i = 0; i < nrRetries; i++) {
+      // delays exceed the wheel size to exercise multiple wheel rotations.
+      Assert.assertTrue(scheduler.scheduleRetry(() -> latch.countDown(), i % 200, RetryBudget.UNLIMITED));
+    }
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    Assert.assertTrue(System.currentTimeMillis() - startTime >= 99);
+    Assert.assertEquals(nrRetries, scheduler.getFiredRetries());
+    Assert.assertEquals(0, scheduler.getPendingRetries());
+    Assert.assertEquals(0, scheduler.getAbandonedRetries());
+    // idle shards stop ticking.
+    for (int i = 0; i < 100 && !ticker.getQueue().isEmpty(); i++) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(ticker.getQueue().isEmpty());
+    Assert.assertTrue(scheduler.schedule(() -> latch.countDown(), 0));
+    Assert.assertFalse(ticker.getQueue().isEmpty());
+    scheduler.shutdown();
+    ticker.shutdown();
+  }
+
+  @Test
+  public void testNeverFiresEarly() throws InterruptedException {
+    ScheduledThreadPoolExecutor ticker = new ScheduledThreadPoolExecutor(1);
+    RetryScheduler scheduler = new RetryScheduler("test", 2, 10, 16, 0, ticker);
+    int nrRetries = 500;
+    final CountDownLatch latch = new CountDownLatch(nrRetries);
+    final AtomicInteger early = new AtomicInteger();
+    for (int i = 0; i < nrRetries; i++) {
+      final long delay = i % 250;
+      final long scheduledAt = System.currentTimeMillis();
+      Assert.assertTrue(scheduler.schedule(() -> {
+        if (System.currentTimeMillis() - scheduledAt < delay) {
+          early.incrementAndGet();
+        }
+        latch.countDown();
+      }, delay));
+      if (i % 50 == 0) {
+        Thread.sleep(3); // spread the deadlines within the ticks.
+      }
+    }
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(0, early.get());
+    scheduler.shutdown();
+    ticker.shutdown();
+  }
+
+  @Test
+  public void testRetryBudget() throws InterruptedException {
+    ScheduledThreadPoolExecutor ticker = new ScheduledThreadPoolExecutor(1);
+    RetryScheduler scheduler = new RetryScheduler("test", 1, 5, 16, 0, ticker);
+    RetryBudget budget = new RetryBudget(0.5, 2);
+    Assert.assertTrue(scheduler.scheduleRetry(() -> { }, 1000, budget));
+    Assert.assertTrue(scheduler.scheduleRetry(() -> { }, 1000, budget));
+    Assert.assertFalse(scheduler.scheduleRetry(() -> { }, 1000, budget));
+    budget.onAttempt();
+    Assert.assertFalse(scheduler.scheduleRetry(() -> { }, 1000, budget));
+    budget.onAttempt();
+    Assert.assertTrue(scheduler.scheduleRetry(() -> { }, 1000, budget));
+    Assert.assertEquals(2, scheduler.getAbandonedRetries());
+    Assert.assertEquals(3, scheduler.getPendingRetries());
+    List<Runnable> pending = scheduler.shutdown();
+    Assert.assertEquals(3, pending.size());
+    Assert.assertFalse(scheduler.schedule(() -> { }, 0));
+    ticker.shutdown();
+  }
+
+  @Test
+  public void testJitter() {
+    ScheduledThreadPoolExecutor ticker = new ScheduledThreadPoolExecutor(1);
+    RetryScheduler scheduler = new RetryScheduler("test", 1, 5, 16, 0.2, ticker);
+    for (int i = 0; i < 1000; i++) {
+      long delay = scheduler.jitter(100);
+      Assert.assertTrue(delay <= 100 && delay >= 80);
+    }
+    scheduler.shutdown();
+    ticker.shutdown();
+  }
+
+}
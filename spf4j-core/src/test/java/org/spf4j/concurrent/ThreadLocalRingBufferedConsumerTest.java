@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.concurrent;
+
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author zoly
+ */
+public final class ThreadLocalRingBufferedConsumerTest {
+
+
+  @Test
+  public void testBlockingWrites() throws Exception {
+    final AtomicLong sum = new AtomicLong();
+    final AtomicLong count = new AtomicLong();
+    final ThreadLocalRingBufferedConsumer<Integer> consumer = new ThreadLocalRingBufferedConsumer<>(64,
+            (List<Integer> batch) -> {
+              for (Integer i : batch) {
+                sum.addAndGet(i);
+                count.incrementAndGet();
+              }
+            }, 1, ThreadLocalRingBufferedConsumer.OverflowPolicy.BLOCK);
+    final int nrWrites = 100000;
+    Future<?>[] futures = new Future[4];
+    for (int t = 0; t < futures.length; t++) {
+      futures[t] = DefaultExecutor.INSTANCE.submit(() -> {
+        for (int i = 0; i < nrWrites; i++) {
+          Assert.assertTrue(consumer.write(i));
+        }
+      });
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    consumer.close();
+    Assert.assertEquals(nrWrites * futures.length, count.get());
+    Assert.assertEquals((long) nrWrites * (nrWrites - 1) / 2 * futures.length, sum.get());
+    Assert.assertEquals(0, consumer.getDroppedCount());
+  }
+
+  @Test
+  public void testDropWrites() {
+    final AtomicLong count = new AtomicLong();
+    final ThreadLocalRingBufferedConsumer<Integer> consumer = new ThreadLocalRingBufferedConsumer<>(8,
+            (List<Integer> batch) -> count.addAndGet(batch.size()), 100000,
+            ThreadLocalRingBufferedConsumer.OverflowPolicy.DROP);
+    for (int i = 0; i < 10; i++) {
+      consumer.write(i);
+    }
+    Assert.assertEquals(2, consumer.getDroppedCount());
+    consumer.flush();
+    Assert.assertEquals(8, count.get());
+    Assert.assertTrue(consumer.write(1));
+    consumer.close();
+    Assert.assertEquals(9, count.get());
+  }
+
+  @Test
+  public void testConsumerFailureRedelivers() throws InterruptedException {
+    final AtomicLong count = new AtomicLong();
+    final AtomicLong failures = new AtomicLong();
+    final ThreadLocalRingBufferedConsumer<Integer> consumer = new ThreadLocalRingBufferedConsumer<>(8,
+            (List<Integer> batch) -> {
+              if (failures.getAndIncrement() == 0) {
+                throw new IllegalStateException("Simulated consumer failure");
+              }
+              count.addAndGet(batch.size());
+            }, 10, ThreadLocalRingBufferedConsumer.OverflowPolicy.DROP);
+    for (int i = 0; i < 5; i++) {
+      Assert.assertTrue(consumer.write(i));
+    }
+    long deadline = System.currentTimeMillis() + 5000;
+    while (count.get() < 5 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(5, count.get());
+    Assert.assertTrue(consumer.write(5));
+    while (count.get() < 6 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(6, count.get());
+    consumer.close();
+    Assert.assertEquals(6, count.get());
+  }
+
+  @Test
+  public void testWriteAfterClose() {
+    final AtomicLong count = new AtomicLong();
+    final ThreadLocalRingBufferedConsumer<Integer> consumer = new ThreadLocalRingBufferedConsumer<>(8,
+            (List<Integer> batch) -> count.addAndGet(batch.size()), 100000,
+            ThreadLocalRingBufferedConsumer.OverflowPolicy.BLOCK);
+    Assert.assertTrue(consumer.write(1));
+    consumer.close();
+    Assert.assertFalse(consumer.write(2));
+    Assert.assertEquals(1, count.get());
+    Assert.assertEquals(1, consumer.getDroppedCount());
+  }
+
+}
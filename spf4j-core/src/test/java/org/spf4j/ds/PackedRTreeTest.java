@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.ds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author zoly
+ */
+public final class PackedRTreeTest {
+
+    @Test
+    public void testSearch() {
+        Random rnd = new Random(3);
+        for (int nodeCapacity : new int[]{2, 4, 16}) {
+            for (int n : new int[]{0, 1, 15, 16, 17, 1000}) {
+                float[][] boxes = new float[n][];
+                PackedRTree.Builder<Integer> builder = PackedRTree.<Integer>newBuilder(2)
+                        .withNodeCapacity(nodeCapacity);
+                for (int i = 0; i < n; i++) {
+                    float[] box = {rnd.nextInt(1000), rnd.nextInt(1000), rnd.nextInt(20), rnd.nextInt(20)};
+                    boxes[i] = box;
+                    builder.add(box[0], box[1], box[2], box[3], i);
+                }
+                PackedRTree<Integer> tree = builder.build();
+                Assert.assertEquals(n, tree.size());
+                for (int q = 0; q < 200; q++) {
+                    float[] coords = {rnd.nextInt(1000), rnd.nextInt(1000)};
+                    float[] dims = {rnd.nextInt(50), rnd.nextInt(50)};
+                    List<Integer> expected = new ArrayList<>();
+                    for (int i = 0; i < n; i++) {
+                        float[] b = boxes[i];
+                        if (b[0] <= coords[0] + dims[0] && coords[0] <= b[0] + b[2]
+                                && b[1] <= coords[1] + dims[1] && coords[1] <= b[1] + b[3]) {
+                            expected.add(i);
+                        }
+                    }
+                    List<Integer> result = tree.search(coords, dims);
+                    Collections.sort(result);
+                    Assert.assertEquals(expected, result);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSearch3D() {
+        Random rnd = new Random(5);
+        int n = 500;
+        float[][] coords = new float[n][];
+        PackedRTree.Builder<Integer> builder = PackedRTree.newBuilder(3);
+        for (int i = 0; i < n; i++) {
+            coords[i] = new float[]{rnd.nextFloat(), rnd.nextFloat(), rnd.nextFloat()};
+            builder.add(coords[i], new float[3], i);
+        }
+        PackedRTree<Integer> tree = builder.build();
+        for (int i = 0; i < n; i++) {
+            Assert.assertTrue(tree.search(coords[i], new float[3]).contains(i));
+        }
+        Assert.assertEquals(n, tree.search(new float[3], new float[]{1, 1, 1}).size());
+    }
+
+    @Test
+    public void testVisitorStop() {
+        PackedRTree.Builder<String> builder = PackedRTree.newBuilder(2);
+        for (int i = 0; i < 100; i++) {
+            builder.add(i, 0, 1, 1, "E" + i);
+        }
+        PackedRTree<String> tree = builder.build();
+        Assert.assertEquals(2, tree.getHeight());
+        final List<String> found = new ArrayList<>();
+        boolean completed = tree.search(new float[]{0, 0}, new float[]{100, 1}, (final String entry) -> {
+            found.add(entry);
+            return found.size() < 3;
+        });
+        Assert.assertFalse(completed);
+        Assert.assertEquals(3, found.size());
+        Assert.assertTrue(tree.search(new float[]{200, 0}, new float[]{1, 1}).isEmpty());
+    }
+
+}
@@ -40,4 +40,35 @@ public class ConfigurableAppenderSupplierTest {
 
   }
 
+  @Test
+  public void testRegistryChanges() {
+    ConfigurableAppenderSupplier supplier =
+            new ConfigurableAppenderSupplier(false, ConfigurableAppenderSupplier.NO_FILTER);
+    final ObjectAppender<CharSequence> csAppender = (CharSequence object, Appendable appendTo) -> {
+      appendTo.append(object);
+    };
+    final ObjectAppender<String> strAppender = (String object, Appendable appendTo) -> {
+      appendTo.append("str");
+    };
+    Assert.assertSame(ObjectAppender.TOSTRING_APPENDER, supplier.get(String.class));
+    Assert.assertSame(ObjectAppender.TOSTRING_APPENDER, supplier.get(Integer.class));
+    supplier.register(CharSequence.class, csAppender);
+    Assert.assertSame(csAppender, supplier.get(String.class));
+    Assert.assertSame(csAppender, supplier.get(StringBuilder.class));
+    Assert.assertSame(ObjectAppender.TOSTRING_APPENDER, supplier.get(Integer.class));
+    supplier.register(String.class, strAppender);
+    Assert.assertSame(strAppender, supplier.get(String.class));
+    Assert.assertSame(csAppender, supplier.get(StringBuilder.class));
+    Assert.assertEquals(0, supplier.register(String.class, strAppender));
+    Assert.assertTrue(supplier.unregister(String.class));
+    Assert.assertFalse(supplier.unregister(String.class));
+    Assert.assertSame(csAppender, supplier.get(String.class));
+    final ObjectAppender<CharSequence> csAppender2 = (CharSequence object, Appendable appendTo) -> {
+      appendTo.append("cs");
+    };
+    supplier.replace(CharSequence.class, (ObjectAppender<? super CharSequence> input) -> csAppender2);
+    Assert.assertSame(csAppender2, supplier.get(String.class));
+    Assert.assertSame(csAppender2, supplier.get(StringBuilder.class));
+  }
+
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.appenders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.io.JsonEncoder;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spf4j.tsdb2.avro.ColumnDef;
+import org.spf4j.tsdb2.avro.Type;
+
+/**
+ * @author zoly
+ */
+public class AvroJsonAppendersTest {
+
+  private static final Schema SCHEMA = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"Test\","
+          + "\"fields\":[{\"name\":\"name\",\"type\":\"string\"},"
+          + "{\"name\":\"values\",\"type\":{\"type\":\"array\",\"items\":\"long\"}},"
+          + "{\"name\":\"child\",\"type\":[\"null\",\"Test\"],\"default\":null}]}");
+
+  private static GenericRecord createRecord(final String name, final GenericRecord child) {
+    GenericData.Record record = new GenericData.Record(SCHEMA);
+    record.put("name", name);
+    record.put("values", Arrays.asList(1L, 2L, 3L));
+    record.put("child", child);
+    return record;
+  }
+
+  private static String toJsonReference(final GenericRecord record) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    JsonEncoder encoder = EncoderFactory.get().jsonEncoder(record.getSchema(), bos);
+    DatumWriter<GenericRecord> writer = record instanceof SpecificRecord
+            ? new SpecificDatumWriter<>(record.getSchema()) : new GenericDatumWriter<>(record.getSchema());
+    writer.write(record, encoder);
+    encoder.flush();
+    return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testGenericRecordAppender() throws IOException {
+    GenericRecordAppender appender = new GenericRecordAppender();
+    GenericRecord rec1 = createRecord("a \"quoted\" \u00e9\u20ac name", null);
+    GenericRecord rec2 = createRecord("b", createRecord("c\n", null));
+    StringBuilder sb = new StringBuilder();
+    appender.append(rec1, sb);
+    sb.append(' ');
+    appender.append(rec2, sb);
+    Assert.assertEquals(toJsonReference(rec1) + ' ' + toJsonReference(rec2), sb.toString());
+    StringWriter sw = new StringWriter();
+    appender.append(rec2, sw);
+    Assert.assertEquals(toJsonReference(rec2), sw.toString());
+  }
+
+  @Test
+  public void testAppendAfterFailure() throws IOException {
+    GenericRecordAppender appender = new GenericRecordAppender();
+    GenericRecord invalid = createRecord("x", null);
+    invalid.put("values", null);
+    StringBuilder sb = new StringBuilder();
+    try {
+      appender.append(invalid, sb);
+      Assert.fail();
+    } catch (RuntimeException ex) {
+      // expected, values cannot be null.
+    }
+    GenericRecord rec = createRecord("y", null);
+    sb.setLength(0);
+    appender.append(rec, sb);
+    Assert.assertEquals(toJsonReference(rec), sb.toString());
+  }
+
+  @Test
+  public void testSpecificRecordAppender() throws IOException {
+    SpecificRecordBaseAppender appender = new SpecificRecordBaseAppender();
+    ColumnDef cd = ColumnDef.newBuilder()
+            .setName("col").setDescription("desc").setType(Type.LONG)
+            .setUnitOfMeasurement("ms").build();
+    StringBuilder sb = new StringBuilder();
+    appender.append(cd, sb);
+    appender.append(cd, sb);
+    String expected = toJsonReference(cd);
+    Assert.assertEquals(expected + expected, sb.toString());
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.csv;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spf4j.io.PushbackReader;
+
+/**
+ * Checks that the buffer based tokenizers produce the same tokens as the character at a time reader.
+ *
+ * @author zoly
+ */
+public class CsvTokenizerTest {
+
+  private static final CharSeparatedValues CSV = new CharSeparatedValues(',');
+
+  private static final char[] ALPHABET = {'a', 'b', ',', '"', '\n', '\r', '\u00e9', '\u20ac'};
+
+  private static List<String> tokens(final CsvReader reader) {
+    List<String> result = new ArrayList<>();
+    try {
+      CsvReader.TokenType token;
+      do {
+        token = reader.next();
+        if (token == CsvReader.TokenType.ELEMENT) {
+          result.add("E:" + reader.getElement());
+        } else {
+          result.add(token.toString());
+        }
+      } while (token != CsvReader.TokenType.END_DOCUMENT);
+    } catch (IOException ex) {
+      result.add("ERR");
+    }
+    return result;
+  }
+
+  private static List<String> events(final String csv) {
+    final List<String> result = new ArrayList<>();
+    try {
+      CSV.read(new StringReader(csv), new EventRecorder(result));
+    } catch (IOException ex) {
+      result.add("ERR");
+    }
+    return result;
+  }
+
+  private static List<String> referenceEvents(final String csv) {
+    final List<String> result = new ArrayList<>();
+    try {
+      CSV.readNoBom(new PushbackReader(new StringReader(csv)), new EventRecorder(result));
+    } catch (IOException ex) {
+      result.add("ERR");
+    }
+    return result;
+  }
+
+  @Test
+  public void testSameAsCharReader() throws IOException {
+    Random rnd = new Random(42);
+    StringBuilder sb = new StringBuilder();
+    for (int n = 0; n < 20000; n++) {
+      sb.setLength(0);
+      int len = rnd.nextInt(24);
+      for (int i = 0; i < len; i++) {
+        sb.append(ALPHABET[rnd.nextInt(ALPHABET.length)]);
+      }
+      String csv = sb.toString();
+      List<String> expected = tokens(CSV.readerNoBOM(new PushbackReader(new StringReader(csv))));
+      for (int bufferSize = 1; bufferSize < 4; bufferSize++) {
+        Assert.assertEquals(csv, expected, tokens(new CharArrayCsvTokenizer(',', new StringReader(csv), bufferSize)));
+      }
+      Assert.assertEquals(csv, expected, tokens(CSV.reader(new StringReader(csv))));
+      char[] chars = ("xx" + csv + "yy").toCharArray();
+      Assert.assertEquals(csv, expected, tokens(CSV.reader(chars, 2, chars.length - 2)));
+      Assert.assertEquals(csv, expected, tokens(CSV.readerUtf8(ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8)))));
+      Assert.assertEquals(csv, referenceEvents(csv), events(csv));
+    }
+  }
+
+  @Test
+  public void testBom() throws IOException {
+    byte[] bytes = "\uFEFFa,\"b\"\"c\"\r\n\u00e9".getBytes(StandardCharsets.UTF_8);
+    ByteBuffer bb = ByteBuffer.allocateDirect(bytes.length);
+    bb.put(bytes);
+    bb.flip();
+    List<String> expected = new ArrayList<>();
+    expected.add("E:a");
+    expected.add("E:b\"c");
+    expected.add("END_ROW");
+    expected.add("E:\u00e9");
+    expected.add("END_DOCUMENT");
+    Assert.assertEquals(expected, tokens(CSV.readerUtf8(bb)));
+    Assert.assertEquals(0, bb.position());
+    Assert.assertEquals(expected,
+            tokens(CSV.reader(new StringReader("\uFEFFa,\"b\"\"c\"\r\n\u00e9"))));
+  }
+
+  private static final class EventRecorder implements CsvHandler<Void> {
+
+    private final List<String> events;
+
+    EventRecorder(final List<String> events) {
+      this.events = events;
+    }
+
+    @Override
+    public void startRow() {
+      events.add("START");
+    }
+
+    @Override
+    public void element(final CharSequence elem) {
+      events.add("E:" + elem);
+    }
+
+    @Override
+    public void endRow() {
+      events.add("END");
+    }
+
+    @Override
+    public Void eof() {
+      events.add("EOF");
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author zoly
+ */
+public class Utf8CsvRowSpliteratorTest {
+
+  private static final CharSeparatedValues CSV = new CharSeparatedValues(',');
+
+  private static final String[] VALUES = {"a", "", "bla bla", "with,comma", "with\nnewline", "with \"quotes\"",
+    "\r\n", "\u00e9\u20ac", "1234567890"};
+
+  private static File createTestFile(final int nrRows, final String eol) throws IOException {
+    File file = File.createTempFile("test", ".csv");
+    file.deleteOnExit();
+    Random rnd = new Random(7);
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      writer.append('\uFEFF');
+      for (int i = 0; i < nrRows; i++) {
+        int nrCols = 1 + rnd.nextInt(5);
+        for (int j = 0; j < nrCols; j++) {
+          if (j > 0) {
+            writer.append(',');
+          }
+          CSV.writeCsvElement(VALUES[rnd.nextInt(VALUES.length)] + i, writer);
+        }
+        writer.append(eol);
+      }
+    }
+    return file;
+  }
+
+  private static List<List<String>> readSequential(final File file) throws IOException {
+    String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    List<List<String>> result = new ArrayList<>();
+    for (List<String> row : CSV.asIterable(new StringReader(content))) {
+      result.add(new ArrayList<>(row));
+    }
+    // the sequential reader produces a empty row for the trailing EOL.
+    if (Collections.singletonList("").equals(result.get(result.size() - 1))) {
+      result.remove(result.size() - 1);
+    }
+    return result;
+  }
+
+  @Test
+  public void testParallelRead() throws IOException {
+    for (String eol : Arrays.asList("\n", "\r\n", "\r")) {
+      File file = createTestFile(2000, eol);
+      List<List<String>> expected = readSequential(file);
+      for (int chunkSize : new int[] {7, 64, 1000, Integer.MAX_VALUE}) {
+        Spliterator<List<String>> ordered = Utf8CsvRowSpliterator.create(',', file, chunkSize, true);
+        Assert.assertEquals(expected, StreamSupport.stream(ordered, true).collect(Collectors.toList()));
+        Spliterator<List<String>> unordered = Utf8CsvRowSpliterator.create(',', file, chunkSize, false);
+        List<List<String>> rows = new ArrayList<>(expected.size());
+        StreamSupport.stream(unordered, true).forEach((row) -> {
+          synchronized (rows) {
+            rows.add(row);
+          }
+        });
+        Assert.assertEquals(expected.size(), rows.size());
+        Assert.assertEquals(toStrings(expected), toStrings(rows));
+      }
+      Assert.assertEquals(expected, CSV.readRowsParallelUtf8(file, true).collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    File file = File.createTempFile("test", ".csv");
+    file.deleteOnExit();
+    Assert.assertEquals(0, CSV.readRowsParallelUtf8(file, false).count());
+  }
+
+  private static List<String> toStrings(final List<List<String>> rows) {
+    return rows.stream().map(Object::toString).sorted().collect(Collectors.toList());
+  }
+
+}
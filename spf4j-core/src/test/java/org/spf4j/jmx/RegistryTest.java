@@ -19,9 +19,24 @@
 
 package org.spf4j.jmx;
 
+import com.google.common.io.CharStreams;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.management.AttributeNotFoundException;
 import javax.management.InstanceNotFoundException;
 import javax.management.InvalidAttributeValueException;
@@ -33,6 +48,9 @@ import org.junit.Test;
 import org.spf4j.base.Reflections;
 import org.spf4j.base.Runtime.Jmx;
 import org.spf4j.base.Throwables;
+import org.spf4j.concurrent.DefaultExecutor;
+import org.spf4j.ds.UpdateablePriorityQueue;
+import org.spf4j.io.tcp.DeadlineAction;
 
 /**
  *
@@ -275,4 +293,117 @@ public final class RegistryTest {
         Assert.assertNotNull(info);
     }
 
+    @Test
+    public void testSnapshot() {
+        JmxTest testObj = new JmxTest();
+        testObj.setDoubleVal(3.5);
+        testObj.setBooleanFlag(true);
+        testObj.setStringVal("str");
+        Registry.export("snapshot.test", "Test", testObj);
+        try {
+            Map<String, Object> values =
+                    Registry.snapshot().get(ExportedValuesMBean.createObjectName("snapshot.test", "Test"));
+            Assert.assertEquals(3.5, values.get("doubleVal"));
+            Assert.assertEquals(Boolean.TRUE, values.get("booleanFlag"));
+            Assert.assertEquals("str", values.get("stringVal"));
+            StringBuilder sb = new StringBuilder();
+            ScrapeClientHandler.writeMetrics(sb);
+            String metrics = sb.toString();
+            Assert.assertTrue(metrics, metrics.contains("snapshot_test_Test_doubleVal 3.5\n"));
+            Assert.assertTrue(metrics, metrics.contains("snapshot_test_Test_booleanFlag 1\n"));
+            Assert.assertFalse(metrics, metrics.contains("snapshot_test_Test_stringVal"));
+        } finally {
+            Registry.unregister("snapshot.test", "Test");
+        }
+    }
+
+    @Test
+    public void testScrapeHttp() throws IOException, InterruptedException, ExecutionException {
+        String getResponse = scrape("GET /metrics HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        int headerEnd = getResponse.indexOf("\r\n\r\n");
+        Assert.assertTrue(getResponse, getResponse.startsWith("HTTP/1.1 200 OK\r\n"));
+        String body = getResponse.substring(headerEnd + 4);
+        Assert.assertTrue(getResponse, getResponse.contains("Content-Length: "
+                + body.getBytes(StandardCharsets.UTF_8).length + "\r\n"));
+        String headResponse = scrape("HEAD /metrics HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        Assert.assertTrue(headResponse, headResponse.startsWith("HTTP/1.1 200 OK\r\n"));
+        Assert.assertTrue(headResponse, headResponse.contains("Content-Length: "));
+        Assert.assertTrue(headResponse, headResponse.endsWith("\r\n\r\n"));
+    }
+
+    @Test
+    public void testScrapeHandleDeadline() throws IOException, InterruptedException {
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+                Selector selector = Selector.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            // the client sends no request, the handler is blocked reading it until the deadline action runs.
+            try (Socket client = new Socket(InetAddress.getLoopbackAddress(), server.socket().getLocalPort())) {
+                SocketChannel clientChannel = server.accept();
+                BlockingQueue<Runnable> tasksToRunBySelector = new ArrayBlockingQueue<>(64);
+                UpdateablePriorityQueue<DeadlineAction> deadlineActions
+                        = new UpdateablePriorityQueue<>(64, DeadlineAction.COMPARATOR);
+                new ScrapeClientHandler(0).handle(selector, clientChannel, DefaultExecutor.INSTANCE,
+                        tasksToRunBySelector, deadlineActions);
+                Assert.assertEquals(1, deadlineActions.size());
+                DeadlineAction peek = deadlineActions.peek();
+                while (System.currentTimeMillis() <= peek.getDeadline()) {
+                    Thread.sleep(1);
+                }
+                // run the expired deadline actions the way the TcpServer selector loop does.
+                deadlineActions.poll().getAction().run();
+                Assert.assertFalse(clientChannel.isOpen());
+                Assert.assertEquals(-1, client.getInputStream().read());
+                Runnable task = tasksToRunBySelector.poll(10, TimeUnit.SECONDS);
+                Assert.assertNotNull(task);
+                // the selector must have been woken up to run the task.
+                long startSelect = System.currentTimeMillis();
+                selector.select(10000);
+                Assert.assertTrue(System.currentTimeMillis() - startSelect < 5000);
+                task.run();
+                Assert.assertTrue(deadlineActions.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testScrapeHandleRemovesDeadline() throws IOException, InterruptedException {
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+                Selector selector = Selector.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (Socket client = new Socket(InetAddress.getLoopbackAddress(), server.socket().getLocalPort())) {
+                BlockingQueue<Runnable> tasksToRunBySelector = new ArrayBlockingQueue<>(64);
+                UpdateablePriorityQueue<DeadlineAction> deadlineActions
+                        = new UpdateablePriorityQueue<>(64, DeadlineAction.COMPARATOR);
+                new ScrapeClientHandler(60000).handle(selector, server.accept(), DefaultExecutor.INSTANCE,
+                        tasksToRunBySelector, deadlineActions);
+                client.getOutputStream().write('\n');
+                CharStreams.toString(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                Runnable task = tasksToRunBySelector.poll(10, TimeUnit.SECONDS);
+                Assert.assertNotNull(task);
+                Assert.assertEquals(1, deadlineActions.size());
+                // served in time, the selector thread removes the deadline action.
+                task.run();
+                Assert.assertTrue(deadlineActions.isEmpty());
+            }
+        }
+    }
+
+    private static String scrape(final String request)
+            throws IOException, InterruptedException, ExecutionException {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            Future<?> served = DefaultExecutor.INSTANCE.submit(() -> {
+                ScrapeClientHandler.serve(server.accept());
+                return null;
+            });
+            try (Socket client = new Socket(InetAddress.getLoopbackAddress(), server.socket().getLocalPort())) {
+                client.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+                String response = CharStreams.toString(new InputStreamReader(client.getInputStream(),
+                        StandardCharsets.UTF_8));
+                served.get();
+                return response;
+            }
+        }
+    }
+
 }
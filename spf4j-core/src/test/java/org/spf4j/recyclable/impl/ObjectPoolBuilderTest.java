@@ -81,9 +81,13 @@ public final class ObjectPoolBuilderTest {
         pool.get();
         pool.get();
         System.out.println(pool);
-        org.spf4j.base.Runtime.setDeadline(System.currentTimeMillis() + 1000);
-        pool.dispose();
-        pool.get();
+        long prevDeadline = org.spf4j.base.Runtime.swapDeadline(System.currentTimeMillis() + 1000);
+        try {
+            pool.dispose();
+            pool.get();
+        } finally {
+            org.spf4j.base.Runtime.setDeadline(prevDeadline);
+        }
         System.out.println(pool);
     }
 
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.ssdump2;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spf4j.stackmonitor.SampleNode;
+
+/**
+ *
+ * @author zoly
+ */
+public class MultiProfileTest {
+
+    private static SampleNode sample(final String clasz, final int depth) {
+        StackTraceElement[] st = new StackTraceElement[depth];
+        for (int i = 0; i < depth; i++) {
+            st[i] = new StackTraceElement(clasz, "m" + i, clasz + ".java", 10 + i);
+        }
+        SampleNode node = SampleNode.createSampleNode(st);
+        SampleNode.addToSampleNode(node, st[0]);
+        return node;
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        File file = File.createTempFile("test", ".ssdump3");
+        SampleNode p1 = sample("C1", 3);
+        SampleNode p2 = sample("C2", 5);
+        try (MultiProfileWriter writer = new MultiProfileWriter(file)) {
+            writer.write("test1", p1);
+            writer.write("test2", p2);
+            Assert.assertEquals(2, writer.getNrProfiles());
+        }
+        MultiProfileReader reader = new MultiProfileReader(file);
+        Assert.assertTrue(reader.isIndexed());
+        Assert.assertEquals(Arrays.asList("test1", "test2"), Arrays.asList(reader.getLabels().toArray()));
+        Assert.assertEquals(p2.toString(), reader.read("test2").toString());
+        Assert.assertEquals(p1.toString(), reader.read("test1").toString());
+        Assert.assertNull(reader.read("test3"));
+    }
+
+    @Test
+    public void testReadUnclosed() throws IOException {
+        File file = File.createTempFile("test", ".ssdump3");
+        SampleNode p1 = sample("C1", 4);
+        MultiProfileWriter writer = new MultiProfileWriter(file);
+        try {
+            writer.write("test1", p1);
+            writer.flush();
+            MultiProfileReader reader = new MultiProfileReader(file);
+            Assert.assertFalse(reader.isIndexed());
+            Assert.assertEquals(p1.toString(), reader.read("test1").toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.text;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Locale;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author zoly
+ */
+public class CompiledMessageFormatTest {
+
+  private static final String[] PATTERNS = {
+    "bla bla bla",
+    "{0}, {1}",
+    "pre {1}, {0}, {2,number,$'#',##} suf",
+    "n={2} d={3,date,short} t={3,time,medium} {3} '{'quoted'}' it''s",
+    "{2,number,integer} {2,number,percent} {4}",
+    "There {2,choice,0#are no files|1#is one file|1<are {2,number,integer} files} in {0}.",
+    "missing {7} null {4}"
+  };
+
+  @Test
+  public void testSameAsMessageFormat() throws IOException {
+    Object[] args = {"a", "b", 1234.5, new Date(1000000000000L), null};
+    for (String pattern : PATTERNS) {
+      for (Locale locale : new Locale[] {Locale.US, Locale.GERMANY}) {
+        StringBuilder expected = new StringBuilder();
+        new MessageFormat(pattern, locale).format(args, expected, null);
+        CompiledMessageFormat compiled = CompiledMessageFormat.compile(pattern, locale);
+        Assert.assertSame(compiled, CompiledMessageFormat.compile(pattern, locale));
+        Assert.assertEquals(expected.toString(), compiled.format(args));
+        StringBuilder sb = new StringBuilder("x");
+        compiled.format(args, sb);
+        Assert.assertEquals("x" + expected, sb.toString());
+        Assert.assertEquals(new java.text.MessageFormat(pattern, locale).format(args), compiled.format(args));
+      }
+    }
+  }
+
+  @Test
+  public void testStaticFormat() {
+    Assert.assertEquals("a 1 {1}", MessageFormat.format("{0} {1,number,integer} '{1}'", "a", 1));
+    Assert.assertEquals("{0}", MessageFormat.format("{0}", (Object[]) null));
+  }
+
+  @Test
+  public void testFormatPattern() {
+    Object[] args = {"a", "b", 1234.5, new Date(1000000000000L), null};
+    for (String pattern : PATTERNS) {
+      Assert.assertEquals(new java.text.MessageFormat(pattern, Locale.US).format(args),
+              CompiledMessageFormat.formatPattern(pattern, Locale.US, args));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPattern() {
+    CompiledMessageFormat.compile("{0", Locale.US);
+  }
+
+}
@@ -5,17 +5,21 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
 import org.junit.Assert;
 import org.junit.Test;
 import org.spf4j.base.Either;
 import org.spf4j.tsdb2.avro.ColumnDef;
 import org.spf4j.tsdb2.avro.DataBlock;
+import org.spf4j.tsdb2.avro.DataRow;
 import org.spf4j.tsdb2.avro.TableDef;
 
 /**
@@ -69,6 +73,81 @@ public class TSDBReaderTest {
 
   }
 
+  @Test
+  public void testProjections() throws IOException {
+    File testFile = File.createTempFile("test", ".tsdb2");
+    long tableId;
+    final long time = System.currentTimeMillis();
+    try (TSDBWriter writer = new TSDBWriter(testFile, 4, "test", false)) {
+      tableId = writer.writeTableDef(tableDef);
+      for (int i = 0; i < 10; i++) {
+        writer.writeDataRow(tableId, time + i * 10, i, 1, 2);
+      }
+    }
+    int nrRows = 0;
+    try (TSDBReader reader = new TSDBReader(testFile, 1024, TSDBReader.SKIP_ROW_DATA_PROJECTION)) {
+      Either<TableDef, DataBlock> read;
+      while ((read = reader.read()) != null) {
+        if (read.isLeft()) {
+          Assert.assertEquals(tableDef.getColumns(), read.getLeft().getColumns());
+        } else {
+          for (DataRow row : read.getRight().getValues()) {
+            Assert.assertEquals(tableId, row.tableDefId);
+            Assert.assertEquals(time + nrRows * 10, read.getRight().baseTimestamp + row.relTimeStamp);
+            Assert.assertNull(row.data);
+            nrRows++;
+          }
+        }
+      }
+    }
+    Assert.assertEquals(10, nrRows);
+    ListMultimap<String, TSDBQuery.TableDefEx> ranges = TSDBQuery.getAllTablesWithDataRanges(testFile);
+    TSDBQuery.TableDefEx range = ranges.get(tableDef.getName()).get(0);
+    Assert.assertEquals(time, range.getStartTime());
+    Assert.assertEquals(time + 90, range.getEndTime());
+    Assert.assertEquals(1, TSDBQuery.getTableDef(testFile, tableDef.getName()).size());
+  }
+
+  @Test
+  public void testTimeSeriesBuckets() throws IOException {
+    File testFile = File.createTempFile("test", ".tsdb2");
+    long tableId;
+    // rows are stored relative (int) to the block base timestamp, which is the current time.
+    final long time = System.currentTimeMillis();
+    try (TSDBWriter writer = new TSDBWriter(testFile, 4, "test", false)) {
+      tableId = writer.writeTableDef(tableDef);
+      for (int i = 0; i < 100; i++) {
+        writer.writeDataRow(tableId, time + i * 10, i, -i, 2);
+      }
+    }
+    List<TableDef> tables = TSDBQuery.getTableDef(testFile, tableDef.getName());
+    TimeSeriesBuckets buckets = TSDBQuery.getTimeSeriesBuckets(testFile, tables, time, time + 999, 10);
+    Assert.assertEquals(10, buckets.getNrBuckets());
+    Assert.assertEquals(100, buckets.getBucketMillis());
+    for (int b = 0; b < 10; b++) {
+      Assert.assertEquals(time + b * 100, buckets.getBucketStart(b));
+      Assert.assertEquals(10, buckets.getRowCount(b));
+      Assert.assertEquals(b * 10, buckets.getMin(b, 0));
+      Assert.assertEquals(b * 10 + 9, buckets.getMax(b, 0));
+      Assert.assertEquals(-(b * 10 + 9), buckets.getMin(b, 1));
+      Assert.assertEquals(b * 100 + 45, buckets.getSum(b, 0), 0.001);
+      Assert.assertEquals(20, buckets.getSum(b, 2), 0.001);
+    }
+    buckets = TSDBQuery.getTimeSeriesBuckets(testFile, tables, time + 500, time + 10000, 3);
+    Assert.assertTrue(buckets.getNrBuckets() <= 3);
+    Assert.assertEquals(1, buckets.getNrNonEmptyBuckets());
+    Assert.assertEquals(50, buckets.getRowCount(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidProjection() throws IOException {
+    Schema projection = SchemaBuilder.record(DataBlock.SCHEMA$.getName())
+            .namespace(DataBlock.SCHEMA$.getNamespace()).fields()
+            .name("values").type(Schema.createArray(DataRow.SCHEMA$)).noDefault()
+            .endRecord();
+    TSDBReader.validateProjection(projection, DataBlock.SCHEMA$);
+  }
+
   @Test
   public void testTailing() throws IOException, InterruptedException, ExecutionException, TimeoutException {
     File TEST_FILE = File.createTempFile("test", ".tsdb2");
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.avro;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.spf4j.io.ByteArrayBuilder;
+
+/**
+ * AVROZ block encoding/decoding.
+ * A block is a snappy frame with the payload: [int nrRecords][avro binary record]...[avro binary record]
+ * Blocks are self contained, as such they can be encoded/decoded independently (in parallel).
+ *
+ * @author zoly
+ */
+final class AvroBlocks {
+
+  /**
+   * blocks that do not compress to less than this ratio are stored uncompressed.
+   */
+  static final float COMPRESSION_THRESHOLD = 0.85f;
+
+  /**
+   * frame header size: flag + 3 bytes length.
+   */
+  static final int FRAME_HEADER_SIZE = 4;
+
+  private AvroBlocks() { }
+
+  /**
+   * Encode a set of records into a snappy frame (compressed + crc32c).
+   */
+  static byte[] encode(final List<?> records, final DatumWriter<Object> writer) throws IOException {
+    ByteArrayBuilder payload = new ByteArrayBuilder(8192);
+    int nrRecords = records.size();
+    payload.write(nrRecords >>> 24);
+    payload.write(nrRecords >>> 16);
+    payload.write(nrRecords >>> 8);
+    payload.write(nrRecords);
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(payload, null);
+    for (Object record : records) {
+      writer.write(record, encoder);
+    }
+    encoder.flush();
+    ByteArrayBuilder frame = new ByteArrayBuilder(payload.size() / 2 + 16);
+    SnappyFrameUtils.writeFrame(frame, payload.getBuffer(), 0, payload.size(), COMPRESSION_THRESHOLD);
+    return frame.toByteArray();
+  }
+
+  /**
+   * Decode the payload of a data frame.
+   */
+  static <T> List<T> decode(final byte[] payload, final int length, final DatumReader<Object> reader)
+          throws IOException {
+    if (length < 4) {
+      throw new IOException("Invalid block, length = " + length);
+    }
+    int nrRecords = ((payload[0] & 0xff) << 24) | ((payload[1] & 0xff) << 16)
+            | ((payload[2] & 0xff) << 8) | (payload[3] & 0xff);
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(payload, 4, length - 4, null);
+    List<T> result = new ArrayList<>(nrRecords);
+    for (int i = 0; i < nrRecords; i++) {
+      result.add((T) reader.read(null, decoder));
+    }
+    return result;
+  }
+
+  /**
+   * Build the frame index, by reading only the frame headers.
+   * @return the frame offsets.
+   */
+  static long[] indexFrames(final FileChannel channel, final long start, final long end) throws IOException {
+    long[] offsets = new long[64];
+    int nrFrames = 0;
+    ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+    long pos = start;
+    while (pos < end) {
+      header.clear();
+      readFully(channel, header, pos);
+      int flag = header.get(0) & 0xff;
+      int length = (header.get(1) & 0xff) | (header.get(2) & 0xff) << 8 | (header.get(3) & 0xff) << 16;
+      if (flag == SnappyFrameUtils.COMPRESSED_DATA_FLAG || flag == SnappyFrameUtils.UNCOMPRESSED_DATA_FLAG) {
+        if (nrFrames >= offsets.length) {
+          offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[nrFrames++] = pos;
+      }
+      pos += FRAME_HEADER_SIZE + length;
+    }
+    return Arrays.copyOf(offsets, nrFrames);
+  }
+
+  /**
+   * Read and uncompress a data frame (positional read, can be invoked concurrently).
+   */
+  static SnappyFrameUtils.Frame readFrame(final FileChannel channel, final long pos) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+    readFully(channel, header, pos);
+    int length = (header.get(1) & 0xff) | (header.get(2) & 0xff) << 8 | (header.get(3) & 0xff) << 16;
+    ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + length);
+    header.flip();
+    frame.put(header);
+    readFully(channel, frame, pos + FRAME_HEADER_SIZE);
+    return SnappyFrameUtils.readFrame(new ByteArrayInputStream(frame.array()), (int size) -> new byte[size]);
+  }
+
+  private static void readFully(final FileChannel channel, final ByteBuffer to, final long position)
+          throws IOException {
+    long pos = position;
+    while (to.hasRemaining()) {
+      int read = channel.read(to, pos);
+      if (read < 0) {
+        throw new EOFException("Unexpected end of file at " + pos + " reading " + channel);
+      }
+      pos += read;
+    }
+  }
+
+}
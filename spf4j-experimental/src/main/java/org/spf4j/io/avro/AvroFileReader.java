@@ -32,9 +32,12 @@ import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.annotation.Nullable;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericDatumReader;
@@ -63,7 +66,18 @@ public final class AvroFileReader<T extends IndexedRecord> implements Closeable
   private final GenericDatumReader<Object> recordReader;
   private RandomAccessFile raf;
   private final File file;
+  private List<T> block;
+  private int blockIdx;
 
+  /**
+   * @param file - the file to read.
+   * @param schema - the reader schema, can be a projection (subset) of the file content schema
+   * (see org.spf4j.avro.schema.Schemas.project), in which case the fields not part of it are skipped
+   * at the byte level. When reading SpecificRecords the projection must keep the field positions,
+   * use GenericRecord as record type otherwise.
+   * @param recordType - the record type.
+   * @param bufferSize - the read buffer size.
+   */
   public AvroFileReader(final File file, final Schema schema, final Class<T> recordType, final int bufferSize)
           throws IOException {
     this.file = file;
@@ -102,11 +116,28 @@ public final class AvroFileReader<T extends IndexedRecord> implements Closeable
 
   @Nullable
   public synchronized T read() throws IOException {
-    final long position = bis.getReadBytes();
-    if (position >= size) {
-      return null;
+    while (block == null || blockIdx >= block.size()) {
+      final long position = bis.getReadBytes();
+      if (position >= size) {
+        return null;
+      }
+      SnappyFrameUtils.Frame frame = SnappyFrameUtils.readFrame(bis, (int len) -> new byte[len]);
+      if (frame.getFrameType() == SnappyFrameUtils.FrameType.DATA) {
+        block = AvroBlocks.decode(frame.getData(), frame.getLength(), recordReader);
+        blockIdx = 0;
+      }
     }
-    return (T) recordReader.read(null, decoder);
+    return block.get(blockIdx++);
+  }
+
+  /**
+   * Stream the records of a file, the stream can be parallel, in which case the blocks are decoded in parallel.
+   * (see AvroFileSpliterator)
+   */
+  public static <T extends IndexedRecord> Stream<T> stream(final File file, final Schema schema,
+          final Class<T> recordType, final boolean parallel) throws IOException {
+    AvroFileSpliterator<T> spliterator = AvroFileSpliterator.open(file, schema, recordType);
+    return StreamSupport.stream(spliterator, parallel).onClose(spliterator::close);
   }
 
   @Override
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.avro;
+
+import com.google.common.annotations.Beta;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificRecord;
+import org.spf4j.io.MemorizingBufferedInputStream;
+import org.spf4j.tsdb2.avro.Header;
+
+/**
+ * A spliterator over the records of a AVROZ file.
+ *
+ * The file frames are indexed upfront (only the frame headers are read), the spliterator splits
+ * on frame boundaries, and every split reads (positional reads on a shared channel), uncompresses,
+ * checks and decodes its own frames, so a parallel stream will decode the frames in parallel.
+ * The file is read up to the last frame end committed when the spliterator was opened.
+ *
+ * @author zoly
+ */
+@Beta
+public final class AvroFileSpliterator<T extends IndexedRecord> implements Spliterator<T>, Closeable {
+
+  private final FileChannel channel;
+
+  private final long[] frames;
+
+  private final Schema writerSchema;
+
+  private final Schema readerSchema;
+
+  private final boolean specific;
+
+  private final DatumReader<Object> reader;
+
+  private int frameIdx;
+
+  private final int frameEnd;
+
+  private List<T> block;
+
+  private int blockIdx;
+
+  private AvroFileSpliterator(final FileChannel channel, final long[] frames, final int from, final int to,
+          final Schema writerSchema, final Schema readerSchema, final boolean specific) {
+    this.channel = channel;
+    this.frames = frames;
+    this.frameIdx = from;
+    this.frameEnd = to;
+    this.writerSchema = writerSchema;
+    this.readerSchema = readerSchema;
+    this.specific = specific;
+    if (specific) {
+      this.reader = new SpecificDatumReader<>(writerSchema, readerSchema);
+    } else {
+      this.reader = new GenericDatumReader<>(writerSchema, readerSchema);
+    }
+  }
+
+  public static <T extends IndexedRecord> AvroFileSpliterator<T> open(final File file, final Schema schema,
+          final Class<T> recordType) throws IOException {
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      MemorizingBufferedInputStream bis = new MemorizingBufferedInputStream(Channels.newInputStream(channel));
+      DataInputStream dis = new DataInputStream(bis);
+      AvroFileWriter.validateType(dis);
+      long size = dis.readLong();
+      SpecificDatumReader<Header> hreader = new SpecificDatumReader<>(Header.getClassSchema());
+      Header header = hreader.read(null, DecoderFactory.get().directBinaryDecoder(dis, null));
+      long headerEnd = bis.getReadBytes();
+      long[] frames = AvroBlocks.indexFrames(channel, headerEnd, size);
+      return new AvroFileSpliterator<>(channel, frames, 0, frames.length,
+              new Schema.Parser().parse(header.getContentSchema()), schema,
+              SpecificRecord.class.isAssignableFrom(recordType));
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  @Override
+  public boolean tryAdvance(final Consumer<? super T> action) {
+    while (block == null || blockIdx >= block.size()) {
+      if (frameIdx >= frameEnd) {
+        return false;
+      }
+      try {
+        SnappyFrameUtils.Frame frame = AvroBlocks.readFrame(channel, frames[frameIdx++]);
+        block = AvroBlocks.decode(frame.getData(), frame.getLength(), reader);
+        blockIdx = 0;
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+    action.accept(block.get(blockIdx++));
+    return true;
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    int remaining = frameEnd - frameIdx;
+    if (remaining < 2) {
+      return null;
+    }
+    int mid = frameIdx + remaining / 2;
+    AvroFileSpliterator<T> prefix = new AvroFileSpliterator<>(channel, frames, frameIdx, mid,
+            writerSchema, readerSchema, specific);
+    prefix.block = block;
+    prefix.blockIdx = blockIdx;
+    block = null;
+    frameIdx = mid;
+    return prefix;
+  }
+
+  /**
+   * @return the number of remaining frames, the number of records per frame is not known upfront.
+   */
+  @Override
+  public long estimateSize() {
+    return frameEnd - frameIdx;
+  }
+
+  @Override
+  public int characteristics() {
+    return Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+  }
+
+  /**
+   * close the underlying file (shared by all splits).
+   */
+  @Override
+  public void close() {
+    try {
+      channel.close();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "AvroFileSpliterator{" + "channel=" + channel + ", frames=" + frames.length + ", frameIdx=" + frameIdx
+            + ", frameEnd=" + frameEnd + '}';
+  }
+
+}
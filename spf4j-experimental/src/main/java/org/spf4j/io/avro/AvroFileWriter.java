@@ -27,12 +27,18 @@ import java.io.FileInputStream;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.IndexedRecord;
@@ -53,9 +59,16 @@ import org.spf4j.tsdb2.avro.Header;
  * File format to sequentially write Avro records.
  * Format:
  *
- * AVROZ[ptr LastFrameEnd][Header][Snappy Frame]....[Snappy Frame]
+ * AVRZ2[ptr LastFrameEnd][Header][Snappy Frame]....[Snappy Frame]
  *
  * Snappy frame detail: https://github.com/google/snappy/blob/master/framing_format.txt
+ * Every frame contains a block of records: [int nrRecords][record]...[record]
+ *
+ * The previous version of this format (magic AVROZ) stored uncompressed blocks: [int nrRecords][int size][records],
+ * files in the previous format are rejected with a explicit error, and need to be re-written with the current writer.
+ *
+ * When constructed with a executor, blocks are encoded, compressed and checksummed on the executor,
+ * with up to maxPendingBlocks blocks in flight, the blocks are written to the file in order.
  *
  * @author zoly
  */
@@ -67,16 +80,49 @@ public final class AvroFileWriter<T extends IndexedRecord> implements Closeable,
   private final BinaryEncoder encoder;
   private final Header header;
   private final GenericDatumWriter<Object> recordWriter;
-  private final List<T> writeBlocks;
+  private List<T> writeBlocks;
   private final int maxRowsPerBlock;
   private final RandomAccessFile raf;
+  @Nullable
+  private final ExecutorService blockEncoder;
+  private final int maxPendingBlocks;
+  private final ArrayDeque<Future<byte[]>> pendingBlocks;
+  /**
+   * true if frames have been written since the last EOF pointer update.
+   */
+  private boolean uncommitted;
+
+  static final byte[] MAGIC = Strings.toUtf8("AVRZ2");
 
-  static final byte[] MAGIC = Strings.toUtf8("AVROZ");
+  /**
+   * The magic of the previous, uncompressed block format.
+   */
+  static final byte[] LEGACY_MAGIC = Strings.toUtf8("AVROZ");
   private final ByteArrayBuilder bab;
 
   @CreatesObligation
   public AvroFileWriter(final File file, final Schema schema, final Class<?> objectType,
           final int maxRowsPerBlock, final String description, final boolean append) throws IOException {
+    this(file, schema, objectType, maxRowsPerBlock, description, append, null, 0);
+  }
+
+  /**
+   * @param blockEncoder - the executor to encode the blocks with, if null blocks are encoded on flush.
+   * @param maxPendingBlocks - the maximum number of blocks being encoded, must be at least 1 when a blockEncoder
+   * is provided.
+   */
+  @CreatesObligation
+  public AvroFileWriter(final File file, final Schema schema, final Class<?> objectType,
+          final int maxRowsPerBlock, final String description, final boolean append,
+          @Nullable final ExecutorService blockEncoder, final int maxPendingBlocks) throws IOException {
+    if (blockEncoder != null && maxPendingBlocks < 1) {
+      throw new IllegalArgumentException("maxPendingBlocks must be at least 1, not " + maxPendingBlocks
+              + " for " + file);
+    }
+    this.blockEncoder = blockEncoder;
+    this.maxPendingBlocks = maxPendingBlocks;
+    this.uncommitted = false;
+    this.pendingBlocks = new ArrayDeque<>(Math.max(1, maxPendingBlocks));
     if (SpecificRecord.class.isAssignableFrom(objectType)) {
       recordWriter = new SpecificDatumWriter<>(schema);
     } else {
@@ -130,6 +176,9 @@ public final class AvroFileWriter<T extends IndexedRecord> implements Closeable,
     byte[] readMagic = new byte[MAGIC.length];
     ByteStreams.readFully(dis, readMagic);
     if (!Arrays.equals(MAGIC, readMagic)) {
+      if (Arrays.equals(LEGACY_MAGIC, readMagic)) {
+        throw new IOException("Unsupported legacy (uncompressed blocks) AVROZ file, please re-write it");
+      }
       throw new IOException("wrong file type, magic is " + Arrays.toString(readMagic));
     }
   }
@@ -137,10 +186,47 @@ public final class AvroFileWriter<T extends IndexedRecord> implements Closeable,
   public synchronized void write(final T record) throws IOException {
     writeBlocks.add(record);
     if (writeBlocks.size() >= maxRowsPerBlock) {
-      flush();
+      if (blockEncoder == null) {
+        flush();
+      } else {
+        submitBlock();
+        if (pendingBlocks.size() > maxPendingBlocks) {
+          do {
+            writeFrame(takeBlock());
+          } while (pendingBlocks.size() > maxPendingBlocks);
+          commit();
+        }
+      }
     }
   }
 
+  private void submitBlock() {
+    final List<T> block = writeBlocks;
+    writeBlocks = new ArrayList<>(maxRowsPerBlock);
+    pendingBlocks.addLast(blockEncoder.submit(() -> AvroBlocks.encode(block, recordWriter)));
+  }
+
+  private byte[] takeBlock() throws IOException {
+    Future<byte[]> block = pendingBlocks.removeFirst();
+    try {
+      return block.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing to " + file);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Cannot encode block for " + file, cause);
+    }
+  }
+
+  private void writeFrame(final byte[] frame) throws IOException {
+    raf.write(frame);
+    uncommitted = true;
+  }
+
 
   @Override
   public synchronized void close() throws IOException {
@@ -176,23 +262,34 @@ public final class AvroFileWriter<T extends IndexedRecord> implements Closeable,
    */
   @Override
   public synchronized void flush() throws IOException {
-    int nrRecords = writeBlocks.size();
-    if (nrRecords > 0) {
-      bab.reset();
-      for (T obj : writeBlocks) {
-        this.recordWriter.write(obj, this.encoder);
+    if (blockEncoder == null) {
+      if (writeBlocks.isEmpty()) {
+        return;
       }
-      int bsize = bab.size();
-
-      raf.writeInt(nrRecords);
-      raf.writeInt(bsize);
-      raf.write(bab.getBuffer(), 0, bsize);
-      encoder.flush();
-      channel.force(true);
-      updateEOFPtrPointer();
+      writeFrame(AvroBlocks.encode(writeBlocks, recordWriter));
       writeBlocks.clear();
-      channel.force(true);
+    } else {
+      if (!writeBlocks.isEmpty()) {
+        submitBlock();
+      }
+      while (!pendingBlocks.isEmpty()) {
+        writeFrame(takeBlock());
+      }
+    }
+    commit();
+  }
+
+  /**
+   * make the written frames visible to readers.
+   */
+  private void commit() throws IOException {
+    if (!uncommitted) {
+      return;
     }
+    channel.force(true);
+    updateEOFPtrPointer();
+    channel.force(true);
+    uncommitted = false;
   }
 
   private void updateEOFPtrPointer() throws IOException {
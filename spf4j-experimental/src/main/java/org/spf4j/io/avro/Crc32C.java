@@ -17,26 +17,122 @@
  */
 package org.spf4j.io.avro;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
 import java.util.zip.Checksum;
 
 /**
- * A pure-java implementation of the CRC32 checksum that uses the CRC32-C polynomial, the same polynomial used by iSCSI
+ * CRC32 checksum that uses the CRC32-C polynomial, the same polynomial used by iSCSI
  * and implemented on many Intel chipsets supporting SSE4.2.
+ * <p>
+ * When available (java 9+) the JDK java.util.zip.CRC32C is used, which is a hardware accelerated intrinsic on
+ * most platforms. The JDK implementation is resolved at runtime via method handles so that this class stays
+ * java 8 compatible, where the pure java (slicing by 8) implementation is used.
+ * The pure java implementation can be forced with -Dspf4j.crc32c.pureJava=true.
+ * <p>
+ * Heap and direct ByteBuffers are checksummed in place, without copying.
  */
-// this code was taken from Apache Hadoop
+// the pure java implementation was taken from Apache Hadoop
 final class Crc32C
         implements Checksum {
 
   private static final int MASK_DELTA = 0xa282ead8;
 
+  /**
+   * java.util.zip.CRC32C constructor, null when not available.
+   */
+  private static final MethodHandle NEW_JDK_CRC;
+
+  /**
+   * java.util.zip.CRC32C.update(ByteBuffer), null when not available.
+   */
+  private static final MethodHandle JDK_UPDATE_BUFFER;
+
+  /**
+   * reusable JDK instances for the one shot static methods, null when not available.
+   */
+  private static final ThreadLocal<Checksum> JDK_CRCS;
+
+  static {
+    MethodHandle ctor = null;
+    MethodHandle updateBuffer = null;
+    if (!Boolean.getBoolean("spf4j.crc32c.pureJava")) {
+      try {
+        Class<?> jdkClass = Class.forName("java.util.zip.CRC32C");
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        ctor = lookup.findConstructor(jdkClass, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Checksum.class));
+        updateBuffer = lookup.findVirtual(jdkClass, "update", MethodType.methodType(void.class, ByteBuffer.class))
+                .asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+      } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException ex) {
+        // java 8, will use the pure java implementation.
+        ctor = null;
+        updateBuffer = null;
+      }
+    }
+    NEW_JDK_CRC = ctor;
+    JDK_UPDATE_BUFFER = updateBuffer;
+    JDK_CRCS = ctor == null ? null : ThreadLocal.withInitial(Crc32C::newJdkCrc);
+  }
+
+  /**
+   * @return true if the JDK (intrinsic) implementation is used.
+   */
+  static boolean isJdkImplementation() {
+    return NEW_JDK_CRC != null;
+  }
+
+  private static Checksum newJdkCrc() {
+    try {
+      return (Checksum) NEW_JDK_CRC.invokeExact();
+    } catch (RuntimeException | Error ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private static void jdkUpdate(final Checksum jdkCrc, final ByteBuffer buffer) {
+    try {
+      JDK_UPDATE_BUFFER.invokeExact(jdkCrc, buffer);
+    } catch (RuntimeException | Error ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
   public static int maskedCrc32c(final byte[] data) {
     return maskedCrc32c(data, 0, data.length);
   }
 
   public static int maskedCrc32c(final byte[] data, final int offset, final int length) {
+    if (JDK_CRCS != null) {
+      Checksum jdkCrc = JDK_CRCS.get();
+      jdkCrc.reset();
+      jdkCrc.update(data, offset, length);
+      return mask((int) jdkCrc.getValue());
+    }
     return mask(~Crc32C.update(0xffffffff, data, offset, length));
   }
 
+  /**
+   * Compute the masked crc of the remaining bytes of a heap or direct buffer.
+   * @param data - the data, the buffer position is not changed.
+   * @return the masked crc.
+   */
+  public static int maskedCrc32c(final ByteBuffer data) {
+    if (JDK_CRCS != null) {
+      Checksum jdkCrc = JDK_CRCS.get();
+      jdkCrc.reset();
+      jdkUpdate(jdkCrc, data.duplicate());
+      return mask((int) jdkCrc.getValue());
+    }
+    return mask(~Crc32C.update(0xffffffff, data, data.position(), data.remaining()));
+  }
+
   /**
    * Return a masked representation of crc.
    * <p/>
@@ -56,15 +152,21 @@ final class Crc32C
     return ((rot >>> 17) | (rot << 15));
   }
 
+  /**
+   * the JDK implementation this instance delegates to, null when using the pure java implementation.
+   */
+  private final Checksum jdkCrc;
+
   /**
    * the current CRC value, bit-flipped
    */
   private int crc;
 
   /**
-   * Create a new PureJavaCrc32 object.
+   * Create a new Crc32C object.
    */
   public Crc32C() {
+    jdkCrc = NEW_JDK_CRC == null ? null : newJdkCrc();
     reset();
   }
 
@@ -73,23 +175,53 @@ final class Crc32C
   }
 
   public int getIntValue() {
+    if (jdkCrc != null) {
+      return (int) jdkCrc.getValue();
+    }
     return ~crc;
   }
 
   @Override
   public long getValue() {
+    if (jdkCrc != null) {
+      return jdkCrc.getValue();
+    }
     long ret = crc;
     return (~ret) & 0xffffffffL;
   }
 
   @Override
   public void reset() {
-    crc = 0xffffffff;
+    if (jdkCrc != null) {
+      jdkCrc.reset();
+    } else {
+      crc = 0xffffffff;
+    }
   }
 
   @Override
   public void update(final byte[] b, final int off, final int len) {
-    crc = update(crc, b, off, len);
+    if (jdkCrc != null) {
+      jdkCrc.update(b, off, len);
+    } else {
+      crc = update(crc, b, off, len);
+    }
+  }
+
+  /**
+   * Update the checksum with the remaining bytes of a heap or direct buffer.
+   * (same semantics as the java 9 Checksum.update(ByteBuffer))
+   * @param buffer - the data, upon return the buffer position will be equal to its limit.
+   */
+  public void update(final ByteBuffer buffer) {
+    if (jdkCrc != null) {
+      jdkUpdate(jdkCrc, buffer);
+    } else {
+      int pos = buffer.position();
+      int limit = buffer.limit();
+      crc = update(crc, buffer, pos, limit - pos);
+      buffer.position(limit);
+    }
   }
 
   public static int update(int localCrc, final byte[] b, int off, int len) {
@@ -113,9 +245,43 @@ final class Crc32C
     return localCrc;
   }
 
+  /**
+   * Pure java update over a heap or direct buffer, using absolute reads (the buffer position is not changed).
+   */
+  public static int update(final int localCrc, final ByteBuffer b, final int offset, final int length) {
+    if (b.hasArray()) {
+      return update(localCrc, b.array(), b.arrayOffset() + offset, length);
+    }
+    int result = localCrc;
+    int off = offset;
+    int len = length;
+    while (len > 7) {
+      int c0 = b.get(off++) ^ result;
+      int c1 = b.get(off++) ^ (result >>>= 8);
+      int c2 = b.get(off++) ^ (result >>>= 8);
+      int c3 = b.get(off++) ^ (result >>>= 8);
+      result = (T8_7[c0 & 0xff] ^ T8_6[c1 & 0xff])
+              ^ (T8_5[c2 & 0xff] ^ T8_4[c3 & 0xff]);
+
+      result ^= (T8_3[b.get(off++) & 0xff] ^ T8_2[b.get(off++) & 0xff])
+              ^ (T8_1[b.get(off++) & 0xff] ^ T8_0[b.get(off++) & 0xff]);
+
+      len -= 8;
+    }
+    while (len > 0) {
+      result = (result >>> 8) ^ T8_0[(result ^ b.get(off++)) & 0xff];
+      len--;
+    }
+    return result;
+  }
+
   @Override
-  public void update(int b) {
-    crc = (crc >>> 8) ^ T8_0[(crc ^ b) & 0xff];
+  public void update(final int b) {
+    if (jdkCrc != null) {
+      jdkCrc.update(b);
+    } else {
+      crc = (crc >>> 8) ^ T8_0[(crc ^ b) & 0xff];
+    }
   }
 
   // CRC polynomial tables generated by:
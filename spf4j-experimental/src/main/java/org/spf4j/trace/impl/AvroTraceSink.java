@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.trace.impl;
+
+import com.google.common.annotations.Beta;
+import edu.umd.cs.findbugs.annotations.CreatesObligation;
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spf4j.base.Method;
+import org.spf4j.io.avro.AvroFileWriter;
+import org.spf4j.ssdump2.Converter;
+import org.spf4j.ssdump2.avro.ASample;
+import org.spf4j.stackmonitor.SampleNode;
+import org.spf4j.trace.avro.ASpanRecord;
+import org.spf4j.trace.avro.ATraceAnnotation;
+import org.spf4j.trace.avro.ATraceRecord;
+
+/**
+ * A span sink that writes span batches to a AVROZ file (see AvroFileWriter).
+ * Every batch is encoded as a set of ATraceRecords (one per trace id present in the batch),
+ * with a ASpanRecord per span.
+ * Write failures are logged and the failed records are dropped (see getDroppedCount), since throwing would
+ * only stop the flusher that calls this sink.
+ *
+ * @author zoly
+ */
+@Beta
+public final class AvroTraceSink implements Consumer<List<SpanScopeImpl>>, Flushable, Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AvroTraceSink.class);
+
+  private final AvroFileWriter<ATraceRecord> writer;
+
+  private final AtomicLong dropped;
+
+  @CreatesObligation
+  public AvroTraceSink(final File file, final int maxRowsPerBlock, final boolean append) throws IOException {
+    this.writer = new AvroFileWriter<>(file, ATraceRecord.getClassSchema(), ATraceRecord.class,
+            maxRowsPerBlock, append && file.length() > 0 ? null : "spf4j traces", append);
+    this.dropped = new AtomicLong();
+  }
+
+  @Override
+  public void accept(final List<SpanScopeImpl> spans) {
+    Map<CharSequence, List<ASpanRecord>> traces = new LinkedHashMap<>();
+    for (SpanScopeImpl span : spans) {
+      traces.computeIfAbsent(span.getTraceId(), (k) -> new ArrayList<>(4)).add(toRecord(span));
+    }
+    for (Map.Entry<CharSequence, List<ASpanRecord>> entry : traces.entrySet()) {
+      List<ASpanRecord> records = entry.getValue();
+      try {
+        writer.write(new ATraceRecord(entry.getKey().toString(), records));
+      } catch (IOException ex) {
+        dropped.addAndGet(records.size());
+        LOG.error("Failed to write {} spans of trace {} to {}", records.size(), entry.getKey(), this, ex);
+      }
+    }
+  }
+
+  static ASpanRecord toRecord(final SpanScopeImpl span) {
+    CharSequence name = span.getSpanName();
+    List<ASample> samples;
+    synchronized (span) { // a late sample might still be added by the sampler.
+      samples = toSamples(span.getSamples());
+    }
+    return new ASpanRecord(span.getStartTime(), span.getEndTime(), name == null ? "" : name.toString(),
+            span.getSpanId(), span.getParentSpanId(), Collections.<ATraceAnnotation>emptyList(), samples);
+  }
+
+  static List<ASample> toSamples(final SampleNode samples) {
+    if (samples == null) {
+      return Collections.emptyList();
+    }
+    List<ASample> result = new ArrayList<>();
+    Converter.convert(Method.ROOT, samples, -1, 0, (sample, deadline) -> result.add(sample));
+    return result;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writer.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
+  public File getFile() {
+    return writer.getFile();
+  }
+
+  /**
+   * @return the number of spans dropped due to write failures.
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  @Override
+  public String toString() {
+    return "AvroTraceSink{" + "writer=" + writer + '}';
+  }
+
+}
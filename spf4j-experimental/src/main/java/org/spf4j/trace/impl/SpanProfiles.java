@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.trace.impl;
+
+import com.google.common.annotations.Beta;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import org.spf4j.stackmonitor.SampleNode;
+
+/**
+ * Stack samples aggregated per span name.
+ * Spans are aggregated when they finish, only spans that have samples attributed to them cost anything.
+ *
+ * @author zoly
+ */
+@Beta
+public final class SpanProfiles {
+
+  private final ConcurrentMap<String, SampleNode> profiles = new ConcurrentHashMap<>();
+
+  void add(final SpanScopeImpl span) {
+    CharSequence spanName = span.getSpanName();
+    String name = spanName == null ? "" : spanName.toString();
+    synchronized (span) { // a late sample might still be added by the sampler.
+      final SampleNode samples = span.getSamples();
+      if (samples == null) {
+        return;
+      }
+      profiles.compute(name,
+              (k, v) -> v == null ? SampleNode.clone(samples) : SampleNode.aggregate(v, samples));
+    }
+  }
+
+  @Nullable
+  public SampleNode getProfile(final String spanName) {
+    return profiles.get(spanName);
+  }
+
+  /**
+   * @return the current profiles, and start new ones.
+   */
+  public Map<String, SampleNode> clear() {
+    Map<String, SampleNode> result = new HashMap<>(profiles.size() + profiles.size() / 2);
+    for (String name : profiles.keySet()) {
+      SampleNode node = profiles.remove(name);
+      if (node != null) {
+        result.put(name, node);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "SpanProfiles{" + "profiles=" + profiles.keySet() + '}';
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.trace.impl;
+
+import com.google.common.annotations.Beta;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+import org.spf4j.concurrent.ThreadLocalRingBufferedConsumer;
+import org.spf4j.concurrent.ThreadLocalRingBufferedConsumer.OverflowPolicy;
+
+/**
+ * Records finished spans.
+ *
+ * A finished span (that contains both start and end times) is written to the recording thread's ring buffer
+ * (no locking, no allocation), batches are handed to the sink by a background flusher.
+ * When a ring buffer is full, spans are dropped, tracing must not slow down the traced code.
+ *
+ * @author zoly
+ */
+@Beta
+public final class SpanRecorder implements Flushable, Closeable {
+
+  private final ThreadLocalRingBufferedConsumer<SpanScopeImpl> buffer;
+
+  private final Consumer<List<SpanScopeImpl>> sink;
+
+  /**
+   * @param sink the consumer of span batches, the batch lists must not be retained by the sink.
+   * @param ringSize the thread local ring buffer size.
+   * @param flushMillis the flush interval.
+   */
+  public SpanRecorder(final Consumer<List<SpanScopeImpl>> sink, final int ringSize, final int flushMillis) {
+    this.sink = sink;
+    this.buffer = new ThreadLocalRingBufferedConsumer<>(ringSize, sink, flushMillis, OverflowPolicy.DROP);
+  }
+
+  /**
+   * @param span the finished span.
+   * @return false if the span was dropped.
+   */
+  public boolean record(final SpanScopeImpl span) {
+    return buffer.write(span);
+  }
+
+  public long getDroppedCount() {
+    return buffer.getDroppedCount();
+  }
+
+  @Override
+  public void flush() throws IOException {
+    buffer.flush();
+    if (sink instanceof Flushable) {
+      ((Flushable) sink).flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    buffer.close();
+    if (sink instanceof Closeable) {
+      ((Closeable) sink).close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SpanRecorder{" + "buffer=" + buffer + ", sink=" + sink + '}';
+  }
+
+}
@@ -3,6 +3,7 @@ package org.spf4j.trace.impl;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntSupplier;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import org.spf4j.base.NameValue;
 import org.spf4j.stackmonitor.SampleNode;
 import org.spf4j.trace.SpanScope;
@@ -12,6 +13,8 @@ import org.spf4j.trace.SpanScope;
  */
 public class SpanScopeImpl implements SpanScope {
 
+  private final CharSequence traceId;
+
   private final int spanId;
 
   private final int parentSpanId;
@@ -26,6 +29,10 @@ public class SpanScopeImpl implements SpanScope {
 
   private long endTime;
 
+  /**
+   * stack samples attributed to this span, written by the sampler thread.
+   */
+  @GuardedBy("this")
   private SampleNode samples;
 
   /**
@@ -35,8 +42,9 @@ public class SpanScopeImpl implements SpanScope {
    * @param onNewScope
    * @param onCLose
    */
-  SpanScopeImpl(@Nullable final CharSequence spanName, final int id,
+  SpanScopeImpl(final CharSequence traceId, @Nullable final CharSequence spanName, final int id,
           SpanEventHandler eh) {
+    this.traceId = traceId;
     this.spanName = spanName;
     this.spanId = id;
     this.parentSpanId = -1;
@@ -47,8 +55,9 @@ public class SpanScopeImpl implements SpanScope {
   }
 
 
-  SpanScopeImpl(@Nullable final CharSequence spanName, final IntSupplier idSupplier, final int parentId,
-          SpanEventHandler eh) {
+  SpanScopeImpl(final CharSequence traceId, @Nullable final CharSequence spanName,
+          final IntSupplier idSupplier, final int parentId, SpanEventHandler eh) {
+    this.traceId = traceId;
     this.spanName = spanName;
     this.spanId = idSupplier.getAsInt();
     this.parentSpanId = parentId;
@@ -61,7 +70,7 @@ public class SpanScopeImpl implements SpanScope {
 
   @Override
   public SpanScope startSpan(CharSequence spanName) {
-    SpanScopeImpl spanScope = new SpanScopeImpl(spanName, idSupplier, spanId, eh);
+    SpanScopeImpl spanScope = new SpanScopeImpl(traceId, spanName, idSupplier, spanId, eh);
     eh.newSpan(spanScope);
     return spanScope;
   }
@@ -71,6 +80,32 @@ public class SpanScopeImpl implements SpanScope {
     return spanId;
   }
 
+  public CharSequence getTraceId() {
+    return traceId;
+  }
+
+  @Nullable
+  public CharSequence getSpanName() {
+    return spanName;
+  }
+
+  public int getParentSpanId() {
+    return parentSpanId;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public long getEndTime() {
+    return endTime;
+  }
+
+  @Nullable
+  public synchronized SampleNode getSamples() {
+    return samples;
+  }
+
   @Override
   public void log(NameValue... data) {
   }
@@ -86,7 +121,7 @@ public class SpanScopeImpl implements SpanScope {
   }
 
   @Override
-  public void accept(StackTraceElement[] t) {
+  public synchronized void accept(StackTraceElement[] t) {
     if (samples == null) {
       samples = SampleNode.createSampleNode(t);
     } else {
@@ -4,6 +4,9 @@ package org.spf4j.trace.impl;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import org.spf4j.stackmonitor.FastStackCollector;
 import org.spf4j.trace.TraceScope;
 import org.spf4j.trace.Tracer;
 
@@ -13,7 +16,10 @@ import org.spf4j.trace.Tracer;
  */
 public class Spf4jTracer implements Tracer {
 
+  @Nullable
+  private final SpanRecorder recorder;
 
+  private final SpanProfiles profiles;
 
   private final ConcurrentMap<Thread, TraceScope> thread2Scope = new ConcurrentHashMap<>();
 
@@ -25,6 +31,22 @@ public class Spf4jTracer implements Tracer {
 
   };
 
+  /**
+   * Create a tracer that keeps the finished spans in their trace scope.
+   */
+  public Spf4jTracer() {
+    this(null);
+  }
+
+  /**
+   * Create a tracer that hands finished spans to a recorder.
+   * @param recorder the span recorder.
+   */
+  public Spf4jTracer(@Nullable final SpanRecorder recorder) {
+    this.recorder = recorder;
+    this.profiles = new SpanProfiles();
+  }
+
   private void attachTraceScopeToCurrentThread(final TraceScope trace) {
     thread2Scope.put(Thread.currentThread(), trace);
     scope.set(trace);
@@ -41,16 +63,49 @@ public class Spf4jTracer implements Tracer {
     return thread2Scope.getOrDefault(thread, null);
   }
 
+  /**
+   * Returns the active span of a thread, used to attribute stack samples to spans.
+   * The active span is read from the volatile field published by the trace scope on every span start/finish,
+   * the span stack owned by the traced thread is not touched. A sample taken during a span transition can be
+   * attributed to the parent span, which is acceptable for sampling.
+   * @param thread the sampled thread.
+   * @return the active span or null if the thread is not traced.
+   */
+  @Nullable
+  public Consumer<StackTraceElement[]> getSampleSink(final Thread thread) {
+    TraceScope traceScope = thread2Scope.get(thread);
+    if (traceScope instanceof TraceScopeImpl) {
+      return ((TraceScopeImpl) traceScope).getActiveSpan();
+    }
+    return null;
+  }
+
+  /**
+   * @param collectForMain collect samples for the main thread.
+   * @return a stack collector that attributes the samples to the active spans of this tracer.
+   */
+  public FastStackCollector newSpanStackCollector(final boolean collectForMain) {
+    return new FastStackCollector(FastStackCollector.createNameBasedFilter(collectForMain, new String[0]),
+            this::getSampleSink);
+  }
+
+  /**
+   * @return the span samples aggregated per span name.
+   */
+  public SpanProfiles getSpanProfiles() {
+    return profiles;
+  }
+
   @Override
   public TraceScope newTrace(CharSequence traceId, CharSequence spanName) {
-    TraceScopeImpl trace = new TraceScopeImpl(traceId, spanName, 0);
+    TraceScopeImpl trace = new TraceScopeImpl(traceId, spanName, 0, recorder, profiles);
     attachTraceScopeToCurrentThread(trace);
     return trace;
   }
 
   @Override
   public TraceScope continueTrace(CharSequence traceId, int spanId) {
-    TraceScopeImpl trace = new TraceScopeImpl(traceId, null, spanId);
+    TraceScopeImpl trace = new TraceScopeImpl(traceId, null, spanId, recorder, profiles);
     attachTraceScopeToCurrentThread(trace);
     return trace;
   }
@@ -68,8 +123,20 @@ public class Spf4jTracer implements Tracer {
     return new Callable<T>() {
       @Override
       public T call() throws Exception {
-        attachTraceScopeToCurrentThread(new TraceScopeImpl(traceId, null, currentSpanId));
-        return callable.call();
+        Thread thread = Thread.currentThread();
+        TraceScope prev = scope.get();
+        attachTraceScopeToCurrentThread(new TraceScopeImpl(traceId, null, currentSpanId, recorder, profiles));
+        try {
+          return callable.call();
+        } finally {
+          // do not leak the trace scope to the next task executed by this thread.
+          scope.set(prev);
+          if (prev == NopTraceScope.INSTANCE) {
+            thread2Scope.remove(thread);
+          } else {
+            thread2Scope.put(thread, prev);
+          }
+        }
       }
     };
   }
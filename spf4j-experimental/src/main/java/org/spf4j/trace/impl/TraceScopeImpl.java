@@ -19,33 +19,70 @@ public class TraceScopeImpl implements TraceScope {
 
   private final CharSequence traceId;
 
+  /**
+   * accessed only by the thread that owns this trace scope.
+   */
   private final Deque<SpanScope> spanStack;
 
+  /**
+   * the top of spanStack, published for the sampler thread.
+   */
+  private volatile SpanScope activeSpan;
+
   private  final List<SpanScope> finishedSpans;
 
+  @Nullable
+  private final SpanRecorder recorder;
+
+  @Nullable
+  private final SpanProfiles profiles;
+
   /**
    * Start or continue a trace.
    * @param traceId the trace id.
    * @param spanName the name of the span, can be null if this trace is a continuation.
    * @param spanId the current span id.
+   * @param recorder the recorder finished spans are handed to, if null finished spans are kept in this scope.
+   * @param profiles the per span name profiles the samples of finished spans are aggregated into.
    */
   TraceScopeImpl(final CharSequence traceId, @Nullable final CharSequence spanName,
-          final int spanId) {
+          final int spanId, @Nullable final SpanRecorder recorder, @Nullable final SpanProfiles profiles) {
     this.traceId = traceId;
+    this.recorder = recorder;
+    this.profiles = profiles;
     this.spanStack = new ArrayDeque<>(4);
     this.finishedSpans = new ArrayList<>(4);
-    SpanScopeImpl scope = new SpanScopeImpl(spanName, spanId, new SpanEventHandler() {
+    SpanScopeImpl scope = new SpanScopeImpl(traceId, spanName, spanId, new SpanEventHandler() {
       @Override
       public void newSpan(SpanScope spanScope) {
         spanStack.addLast(spanScope);
+        activeSpan = spanScope;
       }
 
       @Override
       public void closeSpan(SpanScope spanScope) {
-        finishedSpans.add(spanStack.removeLast());
+        SpanScope finished = spanStack.removeLast();
+        activeSpan = spanStack.peekLast();
+        if (profiles != null) {
+          profiles.add((SpanScopeImpl) finished);
+        }
+        if (recorder == null) {
+          finishedSpans.add(finished);
+        } else {
+          recorder.record((SpanScopeImpl) finished);
+        }
       }
     });
     spanStack.addLast(scope);
+    activeSpan = scope;
+  }
+
+  /**
+   * @return the active span, safe to invoke from any thread.
+   */
+  @Nullable
+  SpanScope getActiveSpan() {
+    return activeSpan;
   }
 
   @Override
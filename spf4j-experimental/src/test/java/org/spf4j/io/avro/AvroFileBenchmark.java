@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.avro;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * AVROZ write and read throughput (a operation is a 100000 record file), sequential vs pipelined/parallel.
+ *
+ * @author zoly
+ */
+@Fork(2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class AvroFileBenchmark {
+
+  private static final int NR_RECORDS = 100000;
+
+  private static final Schema SCHEMA = SchemaBuilder.builder().record("TestRecord").fields()
+          .requiredLong("number")
+          .requiredDouble("value")
+          .requiredString("someString").endRecord();
+
+  @Param({"1000"})
+  public int rowsPerBlock;
+
+  private GenericRecord[] records;
+
+  private ExecutorService exec;
+
+  private File writeFile;
+
+  private File readFile;
+
+  @Setup
+  public void setup() throws IOException {
+    records = new GenericRecord[NR_RECORDS];
+    for (int i = 0; i < NR_RECORDS; i++) {
+      GenericData.Record record = new GenericData.Record(SCHEMA);
+      record.put("number", (long) i);
+      record.put("value", Math.sqrt(i));
+      record.put("someString", "some repetitive test string " + (i % 100));
+      records[i] = record;
+    }
+    exec = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    writeFile = File.createTempFile("bench", ".avroz");
+    writeFile.deleteOnExit();
+    readFile = File.createTempFile("bench", ".avroz");
+    readFile.deleteOnExit();
+    write(readFile, null);
+  }
+
+  @TearDown
+  public void tearDown() {
+    exec.shutdown();
+  }
+
+  private long write(final File file, final ExecutorService encoder) throws IOException {
+    try (AvroFileWriter<GenericRecord> writer = new AvroFileWriter<>(file, SCHEMA, GenericRecord.class,
+            rowsPerBlock, "bench", false, encoder, 16)) {
+      for (GenericRecord record : records) {
+        writer.write(record);
+      }
+    }
+    return file.length();
+  }
+
+  @Benchmark
+  public long writeSequential() throws IOException {
+    return write(writeFile, null);
+  }
+
+  @Benchmark
+  public long writePipelined() throws IOException {
+    return write(writeFile, exec);
+  }
+
+  @Benchmark
+  public long readSequential() throws IOException {
+    long result = 0;
+    AvroFileReader<GenericRecord> reader = new AvroFileReader<>(readFile, SCHEMA, GenericRecord.class, 65536);
+    try {
+      GenericRecord record;
+      while ((record = reader.read()) != null) {
+        result += (Long) record.get("number");
+      }
+    } finally {
+      reader.close();
+    }
+    return result;
+  }
+
+  @Benchmark
+  public long readParallel() throws IOException {
+    try (Stream<GenericRecord> stream = AvroFileReader.stream(readFile, SCHEMA, GenericRecord.class, true)) {
+      return stream.mapToLong((r) -> (Long) r.get("number")).sum();
+    }
+  }
+
+}
@@ -2,6 +2,9 @@ package org.spf4j.io.avro;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 import org.junit.Assert;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
@@ -42,4 +45,83 @@ public class AvroFileReaderTest {
 
   }
 
+  @Test
+  public void testParallelWriteRead() throws IOException {
+    Schema schema = SchemaBuilder.builder().record("TestRecord").fields()
+            .requiredLong("number")
+            .requiredString("someString").endRecord();
+    File file = File.createTempFile("temp", ".tavro");
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    int nrRecords = 100000;
+    try (AvroFileWriter<GenericRecord> writer = new AvroFileWriter<>(file, schema, GenericRecord.class, 1000,
+            "test records", false, exec, 8)) {
+      for (int i = 0; i < nrRecords; i++) {
+        GenericData.Record record = new GenericData.Record(schema);
+        record.put("number", (long) i);
+        record.put("someString", "test string " + i);
+        writer.write(record);
+      }
+    } finally {
+      exec.shutdown();
+    }
+    AvroFileReader<GenericRecord> reader = new AvroFileReader<>(file, schema, GenericRecord.class, 10000);
+    for (int i = 0; i < nrRecords; i++) {
+      Assert.assertEquals((long) i, reader.read().get("number"));
+    }
+    Assert.assertNull(reader.read());
+    reader.close();
+    try (Stream<GenericRecord> stream = AvroFileReader.stream(file, schema, GenericRecord.class, true)) {
+      Assert.assertEquals((long) nrRecords * (nrRecords - 1) / 2,
+              stream.mapToLong((r) -> (Long) r.get("number")).sum());
+    }
+    try (Stream<GenericRecord> stream = AvroFileReader.stream(file, schema, GenericRecord.class, true)) {
+      Assert.assertEquals(nrRecords - 1, (long) stream.reduce((a, b) -> b).get().get("number"));
+    }
+  }
+
+  @Test
+  public void testPipelinedWriteIsVisibleBeforeClose() throws IOException {
+    Schema schema = SchemaBuilder.builder().record("TestRecord").fields()
+            .requiredLong("number").endRecord();
+    File file = File.createTempFile("temp", ".tavro");
+    ExecutorService exec = Executors.newFixedThreadPool(2);
+    try (AvroFileWriter<GenericRecord> writer = new AvroFileWriter<>(file, schema, GenericRecord.class, 10,
+            "test records", false, exec, 1)) {
+      for (int i = 0; i < 30; i++) {
+        GenericData.Record record = new GenericData.Record(schema);
+        record.put("number", (long) i);
+        writer.write(record);
+      }
+      // 3 blocks submitted, the first 2 must be written and visible to readers.
+      try (AvroFileReader<GenericRecord> reader = new AvroFileReader<>(file, schema, GenericRecord.class, 1024)) {
+        for (int i = 0; i < 20; i++) {
+          Assert.assertEquals((long) i, reader.read().get("number"));
+        }
+        Assert.assertNull(reader.read());
+      }
+    } finally {
+      exec.shutdown();
+    }
+    try (AvroFileReader<GenericRecord> reader = new AvroFileReader<>(file, schema, GenericRecord.class, 1024)) {
+      for (int i = 0; i < 30; i++) {
+        Assert.assertEquals((long) i, reader.read().get("number"));
+      }
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxPendingBlocks() throws IOException {
+    Schema schema = SchemaBuilder.builder().record("TestRecord").fields()
+            .requiredLong("number").endRecord();
+    File file = File.createTempFile("temp", ".tavro");
+    ExecutorService exec = Executors.newFixedThreadPool(1);
+    try {
+      new AvroFileWriter<GenericRecord>(file, schema, GenericRecord.class, 10, "test records", false, exec, 0)
+              .close();
+    } finally {
+      exec.shutdown();
+    }
+  }
+
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.avro;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Pure java vs the runtime selected (JDK intrinsic on java 9+) CRC32C, over heap arrays and direct buffers.
+ * On java 8 both variants run the pure java implementation.
+ *
+ * @author zoly
+ */
+@Fork(2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class Crc32CBenchmark {
+
+  @Param({"64", "1024", "16384", "262144"})
+  public int size;
+
+  private byte[] data;
+
+  private ByteBuffer direct;
+
+  @Setup
+  public void setup() {
+    data = new byte[size];
+    new Random(size).nextBytes(data);
+    direct = ByteBuffer.allocateDirect(size);
+    direct.put(data);
+    direct.flip();
+  }
+
+  @Benchmark
+  public int pureJavaArray() {
+    return Crc32C.mask(~Crc32C.update(0xffffffff, data, 0, size));
+  }
+
+  @Benchmark
+  public int selectedArray() {
+    return Crc32C.maskedCrc32c(data, 0, size);
+  }
+
+  @Benchmark
+  public int pureJavaDirect() {
+    return Crc32C.mask(~Crc32C.update(0xffffffff, direct, 0, size));
+  }
+
+  @Benchmark
+  public int selectedDirect() {
+    return Crc32C.maskedCrc32c(direct);
+  }
+
+}
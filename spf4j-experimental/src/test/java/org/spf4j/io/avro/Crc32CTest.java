@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.io.avro;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author zoly
+ */
+public class Crc32CTest {
+
+  @Test
+  public void testKnownValue() {
+    byte[] data = "123456789".getBytes(StandardCharsets.US_ASCII);
+    Crc32C crc = new Crc32C();
+    crc.update(data, 0, data.length);
+    Assert.assertEquals(0xE3069283L, crc.getValue());
+    Assert.assertEquals(0xE3069283L, (~Crc32C.update(0xffffffff, data, 0, data.length)) & 0xffffffffL);
+    Assert.assertEquals(crc.getMaskedValue(), Crc32C.maskedCrc32c(data));
+    Assert.assertEquals(0xE3069283, Crc32C.unmask(Crc32C.maskedCrc32c(data)));
+  }
+
+  @Test
+  public void testImplementationsMatch() {
+    Random rnd = new Random(1);
+    for (int size : new int[] {0, 1, 7, 8, 9, 63, 1000, 65536}) {
+      byte[] data = new byte[size + 3];
+      rnd.nextBytes(data);
+      int expected = Crc32C.mask(~Crc32C.update(0xffffffff, data, 3, size));
+      Assert.assertEquals(expected, Crc32C.maskedCrc32c(data, 3, size));
+      ByteBuffer heap = ByteBuffer.wrap(data, 3, size).slice();
+      Assert.assertEquals(expected, Crc32C.maskedCrc32c(heap));
+      Assert.assertEquals(0, heap.position());
+      ByteBuffer direct = ByteBuffer.allocateDirect(size + 3);
+      direct.put(data);
+      direct.position(3);
+      Assert.assertEquals(expected, Crc32C.maskedCrc32c(direct));
+      Assert.assertEquals(expected, Crc32C.mask(~Crc32C.update(0xffffffff, direct, 3, size)));
+      Crc32C crc = new Crc32C();
+      crc.update(direct);
+      Assert.assertEquals(size + 3, direct.position());
+      Assert.assertEquals(expected, crc.getMaskedValue());
+      crc.reset();
+      for (int i = 3; i < data.length; i++) {
+        crc.update(data[i]);
+      }
+      Assert.assertEquals(expected, crc.getMaskedValue());
+    }
+  }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.trace.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spf4j.stackmonitor.FastStackCollector;
+import org.spf4j.stackmonitor.SampleNode;
+import org.spf4j.trace.SpanScope;
+import org.spf4j.trace.TraceScope;
+
+/**
+ *
+ * @author zoly
+ */
+public final class SpanProfilesTest {
+
+  @Test
+  public void testSpanSampling() throws InterruptedException {
+    final Spf4jTracer tracer = new Spf4jTracer();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch sampled = new CountDownLatch(1);
+    Thread thread = new Thread(() -> {
+      TraceScope trace = tracer.newTrace("sampledTrace", "root");
+      try (SpanScope span = trace.getCurrentSpan().startSpan("sampledSpan")) {
+        started.countDown();
+        sampled.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      trace.getCurrentSpan().close();
+    }, "tracedThread");
+    thread.start();
+    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+    FastStackCollector collector = tracer.newSpanStackCollector(false);
+    for (int i = 0; i < 10; i++) {
+      collector.sample(Thread.currentThread());
+    }
+    sampled.countDown();
+    thread.join();
+    SampleNode profile = tracer.getSpanProfiles().getProfile("sampledSpan");
+    Assert.assertNotNull(profile);
+    Assert.assertEquals(10, profile.getSampleCount());
+    Assert.assertNull(tracer.getSpanProfiles().getProfile("root"));
+  }
+
+}
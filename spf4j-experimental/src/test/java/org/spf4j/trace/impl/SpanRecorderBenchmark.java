@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.trace.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.spf4j.trace.SpanScope;
+import org.spf4j.trace.TraceScope;
+
+/**
+ * Measures the span overhead (spans/s per thread), with the recorded spans being discarded by the sink
+ * or written to a AVROZ file.
+ *
+ * @author zoly
+ */
+@Fork(2)
+@Threads(4)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SpanRecorderBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class NopSink {
+
+    public SpanRecorder recorder;
+
+    @Setup
+    public void setup() {
+      recorder = new SpanRecorder(new Consumer<List<SpanScopeImpl>>() {
+        @Override
+        public void accept(final List<SpanScopeImpl> t) {
+          // discard
+        }
+      }, 16384, 10);
+    }
+
+    @TearDown
+    public void close() throws IOException {
+      recorder.close();
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class FileSink {
+
+    public SpanRecorder recorder;
+
+    @Setup
+    public void setup() throws IOException {
+      File file = File.createTempFile("traces", ".avroz");
+      file.deleteOnExit();
+      recorder = new SpanRecorder(new AvroTraceSink(file, 1024, false), 16384, 10);
+    }
+
+    @TearDown
+    public void close() throws IOException {
+      recorder.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class RecordedNopTrace {
+
+    public TraceScope trace;
+
+    @Setup
+    public void setup(final NopSink sink) {
+      trace = new Spf4jTracer(sink.recorder).newTrace("benchmark");
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class RecordedFileTrace {
+
+    public TraceScope trace;
+
+    @Setup
+    public void setup(final FileSink sink) {
+      trace = new Spf4jTracer(sink.recorder).newTrace("benchmark");
+    }
+  }
+
+  private static int span(final TraceScope trace) {
+    try (SpanScope span = trace.getCurrentSpan().startSpan("span")) {
+      return span.getSpanId();
+    }
+  }
+
+  @Benchmark
+  public final int spanToRingNopSink(final RecordedNopTrace trace) {
+    return span(trace.trace);
+  }
+
+  @Benchmark
+  public final int spanToRingFileSink(final RecordedFileTrace trace) {
+    return span(trace.trace);
+  }
+
+}
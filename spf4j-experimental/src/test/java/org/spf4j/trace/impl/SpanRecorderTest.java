@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.trace.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spf4j.io.avro.AvroFileReader;
+import org.spf4j.trace.SpanScope;
+import org.spf4j.trace.TraceScope;
+import org.spf4j.trace.avro.ASpanRecord;
+import org.spf4j.trace.avro.ATraceRecord;
+
+/**
+ *
+ * @author zoly
+ */
+public final class SpanRecorderTest {
+
+  @Test
+  public void testRecordSpans() throws IOException {
+    File file = File.createTempFile("traces", ".avroz");
+    List<ASpanRecord> spans = new ArrayList<>();
+    try (SpanRecorder recorder = new SpanRecorder(new AvroTraceSink(file, 100, false), 1024, 100)) {
+      Spf4jTracer tracer = new Spf4jTracer(recorder);
+      TraceScope trace = tracer.newTrace("testTrace", "root");
+      SpanScope root = trace.getCurrentSpan();
+      for (int i = 0; i < 10; i++) {
+        try (SpanScope child = root.startSpan("child" + i)) {
+          child.log("index", i);
+        }
+      }
+      root.close();
+    }
+    try (AvroFileReader<ATraceRecord> reader = new AvroFileReader<>(file, ATraceRecord.getClassSchema(),
+            ATraceRecord.class, 8192)) {
+      ATraceRecord record;
+      while ((record = reader.read()) != null) {
+        Assert.assertEquals("testTrace", record.getTraceId().toString());
+        spans.addAll(record.getSpans());
+      }
+    }
+    Assert.assertEquals(11, spans.size());
+    ASpanRecord rootRecord = spans.get(10);
+    Assert.assertEquals("root", rootRecord.getName().toString());
+    Assert.assertEquals(-1, (int) rootRecord.getParentSpanId());
+    for (int i = 0; i < 10; i++) {
+      ASpanRecord child = spans.get(i);
+      Assert.assertEquals("child" + i, child.getName().toString());
+      Assert.assertEquals(0, (int) child.getParentSpanId());
+      Assert.assertTrue(child.getEndTime() >= child.getStartTime());
+    }
+  }
+
+}
@@ -3,11 +3,22 @@ package org.spf4j.junit;
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.runner.Description;
+import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spf4j.base.Runtime;
+import org.spf4j.concurrent.CustomThreadFactory;
+import org.spf4j.ssdump2.MultiProfileWriter;
 import org.spf4j.stackmonitor.FastStackCollector;
+import org.spf4j.stackmonitor.SampleNode;
 import org.spf4j.stackmonitor.Sampler;
 
 /**
@@ -34,6 +45,17 @@ import org.spf4j.stackmonitor.Sampler;
  *       </configuration>
  *     </plugin>
  *
+ * By default the sampler is started and stopped for every test, and every test profile is saved to its own
+ * .ssdump2 file. Stopping the sampler can take up to a couple of seconds, which adds up for large test suites.
+ * With -Dspf4j.junit.continuousProfiling=true the sampler runs continuously for the whole test run,
+ * the samples collected between testStarted and testFinished are attributed to the running test,
+ * and only the profiles of failed tests or of tests that took more than
+ * spf4j.junit.profileThresholdMillis (default 1000) are retained. The retained profiles are written
+ * in the background to one indexed multi profile file (.ssdump3, see MultiProfileWriter) in the destination folder.
+ * The samples are not tagged with the test that produced them, so continuous profiling cannot attribute samples
+ * when tests run in parallel: if a test starts while another one is running, continuous profiling is disabled
+ * (with a warning) for the rest of the run.
+ *
  * and add spf4j-junit to your test classpath:
  *
  *   <dependency>
@@ -47,6 +69,8 @@ import org.spf4j.stackmonitor.Sampler;
  */
 public final class Spf4jRunListener extends RunListener {
 
+  private static final Logger LOG = LoggerFactory.getLogger(Spf4jRunListener.class);
+
   private final Sampler sampler = new Sampler(Integer.getInteger("spf4j.junit.sampleTimeMillis", 5),
           Integer.getInteger("spf4j.junit.dumpAfterMillis", Integer.MAX_VALUE),
           new FastStackCollector(true));
@@ -59,9 +83,29 @@ public final class Spf4jRunListener extends RunListener {
     }
   }
 
+  private final boolean continuous = Boolean.getBoolean("spf4j.junit.continuousProfiling");
+
+  private final long profileThresholdMillis = Long.getLong("spf4j.junit.profileThresholdMillis", 1000L);
+
+  private ExecutorService profileWriterExec;
+
+  private MultiProfileWriter profileWriter;
+
+  private final AtomicInteger runningTests = new AtomicInteger();
+
+  private volatile boolean parallelDetected;
+
+  private long testStartMillis;
+
+  private boolean testFailed;
+
   @Override
   public void testFailure(final Failure failure)
           throws IOException, InterruptedException, ExecutionException, TimeoutException {
+    if (continuous) {
+      testFailed = true;
+      return;
+    }
     sampler.stop();
     File dumpToFile = sampler.dumpToFile(new File(destinationFolder, failure.getTestHeader() + ".ssdump2"));
     if (dumpToFile != null) {
@@ -72,6 +116,15 @@ public final class Spf4jRunListener extends RunListener {
   @Override
   public void testFinished(final Description description)
           throws IOException, InterruptedException, ExecutionException, TimeoutException {
+    if (continuous) {
+      runningTests.decrementAndGet();
+      SampleNode profile = sampler.getStackCollector().clear();
+      if (profile != null && !parallelDetected
+              && (testFailed || System.currentTimeMillis() - testStartMillis >= profileThresholdMillis)) {
+        writeProfile(description.getDisplayName(), profile);
+      }
+      return;
+    }
     sampler.stop();
     File dumpToFile = sampler.dumpToFile(new File(destinationFolder, description.getDisplayName() + ".ssdump2"));
     if (dumpToFile != null) {
@@ -81,7 +134,62 @@ public final class Spf4jRunListener extends RunListener {
 
   @Override
   public void testStarted(final Description description) {
-    sampler.start();
+    if (continuous) {
+      if (runningTests.incrementAndGet() > 1 && !parallelDetected) {
+        parallelDetected = true;
+        LOG.warn("Tests are executed in parallel, samples cannot be attributed to {}, "
+                + "continuous profiling is disabled for the rest of the run", description.getDisplayName());
+      }
+      if (parallelDetected) {
+        return;
+      }
+      if (sampler.isStopped()) {
+        sampler.start();
+      }
+      // discard the samples collected in between tests.
+      sampler.getStackCollector().clear();
+      testFailed = false;
+      testStartMillis = System.currentTimeMillis();
+    } else {
+      sampler.start();
+    }
+  }
+
+  /**
+   * Hand the profile to the background writer, so that the test thread does not pay for the IO.
+   */
+  private void writeProfile(final String label, final SampleNode profile) throws IOException {
+    if (profileWriter == null) {
+      profileWriter = new MultiProfileWriter(new File(destinationFolder,
+              "junit_" + Runtime.PID + '_' + System.currentTimeMillis() + ".ssdump3"));
+      profileWriterExec = Executors.newSingleThreadExecutor(
+              new CustomThreadFactory("spf4j-junit-profile-writer", true));
+    }
+    profileWriterExec.execute(() -> {
+      try {
+        profileWriter.write(label, profile);
+      } catch (IOException | RuntimeException ex) {
+        LOG.error("Unable to save profile for {} to {}", label, profileWriter, ex);
+      }
+    });
+  }
+
+  @Override
+  public void testRunFinished(final Result result)
+          throws IOException, InterruptedException, ExecutionException, TimeoutException {
+    if (!continuous) {
+      return;
+    }
+    sampler.stop();
+    if (profileWriter != null) {
+      profileWriterExec.shutdown();
+      if (!profileWriterExec.awaitTermination(1, TimeUnit.MINUTES)) {
+        throw new TimeoutException("Timed out waiting for profiles to be written to " + profileWriter.getFile());
+      }
+      profileWriter.close();
+      System.out.println("Profiles saved to " + profileWriter.getFile());
+      profileWriter = null;
+    }
   }
 
   @Override
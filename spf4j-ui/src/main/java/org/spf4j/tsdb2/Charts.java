@@ -6,8 +6,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.jfree.chart.JFreeChart;
 import org.spf4j.base.Arrays;
 import org.spf4j.base.Pair;
@@ -162,4 +164,192 @@ public final class Charts {
         return createJFreeCharts(data, td.get(0));
     }
 
+
+    /**
+     * Heat chart of the bucket sums, there is one heat chart column for every bucket.
+     */
+    public static JFreeChart createHeatJFreeChart(final TimeSeriesBuckets data, final TableDef info) {
+        int nrBuckets = data.getNrBuckets();
+        int nrColumns = data.getNrColumns();
+        double[] nodata = new double[nrColumns];
+        java.util.Arrays.fill(nodata, Double.NaN);
+        double[][] values = new double[nrBuckets][];
+        for (int b = 0; b < nrBuckets; b++) {
+            if (data.getRowCount(b) == 0) {
+                values[b] = nodata;
+            } else {
+                double[] row = new double[nrColumns];
+                for (int c = 0; c < nrColumns; c++) {
+                    row[c] = data.getSum(b, c);
+                }
+                values[b] = row;
+            }
+        }
+        ColumnDef columnDef = TSDBQuery.getColumnDef(info, "total");
+        return org.spf4j.perf.impl.chart.Charts.createHeatJFreeChart(TSDBQuery.getColumnNames(info),
+                values, data.getStartTime(), data.getBucketMillis(),
+                columnDef.getUnitOfMeasurement(), "Measurements distribution for "
+                + info.getName() + ", " + data.getBucketMillis() + "ms buckets, generated by spf4j");
+    }
+
+    public static JFreeChart createHeatJFreeChart(final File database, final List<TableDef> table,
+            final long startTime, final long endTime, final int maxNrBuckets) throws IOException {
+        TimeSeriesBuckets data = TSDBQuery.getTimeSeriesBuckets(database, table, startTime, endTime, maxNrBuckets);
+        return createHeatJFreeChart(data, table.get(0));
+    }
+
+    /**
+     * Min, Max, Avg chart of the buckets: the min of the min column, the max of the max column,
+     * and the total/count average. There is one point per non empty bucket.
+     */
+    public static JFreeChart createMinMaxAvgJFreeChart(final TimeSeriesBuckets data, final TableDef info) {
+        int minIdx = TSDBQuery.getColumnIndex(info, "min");
+        int maxIdx = TSDBQuery.getColumnIndex(info, "max");
+        int totalIdx = TSDBQuery.getColumnIndex(info, "total");
+        int countIdx = TSDBQuery.getColumnIndex(info, "count");
+        int nrPoints = data.getNrNonEmptyBuckets();
+        long[] timestamps = new long[nrPoints];
+        double[] min = new double[nrPoints];
+        double[] max = new double[nrPoints];
+        double[] avg = new double[nrPoints];
+        long halfBucket = data.getBucketMillis() / 2;
+        int j = 0;
+        for (int b = 0, l = data.getNrBuckets(); b < l; b++) {
+            if (data.getRowCount(b) == 0) {
+                continue;
+            }
+            timestamps[j] = data.getBucketStart(b) + halfBucket;
+            double count = data.getSum(b, countIdx);
+            if (count > 0) {
+                min[j] = data.getMin(b, minIdx);
+                max[j] = data.getMax(b, maxIdx);
+                avg[j] = data.getSum(b, totalIdx) / count;
+            }
+            j++;
+        }
+        return org.spf4j.perf.impl.chart.Charts.createTimeSeriesJFreeChart("Min,Max,Avg chart for "
+                + info.getName() + ", " + data.getBucketMillis() + "ms buckets, generated by spf4j", timestamps,
+                new String[]{"min", "max", "avg"},
+                TSDBQuery.getColumnDef(info, "total").getUnitOfMeasurement(),
+                new double[][]{min, max, avg});
+    }
+
+    public static JFreeChart createMinMaxAvgJFreeChart(final File database, final List<TableDef> table,
+            final long startTime, final long endTime, final int maxNrBuckets) throws IOException {
+        TimeSeriesBuckets data = TSDBQuery.getTimeSeriesBuckets(database, table, startTime, endTime, maxNrBuckets);
+        return createMinMaxAvgJFreeChart(data, table.get(0));
+    }
+
+    public static JFreeChart createCountJFreeChart(final TimeSeriesBuckets data, final TableDef info) {
+        return org.spf4j.perf.impl.chart.Charts.createTimeSeriesJFreeChart("count chart for "
+                + info.getName() + ", " + data.getBucketMillis() + " ms buckets, generated by spf4j",
+                getEnvelopeTimestamps(data), new String[]{"count"}, "count",
+                new double[][]{getEnvelope(data, TSDBQuery.getColumnIndex(info, "count"))});
+    }
+
+    public static JFreeChart createCountJFreeChart(final File database, final List<TableDef> info,
+            final long startTime, final long endTime, final int maxNrBuckets) throws IOException {
+        TimeSeriesBuckets data = TSDBQuery.getTimeSeriesBuckets(database, info, startTime, endTime, maxNrBuckets);
+        return createCountJFreeChart(data, info.get(0));
+    }
+
+    /**
+     * One chart per unit of measurement, with the min/max envelope of every column.
+     */
+    public static List<JFreeChart> createJFreeCharts(final TimeSeriesBuckets data, final TableDef info) {
+        Set<String> uoms = getUnitsOfMeasurement(info);
+        List<JFreeChart> result = new ArrayList<>(uoms.size());
+        long[] timestamps = getEnvelopeTimestamps(data);
+        for (String uom : uoms) {
+            result.add(createJFreeChart(data, info, uom, timestamps));
+        }
+        return result;
+    }
+
+    public static List<JFreeChart> createJFreeCharts(final File database, final List<TableDef> td,
+            final long startTime, final long endTime, final int maxNrBuckets) throws IOException {
+        TimeSeriesBuckets data = TSDBQuery.getTimeSeriesBuckets(database, td, startTime, endTime, maxNrBuckets);
+        return createJFreeCharts(data, td.get(0));
+    }
+
+    /**
+     * @return the distinct units of measurement of the table columns, in column order.
+     * (createJFreeCharts creates a chart for every unit of measurement, in this order)
+     */
+    public static Set<String> getUnitsOfMeasurement(final TableDef info) {
+        Set<String> result = new LinkedHashSet<>();
+        for (ColumnDef colDef : info.getColumns()) {
+            result.add(colDef.getUnitOfMeasurement());
+        }
+        return result;
+    }
+
+    /**
+     * Chart of the envelopes of the columns with the provided unit of measurement.
+     */
+    public static JFreeChart createJFreeChart(final TimeSeriesBuckets data, final TableDef info, final String uom) {
+        return createJFreeChart(data, info, uom, getEnvelopeTimestamps(data));
+    }
+
+    public static JFreeChart createJFreeChart(final File database, final List<TableDef> td, final String uom,
+            final long startTime, final long endTime, final int maxNrBuckets) throws IOException {
+        TimeSeriesBuckets data = TSDBQuery.getTimeSeriesBuckets(database, td, startTime, endTime, maxNrBuckets);
+        return createJFreeChart(data, td.get(0), uom);
+    }
+
+    private static JFreeChart createJFreeChart(final TimeSeriesBuckets data, final TableDef info, final String uom,
+            final long[] timestamps) {
+        List<String> measurementNames = new ArrayList<>();
+        List<double[]> measurements = new ArrayList<>();
+        int i = 0;
+        for (ColumnDef colDef : info.getColumns()) {
+            if (uom.equals(colDef.getUnitOfMeasurement())) {
+                measurementNames.add(colDef.getName());
+                measurements.add(getEnvelope(data, i));
+            }
+            i++;
+        }
+        return org.spf4j.perf.impl.chart.Charts.createTimeSeriesJFreeChart("chart for "
+                + info.getName() + ", " + data.getBucketMillis()
+                + " ms buckets, generated by spf4j", timestamps,
+                measurementNames.toArray(new String[measurementNames.size()]), uom,
+                measurements.toArray(new double[measurements.size()][]));
+    }
+
+    /**
+     * The envelope has 2 points per non empty bucket, the min at the bucket start and the max at the bucket middle,
+     * so that a line chart shows the full value range of every bucket (1 point, the max, for 1ms buckets).
+     */
+    private static long[] getEnvelopeTimestamps(final TimeSeriesBuckets data) {
+        long bucketMillis = data.getBucketMillis();
+        int pointsPerBucket = bucketMillis > 1 ? 2 : 1;
+        long[] result = new long[data.getNrNonEmptyBuckets() * pointsPerBucket];
+        int j = 0;
+        for (int b = 0, l = data.getNrBuckets(); b < l; b++) {
+            if (data.getRowCount(b) > 0) {
+                long start = data.getBucketStart(b);
+                if (pointsPerBucket == 2) {
+                    result[j++] = start;
+                }
+                result[j++] = start + bucketMillis / 2;
+            }
+        }
+        return result;
+    }
+
+    private static double[] getEnvelope(final TimeSeriesBuckets data, final int column) {
+        int pointsPerBucket = data.getBucketMillis() > 1 ? 2 : 1;
+        double[] result = new double[data.getNrNonEmptyBuckets() * pointsPerBucket];
+        int j = 0;
+        for (int b = 0, l = data.getNrBuckets(); b < l; b++) {
+            if (data.getRowCount(b) > 0) {
+                if (pointsPerBucket == 2) {
+                    result[j++] = data.getMin(b, column);
+                }
+                result[j++] = data.getMax(b, column);
+            }
+        }
+        return result;
+    }
+
 }
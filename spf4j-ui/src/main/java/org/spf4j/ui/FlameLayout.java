@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.ui;
+
+import java.util.Arrays;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.spf4j.base.Method;
+import org.spf4j.stackmonitor.SampleNode;
+
+/**
+ * Flattened flame graph layout: the node rectangles of a sample tree for a given pixel width,
+ * stored in primitive arrays, ordered by row (depth) and by x within a row.
+ *
+ * The layout is built breadth first (no recursion, so deep stacks are fine), and nodes narrower than a pixel
+ * are pruned together with their sub-trees. Since the nodes of a row are sorted by x and do not overlap,
+ * hit testing is a binary search in the row.
+ *
+ * @author zoly
+ */
+final class FlameLayout {
+
+    private final int[] xs;
+    private final int[] widths;
+    private final int[] sampleCounts;
+    private final Method[] methods;
+    /**
+     * the index of the first node of every row, with an extra element (the number of nodes) at the end.
+     */
+    private final int[] rowStarts;
+
+    private FlameLayout(final int[] xs, final int[] widths, final int[] sampleCounts, final Method[] methods,
+            final int[] rowStarts) {
+        this.xs = xs;
+        this.widths = widths;
+        this.sampleCounts = sampleCounts;
+        this.methods = methods;
+        this.rowStarts = rowStarts;
+    }
+
+    static FlameLayout build(final SampleNode root, final int width) {
+        int capacity = 256;
+        int[] xs = new int[capacity];
+        int[] widths = new int[capacity];
+        int[] rows = new int[capacity];
+        int[] sampleCounts = new int[capacity];
+        Method[] methods = new Method[capacity];
+        SampleNode[] nodes = new SampleNode[capacity];
+        xs[0] = 0;
+        widths[0] = width;
+        rows[0] = 0;
+        sampleCounts[0] = root.getSampleCount();
+        methods[0] = Method.ROOT;
+        nodes[0] = root;
+        int size = width > 0 ? 1 : 0;
+        for (int i = 0; i < size; i++) {
+            SampleNode node = nodes[i];
+            Map<Method, SampleNode> children = node.getSubNodes();
+            if (children == null) {
+                continue;
+            }
+            int relX = xs[i];
+            int childRow = rows[i] + 1;
+            double scale = (double) widths[i] / node.getSampleCount();
+            for (Map.Entry<Method, SampleNode> entry : children.entrySet()) {
+                SampleNode cnode = entry.getValue();
+                int childWidth = (int) (scale * cnode.getSampleCount());
+                if (childWidth > 0) {
+                    if (size == capacity) {
+                        capacity = capacity * 2;
+                        xs = Arrays.copyOf(xs, capacity);
+                        widths = Arrays.copyOf(widths, capacity);
+                        rows = Arrays.copyOf(rows, capacity);
+                        sampleCounts = Arrays.copyOf(sampleCounts, capacity);
+                        methods = Arrays.copyOf(methods, capacity);
+                        nodes = Arrays.copyOf(nodes, capacity);
+                    }
+                    xs[size] = relX;
+                    widths[size] = childWidth;
+                    rows[size] = childRow;
+                    sampleCounts[size] = cnode.getSampleCount();
+                    methods[size] = entry.getKey();
+                    nodes[size] = cnode;
+                    size++;
+                    relX += childWidth;
+                }
+            }
+            nodes[i] = null;
+        }
+        int nrRows = size == 0 ? 0 : rows[size - 1] + 1;
+        int[] rowStarts = new int[nrRows + 1];
+        for (int i = size - 1; i >= 0; i--) {
+            rowStarts[rows[i]] = i;
+        }
+        rowStarts[nrRows] = size;
+        // breadth first order is row order, and x order within a row.
+        return new FlameLayout(Arrays.copyOf(xs, size), Arrays.copyOf(widths, size),
+                Arrays.copyOf(sampleCounts, size), Arrays.copyOf(methods, size), rowStarts);
+    }
+
+    int getNrRows() {
+        return rowStarts.length - 1;
+    }
+
+    int getNrNodes() {
+        return xs.length;
+    }
+
+    int getRowStart(final int row) {
+        return rowStarts[row];
+    }
+
+    int getRowEnd(final int row) {
+        return rowStarts[row + 1];
+    }
+
+    int getX(final int idx) {
+        return xs[idx];
+    }
+
+    int getWidth(final int idx) {
+        return widths[idx];
+    }
+
+    int getSampleCount(final int idx) {
+        return sampleCounts[idx];
+    }
+
+    Method getMethod(final int idx) {
+        return methods[idx];
+    }
+
+    /**
+     * @return the index of the node at (x, row), or -1 if there is no node there.
+     */
+    int find(final int x, final int row) {
+        if (row < 0 || row >= getNrRows()) {
+            return -1;
+        }
+        int from = rowStarts[row];
+        int idx = Arrays.binarySearch(xs, from, rowStarts[row + 1], x);
+        if (idx < 0) {
+            idx = -idx - 2; // the last node starting before x.
+            if (idx < from) {
+                return -1;
+            }
+        }
+        return x < xs[idx] + widths[idx] ? idx : -1;
+    }
+
+    @Nullable
+    Sampled<Method> getSampled(final int x, final int row) {
+        int idx = find(x, row);
+        return idx < 0 ? null : new Sampled<>(methods[idx], sampleCounts[idx]);
+    }
+
+    @Override
+    public String toString() {
+        return "FlameLayout{" + "nrNodes=" + xs.length + ", nrRows=" + getNrRows() + '}';
+    }
+
+}
@@ -21,7 +21,12 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
-import java.util.List;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import org.spf4j.base.EqualsPredicate;
 import org.spf4j.base.Method;
@@ -29,65 +34,153 @@ import org.spf4j.stackmonitor.SampleNode;
 
 /**
  * An inverted implementation of Brendan Gregg's flame charts.
+ *
+ * The node rectangles are computed once per sample tree and width (see FlameLayout), and the rows are rendered
+ * in tiles of TILE_ROWS rows that are cached, so that a repaint draws only the visible tiles.
+ * Tooltips and filtering hit-test against the layout.
+ *
  * @author zoly
  */
+@SuppressFBWarnings("SE_TRANSIENT_FIELD_NOT_RESTORED")
 public final class FlameStackPanel extends StackPanelBase {
     private static final long serialVersionUID = 1L;
 
+    private static final int TILE_ROWS = 32;
+
+    private static final int MAX_CACHED_TILES = 64;
+
+    /**
+     * nodes narrower than this will have no text.
+     */
+    private static final int MIN_TEXT_WIDTH = 4;
+
+    private transient FlameLayout layout;
+
+    private transient SampleNode layoutSamples;
+
+    private int layoutWidth;
+
+    private int rowHeight;
+
+    private final transient Map<Integer, BufferedImage> tiles;
+
     public FlameStackPanel(final SampleNode samples) {
         super(samples);
+        this.tiles = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Integer, BufferedImage> eldest) {
+                return size() > MAX_CACHED_TILES;
+            }
+        };
+    }
+
+    private FlameLayout getLayout(final int width, final int pRowHeight) {
+        if (layout == null || layoutSamples != samples || layoutWidth != width) {
+            layout = FlameLayout.build(samples, width);
+            layoutSamples = samples;
+            layoutWidth = width;
+            tiles.clear();
+        }
+        if (rowHeight != pRowHeight) {
+            rowHeight = pRowHeight;
+            tiles.clear();
+        }
+        return layout;
+    }
+
+    @Override
+    public int paint(final Graphics2D gr, final double width, final double pRowHeight) {
+        FlameLayout fl = getLayout((int) width, (int) pRowHeight);
+        paintRows(fl, gr, 0, fl.getNrRows(), rowHeight);
+        return fl.getNrRows() * rowHeight;
     }
 
     @Override
-    public int paint(final Graphics2D gr, final double width, final double rowHeight) {
-        return paintNode(Method.ROOT, samples, gr,
-                0, 0, (int) width, (int) rowHeight, 0);
+    protected int paintVisible(final Graphics2D g2, final Rectangle2D available, final double pRowHeight) {
+        int width = (int) available.getWidth();
+        FlameLayout fl = getLayout(width, (int) pRowHeight);
+        int nrRows = fl.getNrRows();
+        if (nrRows == 0 || rowHeight <= 0) {
+            return 0;
+        }
+        int x = (int) available.getX();
+        int y = (int) available.getY();
+        int tileHeight = TILE_ROWS * rowHeight;
+        int nrTiles = (nrRows + TILE_ROWS - 1) / TILE_ROWS;
+        int firstTile = 0;
+        int lastTile = nrTiles - 1;
+        Rectangle clip = g2.getClipBounds();
+        if (clip != null) {
+            firstTile = Math.max(firstTile, (clip.y - y) / tileHeight);
+            lastTile = Math.min(lastTile, (clip.y + clip.height - y) / tileHeight);
+        }
+        for (int t = firstTile; t <= lastTile; t++) {
+            BufferedImage tile = tiles.get(t);
+            if (tile == null) {
+                int fromRow = t * TILE_ROWS;
+                int toRow = Math.min(nrRows, fromRow + TILE_ROWS);
+                tile = g2.getDeviceConfiguration().createCompatibleImage(width, (toRow - fromRow) * rowHeight + 1,
+                        Transparency.TRANSLUCENT);
+                Graphics2D gr = tile.createGraphics();
+                try {
+                    gr.setFont(g2.getFont());
+                    gr.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                    paintRows(fl, gr, fromRow, toRow, rowHeight);
+                } finally {
+                    gr.dispose();
+                }
+                tiles.put(t, tile);
+            }
+            g2.drawImage(tile, x, y + t * tileHeight, this);
+        }
+        return nrRows * rowHeight;
     }
 
+    /**
+     * paints rows [fromRow, toRow), fromRow is painted at y = 0.
+     */
     @SuppressFBWarnings("ISB_TOSTRING_APPENDING")
-    private int paintNode(final Method method, final SampleNode node,
-            final Graphics2D g2, final int x, final int py, final int width, final int height, final int depth) {
-        int y = py;
-        int sampleCount = node.getSampleCount();
-        String val = method.toString() + '-' + sampleCount;
-        setElementColor(depth, g2);
-        g2.setClip(x, y, width, height);
-        g2.fillRect(x, y, width, height);
-        insert(x, y, width, height, new Sampled<>(method, sampleCount));
-        g2.setPaint(Color.BLACK);
-        g2.drawString(val, x, y + height - 1);
-        g2.setClip(null);
-        g2.setPaint(LINK_COLOR);
-        g2.drawRect(x, y, width, height);
-        Map<Method, SampleNode> children = node.getSubNodes();
-        int result = height;
-        if (children != null) {
-            y += height;
-            int relX = x;
-            double scale = (double) width / sampleCount;
-            int maxY = 0;
-            for (Map.Entry<Method, SampleNode> entry : children.entrySet()) {
-                SampleNode cnode = entry.getValue();
-                // sampleCount -> width
-                // childSampleCount -> childWidth
-                int childWidth = (int) (scale * cnode.getSampleCount());
-                if (childWidth > 0) {
-                    maxY = Math.max(maxY, paintNode(entry.getKey(), cnode, g2, relX, y, childWidth, height, depth + 1));
-                    relX += childWidth;
+    private static void paintRows(final FlameLayout fl, final Graphics2D g2, final int fromRow, final int toRow,
+            final int height) {
+        for (int row = fromRow; row < toRow; row++) {
+            int y = (row - fromRow) * height;
+            setElementColor(row, g2);
+            for (int i = fl.getRowStart(row), l = fl.getRowEnd(row); i < l; i++) {
+                g2.fillRect(fl.getX(i), y, fl.getWidth(i), height);
+            }
+            g2.setPaint(Color.BLACK);
+            for (int i = fl.getRowStart(row), l = fl.getRowEnd(row); i < l; i++) {
+                int x = fl.getX(i);
+                int width = fl.getWidth(i);
+                if (width >= MIN_TEXT_WIDTH) {
+                    g2.setClip(x, y, width, height);
+                    g2.drawString(fl.getMethod(i).toString() + '-' + fl.getSampleCount(i), x, y + height - 1);
                 }
             }
-            result += maxY;
+            g2.setClip(null);
+            g2.setPaint(LINK_COLOR);
+            for (int i = fl.getRowStart(row), l = fl.getRowEnd(row); i < l; i++) {
+                g2.drawRect(fl.getX(i), y, fl.getWidth(i), height);
+            }
+        }
+    }
+
+    private int find(final int x, final int y) {
+        FlameLayout fl = layout;
+        if (fl == null || rowHeight <= 0 || y < 0) {
+            return -1;
         }
-        return result;
+        return fl.find(x, y / rowHeight);
     }
 
     @Override
     @SuppressFBWarnings("ISB_TOSTRING_APPENDING")
     public String getDetail(final Point location) {
-        List<Sampled<Method>> tips = search(location.x, location.y, 0, 0);
-        if (tips.size() >= 1) {
-            final Sampled<Method> m = tips.get(0);
-            return m.getObj().toString() + '-' + m.getNrSamples();
+        int idx = find(location.x, location.y);
+        if (idx >= 0) {
+            return layout.getMethod(idx).toString() + '-' + layout.getSampleCount(idx);
         } else {
             return null;
         }
@@ -95,9 +188,9 @@ public final class FlameStackPanel extends StackPanelBase {
 
     @Override
     public void filter() {
-        List<Sampled<Method>> tips = search(xx, yy, 0, 0);
-        if (tips.size() >= 1) {
-            final Method value = tips.get(0).getObj();
+        int idx = find(xx, yy);
+        if (idx >= 0) {
+            final Method value = layout.getMethod(idx);
             samples = samples.filteredBy(new EqualsPredicate<Method>(value));
             repaint();
         }
@@ -123,18 +123,7 @@ public abstract class StackPanelBase extends JPanel
         Graphics2D g2 = (Graphics2D) g.create();
         try {
             double rowHeight =  g2.getFont().getStringBounds("ROOT", g2.getFontRenderContext()).getHeight();
-
-            GraphicsConfiguration gc = g2.getDeviceConfiguration();
-            BufferedImage img = gc.createCompatibleImage(
-                    (int) available.getWidth(), (int) available.getHeight(),
-                    Transparency.TRANSLUCENT);
-
-            double width = available.getWidth();
-            tooltipDetail.clear();
-            Graphics2D gr = img.createGraphics();
-            gr.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-            int height = paint(gr, width, rowHeight);
-            g2.drawImage(img, insets.left, insets.top, this);
+            int height = paintVisible(g2, available, rowHeight);
             final Dimension dimension = new Dimension((int) size.getWidth(), height + 10);
             setPreferredSize(dimension);
             setSize(dimension);
@@ -144,6 +133,30 @@ public abstract class StackPanelBase extends JPanel
         }
     }
 
+    /**
+     * Paints the panel content into the available area.
+     * This implementation paints everything into an image (and rebuilds the tooltip index) on every call,
+     * implementations with a reusable layout can override it to paint only the visible area (g2 clip).
+     * @return the height of the whole content.
+     */
+    protected int paintVisible(final Graphics2D g2, final Rectangle2D available, final double rowHeight) {
+        GraphicsConfiguration gc = g2.getDeviceConfiguration();
+        BufferedImage img = gc.createCompatibleImage(
+                (int) available.getWidth(), (int) available.getHeight(),
+                Transparency.TRANSLUCENT);
+        double width = available.getWidth();
+        tooltipDetail.clear();
+        Graphics2D gr = img.createGraphics();
+        try {
+            gr.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            int height = paint(gr, width, rowHeight);
+            g2.drawImage(img, (int) available.getX(), (int) available.getY(), this);
+            return height;
+        } finally {
+            gr.dispose();
+        }
+    }
+
 
     public abstract int paint(Graphics2D gr, double width, double rowHeight);
 
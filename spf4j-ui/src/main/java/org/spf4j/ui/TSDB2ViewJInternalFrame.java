@@ -21,6 +21,8 @@ package org.spf4j.ui;
 import com.google.common.collect.Multimap;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
@@ -32,20 +34,28 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import javax.annotation.Nullable;
 import javax.swing.BoxLayout;
 import javax.swing.JFileChooser;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.event.AxisChangeEvent;
+import org.jfree.chart.event.AxisChangeListener;
+import org.jfree.chart.plot.XYPlot;
 import org.joda.time.DateTime;
 import org.spf4j.base.Pair;
 import org.spf4j.tsdb2.Charts;
 import org.spf4j.tsdb2.TSDBQuery;
 import org.spf4j.tsdb2.TSDBQuery.TableDefEx;
+import org.spf4j.tsdb2.TimeSeriesBuckets;
 import org.spf4j.tsdb2.avro.ColumnDef;
 import org.spf4j.tsdb2.avro.TableDef;
 
@@ -57,8 +67,23 @@ import org.spf4j.tsdb2.avro.TableDef;
 public class TSDB2ViewJInternalFrame extends javax.swing.JInternalFrame {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * default number of time buckets (~ pixels) per chart, used when the chart area width is not known yet.
+     */
+    private static final int DEFAULT_NR_BUCKETS = 600;
+
+    /**
+     * the zoom re-query delay, so that a mouse wheel zoom results in one query only.
+     */
+    private static final int ZOOM_REQUERY_DELAY_MILLIS = 300;
+
     private final File tsDb;
 
+    /**
+     * table name -> [data start time, data end time].
+     */
+    private final Map<String, long[]> dataRanges;
+
     /**
      * Creates new form TSDBViewJInternalFrame
      */
@@ -68,17 +93,26 @@ public class TSDB2ViewJInternalFrame extends javax.swing.JInternalFrame {
         tsDb = new File(databaseFile);
         Multimap<String, TableDefEx> columnsInfo = TSDBQuery.getAllTablesWithDataRanges(tsDb);
         Map<String, DefaultMutableTreeNode> gNodes = new HashMap<>();
+        dataRanges = new HashMap<>(columnsInfo.keySet().size());
         DefaultMutableTreeNode root = new DefaultMutableTreeNode(databaseFile);
         long startDateMillis = System.currentTimeMillis();
         for (Map.Entry<String, Collection<TableDefEx>> info : columnsInfo.asMap().entrySet()) {
             String groupName = info.getKey();
             final Collection<TableDefEx> defs = info.getValue();
+            long[] range = {Long.MAX_VALUE, Long.MIN_VALUE};
             for (TableDefEx tde : defs) {
                 long tableStart = tde.getStartTime();
                 if (tableStart < startDateMillis) {
                     startDateMillis = tableStart;
                 }
+                if (tableStart < range[0]) {
+                    range[0] = tableStart;
+                }
+                if (tde.getEndTime() > range[1]) {
+                    range[1] = tde.getEndTime();
+                }
             }
+            dataRanges.put(groupName, range);
             Pair<String, String> pair = Pair.from(groupName);
             if (pair == null) {
                 DefaultMutableTreeNode child = new DefaultMutableTreeNode(groupName);
@@ -228,13 +262,13 @@ public class TSDB2ViewJInternalFrame extends javax.swing.JInternalFrame {
         JPanel content = new JPanel();
         content.setLayout(new BoxLayout(content, BoxLayout.Y_AXIS));
         chartPannel.setViewportView(content);
-        try {
-            Set<String> selectedTables = getSelectedTables(selectionPaths);
-            for(String tableName : selectedTables) {
-                addChartToPanel(tableName, content);
-            }
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
+        int nrBuckets = chartPannel.getViewport().getWidth();
+        if (nrBuckets <= 0) {
+            nrBuckets = DEFAULT_NR_BUCKETS;
+        }
+        Set<String> selectedTables = getSelectedTables(selectionPaths);
+        for(String tableName : selectedTables) {
+            addChartsToPanel(tableName, content, nrBuckets);
         }
         chartPannel.repaint();
     }//GEN-LAST:event_jButton1ActionPerformed
@@ -300,44 +334,197 @@ public class TSDB2ViewJInternalFrame extends javax.swing.JInternalFrame {
         return result;
     }
 
-    private void addChartToPanel(final String tableName, final JPanel content) throws IOException {
-        List<TableDef> info =  TSDBQuery.getTableDef(tsDb, tableName);
+    /**
+     * Loads the charts of a table in the background, every chart is added to the content panel as soon as it is ready.
+     * The charts are created from time buckets (one bucket per pixel), so that the data read and charted
+     * is proportional to the chart size and not to the number of table rows.
+     */
+    private void addChartsToPanel(final String tableName, final JPanel content, final int nrBuckets) {
         long startTime = ((Date) startDate.getValue()).getTime();
         long endTime = ((Date) endDate.getValue()).getTime();
-        if (Charts.canGenerateHeatChart(info.get(0))) {
-            JFreeChart chart = Charts.createHeatJFreeChart(tsDb, info,
-                    startTime, endTime);
-            ChartPanel pannel = new ChartPanel(chart);
-            pannel.setPreferredSize(new Dimension(600, 800));
-            pannel.setDomainZoomable(false);
-            pannel.setMouseZoomable(false);
-            pannel.setRangeZoomable(false);
-            pannel.setZoomAroundAnchor(false);
-            pannel.setZoomInFactor(1);
-            pannel.setZoomOutFactor(1);
-            content.add(pannel);
+        long[] range = dataRanges.get(tableName);
+        if (range != null) {
+            startTime = Math.max(startTime, range[0]);
+            endTime = Math.min(endTime, range[1]);
+        }
+        if (startTime > endTime) {
+            return;
+        }
+        new ChartsLoader(tableName, startTime, endTime, nrBuckets, content).execute();
+    }
+
+    /**
+     * creates a chart for the provided time range, with at most maxNrBuckets time buckets.
+     */
+    private interface ChartSupplier {
+        JFreeChart create(long startTime, long endTime, int maxNrBuckets) throws IOException;
+    }
+
+    private final class ChartsLoader extends SwingWorker<Void, Pair<ChartSupplier, JFreeChart>> {
+
+        private final String tableName;
+        private final long startTime;
+        private final long endTime;
+        private final int nrBuckets;
+        private final JPanel content;
+
+        ChartsLoader(final String tableName, final long startTime, final long endTime,
+                final int nrBuckets, final JPanel content) {
+            this.tableName = tableName;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.nrBuckets = nrBuckets;
+            this.content = content;
         }
-        if (Charts.canGenerateMinMaxAvgCount(info.get(0))) {
-            JFreeChart chart = Charts.createMinMaxAvgJFreeChart(tsDb, info,
-                    startTime, endTime);
-            ChartPanel pannel = new ChartPanel(chart);
-            pannel.setPreferredSize(new Dimension(600, 600));
-            content.add(pannel);
 
+        @Override
+        protected Void doInBackground() throws IOException {
+            final List<TableDef> info = TSDBQuery.getTableDef(tsDb, tableName);
+            TableDef td = info.get(0);
+            if (Charts.canGenerateHeatChart(td)) {
+                publish(Pair.of((ChartSupplier) null,
+                        Charts.createHeatJFreeChart(tsDb, info, startTime, endTime, nrBuckets)));
+            }
+            if (Charts.canGenerateMinMaxAvgCount(td)) {
+                ChartSupplier supplier = (final long start, final long end, final int maxNrBuckets)
+                        -> Charts.createMinMaxAvgJFreeChart(tsDb, info, start, end, maxNrBuckets);
+                publish(Pair.of(supplier, supplier.create(startTime, endTime, nrBuckets)));
+            }
+            if (Charts.canGenerateCount(td)) {
+                ChartSupplier supplier = (final long start, final long end, final int maxNrBuckets)
+                        -> Charts.createCountJFreeChart(tsDb, info, start, end, maxNrBuckets);
+                publish(Pair.of(supplier, supplier.create(startTime, endTime, nrBuckets)));
+            } else {
+                TimeSeriesBuckets data = TSDBQuery.getTimeSeriesBuckets(tsDb, info, startTime, endTime, nrBuckets);
+                for (String uom : Charts.getUnitsOfMeasurement(td)) {
+                    // a zoom re-query builds only the chart of this unit of measurement.
+                    ChartSupplier supplier = (final long start, final long end, final int maxNrBuckets)
+                            -> Charts.createJFreeChart(tsDb, info, uom, start, end, maxNrBuckets);
+                    publish(Pair.of(supplier, Charts.createJFreeChart(data, td, uom)));
+                }
+            }
+            return null;
         }
-        if (Charts.canGenerateCount(info.get(0))) {
-            JFreeChart chart = Charts.createCountJFreeChart(tsDb, info,
-                    startTime, endTime);
-            ChartPanel pannel = new ChartPanel(chart);
-            pannel.setPreferredSize(new Dimension(600, 600));
-            content.add(pannel);
-        } else {
-            List<JFreeChart> createJFreeCharts = Charts.createJFreeCharts(tsDb, info, startTime, endTime);
-            for (JFreeChart chart : createJFreeCharts) {
-                ChartPanel pannel = new ChartPanel(chart);
-                pannel.setPreferredSize(new Dimension(600, 600));
+
+        @Override
+        protected void process(final List<Pair<ChartSupplier, JFreeChart>> charts) {
+            for (Pair<ChartSupplier, JFreeChart> chart : charts) {
+                ChartPanel pannel = new ChartPanel(chart.getSecond());
+                ChartSupplier supplier = chart.getFirst();
+                if (supplier == null) {
+                    pannel.setPreferredSize(new Dimension(600, 800));
+                    pannel.setDomainZoomable(false);
+                    pannel.setMouseZoomable(false);
+                    pannel.setRangeZoomable(false);
+                    pannel.setZoomAroundAnchor(false);
+                    pannel.setZoomInFactor(1);
+                    pannel.setZoomOutFactor(1);
+                } else {
+                    pannel.setPreferredSize(new Dimension(600, 600));
+                    pannel.getChart().getXYPlot().getDomainAxis()
+                            .addChangeListener(new ZoomRequery(supplier, pannel, startTime, endTime));
+                }
                 content.add(pannel);
             }
+            content.revalidate();
+            content.repaint();
+        }
+
+        @Override
+        protected void done() {
+            try {
+                get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                throw new RuntimeException("Cannot chart " + tableName, ex.getCause());
+            }
+        }
+
+    }
+
+    /**
+     * Re-queries the visible time range of a chart when its domain axis changes (zoom in/out),
+     * so that a zoomed in chart has the same bucket per pixel resolution as the initial chart.
+     * The re-query is delayed to coalesce axis changes, and runs in the background.
+     */
+    private static final class ZoomRequery implements AxisChangeListener, ActionListener {
+
+        private final ChartSupplier supplier;
+        private final ChartPanel pannel;
+        private final long startTime;
+        private final long endTime;
+        private final Timer timer;
+        private boolean applying;
+        private int requestId;
+
+        ZoomRequery(final ChartSupplier supplier, final ChartPanel pannel, final long startTime,
+                final long endTime) {
+            this.supplier = supplier;
+            this.pannel = pannel;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.timer = new Timer(ZOOM_REQUERY_DELAY_MILLIS, this);
+            this.timer.setRepeats(false);
+            this.applying = false;
+            this.requestId = 0;
+        }
+
+        @Override
+        public void axisChanged(final AxisChangeEvent event) {
+            if (!applying) {
+                timer.restart();
+            }
+        }
+
+        @Override
+        public void actionPerformed(final ActionEvent e) {
+            ValueAxis axis = pannel.getChart().getXYPlot().getDomainAxis();
+            final long start;
+            final long end;
+            if (axis.isAutoRange()) {
+                // zoomed out, auto range would be computed from the last zoomed in data, go back to the full range.
+                start = startTime;
+                end = endTime;
+            } else {
+                start = Math.max(startTime, (long) axis.getLowerBound());
+                end = Math.min(endTime, (long) Math.ceil(axis.getUpperBound()));
+                if (start > end) {
+                    return;
+                }
+            }
+            final int nrBuckets = Math.max(1, (int) pannel.getScreenDataArea().getWidth());
+            final int id = ++requestId;
+            new SwingWorker<JFreeChart, Void>() {
+                @Override
+                protected JFreeChart doInBackground() throws IOException {
+                    return supplier.create(start, end, nrBuckets);
+                }
+
+                @Override
+                protected void done() {
+                    if (id != requestId) {
+                        return; // a newer re-query is in progress.
+                    }
+                    JFreeChart chart;
+                    try {
+                        chart = get();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (ExecutionException ex) {
+                        throw new RuntimeException("Cannot re-query " + start + " - " + end, ex.getCause());
+                    }
+                    XYPlot plot = pannel.getChart().getXYPlot();
+                    applying = true;
+                    try {
+                        plot.setDataset(chart.getXYPlot().getDataset());
+                    } finally {
+                        applying = false;
+                    }
+                }
+            }.execute();
         }
     }
+
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2001, Zoltan Farkas All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.spf4j.ui;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.spf4j.base.Method;
+import org.spf4j.stackmonitor.SampleNode;
+
+/**
+ *
+ * @author zoly
+ */
+public final class FlameLayoutTest {
+
+  private static final StackTraceElement MAIN = new StackTraceElement("C", "main", "C.java", 10);
+
+  @Test
+  public void testLayout() {
+    SampleNode samples = SampleNode.createSampleNode(new StackTraceElement("C", "c", "C.java", 3), MAIN);
+    for (int i = 0; i < 90; i++) {
+      SampleNode.addToSampleNode(samples, new StackTraceElement("C", "a", "C.java", 1), MAIN);
+    }
+    for (int i = 0; i < 9; i++) {
+      SampleNode.addToSampleNode(samples, new StackTraceElement("C", "b", "C.java", 2), MAIN);
+    }
+    FlameLayout layout = FlameLayout.build(samples, 50);
+    // c is narrower than a pixel, and is pruned.
+    Assert.assertEquals(4, layout.getNrNodes());
+    Assert.assertEquals(3, layout.getNrRows());
+    Assert.assertEquals(Method.ROOT, layout.getMethod(layout.find(0, 0)));
+    Assert.assertEquals(100, layout.getSampleCount(layout.find(49, 0)));
+    int main = layout.find(49, 1);
+    Assert.assertEquals(Method.getMethod(MAIN), layout.getMethod(main));
+    Assert.assertEquals(50, layout.getWidth(main));
+    Assert.assertEquals(-1, layout.find(50, 1));
+    Assert.assertEquals(2, layout.getRowEnd(2) - layout.getRowStart(2));
+    int width = 0;
+    for (int i = layout.getRowStart(2); i < layout.getRowEnd(2); i++) {
+      int idx = layout.find(layout.getX(i) + layout.getWidth(i) - 1, 2);
+      Assert.assertEquals(i, idx);
+      width += layout.getWidth(i);
+      Assert.assertEquals(layout.getSampleCount(i) == 90 ? 45 : 4, layout.getWidth(i));
+    }
+    Assert.assertEquals(49, width);
+    Assert.assertEquals(-1, layout.find(49, 2));
+    Assert.assertEquals(-1, layout.find(0, 3));
+    Assert.assertEquals(-1, layout.find(0, -1));
+    Assert.assertNull(layout.getSampled(49, 2));
+  }
+
+  @Test
+  public void testEmptyLayout() {
+    SampleNode samples = SampleNode.createSampleNode(MAIN);
+    FlameLayout layout = FlameLayout.build(samples, 0);
+    Assert.assertEquals(0, layout.getNrNodes());
+    Assert.assertEquals(0, layout.getNrRows());
+    Assert.assertEquals(-1, layout.find(0, 0));
+  }
+
+}